@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2014 Brian L. Browning
+ *
+ * This file is part of Beagle
+ *
+ * Beagle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Beagle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package blbutil;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>Class {@code ByteInputIterator} is an iterator whose {@code next()}
+ * method returns lines of an input stream as byte arrays.  The bytes
+ * of each line are copied directly from the input buffer, and no
+ * character decoding is performed.  The returned byte arrays do not
+ * contain the line terminator ("\n", "\r", or "\r\n").
+ * </p>
+ * If an {@code IOException} is thrown when an {@code ByteInputIterator}
+ * instance reads from the input stream, the {@code IOException}
+ * is trapped, an error message is written to standard out, and the
+ * Java Virtual Machine is terminated.
+ *
+ * @author Brian L. Browning {@code <browning@uw.edu>}
+ */
+public class ByteInputIterator implements FileIterator<byte[]> {
+
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+
+    private final File file;
+    private final InputStream is;
+    private byte[] buffer;
+    private int start;  // first unread byte in buffer
+    private int end;    // one more than index of last valid byte in buffer
+    private boolean eof;
+    private byte[] next;
+
+    /**
+     * Constructs a new {@code ByteInputIterator} with default buffer
+     * size that will iterate through lines of the specified input stream.
+     *
+     * @param is an input stream.
+     * @param file the file from which the input stream reads data, or
+     * {@code null} if the file is unknown or is standard input.
+     *
+     * @throws NullPointerException if {@code is==null}.
+     * @see InputIterator#DEFAULT_BUFFER_SIZE
+     */
+    public ByteInputIterator(InputStream is, File file) {
+        this(is, file, InputIterator.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs a new {@code ByteInputIterator} that will iterate through
+     * the lines of the specified input stream.  The buffer is enlarged if a
+     * line is longer than the initial buffer size.
+     *
+     * @param is an input stream.
+     * @param file the file from which the input stream reads data, or
+     * {@code null} if the file is unknown or is standard input.
+     * @param bufferSize the initial buffer size in bytes.
+     *
+     * @throws IllegalArgumentException if {@code bufferSize<1}.
+     * @throws NullPointerException if {@code is==null}.
+     */
+    public ByteInputIterator(InputStream is, File file, int bufferSize) {
+        if (is==null) {
+            throw new NullPointerException("is==null");
+        }
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize: " + bufferSize);
+        }
+        this.file = file;
+        this.is = is;
+        this.buffer = new byte[bufferSize];
+        this.start = 0;
+        this.end = 0;
+        this.eof = false;
+        this.next = readLine();
+    }
+
+    /**
+     * Returns a {@code ByteInputIterator} that iterates through
+     * the lines of the specified compressed or uncompressed file.
+     * If the filename ends in ".gz", the file must be either
+     * BGZIP-compressed or GZIP-compressed.
+     *
+     * @param file a compressed or uncompressed text file.
+     * @return a {@code ByteInputIterator} that iterates through
+     * the lines of the specified compressed or uncompressed text file.
+     *
+     * @throws NullPointerException if {@code file==null}.
+     */
+    public static ByteInputIterator fromGzipFile(File file) {
+        try {
+            return new ByteInputIterator(InputIterator.gzipInputStream(file),
+                    file);
+        }
+        catch(FileNotFoundException e) {
+            Utilities.exit("Error opening " + file, e);
+        }
+        catch(IOException e) {
+            Utilities.exit("Error reading " + file, e);
+        }
+        assert false;
+        return null;
+    }
+
+    @Override
+    public File file() {
+        return file;
+    }
+
+    /**
+     * Returns {@code true} if the iteration has more elements.
+     * @return {@code true} if the iteration has more elements.
+     */
+    @Override
+    public boolean hasNext() {
+        return (next != null);
+    }
+
+    /**
+     * Returns the next element in the iteration.
+     * @return the next element in the iteration.
+     * @throws NoSuchElementException if the iteration has no more elements.
+     */
+    @Override
+    public byte[] next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        byte[] current = next;
+        next = readLine();
+        return current;
+    }
+
+    private byte[] readLine() {
+        int index = start;
+        while (true) {
+            while (index<end && buffer[index]!=LF && buffer[index]!=CR) {
+                ++index;
+            }
+            if (index<end) {
+                byte[] line = Arrays.copyOfRange(buffer, start, index);
+                if (buffer[index]==CR) {
+                    if (index+1==end) {
+                        // fill() may move unread bytes even if no bytes are read
+                        int offset = index - start;
+                        fill();
+                        index = start + offset;
+                    }
+                    if (index+1<end && buffer[index+1]==LF) {
+                        ++index;
+                    }
+                }
+                start = index + 1;
+                return line;
+            }
+            else {
+                int offset = index - start;
+                boolean bytesRead = fill();
+                index = start + offset;
+                if (bytesRead==false) {
+                    if (start==end) {
+                        return null;
+                    }
+                    byte[] line = Arrays.copyOfRange(buffer, start, end);
+                    start = end;
+                    return line;
+                }
+            }
+        }
+    }
+
+    /*
+     * Moves unread bytes to the beginning of the buffer, enlarges the
+     * buffer if it is full, and reads more bytes.  Returns true if
+     * at least one byte was read and false if the end of the stream
+     * has been reached.
+     */
+    private boolean fill() {
+        if (eof) {
+            return false;
+        }
+        if (start>0) {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end -= start;
+            start = 0;
+        }
+        if (end==buffer.length) {
+            buffer = Arrays.copyOf(buffer, 2*buffer.length);
+        }
+        try {
+            int n = is.read(buffer, end, buffer.length - end);
+            while (n==0) {
+                n = is.read(buffer, end, buffer.length - end);
+            }
+            if (n<0) {
+                eof = true;
+                return false;
+            }
+            end += n;
+        }
+        catch (IOException e) {
+            Utilities.exit("Error reading " + (file!=null ? file : is), e);
+        }
+        return true;
+    }
+
+    /**
+     * The {@code remove} method is not supported by this iterator.
+     * @throws UnsupportedOperationException if this method is invoked.
+     */
+    @Override
+    public void remove() {
+        String s = "remove() is not supported by ByteInputIterator";
+        throw new UnsupportedOperationException(s);
+    }
+
+    @Override
+    public void close() {
+        try {
+            is.close();
+        }
+        catch (IOException e) {
+            Utilities.exit("Error closing " + is, e);
+        }
+        next=null;
+    }
+
+    /**
+     * Returns a string representation of this iterator.  The exact details
+     * of the representation are unspecified and subject to change.
+     * @return a string representation of this iterator.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(200);
+        sb.append("[file = ");
+        sb.append(file);
+        sb.append("\nInputStream = ");
+        sb.append(is);
+        sb.append("]");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2014 Brian L. Browning
+ *
+ * This file is part of Beagle
+ *
+ * Beagle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Beagle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package blbutil;
+
+import java.io.PrintWriter;
+import java.text.DecimalFormat;
+import java.util.Arrays;
+
+/**
+ * <p>Class {@code CharBuffer} is a growable character buffer with
+ * methods for appending characters, strings, integers, and decimal
+ * numbers rounded to 3 decimal places.  Numbers are written directly
+ * into the buffer without creating intermediate objects.
+ * </p>
+ * <p>The {@code appendDecimal3()} method writes the same characters as
+ * {@code new java.text.DecimalFormat("#.###").format(d)} in the
+ * {@code Locale.US} locale: the value is rounded to 3 decimal places
+ * with {@code java.math.RoundingMode.HALF_EVEN} rounding of the exact
+ * binary value (with the exception of {@code 0.0005}, which
+ * {@code DecimalFormat} rounds to 0), trailing zeros in the fractional
+ * part are omitted, and a minus sign is written for negative values that
+ * round to zero.
+ * </p>
+ * <p>Instances of class {@code CharBuffer} are not thread-safe, but
+ * distinct instances may be used concurrently by different threads.
+ * </p>
+ *
+ * @author Brian L. Browning {@code <browning@uw.edu>}
+ */
+public final class CharBuffer {
+
+    /**
+     * The default initial capacity of a {@code CharBuffer}, which is 1024.
+     */
+    public static final int DEFAULT_INIT_CAPACITY = 1<<10;
+
+    private static final double SPLIT = (1<<27) + 1;
+    private static final double MAX_FAST_DECIMAL = 1e9;
+
+    private static final ThreadLocal<DecimalFormat> df3
+            = new ThreadLocal<DecimalFormat>() {
+        @Override
+        protected DecimalFormat initialValue() {
+            return new DecimalFormat("#.###");
+        }
+    };
+
+    private char[] chars;
+    private int size = 0;
+
+    /**
+     * Constructs a {@code CharBuffer} object with the default
+     * initial capacity.
+     *
+     * @see #DEFAULT_INIT_CAPACITY
+     */
+    public CharBuffer() {
+        this(DEFAULT_INIT_CAPACITY);
+    }
+
+    /**
+     * Constructs a {@code CharBuffer} object with the specified
+     * initial capacity.
+     *
+     * @param initCapacity the initial capacity of this buffer
+     * @throws IllegalArgumentException if {@code initCapacity<0}.
+     */
+    public CharBuffer(int initCapacity) {
+        if (initCapacity < 0) {
+            String s = "initCapacity < 0: " + initCapacity;
+            throw new IllegalArgumentException(s);
+        }
+        this.chars = new char[initCapacity];
+    }
+
+    /**
+     * Returns the number of characters in this buffer.
+     * @return the number of characters in this buffer.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all characters from this buffer.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > chars.length) {
+            int newCapacity = Math.max(minCapacity, (3*chars.length)/2 + 1);
+            chars = Arrays.copyOf(chars, newCapacity);
+        }
+    }
+
+    /**
+     * Appends the specified character to this buffer.
+     * @param c the character to be appended.
+     */
+    public void append(char c) {
+        ensureCapacity(size + 1);
+        chars[size++] = c;
+    }
+
+    /**
+     * Appends the specified string to this buffer.
+     * @param s the string to be appended.
+     * @throws NullPointerException if {@code s==null}.
+     */
+    public void append(String s) {
+        int length = s.length();
+        ensureCapacity(size + length);
+        s.getChars(0, length, chars, size);
+        size += length;
+    }
+
+    /**
+     * Appends the decimal representation of the specified integer to
+     * this buffer.  The appended characters are identical to the
+     * characters of {@code Integer.toString(i)}.
+     * @param i the integer to be appended.
+     */
+    public void append(int i) {
+        append((long) i);
+    }
+
+    /**
+     * Appends the decimal representation of the specified long to
+     * this buffer.  The appended characters are identical to the
+     * characters of {@code Long.toString(l)}.
+     * @param l the long to be appended.
+     */
+    public void append(long l) {
+        if (l==Long.MIN_VALUE) {
+            append(Long.toString(l));
+            return;
+        }
+        if (l < 0) {
+            append('-');
+            l = -l;
+        }
+        int nDigits = 1;
+        for (long p=10; p<=l && nDigits<19; p*=10) {
+            ++nDigits;
+        }
+        ensureCapacity(size + nDigits);
+        int end = size + nDigits;
+        for (int j=end-1; j>=size; --j) {
+            chars[j] = (char) ('0' + (l % 10));
+            l /= 10;
+        }
+        size = end;
+    }
+
+    /**
+     * Appends the specified value rounded to 3 decimal places to this
+     * buffer.  The appended characters are identical to the characters of
+     * {@code new java.text.DecimalFormat("#.###").format(d)} in the
+     * {@code Locale.US} locale.
+     * @param d the value to be appended.
+     */
+    public void appendDecimal3(double d) {
+        double a = Math.abs(d);
+        if ((a < MAX_FAST_DECIMAL)==false) {
+            append(df3.get().format(d));    // NaN, infinite, or large
+            return;
+        }
+        long n = roundedThousandths(a);
+        if ((Double.doubleToRawLongBits(d) & Long.MIN_VALUE) != 0) {
+            append('-');
+        }
+        append(n/1000);
+        int frac = (int) (n % 1000);
+        if (frac != 0) {
+            append('.');
+            append((char) ('0' + frac/100));
+            frac %= 100;
+            if (frac != 0) {
+                append((char) ('0' + frac/10));
+                frac %= 10;
+                if (frac != 0) {
+                    append((char) ('0' + frac));
+                }
+            }
+        }
+    }
+
+    /*
+     * Returns the exact value of 1000*a rounded to the nearest integer
+     * with ties rounded to the even integer.  Requires
+     * 0 <= a < MAX_FAST_DECIMAL.  The exact product is the sum of two
+     * doubles obtained by splitting 8*a into high and low halves, each of
+     * which can be multiplied by 125 without rounding error.
+     *
+     * DecimalFormat rounds 0.0005 down although its binary value is
+     * slightly larger than 0.0005, because DecimalFormat rounds the
+     * shortest decimal representation of a value less than 0.001 at its
+     * first significant digit.
+     */
+    private static long roundedThousandths(double a) {
+        if (a==0.0005) {
+            return 0;
+        }
+        double b = 8*a;
+        double c = SPLIT*b;
+        double hi = c - (c - b);
+        double lo = b - hi;
+        double p1 = 125*hi;
+        double p2 = 125*lo;
+        long n = (long) Math.floor(p1 + p2);
+        if (compare(p1, p2, n) < 0) {
+            --n;
+        }
+        else if (compare(p1, p2, n + 1) >= 0) {
+            ++n;
+        }
+        int cmp = compare(p1, p2, n + 0.5);
+        if (cmp > 0 || (cmp==0 && (n & 1)==1)) {
+            ++n;
+        }
+        return n;
+    }
+
+    /*
+     * Returns the sign of (p1 + p2 - x), where p1 + p2 is computed
+     * without rounding error.  If p1 + p2 is close to x, the subtraction
+     * p1 - x is exact.
+     */
+    private static int compare(double p1, double p2, double x) {
+        double diff = (p1 - x) + p2;
+        return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+    }
+
+    /**
+     * Writes the characters in this buffer to the specified
+     * {@code PrintWriter}.
+     * @param out the {@code PrintWriter} to which characters will be written.
+     * @throws NullPointerException if {@code out==null}.
+     */
+    public void writeTo(PrintWriter out) {
+        out.write(chars, 0, size);
+    }
+
+    /**
+     * Returns the characters in this buffer as a string.
+     * @return the characters in this buffer as a string.
+     */
+    @Override
+    public String toString() {
+        return new String(chars, 0, size);
+    }
+}
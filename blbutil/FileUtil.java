@@ -32,7 +32,9 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.util.zip.GZIPOutputStream;
+import net.sf.samtools.Defaults;
 import net.sf.samtools.util.BlockCompressedOutputStream;
+import net.sf.samtools.util.ParallelBlockCompressedOutputStream;
 
 /**
  * Class {@code FileUtil} contains static methods for working with files.
@@ -59,6 +61,10 @@ public class FileUtil {
      * If the file cannot be opened, an error message will be printed and
      * the java interpreter will exit.
      *
+     * The compression level and the number of compression threads are
+     * {@code net.sf.samtools.Defaults.COMPRESSION_LEVEL} and
+     * {@code net.sf.samtools.Defaults.COMPRESSION_THREADS}.
+     *
      * @param file the file to be opened for output.
      * @param size the buffer size in bytes.
      * @return a {@code java.io.PrintWriter} writing to
@@ -66,11 +72,50 @@ public class FileUtil {
      * @throws IllegalArgumentException if {@code size<=0}
      */
     public static PrintWriter bgzipPrintWriter(File file, int size) {
+        return bgzipPrintWriter(file, size,
+                BlockCompressedOutputStream.getDefaultCompressionLevel(),
+                Defaults.COMPRESSION_THREADS);
+    }
+
+    /**
+     * Returns a {@code java.io.PrintWriter} writing to
+     * the specified file and having the specified buffer size.
+     * The output will be compressed using the BGZIP compression algorithm
+     * with the specified compression level.  If {@code nThreads>0}, blocks
+     * are compressed by {@code nThreads} worker threads, and if
+     * {@code nThreads==0}, blocks are compressed by the writing thread.
+     * Any existing file corresponding to the specified file will be deleted.
+     * If the file cannot be opened, an error message will be printed and
+     * the java interpreter will exit.
+     *
+     * @param file the file to be opened for output.
+     * @param size the buffer size in bytes.
+     * @param compressionLevel the compression level.
+     * @param nThreads the number of compression threads.
+     * @return a {@code java.io.PrintWriter} writing to
+     * the specified file.
+     * @throws IllegalArgumentException if {@code size<=0}
+     * @throws IllegalArgumentException if
+     * {@code compressionLevel<0 || compressionLevel>9}
+     * @throws IllegalArgumentException if {@code nThreads<0}
+     */
+    public static PrintWriter bgzipPrintWriter(File file, int size,
+            int compressionLevel, int nThreads) {
+        if (nThreads<0) {
+            throw new IllegalArgumentException("nThreads<0: " + nThreads);
+        }
         PrintWriter out = null;
         try {
-            OutputStream fout = new FileOutputStream(file);
-            out = new PrintWriter(new BlockCompressedOutputStream(
-                    new BufferedOutputStream(fout, size), file));
+            OutputStream fout = new BufferedOutputStream(
+                    new FileOutputStream(file), size);
+            if (nThreads==0) {
+                out = new PrintWriter(new BlockCompressedOutputStream(fout,
+                        file, compressionLevel));
+            }
+            else {
+                out = new PrintWriter(new ParallelBlockCompressedOutputStream(
+                        fout, file, compressionLevel, nThreads));
+            }
         } catch (FileNotFoundException e) {
             Utilities.exit("Error opening " + file, e);
         }
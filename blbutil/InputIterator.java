@@ -28,7 +28,9 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.NoSuchElementException;
 import java.util.zip.GZIPInputStream;
+import net.sf.samtools.Defaults;
 import net.sf.samtools.util.BlockCompressedInputStream;
+import net.sf.samtools.util.ParallelBlockCompressedInputStream;
 
 /**
  * <p>Class {@code InputIterator} is an iterator whose {@code next()}
@@ -172,19 +174,7 @@ public class InputIterator implements FileIterator<String> {
      */
     public static InputIterator fromGzipFile(File file) {
         try {
-            InputStream is = new FileInputStream(file);
-            if (file.getName().endsWith(".gz")) {
-                if (isBGZipFile(file)) {
-                    return new InputIterator(
-                            new BlockCompressedInputStream(is));
-                }
-                else {
-                    return new InputIterator(new GZIPInputStream(is));
-                }
-            }
-            else {
-                return new InputIterator(is);
-            }
+            return new InputIterator(gzipInputStream(file));
         }
         catch(FileNotFoundException e) {
             Utilities.exit("Error opening " + file, e);
@@ -196,6 +186,41 @@ public class InputIterator implements FileIterator<String> {
         return null;
     }
 
+    /**
+     * Returns an input stream that reads the decompressed bytes of the
+     * specified compressed or uncompressed file.  If the filename ends
+     * in ".gz", the file must be either BGZIP-compressed or
+     * GZIP-compressed.  BGZIP blocks are inflated ahead of the reader
+     * by {@code net.sf.samtools.Defaults.DECOMPRESSION_THREADS} worker
+     * threads if that value is positive.
+     *
+     * @param file a compressed or uncompressed file.
+     * @return an input stream that reads the decompressed bytes of the
+     * specified file.
+     * @throws FileNotFoundException if the specified file cannot be opened
+     * for reading.
+     * @throws IOException if an I/O error occurs.
+     * @throws NullPointerException if {@code file==null}.
+     */
+    static InputStream gzipInputStream(File file) throws IOException {
+        InputStream is = new FileInputStream(file);
+        if (file.getName().endsWith(".gz")) {
+            if (isBGZipFile(file)) {
+                if (Defaults.DECOMPRESSION_THREADS > 0) {
+                    return new ParallelBlockCompressedInputStream(is,
+                            Defaults.DECOMPRESSION_THREADS);
+                }
+                return new BlockCompressedInputStream(is);
+            }
+            else {
+                return new GZIPInputStream(is);
+            }
+        }
+        else {
+            return is;
+        }
+    }
+
     private static boolean isBGZipFile(File file) throws IOException {
         boolean result = false;
         try (InputStream is=new BufferedInputStream(new FileInputStream(file))) {
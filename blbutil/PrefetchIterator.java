@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2014 Brian L. Browning
+ *
+ * This file is part of Beagle
+ *
+ * Beagle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Beagle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package blbutil;
+
+import beagleutil.Samples;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * <p>Class {@code PrefetchIterator} reads elements from a
+ * {@code SampleFileIterator} on a background thread.  Up to a specified
+ * number of elements are read ahead of the element most recently returned
+ * by {@code this.next()}, and elements are returned in the order in
+ * which they are returned by the wrapped iterator.
+ * </p>
+ * <p>After construction, the wrapped iterator must not be used by any
+ * thread other than the background thread.  An unchecked exception or
+ * error thrown while reading an element is rethrown by the
+ * {@code hasNext()} or {@code next()} method that would have returned
+ * the element.
+ * </p>
+ * <p>Instances of class {@code PrefetchIterator} are not thread-safe.
+ * </p>
+ *
+ * @param <E> the type of the elements returned by this iterator's
+ * {@code next()} method.
+ *
+ * @author Brian L. Browning {@code <browning@uw.edu>}
+ */
+public final class PrefetchIterator<E> implements SampleFileIterator<E> {
+
+    private static final int MAX_BATCH_SIZE = 256;
+
+    private final SampleFileIterator<E> it;
+    private final int batchSize;
+    private final BlockingQueue<List<E>> queue;
+    private final List<E> endOfData = Collections.emptyList();
+    private final Thread reader;
+    private volatile Throwable readError = null;
+
+    private Iterator<E> batch = Collections.<E>emptyList().iterator();
+    private boolean done = false;
+    private volatile boolean closed = false;
+
+    /**
+     * Returns a {@code SampleFileIterator} that reads up to
+     * {@code lookAhead} elements of the specified iterator ahead of
+     * the most recently returned element on a background thread.
+     * Returns {@code it} if {@code lookAhead==0}.
+     * @param <E> the type of the elements returned by the iterator.
+     * @param it the iterator whose elements will be read.
+     * @param lookAhead the maximum number of elements to read ahead.
+     * @return a {@code SampleFileIterator} that returns the elements of
+     * the specified iterator.
+     * @throws IllegalArgumentException if {@code lookAhead<0}.
+     * @throws NullPointerException if {@code it==null}.
+     */
+    public static <E> SampleFileIterator<E> prefetch(SampleFileIterator<E> it,
+            int lookAhead) {
+        if (lookAhead<0) {
+            throw new IllegalArgumentException("lookAhead<0: " + lookAhead);
+        }
+        if (it==null) {
+            throw new NullPointerException("it==null");
+        }
+        return lookAhead==0 ? it : new PrefetchIterator<>(it, lookAhead);
+    }
+
+    /**
+     * Constructs a new {@code PrefetchIterator} instance and starts the
+     * background thread that reads the elements of the specified iterator.
+     * @param it the iterator whose elements will be read.
+     * @param lookAhead the maximum number of elements to read ahead.
+     * @throws IllegalArgumentException if {@code lookAhead<1}.
+     * @throws NullPointerException if {@code it==null}.
+     */
+    public PrefetchIterator(SampleFileIterator<E> it, int lookAhead) {
+        if (lookAhead<1) {
+            throw new IllegalArgumentException("lookAhead<1: " + lookAhead);
+        }
+        if (it==null) {
+            throw new NullPointerException("it==null");
+        }
+        this.it = it;
+        this.batchSize = Math.min(lookAhead, MAX_BATCH_SIZE);
+        int capacity = Math.max(lookAhead/batchSize, 1);
+        this.queue = new ArrayBlockingQueue<>(capacity + 1);
+        this.reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                read();
+            }
+        }, "PrefetchIterator");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private void read() {
+        try {
+            List<E> list = new ArrayList<>(batchSize);
+            while (it.hasNext()) {
+                list.add(it.next());
+                if (list.size()==batchSize) {
+                    queue.put(list);
+                    list = new ArrayList<>(batchSize);
+                }
+            }
+            if (list.isEmpty()==false) {
+                queue.put(list);
+            }
+            queue.put(endOfData);
+        }
+        catch (InterruptedException e) {
+            // close() has been invoked
+        }
+        catch (Throwable t) {
+            readError = t;
+            try {
+                if (closed==false) {
+                    queue.put(endOfData);
+                }
+            }
+            catch (InterruptedException e) {
+                // close() has been invoked
+            }
+        }
+    }
+
+    @Override
+    public File file() {
+        return it.file();
+    }
+
+    @Override
+    public Samples samples() {
+        return it.samples();
+    }
+
+    /**
+     * Returns {@code true} if the iteration has more elements, and returns
+     * {@code false} otherwise.  This method blocks until the next element
+     * has been read or the end of the data is reached.
+     * @return {@code true} if the iteration has more elements.
+     */
+    @Override
+    public boolean hasNext() {
+        while (batch.hasNext()==false && done==false) {
+            List<E> list = take();
+            if (list==endOfData) {
+                done = true;
+                rethrowReadError();
+            }
+            else {
+                batch = list.iterator();
+            }
+        }
+        return batch.hasNext();
+    }
+
+    /**
+     * Returns the next element in the iteration.
+     * @return the next element in the iteration.
+     * @throws NoSuchElementException if the iteration has no more elements.
+     */
+    @Override
+    public E next() {
+        if (hasNext()==false) {
+            throw new NoSuchElementException();
+        }
+        return batch.next();
+    }
+
+    private List<E> take() {
+        try {
+            return queue.take();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void rethrowReadError() {
+        Throwable t = readError;
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        else if (t instanceof Error) {
+            throw (Error) t;
+        }
+        else if (t!=null) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    /**
+     * The {@code remove} method is not supported by this iterator.
+     * @throws UnsupportedOperationException if this method is invoked.
+     */
+    @Override
+    public void remove() {
+        String s = "remove() is not supported by PrefetchIterator";
+        throw new UnsupportedOperationException(s);
+    }
+
+    /**
+     * Stops the background thread and closes the wrapped iterator.
+     */
+    @Override
+    public void close() {
+        if (closed==false) {
+            closed = true;
+            done = true;
+            batch = Collections.<E>emptyList().iterator();
+            reader.interrupt();
+            boolean interrupted = false;
+            while (reader.isAlive()) {
+                try {
+                    reader.join();
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            it.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return PrefetchIterator.class.toString() + " : " + it.file();
+    }
+}
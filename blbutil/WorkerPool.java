@@ -0,0 +1,329 @@
+/*
+ * Copyright (C) 2014 Brian L. Browning
+ *
+ * This file is part of Beagle
+ *
+ * Beagle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Beagle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package blbutil;
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>Class {@code WorkerPool} is a fixed set of worker threads that
+ * persist for the lifetime of the pool and that apply a task to each
+ * index in a range of indices.
+ * </p>
+ * <p>The range of indices is divided into chunks of consecutive indices,
+ * and each worker is initially assigned a contiguous block of chunks.
+ * A worker takes chunks from the front of its own block, and a worker
+ * that has finished its own block steals chunks from the back of the
+ * other workers' blocks.  No objects are allocated for each index.
+ * </p>
+ * <p>The thread that invokes {@code run()} is worker 0, and the pool's
+ * threads are workers 1, 2, ..., {@code (this.nThreads() - 1)}.  Each
+ * worker is a single thread, so that per-worker state indexed by worker
+ * is thread-confined.
+ * </p>
+ * <p>The {@code run()} method may not be invoked from within a task.
+ * Work that must be parallelized from inside a task, such as scoring
+ * node pairs while a DAG model is built by a task, is run on a single
+ * {@code java.util.concurrent.ForkJoinPool} that is created alongside
+ * the {@code WorkerPool} and that persists for the same lifetime.
+ * Instances of class {@code WorkerPool} are thread-safe.
+ * </p>
+ *
+ * @author Brian L. Browning {@code <browning@uw.edu>}
+ */
+public final class WorkerPool {
+
+    /**
+     * A task that is applied to each index in a range of indices.
+     */
+    public interface Task {
+
+        /**
+         * Applies the task to the specified index.
+         * @param worker the index of the worker that is applying the task.
+         * @param index the index to which the task is applied.
+         */
+        void run(int worker, int index);
+    }
+
+    private static final int CHUNKS_PER_WORKER = 8;
+    private static final int STRIDE = 8;    // separates each worker's block
+
+    private final int nThreads;
+    private final CyclicBarrier startBarrier;
+    private final CyclicBarrier endBarrier;
+    private final AtomicLongArray blocks;
+    private final long[] workerNanos;
+
+    private Task task = null;
+    private int size = 0;
+    private int chunkSize = 1;
+    private boolean isShutdown = false;
+
+    private int nRuns = 0;
+    private long runNanos = 0L;
+    private long busyNanos = 0L;
+    private long lastRunNanos = 0L;
+
+    /**
+     * Constructs and starts a new {@code WorkerPool} instance.
+     * @param nThreads the number of workers, including the thread that
+     * invokes {@code run()}.
+     * @throws IllegalArgumentException if {@code nThreads<1}
+     */
+    public WorkerPool(int nThreads) {
+        if (nThreads < 1) {
+            throw new IllegalArgumentException("nThreads<1: " + nThreads);
+        }
+        this.nThreads = nThreads;
+        this.startBarrier = new CyclicBarrier(nThreads);
+        this.endBarrier = new CyclicBarrier(nThreads);
+        this.blocks = new AtomicLongArray(nThreads*STRIDE);
+        this.workerNanos = new long[nThreads*STRIDE];
+        for (int w=1; w<nThreads; ++w) {
+            Thread t = new Thread(new Worker(w), "WorkerPool-" + w);
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    /**
+     * Returns the number of workers.
+     * @return the number of workers.
+     */
+    public int nThreads() {
+        return nThreads;
+    }
+
+    /**
+     * Applies the specified task to each index {@code j} satisfying
+     * {@code 0<=j && j<size}, and returns when the task has been applied
+     * to every index.  The order in which indices are processed, and the
+     * worker that processes an index, are unspecified.
+     *
+     * @param task the task to be applied to each index.
+     * @param size the number of indices.
+     *
+     * @throws IllegalArgumentException if {@code size<0}
+     * @throws IllegalStateException if {@code this.shutdown()} has
+     * previously been invoked
+     * @throws NullPointerException if {@code task==null}
+     */
+    public synchronized void run(Task task, int size) {
+        if (task==null) {
+            throw new NullPointerException("task==null");
+        }
+        if (size < 0) {
+            throw new IllegalArgumentException("size<0: " + size);
+        }
+        if (isShutdown) {
+            throw new IllegalStateException("isShutdown");
+        }
+        long t0 = System.nanoTime();
+        int nChunks = nThreads*CHUNKS_PER_WORKER;
+        this.task = task;
+        this.size = size;
+        this.chunkSize = Math.max((size + nChunks - 1)/nChunks, 1);
+        nChunks = (size + chunkSize - 1)/chunkSize;
+        for (int w=0; w<nThreads; ++w) {
+            int start = (int) (((long) nChunks*w)/nThreads);
+            int end = (int) (((long) nChunks*(w + 1))/nThreads);
+            blocks.set(w*STRIDE, pack(start, end));
+            workerNanos[w*STRIDE] = 0L;
+        }
+        if (nThreads > 1) {
+            await(startBarrier);
+            work(0);
+            await(endBarrier);
+        }
+        else {
+            work(0);
+        }
+        this.task = null;
+        lastRunNanos = System.nanoTime() - t0;
+        runNanos += lastRunNanos;
+        for (int w=0; w<nThreads; ++w) {
+            busyNanos += workerNanos[w*STRIDE];
+        }
+        ++nRuns;
+    }
+
+    /**
+     * Stops the pool's threads.  This method has no effect if
+     * {@code this.shutdown()} has previously been invoked.
+     */
+    public synchronized void shutdown() {
+        if (isShutdown==false) {
+            isShutdown = true;
+            if (nThreads > 1) {
+                await(startBarrier);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of completed invocations of {@code this.run()}.
+     * @return the number of completed invocations of {@code this.run()}.
+     */
+    public synchronized int nRuns() {
+        return nRuns;
+    }
+
+    /**
+     * Returns the total elapsed nanoseconds of the completed invocations of
+     * {@code this.run()}.
+     * @return the total elapsed nanoseconds of the completed invocations of
+     * {@code this.run()}.
+     */
+    public synchronized long runNanos() {
+        return runNanos;
+    }
+
+    /**
+     * Returns the elapsed nanoseconds of the most recently completed
+     * invocation of {@code this.run()}, or 0 if {@code this.run()}
+     * has not been invoked.
+     * @return the elapsed nanoseconds of the most recently completed
+     * invocation of {@code this.run()}.
+     */
+    public synchronized long lastRunNanos() {
+        return lastRunNanos;
+    }
+
+    /**
+     * Returns the total nanoseconds that workers spent processing indices,
+     * summed over all workers and all completed invocations of
+     * {@code this.run()}.  The ratio
+     * {@code this.busyNanos()/(this.nThreads()*this.runNanos())} is the
+     * proportion of time that workers were busy.
+     * @return the total nanoseconds that workers spent processing indices.
+     */
+    public synchronized long busyNanos() {
+        return busyNanos;
+    }
+
+    /*
+     * Processes the chunks in the worker's own block and then steals
+     * chunks from the other workers.  A block never grows during a run,
+     * so one pass over the other workers' blocks finds every chunk.
+     */
+    private void work(int worker) {
+        long t0 = System.nanoTime();
+        try {
+            int chunk = takeFirst(worker);
+            while (chunk >= 0) {
+                runChunk(worker, chunk);
+                chunk = takeFirst(worker);
+            }
+            for (int k=1; k<nThreads; ++k) {
+                int victim = (worker + k) % nThreads;
+                chunk = takeLast(victim);
+                while (chunk >= 0) {
+                    runChunk(worker, chunk);
+                    chunk = takeLast(victim);
+                }
+            }
+        }
+        catch (Throwable e) {
+            Utilities.exit("WorkerPool: ERROR", e);
+        }
+        workerNanos[worker*STRIDE] = System.nanoTime() - t0;
+    }
+
+    private void runChunk(int worker, int chunk) {
+        int start = chunk*chunkSize;
+        int end = Math.min(start + chunkSize, size);
+        for (int j=start; j<end; ++j) {
+            task.run(worker, j);
+        }
+    }
+
+    private int takeFirst(int worker) {
+        int i = worker*STRIDE;
+        while (true) {
+            long block = blocks.get(i);
+            int start = start(block);
+            int end = end(block);
+            if (start >= end) {
+                return -1;
+            }
+            if (blocks.compareAndSet(i, block, pack(start + 1, end))) {
+                return start;
+            }
+        }
+    }
+
+    private int takeLast(int worker) {
+        int i = worker*STRIDE;
+        while (true) {
+            long block = blocks.get(i);
+            int start = start(block);
+            int end = end(block);
+            if (start >= end) {
+                return -1;
+            }
+            if (blocks.compareAndSet(i, block, pack(start, end - 1))) {
+                return end - 1;
+            }
+        }
+    }
+
+    private static long pack(int start, int end) {
+        return ((long) start << 32) | (end & 0xffffffffL);
+    }
+
+    private static int start(long block) {
+        return (int) (block >>> 32);
+    }
+
+    private static int end(long block) {
+        return (int) block;
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await();
+        }
+        catch (InterruptedException | BrokenBarrierException e) {
+            Utilities.exit("WorkerPool: ERROR", e);
+        }
+    }
+
+    private final class Worker implements Runnable {
+
+        private final int worker;
+
+        Worker(int worker) {
+            this.worker = worker;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                await(startBarrier);
+                if (isShutdown) {
+                    return;
+                }
+                work(worker);
+                await(endBarrier);
+            }
+        }
+    }
+}
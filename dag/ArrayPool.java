@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2014 Brian L. Browning
+ *
+ * This file is part of Beagle
+ *
+ * Beagle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Beagle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dag;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <p>Class {@code ArrayPool} stores released primitive arrays so that
+ * they can be reused.  An array returned by this class has a length that
+ * is greater than or equal to the requested length, and the elements
+ * of the array are not initialized.  A stored array is not reused for a
+ * request that is much shorter than the stored array.
+ * </p>
+ * <p>Instances of class {@code ArrayPool} are not thread-safe.
+ * </p>
+ *
+ * @author Brian L. Browning {@code <browning@uw.edu>}
+ */
+final class ArrayPool {
+
+    private static final int MIN_SLACK = 64;
+
+    private final TreeMap<Integer, ArrayDeque<int[]>> ints = new TreeMap<>();
+    private final TreeMap<Integer, ArrayDeque<float[]>> floats = new TreeMap<>();
+    private final TreeMap<Integer, ArrayDeque<byte[]>> bytes = new TreeMap<>();
+
+    /**
+     * Returns an {@code int} array whose length is greater than or equal to
+     * the specified length.
+     * @param minLength the minimum array length.
+     * @return an {@code int} array whose length is greater than or equal to
+     * the specified length.
+     * @throws NegativeArraySizeException if {@code minLength<0}
+     */
+    int[] intArray(int minLength) {
+        int[] array = take(ints, minLength);
+        return array!=null ? array : new int[minLength];
+    }
+
+    /**
+     * Returns a {@code float} array whose length is greater than or equal
+     * to the specified length.
+     * @param minLength the minimum array length.
+     * @return a {@code float} array whose length is greater than or equal
+     * to the specified length.
+     * @throws NegativeArraySizeException if {@code minLength<0}
+     */
+    float[] floatArray(int minLength) {
+        float[] array = take(floats, minLength);
+        return array!=null ? array : new float[minLength];
+    }
+
+    /**
+     * Returns a {@code byte} array whose length is greater than or equal
+     * to the specified length.
+     * @param minLength the minimum array length.
+     * @return a {@code byte} array whose length is greater than or equal
+     * to the specified length.
+     * @throws NegativeArraySizeException if {@code minLength<0}
+     */
+    byte[] byteArray(int minLength) {
+        byte[] array = take(bytes, minLength);
+        return array!=null ? array : new byte[minLength];
+    }
+
+    /**
+     * Stores the specified array for reuse.  The array must not be
+     * used after it is released.
+     * @param array the array to be released.
+     * @throws NullPointerException if {@code array==null}
+     */
+    void release(int[] array) {
+        put(ints, array.length, array);
+    }
+
+    /**
+     * Stores the specified array for reuse.  The array must not be
+     * used after it is released.
+     * @param array the array to be released.
+     * @throws NullPointerException if {@code array==null}
+     */
+    void release(float[] array) {
+        put(floats, array.length, array);
+    }
+
+    /**
+     * Stores the specified array for reuse.  The array must not be
+     * used after it is released.
+     * @param array the array to be released.
+     * @throws NullPointerException if {@code array==null}
+     */
+    void release(byte[] array) {
+        put(bytes, array.length, array);
+    }
+
+    /*
+     * Removes and returns the shortest stored array whose length is
+     * greater than or equal to the specified length, or returns null
+     * if there is no such array or if the shortest such array is much
+     * longer than the specified length.
+     */
+    private static <T> T take(TreeMap<Integer, ArrayDeque<T>> map,
+            int minLength) {
+        if (minLength < 0) {
+            throw new NegativeArraySizeException(String.valueOf(minLength));
+        }
+        Map.Entry<Integer, ArrayDeque<T>> entry = map.ceilingEntry(minLength);
+        if (entry==null || entry.getKey() > maxLength(minLength)) {
+            return null;
+        }
+        ArrayDeque<T> deque = entry.getValue();
+        T array = deque.pop();
+        if (deque.isEmpty()) {
+            map.remove(entry.getKey());
+        }
+        return array;
+    }
+
+    private static int maxLength(int minLength) {
+        return (int) Math.min(2L*minLength + MIN_SLACK, Integer.MAX_VALUE);
+    }
+
+    private static <T> void put(TreeMap<Integer, ArrayDeque<T>> map,
+            int length, T array) {
+        ArrayDeque<T> deque = map.get(length);
+        if (deque==null) {
+            deque = new ArrayDeque<>();
+            map.put(length, deque);
+        }
+        deque.push(array);
+    }
+}
@@ -0,0 +1,816 @@
+/*
+ * Copyright (C) 2014 Brian L. Browning
+ *
+ * This file is part of Beagle
+ *
+ * Beagle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Beagle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dag;
+
+import beagleutil.Samples;
+import blbutil.Const;
+import blbutil.WorkerPool;
+import haplotype.BitHapPair;
+import haplotype.HapPair;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import vcf.AL;
+import vcf.GL;
+import vcf.Marker;
+import vcf.Markers;
+
+/**
+ * <p>Class {@code ChainDag} is a compressed view of a leveled directed
+ * acyclic graph (DAG).  A level of the compressed DAG is either a level
+ * of the original DAG, or is a run of consecutive levels of the
+ * original DAG in which each parent node of each level after the first
+ * level has exactly one outgoing edge.  An edge of a run corresponds to
+ * an edge of the first level of the run together with the unique path
+ * that follows the edge to the last level of the run.  The edge has the
+ * parent node and count of the edge in the first level of the run,
+ * and the child node of the path in the last level of the run.
+ * </p>
+ * <p>The symbol labeling an edge of a run is the index of the
+ * sequence of alleles on the edge's path.  The marker of a run has one
+ * allele for each distinct allele sequence, and has the chromosome and
+ * position of the first marker in the run and an INFO END field equal
+ * to the position of the last marker in the run.  Methods
+ * {@code gl()} and {@code al()} return emission probabilities for the
+ * compressed DAG, and methods {@code expand()} and
+ * {@code expandGtProbs()} map haplotypes and genotype probabilities for
+ * the compressed DAG to the markers of the original DAG.
+ * </p>
+ * <p>A run contains at most {@code ChainDag.MAX_RUN_LENGTH} levels and
+ * at most {@code ChainDag.MAX_ALLELES} distinct allele sequences.
+ * </p>
+ * <p>Instances of class {@code ChainDag} are immutable.
+ * </p>
+ *
+ * @author Brian L. Browning {@code <browning@uw.edu>}
+ */
+public final class ChainDag implements Dag {
+
+    /**
+     * The maximum number of levels of the original DAG in a level of
+     * the compressed DAG.
+     */
+    public static final int MAX_RUN_LENGTH = 8;
+
+    /**
+     * The maximum number of distinct allele sequences in a level of
+     * the compressed DAG that contains more than one level of the
+     * original DAG.
+     */
+    public static final int MAX_ALLELES = 16;
+
+    private final Dag dag;
+    private final Dag chainDag;
+    private final int[] start;      // chain level -> first DAG level
+    private final byte[][][] seqs;  // [chain level][chain allele] -> alleles
+
+    /**
+     * Constructs a new {@code ChainDag} instance that is a compressed
+     * view of the specified DAG.  If a run of levels cannot be
+     * represented by a marker that is distinct from the other markers,
+     * the levels of the compressed DAG are the levels of the original DAG.
+     * @param dag a leveled DAG.
+     * @throws NullPointerException if {@code dag==null}.
+     */
+    public ChainDag(Dag dag) {
+        List<Run> runs = runs(dag, MAX_RUN_LENGTH);
+        Dag compressed = compressedDag(dag, runs);
+        if (compressed==null) {
+            runs = runs(dag, 1);
+            compressed = dag;
+        }
+        this.dag = dag;
+        this.chainDag = compressed;
+        this.start = new int[runs.size()];
+        this.seqs = new byte[runs.size()][][];
+        for (int j=0; j<start.length; ++j) {
+            Run run = runs.get(j);
+            start[j] = run.start;
+            seqs[j] = run.seqs.toArray(new byte[run.seqs.size()][]);
+        }
+    }
+
+    private static List<Run> runs(Dag dag, int maxRunLength) {
+        List<Run> runs = new ArrayList<>();
+        int level = 0;
+        while (level < dag.nMarkers()) {
+            Run run = new Run(dag, level);
+            ++level;
+            while (level < dag.nMarkers()
+                    && run.length() < maxRunLength
+                    && isSingleSuccessor(dag, level)
+                    && dag.marker(level).chromIndex()
+                            == dag.marker(run.start).chromIndex()
+                    && run.extend(dag, level)) {
+                ++level;
+            }
+            runs.add(run);
+        }
+        return runs;
+    }
+
+    private static boolean isSingleSuccessor(Dag dag, int level) {
+        return dag.nEdges(level) == dag.nParentNodes(level);
+    }
+
+    /*
+     * Returns the compressed DAG, or returns null if two levels of the
+     * compressed DAG have the same marker.
+     */
+    private static Dag compressedDag(Dag dag, List<Run> runs) {
+        Marker[] markers = new Marker[runs.size()];
+        Set<Marker> markerSet = new HashSet<>(runs.size());
+        for (int j=0; j<markers.length; ++j) {
+            Run run = runs.get(j);
+            markers[j] = run.length()==1 ? dag.marker(run.start)
+                    : runMarker(dag, run);
+            if (markerSet.add(markers[j])==false) {
+                return null;
+            }
+        }
+        DagLevel[] levels = new DagLevel[runs.size()];
+        for (int j=0; j<levels.length; ++j) {
+            Run run = runs.get(j);
+            int nEdges = dag.nEdges(run.start);
+            int[] parentNodes = new int[nEdges];
+            byte[] symbols = new byte[nEdges];
+            float[] counts = new float[nEdges];
+            for (int e=0; e<nEdges; ++e) {
+                parentNodes[e] = dag.parentNode(run.start, e);
+                symbols[e] = (byte) run.ids[e];
+                counts[e] = dag.edgeCnt(run.start, e);
+            }
+            levels[j] = DagUtils.dagLevel(markers[j], parentNodes,
+                    run.nodes.clone(), symbols, counts);
+        }
+        return new FlatDag(new ImmutableDag(new Markers(markers), levels));
+    }
+
+    private static Marker runMarker(Dag dag, Run run) {
+        Marker first = dag.marker(run.start);
+        Marker last = dag.marker(run.start + run.length() - 1);
+        StringBuilder sb = new StringBuilder(80);
+        sb.append(first.chrom());
+        sb.append(Const.tab);
+        sb.append(first.pos());
+        sb.append(Const.tab);
+        sb.append(Const.MISSING_DATA_CHAR);
+        sb.append(Const.tab);
+        sb.append('N');
+        sb.append(Const.tab);
+        if (run.seqs.size()==1) {
+            sb.append(Const.MISSING_DATA_CHAR);
+        }
+        else {
+            for (int j=1, n=run.seqs.size(); j<n; ++j) {
+                if (j>1) {
+                    sb.append(Const.comma);
+                }
+                sb.append("<C");
+                sb.append(j);
+                sb.append('>');
+            }
+        }
+        sb.append(Const.tab);
+        sb.append(Const.MISSING_DATA_CHAR);
+        sb.append(Const.tab);
+        sb.append(Const.MISSING_DATA_CHAR);
+        sb.append(Const.tab);
+        sb.append("END=");
+        sb.append(last.pos());
+        return new Marker(sb.toString());
+    }
+
+    /**
+     * Returns the DAG of which {@code this} is a compressed view.
+     * @return the DAG of which {@code this} is a compressed view.
+     */
+    public Dag dag() {
+        return dag;
+    }
+
+    /**
+     * Returns the index of the first level of the original DAG in the
+     * specified level of the compressed DAG.
+     * @param level a level of the compressed DAG.
+     * @return the index of the first level of the original DAG in the
+     * specified level of the compressed DAG.
+     * @throws IndexOutOfBoundsException if
+     * {@code level<0 || level>=this.nMarkers()}
+     */
+    public int start(int level) {
+        return start[level];
+    }
+
+    /**
+     * Returns the number of levels of the original DAG in the specified
+     * level of the compressed DAG.
+     * @param level a level of the compressed DAG.
+     * @return the number of levels of the original DAG in the specified
+     * level of the compressed DAG.
+     * @throws IndexOutOfBoundsException if
+     * {@code level<0 || level>=this.nMarkers()}
+     */
+    public int runLength(int level) {
+        return seqs[level][0].length;
+    }
+
+    /**
+     * Returns genotype emission probabilities for the compressed DAG.
+     * The emission probability for a pair of alleles of a level of the
+     * compressed DAG is the product of the emission probabilities for
+     * the corresponding allele sequences at the markers of the run.
+     * The products for a level are computed and stored when this method
+     * is invoked if the level contains more than one level of the original
+     * DAG and if the number of products per sample does not exceed the
+     * number of genotype emission probabilities per sample at the markers
+     * of the run.  The products for other levels are computed when
+     * they are requested.
+     * @param gl genotype emission probabilities for the original DAG.
+     * @param pool the worker pool used to compute the stored products,
+     * or {@code null} if the products are computed by the calling thread.
+     * @return genotype emission probabilities for the compressed DAG.
+     * @throws IllegalArgumentException if
+     * {@code gl.markers().equals(this.dag().markers())==false}
+     * @throws NullPointerException if {@code gl==null}
+     */
+    public GL gl(GL gl, WorkerPool pool) {
+        if (gl.markers().equals(dag.markers())==false) {
+            throw new IllegalArgumentException("inconsistent markers");
+        }
+        return new ChainGL(gl, pool);
+    }
+
+    /**
+     * Returns allele emission probabilities for the compressed DAG.
+     * The emission probability for an allele of a level of the
+     * compressed DAG is the product of the emission probabilities for
+     * the corresponding allele sequence at the markers of the run.
+     * The products for a level are computed and stored when this method
+     * is invoked if the level contains more than one level of the original
+     * DAG and if the number of products per haplotype does not exceed the
+     * number of allele emission probabilities per haplotype at the markers
+     * of the run.  The products for other levels are computed when
+     * they are requested.
+     * @param al allele emission probabilities for the original DAG.
+     * @param pool the worker pool used to compute the stored products,
+     * or {@code null} if the products are computed by the calling thread.
+     * @return allele emission probabilities for the compressed DAG.
+     * @throws IllegalArgumentException if
+     * {@code al.markers().equals(this.dag().markers())==false}
+     * @throws NullPointerException if {@code al==null}
+     */
+    public AL al(AL al, WorkerPool pool) {
+        if (al.markers().equals(dag.markers())==false) {
+            throw new IllegalArgumentException("inconsistent markers");
+        }
+        return new ChainAL(al, pool);
+    }
+
+    /**
+     * Returns the haplotype pair for the markers of the original DAG
+     * that corresponds to the specified haplotype pair for the markers
+     * of the compressed DAG.
+     * @param hapPair a haplotype pair for the markers of the compressed DAG.
+     * @return the haplotype pair for the markers of the original DAG.
+     * @throws IllegalArgumentException if
+     * {@code hapPair.markers().equals(this.markers())==false}
+     * @throws NullPointerException if {@code hapPair==null}
+     */
+    public HapPair expand(HapPair hapPair) {
+        if (hapPair.markers().equals(chainDag.markers())==false) {
+            throw new IllegalArgumentException("inconsistent markers");
+        }
+        byte[] alleles1 = new byte[dag.nMarkers()];
+        byte[] alleles2 = new byte[dag.nMarkers()];
+        for (int j=0; j<start.length; ++j) {
+            byte[] seq1 = seqs[j][hapPair.allele1(j)];
+            byte[] seq2 = seqs[j][hapPair.allele2(j)];
+            System.arraycopy(seq1, 0, alleles1, start[j], seq1.length);
+            System.arraycopy(seq2, 0, alleles2, start[j], seq2.length);
+        }
+        return new BitHapPair(dag.markers(), hapPair.idIndex(), alleles1,
+                alleles2);
+    }
+
+    /**
+     * Stores the posterior genotype probabilities for the markers of the
+     * original DAG that correspond to the specified posterior genotype
+     * probabilities for the markers of the compressed DAG.  The
+     * probability of phased genotype {@code g} at marker {@code k} is
+     * stored in element {@code markers.sumPhasedGenotypes(k) + g} of a
+     * genotype probabilities array, where {@code markers} is the list
+     * of markers of the DAG.
+     * @param chainGtProbs the posterior genotype probabilities for the
+     * markers of the compressed DAG.
+     * @param gtProbs the array to which the posterior genotype
+     * probabilities for the markers of the original DAG will be written.
+     * @throws IllegalArgumentException if
+     * {@code chainGtProbs.length!=this.markers().sumPhasedGenotypes()}
+     * @throws IllegalArgumentException if
+     * {@code gtProbs.length!=this.dag().markers().sumPhasedGenotypes()}
+     * @throws NullPointerException if
+     * {@code chainGtProbs==null || gtProbs==null}
+     */
+    public void expandGtProbs(double[] chainGtProbs, double[] gtProbs) {
+        Markers chainMarkers = chainDag.markers();
+        Markers markers = dag.markers();
+        if (chainGtProbs.length != chainMarkers.sumPhasedGenotypes()) {
+            String s = "chainGtProbs.length!=markers().sumPhasedGenotypes()";
+            throw new IllegalArgumentException(s);
+        }
+        if (gtProbs.length != markers.sumPhasedGenotypes()) {
+            String s = "gtProbs.length!=dag().markers().sumPhasedGenotypes()";
+            throw new IllegalArgumentException(s);
+        }
+        Arrays.fill(gtProbs, 0.0);
+        for (int j=0; j<start.length; ++j) {
+            int index = chainMarkers.sumPhasedGenotypes(j);
+            for (byte[] seq1 : seqs[j]) {
+                for (byte[] seq2 : seqs[j]) {
+                    double p = chainGtProbs[index++];
+                    if (p != 0.0) {
+                        for (int k=0; k<seq1.length; ++k) {
+                            int m = start[j] + k;
+                            int gt = markers.marker(m).phased_genotype(seq1[k],
+                                    seq2[k]);
+                            gtProbs[markers.sumPhasedGenotypes(m) + gt] += p;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Returns the index of the allele sequence of the specified level
+     * of the compressed DAG that is equal to the specified alleles,
+     * or returns -1 if there is no such allele sequence.
+     */
+    private byte seqIndex(int level, byte[] alleles) {
+        for (int j=0; j<seqs[level].length; ++j) {
+            if (Arrays.equals(seqs[level][j], alleles)) {
+                return (byte) j;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * Returns the specified product of emission probabilities, or returns
+     * Float.MIN_VALUE if the product is positive and is less than
+     * Float.MIN_VALUE.
+     */
+    /*
+     * Returns the sum over the markers of the specified level's run of
+     * the number of alleles raised to the specified power.
+     */
+    private int nEmissions(int level, int power) {
+        int sum = 0;
+        for (int k=0, n=runLength(level); k<n; ++k) {
+            int nAlleles = dag.marker(start[level] + k).nAlleles();
+            sum += (power==1) ? nAlleles : nAlleles*nAlleles;
+        }
+        return sum;
+    }
+
+    /*
+     * Runs the specified task for each level of the compressed DAG.
+     */
+    private void runLevels(WorkerPool.Task task, WorkerPool pool) {
+        if (pool!=null && pool.nThreads() > 1) {
+            pool.run(task, start.length);
+        }
+        else {
+            for (int j=0; j<start.length; ++j) {
+                task.run(0, j);
+            }
+        }
+    }
+
+    private static float toFloat(double product) {
+        float f = (float) product;
+        return (f==0.0f && product>0.0) ? Float.MIN_VALUE : f;
+    }
+
+    @Override
+    public int nEdges(int level) {
+        return chainDag.nEdges(level);
+    }
+
+    @Override
+    public int nParentNodes(int level) {
+        return chainDag.nParentNodes(level);
+    }
+
+    @Override
+    public int nChildNodes(int level) {
+        return chainDag.nChildNodes(level);
+    }
+
+    @Override
+    public int parentNode(int level, int edge) {
+        return chainDag.parentNode(level, edge);
+    }
+
+    @Override
+    public int childNode(int level, int edge) {
+        return chainDag.childNode(level, edge);
+    }
+
+    @Override
+    public byte symbol(int level, int edge) {
+        return chainDag.symbol(level, edge);
+    }
+
+    @Override
+    public float edgeCnt(int level, int edge) {
+        return chainDag.edgeCnt(level, edge);
+    }
+
+    @Override
+    public float nodeCnt(int level, int parentNode) {
+        return chainDag.nodeCnt(level, parentNode);
+    }
+
+    @Override
+    public float condEdgeProb(int level, int edge) {
+        return chainDag.condEdgeProb(level, edge);
+    }
+
+    @Override
+    public float edgeProb(int level, int edge) {
+        return chainDag.edgeProb(level, edge);
+    }
+
+    @Override
+    public float nodeProb(int level, int parentNode) {
+        return chainDag.nodeProb(level, parentNode);
+    }
+
+    @Override
+    public int nMarkers() {
+        return chainDag.nMarkers();
+    }
+
+    @Override
+    public Markers markers() {
+        return chainDag.markers();
+    }
+
+    @Override
+    public Marker marker(int marker) {
+        return chainDag.marker(marker);
+    }
+
+    @Override
+    public long nNodes() {
+        return chainDag.nNodes();
+    }
+
+    @Override
+    public long nEdges() {
+        return chainDag.nEdges();
+    }
+
+    @Override
+    public int maxNodes() {
+        return chainDag.maxNodes();
+    }
+
+    @Override
+    public int maxEdges() {
+        return chainDag.maxEdges();
+    }
+
+    @Override
+    public int nOutEdges(int level, int parentNode) {
+        return chainDag.nOutEdges(level, parentNode);
+    }
+
+    @Override
+    public int outEdge(int level, int parentNode, int outEdge) {
+        return chainDag.outEdge(level, parentNode, outEdge);
+    }
+
+    @Override
+    public int outEdgeBySymbol(int level, int parentNode, byte symbol) {
+        return chainDag.outEdgeBySymbol(level, parentNode, symbol);
+    }
+
+    @Override
+    public int nInEdges(int level, int childNode) {
+        return chainDag.nInEdges(level, childNode);
+    }
+
+    @Override
+    public int inEdge(int level, int childNode, int inEdge) {
+        return chainDag.inEdge(level, childNode, inEdge);
+    }
+
+    @Override
+    public boolean isChildOf(int parentLevel, int parentEdge, int childEdge) {
+        return chainDag.isChildOf(parentLevel, parentEdge, childEdge);
+    }
+
+    @Override
+    public double[] posArray() {
+        return chainDag.posArray();
+    }
+
+    @Override
+    public String toString(int start, int end) {
+        return chainDag.toString(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return chainDag.toString();
+    }
+
+    /*
+     * A run of consecutive levels of a DAG.  The edges of the run are
+     * the edges of the first level of the run.
+     */
+    private static final class Run {
+
+        private final int start;
+        private int[] ids;          // edge -> allele sequence index
+        private int[] nodes;        // edge -> child node of last level
+        private List<byte[]> seqs;  // allele sequence index -> alleles
+
+        Run(Dag dag, int start) {
+            int nEdges = dag.nEdges(start);
+            this.start = start;
+            this.ids = new int[nEdges];
+            this.nodes = new int[nEdges];
+            for (int e=0; e<nEdges; ++e) {
+                ids[e] = dag.symbol(start, e);
+                nodes[e] = dag.childNode(start, e);
+            }
+            int nAlleles = dag.marker(start).nAlleles();
+            this.seqs = new ArrayList<>(nAlleles);
+            for (int a=0; a<nAlleles; ++a) {
+                seqs.add(new byte[] {(byte) a});
+            }
+        }
+
+        int length() {
+            return seqs.get(0).length;
+        }
+
+        /*
+         * Extends the run to include the specified level and returns
+         * true if the extended run has at most MAX_ALLELES distinct
+         * allele sequences, and returns false otherwise.  The run is
+         * unchanged if false is returned.  Each parent node at the
+         * specified level is required to have exactly one outgoing edge.
+         */
+        boolean extend(Dag dag, int level) {
+            int nAlleles = dag.marker(level).nAlleles();
+            int length = length();
+            int[] index = new int[seqs.size()*nAlleles];
+            Arrays.fill(index, -1);
+            int[] newIds = new int[ids.length];
+            int[] newNodes = new int[nodes.length];
+            List<byte[]> newSeqs = new ArrayList<>();
+            for (int e=0; e<ids.length; ++e) {
+                int edge = dag.outEdge(level, nodes[e], 0);
+                byte symbol = dag.symbol(level, edge);
+                int key = ids[e]*nAlleles + symbol;
+                if (index[key] == -1) {
+                    if (newSeqs.size()==MAX_ALLELES) {
+                        return false;
+                    }
+                    byte[] seq = Arrays.copyOf(seqs.get(ids[e]), length + 1);
+                    seq[length] = symbol;
+                    index[key] = newSeqs.size();
+                    newSeqs.add(seq);
+                }
+                newIds[e] = index[key];
+                newNodes[e] = dag.childNode(level, edge);
+            }
+            this.ids = newIds;
+            this.nodes = newNodes;
+            this.seqs = newSeqs;
+            return true;
+        }
+    }
+
+    private final class ChainGL implements GL {
+
+        private final GL gl;
+        private final float[][] products; // [chain level][sample, seq1, seq2]
+
+        ChainGL(GL gl, WorkerPool pool) {
+            final int nSamples = gl.nSamples();
+            this.gl = gl;
+            this.products = new float[start.length][];
+            for (int j=0; j<start.length; ++j) {
+                int n = seqs[j].length;
+                if (runLength(j) > 1 && n*n <= nEmissions(j, 2)) {
+                    products[j] = new float[nSamples*n*n];
+                }
+            }
+            runLevels(new WorkerPool.Task() {
+                @Override
+                public void run(int worker, int j) {
+                    if (products[j]!=null) {
+                        int index = 0;
+                        for (int s=0; s<nSamples; ++s) {
+                            for (byte[] seq1 : seqs[j]) {
+                                for (byte[] seq2 : seqs[j]) {
+                                    products[j][index++]
+                                            = product(j, s, seq1, seq2);
+                                }
+                            }
+                        }
+                    }
+                }
+            }, pool);
+        }
+
+        private float product(int marker, int sample, byte[] seq1,
+                byte[] seq2) {
+            double product = 1.0;
+            for (int k=0; k<seq1.length; ++k) {
+                product *= gl.gl(start[marker] + k, sample, seq1[k], seq2[k]);
+            }
+            return toFloat(product);
+        }
+
+        @Override
+        public boolean isRefData() {
+            return gl.isRefData();
+        }
+
+        @Override
+        public float gl(int marker, int sample, byte allele1, byte allele2) {
+            if (products[marker]==null) {
+                byte[] seq1 = seqs[marker][allele1];
+                byte[] seq2 = seqs[marker][allele2];
+                if (seq1.length==1) {
+                    return gl.gl(start[marker], sample, seq1[0], seq2[0]);
+                }
+                return product(marker, sample, seq1, seq2);
+            }
+            int n = seqs[marker].length;
+            if (allele1<0 || allele1>=n || allele2<0 || allele2>=n) {
+                String s = "allele1=" + allele1 + " allele2=" + allele2;
+                throw new IndexOutOfBoundsException(s);
+            }
+            return products[marker][(sample*n + allele1)*n + allele2];
+        }
+
+        @Override
+        public byte allele1(int marker, int sample) {
+            byte[] alleles = new byte[runLength(marker)];
+            for (int k=0; k<alleles.length; ++k) {
+                alleles[k] = gl.allele1(start[marker] + k, sample);
+            }
+            return seqIndex(marker, alleles);
+        }
+
+        @Override
+        public byte allele2(int marker, int sample) {
+            byte[] alleles = new byte[runLength(marker)];
+            for (int k=0; k<alleles.length; ++k) {
+                alleles[k] = gl.allele2(start[marker] + k, sample);
+            }
+            return seqIndex(marker, alleles);
+        }
+
+        @Override
+        public int nMarkers() {
+            return chainDag.nMarkers();
+        }
+
+        @Override
+        public Marker marker(int marker) {
+            return chainDag.marker(marker);
+        }
+
+        @Override
+        public Markers markers() {
+            return chainDag.markers();
+        }
+
+        @Override
+        public int nSamples() {
+            return gl.nSamples();
+        }
+
+        @Override
+        public Samples samples() {
+            return gl.samples();
+        }
+
+        @Override
+        public String toString() {
+            return gl.toString();
+        }
+    }
+
+    private final class ChainAL implements AL {
+
+        private final AL al;
+        private final float[][] products; // [chain level][haplotype, seq]
+
+        ChainAL(AL al, WorkerPool pool) {
+            final int nHaps = 2*al.nSamples();
+            this.al = al;
+            this.products = new float[start.length][];
+            for (int j=0; j<start.length; ++j) {
+                int n = seqs[j].length;
+                if (runLength(j) > 1 && n <= nEmissions(j, 1)) {
+                    products[j] = new float[nHaps*n];
+                }
+            }
+            runLevels(new WorkerPool.Task() {
+                @Override
+                public void run(int worker, int j) {
+                    if (products[j]!=null) {
+                        int index = 0;
+                        for (int h=0; h<nHaps; ++h) {
+                            for (byte[] seq : seqs[j]) {
+                                products[j][index++] = product(j, h, seq);
+                            }
+                        }
+                    }
+                }
+            }, pool);
+        }
+
+        private float product(int marker, int haplotype, byte[] seq) {
+            double product = 1.0;
+            for (int k=0; k<seq.length; ++k) {
+                product *= al.al(start[marker] + k, haplotype, seq[k]);
+            }
+            return toFloat(product);
+        }
+
+        @Override
+        public float al(int marker, int haplotype, byte allele) {
+            if (products[marker]==null) {
+                byte[] seq = seqs[marker][allele];
+                if (seq.length==1) {
+                    return al.al(start[marker], haplotype, seq[0]);
+                }
+                return product(marker, haplotype, seq);
+            }
+            int n = seqs[marker].length;
+            if (allele<0 || allele>=n) {
+                throw new IndexOutOfBoundsException("allele: " + allele);
+            }
+            return products[marker][haplotype*n + allele];
+        }
+
+        @Override
+        public int nMarkers() {
+            return chainDag.nMarkers();
+        }
+
+        @Override
+        public Marker marker(int marker) {
+            return chainDag.marker(marker);
+        }
+
+        @Override
+        public Markers markers() {
+            return chainDag.markers();
+        }
+
+        @Override
+        public int nSamples() {
+            return al.nSamples();
+        }
+
+        @Override
+        public Samples samples() {
+            return al.samples();
+        }
+
+        @Override
+        public String toString() {
+            return al.toString();
+        }
+    }
+}
@@ -285,7 +285,7 @@ public interface Dag {
 
     /**
      * Returns the index of the specified edge at the specified level
-     * of the DAG or {@code Character.MAX_VALUE} if no such edge exists.
+     * of the DAG or {@code -1} if no such edge exists.
      *
      * @param level a level of the DAG.
      * @param parentNode the index of a parent node at the specified
@@ -293,7 +293,7 @@ public interface Dag {
      * @param symbol a symbol labeling an outgoing edge of the specified
      * parent node of the DAG.
      * @return the index of the specified edge at the specified level
-     * of the DAG or {@code Character.MAX_VALUE} if no such edge exists.
+     * of the DAG or {@code -1} if no such edge exists.
      *
      * @throws IndexOutOfBoundsException if
      * {@code level<0 || level>=this.nMarkers()}
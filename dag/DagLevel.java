@@ -49,7 +49,7 @@ public interface DagLevel {
      *
      * @return the number of parent nodes at this level of the DAG.
      */
-    public char nParentNodes();
+    public int nParentNodes();
 
     /**
      * Returns the number of child nodes at this level of the DAG.
@@ -69,7 +69,7 @@ public interface DagLevel {
      * @throws IndexOutOfBoundsException if
      * {@code edge<0 || edge>=this.nEdges()}
      */
-    public char parentNode(int edge);
+    public int parentNode(int edge);
 
     /**
      * Returns the index of the child node of the specified edge
@@ -82,7 +82,7 @@ public interface DagLevel {
      * @throws IndexOutOfBoundsException if
      * {@code edge<0 || edge>=this.nEdges()}
      */
-    public char childNode(int edge);
+    public int childNode(int edge);
 
     /**
      * Returns the symbol labeling the specified edge at this level
@@ -185,7 +185,7 @@ public interface DagLevel {
      * @throws IndexOutOfBoundsException if
      * {@code parentNode<0 || parentNode>=nParentNodes()}
      */
-    public char nOutEdges(int parentNode);
+    public int nOutEdges(int parentNode);
 
     /**
      * Returns the index of the specified edge at this level of the DAG.
@@ -200,24 +200,24 @@ public interface DagLevel {
      * @throws IndexOutOfBoundsException if
      * {@code outEdge<0 || outEdge>=this.nOutEdges(parentNode)}
      */
-    public char outEdge(int parentNode, int outEdge);
+    public int outEdge(int parentNode, int outEdge);
 
     /**
      * Returns the index of the specified edge at this level of the
-     * DAG or {@code Character.MAX_VALUE} if no such edge exists.
+     * DAG or {@code -1} if no such edge exists.
      *
      * @param parentNode a parent node index.
      * @param symbol a symbol labeling an outgoing edge of the specified
      * parent node.
      * @return the index of the specified edge at this level of the
-     * DAG or {@code Character.MAX_VALUE} if no such edge exists.
+     * DAG or {@code -1} if no such edge exists.
      *
      * @throws IndexOutOfBoundsException if
      * {@code parentNode<0 || parentNode>=nParentNodes()}
      * @throws IndexOutOfBoundsException if
      * {@code symbol<0 || symbol>=this.nSumbols()}
      */
-    public char outEdgeBySymbol(int parentNode, byte symbol);
+    public int outEdgeBySymbol(int parentNode, byte symbol);
 
     /**
      * Returns the number of ingoing edges for the specified child node
@@ -230,7 +230,7 @@ public interface DagLevel {
      * @throws IndexOutOfBoundsException if
      * {@code childNode<0 || childNode>=this.nChildNodes()}
      */
-    public char nInEdges(int childNode);
+    public int nInEdges(int childNode);
 
     /**
      * Returns the index of the specified edge at this level of the DAG.
@@ -244,7 +244,7 @@ public interface DagLevel {
      * @throws IndexOutOfBoundsException if
      * {@code inEdge<0 || inEdge>=this.nInEdges(childNode)}.
      */
-    public char inEdge(int childNode, int inEdge);
+    public int inEdge(int childNode, int inEdge);
 
     /**
      * Returns a string representation of {@code this}.  The exact
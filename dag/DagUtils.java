@@ -21,10 +21,12 @@ package dag;
 import blbutil.Const;
 import java.text.DecimalFormat;
 import java.util.concurrent.atomic.AtomicIntegerArray;
+import vcf.Marker;
 
 /**
  * Class {@code DagUtils} contains static methods for counting and
- * removing elements of an array that have a specified value.
+ * removing elements of an array that have a specified value, and for
+ * constructing DAG levels.
  *
  * @author Brian L. Browning {@code <browning@uw.edu>}
  */
@@ -323,5 +325,50 @@ public class DagUtils {
         return reducedArray;
     }
 
+    /**
+     * Returns a new {@code DagLevel} instance.  The returned level is an
+     * {@code ImmutableDagLevel} if the number of edges is less than or
+     * equal to {@code Character.MAX_VALUE}, and is an {@code IntDagLevel}
+     * otherwise.
+     *
+     * @param marker the marker corresponding to the level of the DAG.
+     * @param parentNodes an array mapping edge index to parent node index.
+     * @param childNodes an array mapping edge index to child node index.
+     * @param symbols an array mapping edge index to the symbol labeling the
+     * edge.
+     * @param counts an array mapping edge index to edge count.
+     * @return a new {@code DagLevel} instance.
+     *
+     * @throws IllegalArgumentException if the specified arrays do not
+     * satisfy the requirements of the {@code IntDagLevel} constructor.
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    public static DagLevel dagLevel(Marker marker, int[] parentNodes,
+            int[] childNodes, byte[] symbols, float[] counts) {
+        if (parentNodes.length <= Character.MAX_VALUE
+                && childNodes.length <= Character.MAX_VALUE) {
+            return new ImmutableDagLevel(marker, toChars(parentNodes),
+                    toChars(childNodes), symbols, counts);
+        }
+        else {
+            return new IntDagLevel(marker, parentNodes, childNodes, symbols,
+                    counts);
+        }
+    }
 
+    /*
+     * Returns a char array with the same elements as the specified array.
+     * Throws an IllegalArgumentException if an element of the specified
+     * array is negative or greater than or equal to the array length.
+     */
+    private static char[] toChars(int[] array) {
+        char[] ca = new char[array.length];
+        for (int j=0; j<ca.length; ++j) {
+            if (array[j]<0 || array[j]>=ca.length) {
+                throw new IllegalArgumentException(String.valueOf(array[j]));
+            }
+            ca[j] = (char) array[j];
+        }
+        return ca;
+    }
 }
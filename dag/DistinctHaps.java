@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2014 Brian L. Browning
+ *
+ * This file is part of Beagle
+ *
+ * Beagle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Beagle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dag;
+
+import blbutil.FileIterator;
+import haplotype.HapPairs;
+import haplotype.HapAlleles;
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import vcf.Marker;
+
+/**
+ * <p>Class {@code DistinctHaps} represents the distinct haplotypes in a
+ * {@code HapPairs} object.  The weight of a distinct haplotype is the sum
+ * of the weights of the haplotypes with the same allele sequence.
+ * </p>
+ * <p>The distinct haplotypes are ordered by the index of their first
+ * occurrence in the {@code HapPairs} object, and the weights of identical
+ * haplotypes are summed in order of increasing haplotype index.
+ * </p>
+ * <p>Instances of class {@code DistinctHaps} are immutable.
+ * </p>
+ *
+ * @author Brian L. Browning {@code <browning@uw.edu>}
+ */
+final class DistinctHaps {
+
+    private final HapPairs haps;
+    private final int[] hapIndices;
+    private final float[] weights;
+
+    /**
+     * Constructs a new {@code DistinctHaps} instance for the specified
+     * haplotypes and weights.
+     * @param haps the haplotype pairs.
+     * @param weights an array whose {@code j}-th element is the
+     * weight for the {@code j}-th haplotype.
+     * @throws IllegalArgumentException if
+     * {@code weights.length!=haps.nHaps()}
+     * @throws NullPointerException if {@code haps==null || weights==null}
+     */
+    DistinctHaps(HapPairs haps, float[] weights) {
+        if (weights.length != haps.nHaps()) {
+            String s = "haps.nHaps()=" + haps.nHaps()
+                    + " != weights.length=" + weights.length;
+            throw new IllegalArgumentException(s);
+        }
+        int nHaps = haps.nHaps();
+        long[] hash = hashes(haps);
+        Map<Long, Integer> firstIndex = new HashMap<>();
+        int[] nextWithHash = new int[nHaps];
+        int[] distinctIndex = new int[nHaps];
+        int[] hapIndices = new int[nHaps];
+        float[] wts = new float[nHaps];
+        int nDistinct = 0;
+        for (int h=0; h<nHaps; ++h) {
+            nextWithHash[h] = -1;
+            Integer first = firstIndex.get(hash[h]);
+            int match = -1;
+            if (first==null) {
+                firstIndex.put(hash[h], h);
+            }
+            else {
+                int last = first;
+                for (int k=first; k!=-1 && match==-1; k=nextWithHash[k]) {
+                    if (isEqual(haps, k, h)) {
+                        match = k;
+                    }
+                    last = k;
+                }
+                if (match==-1) {
+                    nextWithHash[last] = h;
+                }
+            }
+            if (match==-1) {
+                distinctIndex[h] = nDistinct;
+                hapIndices[nDistinct] = h;
+                wts[nDistinct] = weights[h];
+                ++nDistinct;
+            }
+            else {
+                distinctIndex[h] = distinctIndex[match];
+                wts[distinctIndex[h]] += weights[h];
+            }
+        }
+        this.haps = haps;
+        this.hapIndices = Arrays.copyOf(hapIndices, nDistinct);
+        this.weights = Arrays.copyOf(wts, nDistinct);
+    }
+
+    private static long[] hashes(HapPairs haps) {
+        long[] hash = new long[haps.nHaps()];
+        for (int m=0, n=haps.nMarkers(); m<n; ++m) {
+            for (int h=0; h<hash.length; ++h) {
+                hash[h] = 31*hash[h] + haps.allele(m, h);
+            }
+        }
+        return hash;
+    }
+
+    private static boolean isEqual(HapPairs haps, int h1, int h2) {
+        for (int m=0, n=haps.nMarkers(); m<n; ++m) {
+            if (haps.allele(m, h1) != haps.allele(m, h2)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of distinct haplotypes.
+     * @return the number of distinct haplotypes.
+     */
+    int nHaps() {
+        return hapIndices.length;
+    }
+
+    /**
+     * Returns an array whose {@code j}-th element is the weight of the
+     * {@code j}-th distinct haplotype.
+     * @return an array of distinct haplotype weights.
+     */
+    float[] weights() {
+        return weights.clone();
+    }
+
+    /**
+     * Returns an iterator that returns the alleles of the distinct
+     * haplotypes at each marker.
+     * @return an iterator that returns the alleles of the distinct
+     * haplotypes at each marker.
+     */
+    FileIterator<HapAlleles> iterator() {
+        return new FileIterator<HapAlleles>() {
+
+            private int nextIndex = 0;
+
+            @Override
+            public File file() {
+                return null;
+            }
+
+            @Override
+            public void close() {
+                nextIndex = haps.nMarkers();
+            }
+
+            @Override
+            public boolean hasNext() {
+                return nextIndex < haps.nMarkers();
+            }
+
+            @Override
+            public HapAlleles next() {
+                if (hasNext()==false) {
+                    throw new NoSuchElementException();
+                }
+                return new DistinctHapsMarker(nextIndex++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("Not supported.");
+            }
+        };
+    }
+
+    private final class DistinctHapsMarker implements HapAlleles {
+
+        private final int marker;
+
+        DistinctHapsMarker(int marker) {
+            this.marker = marker;
+        }
+
+        @Override
+        public byte allele(int haplotype) {
+            return haps.allele(marker, hapIndices[haplotype]);
+        }
+
+        @Override
+        public Marker marker() {
+            return haps.marker(marker);
+        }
+
+        @Override
+        public int nHaps() {
+            return hapIndices.length;
+        }
+    }
+}
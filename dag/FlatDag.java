@@ -0,0 +1,393 @@
+/*
+ * Copyright (C) 2014 Brian L. Browning
+ *
+ * This file is part of Beagle
+ *
+ * Beagle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Beagle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dag;
+
+import blbutil.Const;
+import java.util.Arrays;
+import vcf.Marker;
+import vcf.Markers;
+
+/**
+ * <p>Class {@code FlatDag} represents a leveled Directed Acyclic Graph
+ * (DAG) whose levels are stored in a small number of contiguous
+ * primitive arrays.
+ * </p>
+ * <p>The edges of all levels are stored in consecutive blocks of the
+ * edge arrays, and the parent nodes and child nodes of all levels are
+ * stored in consecutive blocks of the node arrays.  The outgoing
+ * edges of each parent node are stored in a dense table indexed by
+ * parent node and symbol, so that {@code this.outEdgeBySymbol()} does
+ * not search the outgoing edges.
+ * </p>
+ * Instances of class {@code FlatDag} are immutable.
+ *
+ * @author Brian L. Browning {@code <browning@uw.edu>}
+ */
+public final class FlatDag implements Dag {
+
+    private static final int NO_EDGE = -1;
+
+    private final Markers markers;
+    private final long nNodes;
+    private final long nEdges;
+    private final int maxNodes;
+    private final int maxEdges;
+    private final double[] posArray;
+
+    private final int[] edgeStart;      // level -> first edge
+    private final int[] parentStart;    // level -> first parent node
+    private final int[] childStart;     // level -> first child node
+    private final int[] symbolStart;    // level -> first (node, symbol) entry
+    private final int[] nAlleles;       // level -> number of symbols
+    private final float[] levelCounts;  // level -> sum of edge counts
+
+    private final int[] parentNodes;    // edge -> parent node
+    private final int[] childNodes;     // edge -> child node
+    private final byte[] symbols;       // edge -> symbol
+    private final float[] edgeCounts;   // edge -> edge count
+    private final float[] condEdgeProbs;// edge -> conditional edge prob
+
+    private final float[] nodeCounts;   // parent node -> node count
+    private final int[] outIndices;     // parent node -> first out-edge entry
+    private final int[] outEdges;       // out-edges grouped by parent node
+    private final int[] inIndices;      // child node -> first in-edge entry
+    private final int[] inEdges;        // in-edges grouped by child node
+    private final int[] edgeBySymbol;   // (parent node, symbol) -> edge
+
+    /**
+     * Constructs a new {@code FlatDag} instance that stores the same
+     * levels, nodes, edges, and edge counts as the specified DAG.  The
+     * order of the outgoing and ingoing edges of each node is
+     * preserved.  Edge and node probabilities are computed by dividing
+     * edge and node counts by the sum of the node counts at the level.
+     * @param dag a leveled DAG.
+     * @throws IllegalArgumentException if the total number of edges,
+     * parent nodes, child nodes, or (parent node, symbol) pairs exceeds
+     * {@code Integer.MAX_VALUE - dag.nMarkers()}.
+     * @throws NullPointerException if {@code dag==null}
+     */
+    public FlatDag(Dag dag) {
+        int nLevels = dag.nMarkers();
+        this.markers = dag.markers();
+        this.nNodes = dag.nNodes();
+        this.nEdges = dag.nEdges();
+        this.maxNodes = dag.maxNodes();
+        this.maxEdges = dag.maxEdges();
+        this.posArray = dag.posArray();
+
+        this.edgeStart = new int[nLevels + 1];
+        this.parentStart = new int[nLevels + 1];
+        this.childStart = new int[nLevels + 1];
+        this.symbolStart = new int[nLevels + 1];
+        this.nAlleles = new int[nLevels];
+        this.levelCounts = new float[nLevels];
+        for (int j=0; j<nLevels; ++j) {
+            nAlleles[j] = dag.marker(j).nAlleles();
+            edgeStart[j+1] = add(edgeStart[j], dag.nEdges(j), nLevels);
+            parentStart[j+1] = add(parentStart[j], dag.nParentNodes(j), nLevels);
+            childStart[j+1] = add(childStart[j], dag.nChildNodes(j), nLevels);
+            symbolStart[j+1] = add(symbolStart[j],
+                    (long) dag.nParentNodes(j)*nAlleles[j], nLevels);
+        }
+        int totalEdges = edgeStart[nLevels];
+        this.parentNodes = new int[totalEdges];
+        this.childNodes = new int[totalEdges];
+        this.symbols = new byte[totalEdges];
+        this.edgeCounts = new float[totalEdges];
+        this.condEdgeProbs = new float[totalEdges];
+        this.nodeCounts = new float[parentStart[nLevels]];
+        this.outIndices = new int[parentStart[nLevels] + nLevels];
+        this.outEdges = new int[totalEdges];
+        this.inIndices = new int[childStart[nLevels] + nLevels];
+        this.inEdges = new int[totalEdges];
+        this.edgeBySymbol = new int[symbolStart[nLevels]];
+        Arrays.fill(edgeBySymbol, NO_EDGE);
+        for (int j=0; j<nLevels; ++j) {
+            copyLevel(dag, j);
+        }
+    }
+
+    private static int add(int start, long length, int nLevels) {
+        long end = start + length;
+        if (end > Integer.MAX_VALUE - nLevels) {
+            throw new IllegalArgumentException("DAG is too large: " + end);
+        }
+        return (int) end;
+    }
+
+    private void copyLevel(Dag dag, int level) {
+        int e0 = edgeStart[level];
+        for (int e=0, n=dag.nEdges(level); e<n; ++e) {
+            parentNodes[e0 + e] = dag.parentNode(level, e);
+            childNodes[e0 + e] = dag.childNode(level, e);
+            symbols[e0 + e] = dag.symbol(level, e);
+            edgeCounts[e0 + e] = dag.edgeCnt(level, e);
+            condEdgeProbs[e0 + e] = dag.condEdgeProb(level, e);
+        }
+        int p0 = parentStart[level];
+        int o0 = p0 + level;
+        int s0 = symbolStart[level];
+        int nSymbols = nAlleles[level];
+        float count = 0.0f;
+        int index = e0;
+        for (int p=0, n=dag.nParentNodes(level); p<n; ++p) {
+            nodeCounts[p0 + p] = dag.nodeCnt(level, p);
+            count += nodeCounts[p0 + p];
+            outIndices[o0 + p] = index;
+            for (int k=0, m=dag.nOutEdges(level, p); k<m; ++k) {
+                int edge = dag.outEdge(level, p, k);
+                outEdges[index++] = edge;
+                edgeBySymbol[s0 + p*nSymbols + symbols[e0 + edge]] = edge;
+            }
+        }
+        outIndices[o0 + dag.nParentNodes(level)] = index;
+        levelCounts[level] = count;
+
+        int c0 = childStart[level] + level;
+        index = e0;
+        for (int c=0, n=dag.nChildNodes(level); c<n; ++c) {
+            inIndices[c0 + c] = index;
+            for (int k=0, m=dag.nInEdges(level, c); k<m; ++k) {
+                inEdges[index++] = dag.inEdge(level, c, k);
+            }
+        }
+        inIndices[c0 + dag.nChildNodes(level)] = index;
+    }
+
+    private int edgeIndex(int level, int edge) {
+        int start = edgeStart[level];
+        if (edge < 0 || edge >= edgeStart[level+1] - start) {
+            throw new IndexOutOfBoundsException(String.valueOf(edge));
+        }
+        return start + edge;
+    }
+
+    private int parentIndex(int level, int parentNode) {
+        int start = parentStart[level];
+        if (parentNode < 0 || parentNode >= parentStart[level+1] - start) {
+            throw new IndexOutOfBoundsException(String.valueOf(parentNode));
+        }
+        return start + parentNode;
+    }
+
+    private int childIndex(int level, int childNode) {
+        int start = childStart[level];
+        if (childNode < 0 || childNode >= childStart[level+1] - start) {
+            throw new IndexOutOfBoundsException(String.valueOf(childNode));
+        }
+        return start + childNode;
+    }
+
+    @Override
+    public int nEdges(int level) {
+        return edgeStart[level+1] - edgeStart[level];
+    }
+
+    @Override
+    public int nParentNodes(int level) {
+        return parentStart[level+1] - parentStart[level];
+    }
+
+    @Override
+    public int nChildNodes(int level) {
+        return childStart[level+1] - childStart[level];
+    }
+
+    @Override
+    public int parentNode(int level, int edge) {
+        return parentNodes[edgeIndex(level, edge)];
+    }
+
+    @Override
+    public int childNode(int level, int edge) {
+        return childNodes[edgeIndex(level, edge)];
+    }
+
+    @Override
+    public byte symbol(int level, int edge) {
+        return symbols[edgeIndex(level, edge)];
+    }
+
+    @Override
+    public float edgeCnt(int level, int edge) {
+        return edgeCounts[edgeIndex(level, edge)];
+    }
+
+    @Override
+    public float nodeCnt(int level, int parentNode) {
+        return nodeCounts[parentIndex(level, parentNode)];
+    }
+
+    @Override
+    public float condEdgeProb(int level, int edge) {
+        return condEdgeProbs[edgeIndex(level, edge)];
+    }
+
+    @Override
+    public float edgeProb(int level, int edge) {
+        return edgeCounts[edgeIndex(level, edge)] / levelCounts[level];
+    }
+
+    @Override
+    public float nodeProb(int level, int parentNode) {
+        return nodeCounts[parentIndex(level, parentNode)] / levelCounts[level];
+    }
+
+    @Override
+    public int nMarkers() {
+        return nAlleles.length;
+    }
+
+    @Override
+    public Markers markers() {
+        return markers;
+    }
+
+    @Override
+    public Marker marker(int marker) {
+        return markers.marker(marker);
+    }
+
+    @Override
+    public long nNodes() {
+        return nNodes;
+    }
+
+    @Override
+    public long nEdges() {
+        return nEdges;
+    }
+
+    @Override
+    public int maxNodes() {
+        return maxNodes;
+    }
+
+    @Override
+    public int maxEdges() {
+        return maxEdges;
+    }
+
+    @Override
+    public int nOutEdges(int level, int parentNode) {
+        int index = parentIndex(level, parentNode) + level;
+        return outIndices[index+1] - outIndices[index];
+    }
+
+    @Override
+    public int outEdge(int level, int parentNode, int outEdge) {
+        int index = parentIndex(level, parentNode) + level;
+        int start = outIndices[index];
+        if (outEdge<0 || outEdge>=(outIndices[index+1] - start)) {
+            throw new IndexOutOfBoundsException(String.valueOf(outEdge));
+        }
+        return outEdges[start + outEdge];
+    }
+
+    @Override
+    public int outEdgeBySymbol(int level, int parentNode, byte symbol) {
+        int nSymbols = nAlleles[level];
+        if (symbol < 0 || symbol >= nSymbols) {
+            throw new IndexOutOfBoundsException(String.valueOf(symbol));
+        }
+        int node = parentIndex(level, parentNode) - parentStart[level];
+        return edgeBySymbol[symbolStart[level] + node*nSymbols + symbol];
+    }
+
+    @Override
+    public int nInEdges(int level, int childNode) {
+        int index = childIndex(level, childNode) + level;
+        return inIndices[index+1] - inIndices[index];
+    }
+
+    @Override
+    public int inEdge(int level, int childNode, int inEdge) {
+        int index = childIndex(level, childNode) + level;
+        int start = inIndices[index];
+        if (inEdge<0 || inEdge>=(inIndices[index+1] - start)) {
+            throw new IndexOutOfBoundsException(String.valueOf(inEdge));
+        }
+        return inEdges[start + inEdge];
+    }
+
+    @Override
+    public boolean isChildOf(int parentLevel, int parentEdge, int childEdge) {
+        int nodeA = parentNodes[edgeIndex(parentLevel+1, childEdge)];
+        int nodeB = childNodes[edgeIndex(parentLevel, parentEdge)];
+        return nodeA==nodeB;
+    }
+
+    @Override
+    public double[] posArray() {
+        return posArray.clone();
+    }
+
+    @Override
+    public String toString(int startLevel, int endLevel) {
+        StringBuilder sb = new StringBuilder();
+        for (int j=startLevel; j<endLevel; ++j) {
+            appendLevel(sb, j);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("[Dag: nMarkers= ");
+        sb.append(nMarkers());
+        sb.append("  nodes=");
+        sb.append(nNodes);
+        sb.append("  edges=");
+        sb.append(nEdges);
+        sb.append("  maxNodes = ");
+        sb.append(maxNodes);
+        sb.append("  maxEdges = ");
+        sb.append(maxEdges);
+        sb.append(Const.nl);
+        for (int j=0, n=nMarkers(); j<n; ++j) {
+            appendLevel(sb, j);
+        }
+        return sb.toString();
+    }
+
+    private void appendLevel(StringBuilder sb, int level) {
+        int start = edgeStart[level];
+        int end = edgeStart[level+1];
+        sb.append("level=");
+        sb.append(level);
+        sb.append(": ");
+        sb.append(Const.nl);
+        sb.append("parentNodes=");
+        sb.append(Arrays.toString(Arrays.copyOfRange(parentNodes, start, end)));
+        sb.append(Const.nl);
+        sb.append("childNodes=");
+        sb.append(Arrays.toString(Arrays.copyOfRange(childNodes, start, end)));
+        sb.append(Const.nl);
+        sb.append("symbols=");
+        sb.append(Arrays.toString(Arrays.copyOfRange(symbols, start, end)));
+        sb.append(Const.nl);
+        sb.append("edgeCounts=");
+        sb.append(Arrays.toString(Arrays.copyOfRange(edgeCounts, start, end)));
+        sb.append(Const.nl);
+        sb.append("condEdgeProbs=");
+        sb.append(Arrays.toString(Arrays.copyOfRange(condEdgeProbs, start, end)));
+        sb.append(Const.nl);
+    }
+}
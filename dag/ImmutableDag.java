@@ -115,10 +115,10 @@ public final class ImmutableDag implements Dag {
     private static boolean parentNodesAreConsistent(DagLevel level) {
         int edgeCnt = 0;
         int nAlleles = level.marker().nAlleles();
-        for (char pn=0, n=level.nParentNodes(); pn<n; ++pn) {
+        for (int pn=0, n=level.nParentNodes(); pn<n; ++pn) {
            for (byte symbol=0; symbol<nAlleles; ++symbol) {
-               char edge = level.outEdgeBySymbol(pn, symbol);
-               if (edge != Character.MAX_VALUE) {
+               int edge = level.outEdgeBySymbol(pn, symbol);
+               if (edge != -1) {
                    if (level.parentNode(edge)!=pn) {
                        return false;
                    }
@@ -135,8 +135,8 @@ public final class ImmutableDag implements Dag {
     private static boolean childNodesAreConsistent(DagLevel level) {
         int edgeCnt = 0;
         for (int cn=0, n=level.nChildNodes(); cn<n; ++cn) {
-            for (char k=0, m=level.nInEdges(cn); k<m; ++k) {
-                char edge = level.inEdge(cn, k);
+            for (int k=0, m=level.nInEdges(cn); k<m; ++k) {
+                int edge = level.inEdge(cn, k);
                 if (level.childNode(edge)!=cn) {
                     return false;
                 }
@@ -265,8 +265,8 @@ public final class ImmutableDag implements Dag {
 
     @Override
     public boolean isChildOf(int parentLevel, int parentEdge, int childEdge) {
-        char nodeA = dagLevels[parentLevel+1].parentNode(childEdge);
-        char nodeB = dagLevels[parentLevel].childNode(parentEdge);
+        int nodeA = dagLevels[parentLevel+1].parentNode(childEdge);
+        int nodeB = dagLevels[parentLevel].childNode(parentEdge);
         return nodeA==nodeB;
     }
 
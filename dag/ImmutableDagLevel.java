@@ -27,6 +27,10 @@ import vcf.Marker;
  * <p>Class {@code ImmutableDagLevel} represents a level of a leveled
  * directed acyclic graph (DAG).
  * </p>
+ * <p>Node and edge indices are stored as {@code char} values, so that
+ * a level can have at most {@code Character.MAX_VALUE} edges.
+ * Class {@code IntDagLevel} represents levels with more edges.
+ * </p>
  * Instances of {@code ImmutableDagLevel} are immutable.
  *
  * @author Brian L. Browning {@code <browning@uw.edu>}
@@ -239,8 +243,8 @@ public final class ImmutableDagLevel implements DagLevel {
     }
 
     @Override
-    public char nParentNodes() {
-        return (char) (parentIndices.length - 1);
+    public int nParentNodes() {
+        return parentIndices.length - 1;
     }
 
     @Override
@@ -249,12 +253,12 @@ public final class ImmutableDagLevel implements DagLevel {
     }
 
     @Override
-    public char parentNode(int edge) {
+    public int parentNode(int edge) {
         return parentNodes[edge];
     }
 
     @Override
-    public char childNode(int edge) {
+    public int childNode(int edge) {
         return childNodes[edge];
     }
 
@@ -289,12 +293,12 @@ public final class ImmutableDagLevel implements DagLevel {
     }
 
     @Override
-    public char nOutEdges(int parentNode) {
-        return (char) (parentIndices[parentNode+1] - parentIndices[parentNode]);
+    public int nOutEdges(int parentNode) {
+        return parentIndices[parentNode+1] - parentIndices[parentNode];
     }
 
     @Override
-    public char outEdge(int parentNode, int outEdgeIndex) {
+    public int outEdge(int parentNode, int outEdgeIndex) {
         if (outEdgeIndex<0 || outEdgeIndex>=nOutEdges(parentNode)) {
             throw new IndexOutOfBoundsException(String.valueOf(outEdgeIndex));
         }
@@ -302,7 +306,7 @@ public final class ImmutableDagLevel implements DagLevel {
     }
 
     @Override
-    public char outEdgeBySymbol(int parentNode, byte symbol) {
+    public int outEdgeBySymbol(int parentNode, byte symbol) {
         if (symbol < 0 || symbol >= marker.nAlleles()) {
             throw new IndexOutOfBoundsException(String.valueOf(symbol));
         }
@@ -314,16 +318,16 @@ public final class ImmutableDagLevel implements DagLevel {
                 return edgeIndex;
             }
         }
-        return Character.MAX_VALUE;
+        return -1;
     }
 
     @Override
-    public char nInEdges(int childNode) {
-        return (char) (childIndices[childNode+1] - childIndices[childNode]);
+    public int nInEdges(int childNode) {
+        return childIndices[childNode+1] - childIndices[childNode];
     }
 
     @Override
-    public char inEdge(int childNode, int inEdgeIndex) {
+    public int inEdge(int childNode, int inEdgeIndex) {
         if (inEdgeIndex<0 || inEdgeIndex>=nInEdges(childNode)) {
             throw new IndexOutOfBoundsException(String.valueOf(inEdgeIndex));
         }
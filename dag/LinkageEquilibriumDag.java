@@ -19,10 +19,15 @@
 package dag;
 
 import blbutil.Const;
+import blbutil.WorkerPool;
 import java.util.Arrays;
+import vcf.BasicGL;
 import vcf.GL;
 import vcf.Marker;
 import vcf.Markers;
+import vcf.MedMemGL;
+import vcf.VcfEmission;
+import vcf.VcfRecord;
 
 /**
  * <p>Class {@code LinkageEquilibriumDag} represents a leveled DAG with one parent
@@ -34,6 +39,8 @@ import vcf.Markers;
  */
 public final class LinkageEquilibriumDag implements Dag {
 
+    private static final long MIN_SAMPLES_PER_TASK = 1<<14;
+
     private final Markers markers;
     private final float[][] alleleFreq;
     private final byte maxAlleles;
@@ -52,6 +59,28 @@ public final class LinkageEquilibriumDag implements Dag {
      * @throws NullPointerException if {@code gl==null}.
      */
     public LinkageEquilibriumDag(GL gl, float minFreq) {
+        this(gl, minFreq, null);
+    }
+
+    /**
+     * Constructs a new {@code LinkageEquilibriumDag} instance that represents
+     * markers in linkage equilibrium, with one level per marker,
+     * one parent node per level, one edge per allele at each level,
+     * and edge count equal to the estimated allele frequency.  The
+     * allele frequencies of distinct markers are estimated in parallel
+     * by the specified worker pool if {@code pool!=null}.
+     * @param gl the genotype emission probabilities which determine
+     * the estimated allele frequencies.
+     * @param minFreq the minimum allele frequency that will be used.
+     * @param pool the worker pool used to estimate allele frequencies,
+     * or {@code null} if allele frequencies are estimated by the calling
+     * thread.
+     * @throws IllegalArgumentException if
+     * {@code minFreq<=0.0f || minFreq>=0.5f}.
+     * @throws NullPointerException if {@code gl==null}.
+     */
+    public LinkageEquilibriumDag(final GL gl, final float minFreq,
+            WorkerPool pool) {
         if (minFreq <= 0.0f || minFreq >= 0.5f) {
             throw new IllegalArgumentException("minFreq: " + minFreq);
         }
@@ -59,8 +88,22 @@ public final class LinkageEquilibriumDag implements Dag {
         byte localMaxAlleles = (byte) 0;
         this.markers = gl.markers();
         this.alleleFreq = new float[nMarkers][];
+        long size = (long) nMarkers*gl.nSamples();
+        if (pool!=null && pool.nThreads() > 1 && size > MIN_SAMPLES_PER_TASK) {
+            final float[][] freq = alleleFreq;
+            pool.run(new WorkerPool.Task() {
+                @Override
+                public void run(int worker, int marker) {
+                    freq[marker] = alleleFrequencies(gl, marker, minFreq);
+                }
+            }, nMarkers);
+        }
+        else {
+            for (int marker=0; marker<nMarkers; ++marker) {
+                alleleFreq[marker] = alleleFrequencies(gl, marker, minFreq);
+            }
+        }
         for (int marker=0; marker<nMarkers; ++marker) {
-            alleleFreq[marker] = alleleFrequencies(gl, marker, minFreq);
             if (alleleFreq[marker].length > localMaxAlleles) {
                 localMaxAlleles = (byte) alleleFreq[marker].length;
             }
@@ -73,12 +116,15 @@ public final class LinkageEquilibriumDag implements Dag {
              float minFreq) {
         int nSamples = gl.nSamples();
         int nAlleles = gl.marker(marker).nAlleles();
+        MedMemGL em = medMemGL(gl, marker);
         float[] alleleFreq = new float[nAlleles];
         float[] scaledFreq = new float[nAlleles];
         for (int sample=0; sample<nSamples; ++sample) {
             for (byte a1=0; a1<nAlleles; ++a1) {
                 for (byte a2=0; a2<nAlleles; ++a2) {
-                    float likelihood = gl.gl(marker, sample, a1, a2);
+                    float likelihood = (em!=null)
+                            ? em.likelihood(sample, VcfRecord.gtIndex(a1, a2))
+                            : gl.gl(marker, sample, a1, a2);
                     scaledFreq[a1] += likelihood;
                     scaledFreq[a2] += likelihood;
                 }
@@ -94,6 +140,21 @@ public final class LinkageEquilibriumDag implements Dag {
         return alleleFreq;
     }
 
+    /*
+     * Returns the genotype likelihoods for the specified marker if the
+     * likelihoods are stored in a MedMemGL instance, and returns null
+     * otherwise.
+     */
+    private static MedMemGL medMemGL(GL gl, int marker) {
+        if (gl instanceof BasicGL) {
+            VcfEmission em = ((BasicGL) gl).vcfEmission(marker);
+            if (em instanceof MedMemGL) {
+                return (MedMemGL) em;
+            }
+        }
+        return null;
+    }
+
     private static void divideEntriesBySum(float[] fa) {
         float sum = 0.0f;
         for (float f : fa) {
@@ -21,12 +21,14 @@ package dag;
 import blbutil.FileIterator;
 import blbutil.Utilities;
 import haplotype.HapPairs;
+import haplotype.HapAlleles;
 import haplotype.HapsMarker;
 import haplotype.HapsMarkerIterator;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import vcf.Marker;
 import vcf.Markers;
 
@@ -48,26 +50,35 @@ import vcf.Markers;
  */
 public final class MergeableDag {
 
-    private static final Score MAX_SCORE =
-            new Score(-1, -1, Float.POSITIVE_INFINITY, false);
     private static final float MAX_THRESHOLD_RATIO = 1.4f;
+    private static final int MIN_PAIRS_PER_TASK = 512;
 
-    private final FileIterator<HapsMarker> it;
+    private static final byte VALID = 0;
+    private static final byte REACHED_LAST_LEVEL = 1;
+    private static final byte NEEDS_NEXT_LEVEL = 2;
+
+    private final FileIterator<? extends HapAlleles> it;
     private final float[] weights;
     private final int minWindow;
     private final int maxWindow;
     private final float scale;
+    private final ForkJoinPool pool;
 
     private final Dag dag;
 
     /**
-     * Constructs and returns a new {@code Dag} instance.
+     * Constructs and returns a new {@code Dag} instance.  Identical
+     * haplotypes are represented by a single haplotype whose weight is
+     * the sum of the weights of the identical haplotypes.
      * @param hapPairs the sequence data.
      * @param weights an array whose {@code j}-th element is the
      * weight for the {@code j}-th haplotype.
      * @param maxWindow maximum window size used when constructing the DAG.
      * @param scale a parameter that multiplicatively scales the node
      * similarity threshold.
+     * @param pool the fork-join pool used to compute node similarity
+     * scores, or {@code null} if node similarity scores are computed by
+     * the calling thread.
      * @return a new {@code Dag} instance.
      *
      * @throws IllegalArgumentException if {@code hapPairs.nMarkers()==0}
@@ -80,10 +91,18 @@ public final class MergeableDag {
      * @throws NullPointerException if {@code hapPairs==null || weights==null}
      */
     public static Dag dag(HapPairs hapPairs, float[] weights, int maxWindow,
-            float scale) {
+            float scale, ForkJoinPool pool) {
+        DistinctHaps distinct = new DistinctHaps(hapPairs, weights);
+        if (distinct.nHaps() < hapPairs.nHaps()) {
+            try (FileIterator<HapAlleles> tmpIt = distinct.iterator()) {
+                MergeableDag md = new MergeableDag(tmpIt, hapPairs.markers(),
+                        distinct.weights(), maxWindow, scale, pool);
+                return md.dag();
+            }
+        }
         try (FileIterator<HapsMarker> tmpIt = new HapsMarkerIterator(hapPairs)) {
             MergeableDag md = new MergeableDag(tmpIt, hapPairs.markers(),
-                    weights, maxWindow, scale);
+                    weights, maxWindow, scale, pool);
             return md.dag();
         }
     }
@@ -96,6 +115,9 @@ public final class MergeableDag {
      * @param maxWindow maximum window size used when constructing the DAG.
      * @param scale a parameter that multiplicatively scales the node
      * similarity threshold.
+     * @param pool the fork-join pool used to compute node similarity
+     * scores, or {@code null} if node similarity scores are computed by
+     * the calling thread.
      * @return a new {@code Dag} instance.
      *
      * @throws IllegalArgumentException if {@code it.hasNext()==false}
@@ -108,9 +130,10 @@ public final class MergeableDag {
      * @throws NullPointerException if {@code it==null || weights==null}
      */
     public static Dag dag(FileIterator<HapsMarker> it, float[] weights,
-            int maxWindow, float scale) {
+            int maxWindow, float scale, ForkJoinPool pool) {
         Markers markers = null;
-        return new MergeableDag(it, markers, weights, maxWindow, scale).dag();
+        return new MergeableDag(it, markers, weights, maxWindow, scale,
+                pool).dag();
     }
 
     /**
@@ -125,6 +148,9 @@ public final class MergeableDag {
      * @param maxWindow maximum window size used when constructing the DAG.
      * @param scale a parameter that multiplicatively scales the node
      * similarity threshold.
+     * @param pool the fork-join pool used to compute node similarity
+     * scores, or {@code null} if node similarity scores are computed by
+     * the calling thread.
      *
      * @throws IllegalArgumentException if {@code it.hasNext()==false}
      * @throws IllegalArgumentException if any element of the
@@ -135,14 +161,16 @@ public final class MergeableDag {
      *      || scale<=0}
      * @throws NullPointerException if {@code it==null || weights==null}
      */
-    private MergeableDag(FileIterator<HapsMarker> it, Markers markers,
-            float[] weights, int maxWindow, float scale) {
+    private MergeableDag(FileIterator<? extends HapAlleles> it,
+            Markers markers, float[] weights, int maxWindow, float scale,
+            ForkJoinPool pool) {
         checkParameters(it, weights, maxWindow, scale);
         this.it = it;
         this.weights = weights.clone();
         this.minWindow = maxWindow/12 + 1;
         this.maxWindow = maxWindow;
         this.scale = scale;
+        this.pool = (pool!=null && pool.getParallelism()>1) ? pool : null;
 
         List<DagLevel> mergedLevels = new ArrayList<>(25000);
         MergeableDagLevel currentLevel = new MergeableDagLevel(it.next(),
@@ -151,16 +179,19 @@ public final class MergeableDag {
         while (currentLevel.next() != null) {
             currentLevel = currentLevel.next();
             mergeParentNodes(currentLevel);
-            MergeableDagLevel previousLevel = currentLevel.setPreviousToNull();
+            MergeableDagLevel previousLevel
+                    = currentLevel.setPreviousToNull();
             mergedLevels.add(previousLevel.toDagLevel());
+            previousLevel.releaseArrays();
         }
         mergedLevels.add(currentLevel.toDagLevel());
+        currentLevel.releaseArrays();
 
         if (markers==null) {
             markers = markers(mergedLevels);
         }
         DagLevel[] levels =  mergedLevels.toArray(new DagLevel[0]);
-        this.dag = new ImmutableDag(markers, levels);
+        this.dag = new FlatDag(new ImmutableDag(markers, levels));
     }
 
     private static Markers markers(List<DagLevel> list) {
@@ -179,7 +210,7 @@ public final class MergeableDag {
         return dag;
     }
 
-    private static void checkParameters(FileIterator<HapsMarker> it,
+    private static void checkParameters(FileIterator<? extends HapAlleles> it,
             float[] weights, int maxWindow, double scale) {
         if (it.hasNext()==false) {
             throw new IllegalArgumentException("it.hasNext()==false");
@@ -198,8 +229,8 @@ public final class MergeableDag {
         }
     }
 
-    private static void readLevels(FileIterator<HapsMarker> it, float[] weights,
-            MergeableDagLevel leafLevel, int maxLevelsToRead) {
+    private static void readLevels(FileIterator<? extends HapAlleles> it,
+            float[] weights, MergeableDagLevel leafLevel, int maxLevelsToRead) {
         for (int j=0; j<maxLevelsToRead && it.hasNext(); ++j) {
             MergeableDagLevel newLevel = new MergeableDagLevel(leafLevel,
                     it.next(), weights);
@@ -209,77 +240,223 @@ public final class MergeableDag {
     }
 
     private void mergeParentNodes(MergeableDagLevel level) {
-        List<Score> scores = new LinkedList<>();
-        Score min = getPairwiseScores(level, scores);
-        while (min.isMergeable()) {
-            int retainedNode = min.nodeA();
-            int removedNode = min.nodeB();
+        ScoreQueue queue = getPairwiseScores(level);
+        int min = queue.min();
+        while (min != -1) {
+            int nodeA = queue.nodeA(min);
+            int nodeB = queue.nodeB(min);
+            int retainedNode = nodeA;
+            int removedNode = nodeB;
             if (level.hasSibling(retainedNode)==false) {
                 // Ensure that no-sibling nodes are always removed
-                retainedNode = min.nodeB();
-                removedNode = min.nodeA();
+                retainedNode = nodeB;
+                removedNode = nodeA;
                 assert level.hasSibling(retainedNode);
             }
             else if (level.hasSibling(removedNode)
-                    && level.nodeCount(min.nodeA())<level.nodeCount(min.nodeB())) {
-                removedNode = min.nodeB();
-                retainedNode = min.nodeA();
+                    && level.nodeCount(nodeA)<level.nodeCount(nodeB)) {
+                removedNode = nodeB;
+                retainedNode = nodeA;
             }
             level.mergeParentNodes(retainedNode, removedNode);
 
-            min = MAX_SCORE;
-            ListIterator<Score> scoreIt = scores.listIterator();
-            while (scoreIt.hasNext()) {
-                Score s = scoreIt.next();
-                if (s.nodeA()==removedNode || s.nodeB()==removedNode) {
-                    scoreIt.remove();
+            queue.removeNode(removedNode);
+            for (int pair : queue.pairs(retainedNode)) {
+                float s = score(level, queue.nodeA(pair), queue.nodeB(pair),
+                        null);
+                if (Float.isNaN(s)) {
+                    queue.remove(pair);
                 }
                 else {
-                    if (s.nodeA()==retainedNode || s.nodeB()==retainedNode) {
-                        s = score(level, s.nodeA(), s.nodeB());
-                        if (s!=null) {
-                            if (s.score()<min.score() && s.isMergeable()) {
-                                min = s;
-                            }
-                            scoreIt.set(s);
-                        }
-                        else {
-                            scoreIt.remove();
-                        }
-                    }
-                    else if (s.score()<min.score() && s.isMergeable()) {
-                        min = s;
-                    }
+                    queue.setScore(pair, s);
                 }
             }
+            min = queue.min();
         }
     }
 
-    private Score getPairwiseScores(MergeableDagLevel level,
-            List<Score> scores) {
+    private ScoreQueue getPairwiseScores(MergeableDagLevel level) {
         if (level.next()==null) {
             readLevels(it, weights, level, minWindow);
         }
-        Score minScore = MAX_SCORE;
         int[] nodeArray = level.parentNodeArray();
         boolean[] hasSibling = hasSibling(level, nodeArray);
+        long nPairs = ((long) nodeArray.length)*(nodeArray.length - 1)/2;
+        if (pool!=null && nPairs>MIN_PAIRS_PER_TASK) {
+            return parallelPairwiseScores(level, nodeArray, hasSibling);
+        }
+        ScoreQueue queue = new ScoreQueue(nodeArray);
         for (int j=0; j<nodeArray.length; ++j) {
             int nodeA = nodeArray[j];
             for (int k=j+1; k<nodeArray.length; ++k) {
                 int nodeB = nodeArray[k];
                 if (hasSibling[j] || hasSibling[k]) {
-                    Score s = score(level, nodeA, nodeB);
-                    if (s!=null) {
-                        if (s.score()<minScore.score() && s.isMergeable()) {
-                            minScore = s;
-                        }
-                        scores.add(s);
+                    float s = score(level, nodeA, nodeB, null);
+                    if (Float.isNaN(s)==false) {
+                        queue.add(nodeA, nodeB, s);
                     }
                 }
 
             }
         }
-        return minScore;
+        return queue;
+    }
+
+    /*
+     * Scores the node pairs in parallel without reading new levels, and
+     * then adds the scores to the returned queue in the same order that
+     * the node pairs are scored by the sequential algorithm.  A score is
+     * recomputed sequentially if the score requires reading a new level,
+     * or if the score depends on the last level and a preceding node
+     * pair has caused a new level to be read.
+     */
+    private ScoreQueue parallelPairwiseScores(MergeableDagLevel level,
+            int[] nodeArray, boolean[] hasSibling) {
+        MergeableDagLevel lastLevel = level;
+        while (lastLevel.next()!=null) {
+            lastLevel = lastLevel.next();
+        }
+        PairScores[] rows = new PairScores[nodeArray.length];
+        pool.invoke(new ScoreTask(level, nodeArray, hasSibling,
+                it.hasNext(), rows, 0, nodeArray.length));
+
+        ScoreQueue queue = new ScoreQueue(nodeArray);
+        for (int j=0; j<rows.length; ++j) {
+            PairScores row = rows[j];
+            int nodeA = nodeArray[j];
+            for (int i=0; i<row.size; ++i) {
+                int nodeB = nodeArray[row.index[i]];
+                float s = row.score[i];
+                if (row.status[i]==NEEDS_NEXT_LEVEL
+                        || (row.status[i]==REACHED_LAST_LEVEL
+                            && lastLevel.next()!=null)) {
+                    s = score(level, nodeA, nodeB, null);
+                }
+                if (Float.isNaN(s)==false) {
+                    queue.add(nodeA, nodeB, s);
+                }
+            }
+        }
+        return queue;
+    }
+
+    /*
+     * Stores the scores for the node pairs in one row of the upper
+     * triangle of the node pair matrix.  A score is stored if it is not
+     * Float.NaN or if the score may need to be recomputed.
+     */
+    private static final class PairScores {
+
+        private int size = 0;
+        private int[] index;
+        private float[] score;
+        private byte[] status;
+
+        private PairScores(int capacity) {
+            this.index = new int[capacity];
+            this.score = new float[capacity];
+            this.status = new byte[capacity];
+        }
+
+        private void add(int k, float s, byte st) {
+            index[size] = k;
+            score[size] = s;
+            status[size] = st;
+            ++size;
+        }
+
+        private void trim() {
+            index = Arrays.copyOf(index, size);
+            score = Arrays.copyOf(score, size);
+            status = Arrays.copyOf(status, size);
+        }
+    }
+
+    /*
+     * Records whether a score computed without reading new levels
+     * depends on the last level.
+     */
+    private static final class LookAhead {
+
+        private final boolean hasNext;
+        private boolean reachedLastLevel = false;
+        private boolean needsNextLevel = false;
+
+        private LookAhead(boolean hasNext) {
+            this.hasNext = hasNext;
+        }
+    }
+
+    private final class ScoreTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final MergeableDagLevel level;
+        private final int[] nodeArray;
+        private final boolean[] hasSibling;
+        private final boolean hasNext;
+        private final PairScores[] rows;
+        private final int start;
+        private final int end;
+
+        private ScoreTask(MergeableDagLevel level, int[] nodeArray,
+                boolean[] hasSibling, boolean hasNext, PairScores[] rows,
+                int start, int end) {
+            this.level = level;
+            this.nodeArray = nodeArray;
+            this.hasSibling = hasSibling;
+            this.hasNext = hasNext;
+            this.rows = rows;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            long nPairs = nPairs(start, end);
+            if (end - start > 1 && nPairs > MIN_PAIRS_PER_TASK) {
+                int mid = start + 1;
+                while (nPairs(start, mid) < nPairs/2) {
+                    ++mid;
+                }
+                invokeAll(new ScoreTask(level, nodeArray, hasSibling,
+                                hasNext, rows, start, mid),
+                        new ScoreTask(level, nodeArray, hasSibling,
+                                hasNext, rows, mid, end));
+            }
+            else {
+                for (int j=start; j<end; ++j) {
+                    rows[j] = scoreRow(j);
+                }
+            }
+        }
+
+        private long nPairs(int startRow, int endRow) {
+            long n = nodeArray.length;
+            return (endRow - startRow)*(2*n - startRow - endRow - 1)/2;
+        }
+
+        private PairScores scoreRow(int j) {
+            PairScores row = new PairScores(nodeArray.length - j - 1);
+            int nodeA = nodeArray[j];
+            for (int k=j+1; k<nodeArray.length; ++k) {
+                if (hasSibling[j] || hasSibling[k]) {
+                    LookAhead lookAhead = new LookAhead(hasNext);
+                    float s = score(level, nodeA, nodeArray[k], lookAhead);
+                    if (lookAhead.needsNextLevel) {
+                        row.add(k, s, NEEDS_NEXT_LEVEL);
+                    }
+                    else if (lookAhead.reachedLastLevel) {
+                        row.add(k, s, REACHED_LAST_LEVEL);
+                    }
+                    else if (Float.isNaN(s)==false) {
+                        row.add(k, s, VALID);
+                    }
+                }
+            }
+            row.trim();
+            return row;
+        }
     }
 
     private boolean[] hasSibling(MergeableDagLevel level,
@@ -291,26 +468,51 @@ public final class MergeableDag {
         return hasSibling;
     }
 
-    private Score score(MergeableDagLevel level, int nodeA, int nodeB) {
+    /*
+     * Returns the similarity score of the specified parent nodes.  The
+     * returned score is positive if the nodes are mergeable and is
+     * zero or negative otherwise (see class Score).  Returns Float.NaN if
+     * the nodes are too dissimilar to be retained as a candidate pair.
+     * New levels are read if lookAhead==null.  If lookAhead!=null, no
+     * levels are read and the returned score is meaningful only if
+     * lookAhead.needsNextLevel==false.
+     */
+    private float score(MergeableDagLevel level, int nodeA, int nodeB,
+            LookAhead lookAhead) {
         float maxDiff = 0.0f;
         float nodeCntA = level.nodeCount(nodeA);
         float nodeCntB = level.nodeCount(nodeB);
         float threshold = (float) (scale*Math.sqrt((1.0/nodeCntA)+(1.0/nodeCntB)));
         maxDiff = similar(level.previous(), level, nodeA, nodeB,
                 nodeCntA, nodeCntB, level.markerIndex(),
-                nodeCntA, nodeCntB, maxDiff, threshold);
+                nodeCntA, nodeCntB, maxDiff, threshold, lookAhead);
         if (maxDiff > MAX_THRESHOLD_RATIO*threshold) {
-            return null;
+            return Float.NaN;
         }
         else {
             boolean isMergeable = (maxDiff < threshold);
-            return new Score(nodeA, nodeB, maxDiff, isMergeable);
+            return isMergeable ? maxDiff : -maxDiff;
         }
     }
 
     private MergeableDagLevel nextLevel(MergeableDagLevel prevLevel,
             int baseMarker, float propA, float propB, float maxDiff,
             float threshold) {
+        if (isExtended(prevLevel, baseMarker, propA, propB, maxDiff,
+                threshold)) {
+            MergeableDagLevel newLeaf =
+                    new MergeableDagLevel(prevLevel, it.next(), this.weights);
+            prevLevel.setNextLevel(newLeaf);
+            return newLeaf;
+        }
+        else {
+            return null;
+        }
+    }
+
+    private boolean isExtended(MergeableDagLevel prevLevel,
+            int baseMarker, float propA, float propB, float maxDiff,
+            float threshold) {
         float t1 = 0.7f * threshold;
         float t2 = 0.5f * threshold;
         int depth = prevLevel.markerIndex() - baseMarker;
@@ -322,13 +524,10 @@ public final class MergeableDag {
 //        int depth = prevLevel.markerIndex() - baseMarker;
 //        if ( (depth<maxWindow && threshold<0.4 && estMaxDiff>1.1*maxDiff
 //                && estMaxDiff>threshold) || depth<minWindow) {
-            MergeableDagLevel newLeaf =
-                    new MergeableDagLevel(prevLevel, it.next(), this.weights);
-            prevLevel.setNextLevel(newLeaf);
-            return newLeaf;
+            return true;
         }
         else {
-            return null;
+            return false;
         }
     }
 
@@ -347,13 +546,16 @@ public final class MergeableDag {
      * @param maxDiff the current maximum difference in proportions in
      * the counts of corresponding tree branches.
      * @param threshold the maximum permitted node similarity.
+     * @param lookAhead records whether the last level is reached if no
+     * new levels may be read, or {@code null} if new levels may be read.
      *
      * @return a similarity-score. Lower scores correspond to greater
      * similarity.
      */
     private float similar(MergeableDagLevel prevLevel, MergeableDagLevel level,
             int nodeA, int nodeB, float nodeCntA, float nodeCntB,
-            int baseMarker, float nA, float nB, float maxDiff, float threshold) {
+            int baseMarker, float nA, float nB, float maxDiff, float threshold,
+            LookAhead lookAhead) {
         float propA = nodeCntA / nA;
         float propB = nodeCntB / nB;
         float diff = Math.abs(propA - propB);
@@ -366,9 +568,21 @@ public final class MergeableDag {
         else if (diff > maxDiff) {
             maxDiff = diff;
         }
-        if (level==null && it.hasNext()) {
-            level = nextLevel(prevLevel, baseMarker, propA, propB, maxDiff,
-                    threshold);
+        if (level==null) {
+            if (lookAhead==null) {
+                if (it.hasNext()) {
+                    level = nextLevel(prevLevel, baseMarker, propA, propB,
+                            maxDiff, threshold);
+                }
+            }
+            else if (lookAhead.hasNext) {
+                lookAhead.reachedLastLevel = true;
+                if (isExtended(prevLevel, baseMarker, propA, propB, maxDiff,
+                        threshold)) {
+                    lookAhead.needsNextLevel = true;
+                    return Float.POSITIVE_INFINITY;
+                }
+            }
         }
         if (nodeA == -1 || nodeB == -1 || level==null) {
             return maxDiff;
@@ -381,7 +595,8 @@ public final class MergeableDag {
             nodeCntA = (edgeA != -1) ? level.edgeCount(edgeA) : 0.0f;
             nodeCntB = (edgeB != -1) ? level.edgeCount(edgeB) : 0.0f;
             float childMaxDiff = similar(level, level.next(), childA, childB,
-                    nodeCntA, nodeCntB, baseMarker, nA, nB, maxDiff, threshold);
+                    nodeCntA, nodeCntB, baseMarker, nA, nB, maxDiff, threshold,
+                    lookAhead);
             if (childMaxDiff > maxDiff) {
                 if (childMaxDiff >= threshold) {
                     return childMaxDiff;
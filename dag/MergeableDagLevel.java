@@ -19,7 +19,7 @@
 package dag;
 
 import blbutil.Const;
-import haplotype.HapsMarker;
+import haplotype.HapAlleles;
 import java.util.Arrays;
 import vcf.Marker;
 
@@ -39,6 +39,8 @@ public class MergeableDagLevel {
     private final int markerIndex;
     private final int nAlleles;
     private final int nHaps;
+    private final ArrayPool pool;
+    private int size;             // edge and child node indices are < size
 
     private int[][] outEdges;  // [allele][parent node]
     private int[] child2FirstInEdge;
@@ -63,7 +65,7 @@ public class MergeableDagLevel {
      * @throws IllegalArgumentException if {@code weights.length!=data.nHaps()}
      * @throws NullPointerException if {@code data==null || weights==null}
      */
-    public MergeableDagLevel(HapsMarker data, float[] weights) {
+    public MergeableDagLevel(HapAlleles data, float[] weights) {
         checkParameters(data, weights);
         boolean isRootLevel = true;
         this.prevLevel = null;
@@ -72,6 +74,7 @@ public class MergeableDagLevel {
         this.markerIndex = 0;
         this.nAlleles = data.marker().nAlleles();
         this.nHaps = data.nHaps();
+        this.pool = new ArrayPool();
         allocateAndInitializeArrays(isRootLevel, nAlleles, nHaps);
         fillArrays(data, weights);
     }
@@ -93,7 +96,7 @@ public class MergeableDagLevel {
      * @throws NullPointerException if
      * {@code parent==null || data==null || weights==null}
      */
-    public MergeableDagLevel(MergeableDagLevel prevLevel, HapsMarker data,
+    public MergeableDagLevel(MergeableDagLevel prevLevel, HapAlleles data,
             float[] weights) {
         checkParameters(prevLevel, data, weights);
         boolean isRootLevel = false;
@@ -103,11 +106,12 @@ public class MergeableDagLevel {
         this.markerIndex = prevLevel.markerIndex() + 1;
         this.nAlleles = data.marker().nAlleles();
         this.nHaps = data.nHaps();
+        this.pool = prevLevel.pool;
         allocateAndInitializeArrays(isRootLevel, nAlleles, nHaps);
         fillArrays(prevLevel, data, weights);
     }
 
-    private void checkParameters(HapsMarker data, float[] weights) {
+    private void checkParameters(HapAlleles data, float[] weights) {
         if (weights.length != data.nHaps()) {
              String s = "data.nHaps()=" + data.nHaps()
                     + " != weights.length=" + weights.length;
@@ -115,7 +119,7 @@ public class MergeableDagLevel {
         }
     }
 
-    private void checkParameters(MergeableDagLevel parent, HapsMarker data,
+    private void checkParameters(MergeableDagLevel parent, HapAlleles data,
             float[] weights) {
         checkParameters(data, weights);
         if (parent.nextLevel!=null) {
@@ -127,32 +131,45 @@ public class MergeableDagLevel {
         // NB: the sequences of sample ID indices are not checked
     }
 
+    /*
+     * Arrays are obtained from the pool that is shared by all levels
+     * descended from the same root level.  The parent nodes of a non-root
+     * level are the child nodes of the previous level, and the number of
+     * edges is bounded by the number of haplotypes and by the number of
+     * parent nodes times the number of alleles.  Only the first
+     * nodeCapacity and edgeCapacity elements of the arrays are used.
+     */
     private void allocateAndInitializeArrays(boolean isRootLevel, int nAlleles,
             int nHaps) {
-        int size = isRootLevel ? nAlleles : nHaps;
-        this.outEdges = new int[nAlleles][size];
-        this.child2FirstInEdge = new int[size];
-        this.inEdge2NextInEdge = new int[size];
-        this.parentNodes = new int[size];
-        this.childNodes = new int[size];
-        this.symbols = new byte[size];
-        this.counts = new float[size];
-        this.child2FirstHap = new int[nHaps];
-        this.hap2NextHap = new int[nHaps];
-
-        for (int[] oe : outEdges) {
-            Arrays.fill(oe, -1);
+        int nodeCapacity = isRootLevel ? nAlleles : prevLevel.size;
+        int edgeCapacity = isRootLevel ? nAlleles
+                : (int) Math.min(nHaps, ((long) nodeCapacity)*nAlleles);
+        this.size = edgeCapacity;
+        this.outEdges = new int[nAlleles][];
+        for (int j=0; j<nAlleles; ++j) {
+            outEdges[j] = pool.intArray(nodeCapacity);
+            Arrays.fill(outEdges[j], 0, nodeCapacity, -1);
         }
-        Arrays.fill(child2FirstInEdge, -1);
-        Arrays.fill(inEdge2NextInEdge, -1);
-        Arrays.fill(parentNodes, -1);
-        Arrays.fill(childNodes, -1);
-        Arrays.fill(symbols, (byte) -1);
-        Arrays.fill(child2FirstHap, -1);
-        Arrays.fill(hap2NextHap, -1);
-    }
-
-    private void fillArrays(HapsMarker data, float[] weights) {
+        this.child2FirstInEdge = pool.intArray(edgeCapacity);
+        this.inEdge2NextInEdge = pool.intArray(edgeCapacity);
+        this.parentNodes = pool.intArray(edgeCapacity);
+        this.childNodes = pool.intArray(edgeCapacity);
+        this.symbols = pool.byteArray(edgeCapacity);
+        this.counts = pool.floatArray(edgeCapacity);
+        this.child2FirstHap = pool.intArray(edgeCapacity);
+        this.hap2NextHap = pool.intArray(nHaps);
+
+        Arrays.fill(child2FirstInEdge, 0, edgeCapacity, -1);
+        Arrays.fill(inEdge2NextInEdge, 0, edgeCapacity, -1);
+        Arrays.fill(parentNodes, 0, edgeCapacity, -1);
+        Arrays.fill(childNodes, 0, edgeCapacity, -1);
+        Arrays.fill(symbols, 0, edgeCapacity, (byte) -1);
+        Arrays.fill(counts, 0, edgeCapacity, 0.0f);
+        Arrays.fill(child2FirstHap, 0, edgeCapacity, -1);
+        Arrays.fill(hap2NextHap, 0, nHaps, -1);
+    }
+
+    private void fillArrays(HapAlleles data, float[] weights) {
         int parentNode = 0;
         for (int hap=0, n=data.nHaps(); hap<n; ++hap) {
             byte symbol = data.allele(hap);
@@ -173,10 +190,10 @@ public class MergeableDagLevel {
         }
     }
 
-    private void fillArrays(MergeableDagLevel prevLevel, HapsMarker data,
+    private void fillArrays(MergeableDagLevel prevLevel, HapAlleles data,
             float[] weights) {
         int nEdges = 0;
-        for (int node=0, n=prevLevel.child2FirstHap.length; node<n; ++node) {
+        for (int node=0, n=prevLevel.size; node<n; ++node) {
             if (prevLevel.child2FirstHap[node] >= 0) {
                 int hap = prevLevel.child2FirstHap[node];
                 while (hap != -1) {
@@ -197,9 +214,7 @@ public class MergeableDagLevel {
                 }
             }
         }
-        if (nEdges < 0.75*nHaps) {
-            reduceEdgeArrayLengths(nEdges);
-        }
+        this.size = nEdges;
         prevLevel.removeHaplotypeIndices();
     }
 
@@ -215,23 +230,43 @@ public class MergeableDagLevel {
         child2FirstHap[childNode] = haplotype;
     }
 
-    private void reduceEdgeArrayLengths(int newLength) {
-        child2FirstInEdge = Arrays.copyOf(child2FirstInEdge, newLength);
-        inEdge2NextInEdge = Arrays.copyOf(inEdge2NextInEdge, newLength);
-        parentNodes = Arrays.copyOf(parentNodes, newLength);
-        childNodes = Arrays.copyOf(childNodes, newLength);
-        symbols = Arrays.copyOf(symbols, newLength);
-        counts = Arrays.copyOf(counts, newLength);
-    }
-
     /**
      * Removes haplotype index data from {@code this}.
      */
     private void removeHaplotypeIndices() {
+        pool.release(child2FirstHap);
+        pool.release(hap2NextHap);
         this.child2FirstHap = null;
         this.hap2NextHap = null;
     }
 
+    /**
+     * Returns the arrays of {@code this} to the array pool that is shared
+     * by all levels descended from the same root level.  No method of
+     * {@code this} may be invoked after this method is invoked.
+     */
+    void releaseArrays() {
+        if (child2FirstHap != null) {
+            removeHaplotypeIndices();
+        }
+        for (int[] oe : outEdges) {
+            pool.release(oe);
+        }
+        pool.release(child2FirstInEdge);
+        pool.release(inEdge2NextInEdge);
+        pool.release(parentNodes);
+        pool.release(childNodes);
+        pool.release(symbols);
+        pool.release(counts);
+        this.outEdges = null;
+        this.child2FirstInEdge = null;
+        this.inEdge2NextInEdge = null;
+        this.parentNodes = null;
+        this.childNodes = null;
+        this.symbols = null;
+        this.counts = null;
+    }
+
    /**
      * Sets the previous DAG level to {@code null}, and returns
      * the previous DAG level that existed immediately prior to the invocation
@@ -307,18 +342,23 @@ public class MergeableDagLevel {
      * {@code this}. The parent node, edge, and child node indices
      * in the returned {@code DagLevel} are the ranks of the
      * parent node, edge, and child node indices for {@code this},
-     * with rank 0 corresponding to the smallest index.
+     * with rank 0 corresponding to the smallest index.  The returned
+     * {@code DagLevel} is an {@code ImmutableDagLevel} if the number of
+     * edges is less than or equal to {@code Character.MAX_VALUE}, and is
+     * an {@code IntDagLevel} otherwise.
      * @return an immutable {@code DagLevel} corresponding to
      * {@code this}.
      */
     public DagLevel toDagLevel() {
-         char[] modParentNodes = rankValues(
-                DagUtils.removeValues(parentNodes, -1));
-         char[] modChildNodes = rankValues(
-                DagUtils.removeValues(childNodes, -1));
-         byte[] modSymbols = DagUtils.removeValues(symbols, (byte) -1);
-         float[] modCounts = DagUtils.removeValues(counts, 0.0f);
-         return new ImmutableDagLevel(marker, modParentNodes, modChildNodes,
+         int[] modParentNodes = rankValues(DagUtils.removeValues(
+                Arrays.copyOf(parentNodes, size), -1));
+         int[] modChildNodes = rankValues(DagUtils.removeValues(
+                Arrays.copyOf(childNodes, size), -1));
+         byte[] modSymbols = DagUtils.removeValues(
+                Arrays.copyOf(symbols, size), (byte) -1);
+         float[] modCounts = DagUtils.removeValues(
+                Arrays.copyOf(counts, size), 0.0f);
+         return DagUtils.dagLevel(marker, modParentNodes, modChildNodes,
                  modSymbols, modCounts);
     }
 
@@ -334,11 +374,10 @@ public class MergeableDagLevel {
      * @throws NegativeArrayException if any element of array equals
      * {@code Integer.MAX_VALUE}.
      */
-    private static char[] rankValues(int[] array) {
+    private static int[] rankValues(int[] array) {
         if (array.length==0) {
             throw new IllegalArgumentException("array.length==0");
         }
-        assert array.length < Character.MAX_VALUE;
         int[] sortedCopy = array.clone();
         Arrays.sort(sortedCopy);
         if (sortedCopy[0] < 0) {
@@ -346,16 +385,16 @@ public class MergeableDagLevel {
             throw new IllegalArgumentException(s);
         }
         int n = sortedCopy[sortedCopy.length - 1] + 1;
-        char[] indexMap = new char[n];
-        Arrays.fill(indexMap, Character.MAX_VALUE);
-        char index = 0;
+        int[] indexMap = new int[n];
+        Arrays.fill(indexMap, -1);
+        int index = 0;
         indexMap[sortedCopy[0]] = index++;
         for (int j=1; j<sortedCopy.length; ++j) {
             if (sortedCopy[j] != sortedCopy[j-1]) {
                 indexMap[sortedCopy[j]] = index++;
             }
         }
-        char[] transformedArray = new char[array.length];
+        int[] transformedArray = new int[array.length];
         for (int j=0; j<transformedArray.length; ++j) {
             transformedArray[j] = indexMap[array[j]];
         }
@@ -547,7 +586,8 @@ public class MergeableDagLevel {
      * @return an array of parent node indices.
      */
     public int[] parentNodeArray() {
-        int[] sortedReducedArray = DagUtils.removeValues(parentNodes, -1);
+        int[] sortedReducedArray = DagUtils.removeValues(
+                Arrays.copyOf(parentNodes, size), -1);
         Arrays.sort(sortedReducedArray);
         assert sortedReducedArray.length > 0;
         int cnt = 1;
@@ -630,7 +670,7 @@ public class MergeableDagLevel {
         sb.append("[ MergeableDagLevel: marker=");
         sb.append(markerIndex);
         sb.append(Const.nl);
-        for (int j=0, n=nHaps(); j<n; ++j) {
+        for (int j=0; j<size; ++j) {
             if (parentNodes[j] != -1) {
                 sb.append("edge=");
                 sb.append(j);
@@ -667,4 +707,4 @@ public class MergeableDagLevel {
             return false;
         }
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
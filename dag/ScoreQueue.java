@@ -0,0 +1,282 @@
+/*
+ * Copyright (C) 2014 Brian L. Browning
+ *
+ * This file is part of Beagle
+ *
+ * Beagle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Beagle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dag;
+
+import blbutil.IntList;
+import java.util.Arrays;
+
+/**
+ * <p>Class {@code ScoreQueue} stores similarity scores for pairs of
+ * parent nodes in a DAG level, and is an indexed priority queue of the
+ * mergeable pairs.
+ * </p>
+ * <p>Pairs are identified by consecutive integer indices that are
+ * assigned in the order in which pairs are added.  A score is stored
+ * as a signed float: the score is positive if the pair is mergeable,
+ * and is zero or negative otherwise (see {@code Score}).  The pair
+ * returned by {@code this.min()} is the mergeable pair with minimum
+ * score, and ties are broken by choosing the pair with smallest index.
+ * </p>
+ * <p>The list of pairs that contain a node is updated lazily: pairs
+ * that have been removed are deleted from the list when the list is
+ * next requested.
+ * </p>
+ * <p>Instances of class {@code ScoreQueue} are not thread-safe.
+ * </p>
+ *
+ * @author Brian L. Browning {@code <browning@uw.edu>}
+ */
+final class ScoreQueue {
+
+    private static final int INIT_CAPACITY = 64;
+
+    private final int[] nodeToIndex;
+    private final IntList[] nodePairs;
+
+    private int nPairs = 0;
+    private int[] nodeA = new int[INIT_CAPACITY];
+    private int[] nodeB = new int[INIT_CAPACITY];
+    private float[] score = new float[INIT_CAPACITY];
+    private boolean[] isRemoved = new boolean[INIT_CAPACITY];
+    private int[] heapIndex = new int[INIT_CAPACITY];
+
+    private int heapSize = 0;
+    private int[] heap = new int[INIT_CAPACITY];
+
+    /**
+     * Constructs a new {@code ScoreQueue} for pairs of the specified
+     * parent nodes.
+     * @param parentNodes an array of distinct non-negative parent node
+     * indices.
+     * @throws IllegalArgumentException if any element of
+     * {@code parentNodes} is negative or if two elements are equal.
+     * @throws NullPointerException if {@code parentNodes==null}.
+     */
+    ScoreQueue(int[] parentNodes) {
+        int max = -1;
+        for (int node : parentNodes) {
+            if (node < 0) {
+                throw new IllegalArgumentException("node: " + node);
+            }
+            max = Math.max(max, node);
+        }
+        this.nodeToIndex = new int[max + 1];
+        Arrays.fill(nodeToIndex, -1);
+        this.nodePairs = new IntList[parentNodes.length];
+        for (int j=0; j<parentNodes.length; ++j) {
+            if (nodeToIndex[parentNodes[j]] != -1) {
+                throw new IllegalArgumentException("duplicate node: "
+                        + parentNodes[j]);
+            }
+            nodeToIndex[parentNodes[j]] = j;
+            nodePairs[j] = new IntList();
+        }
+    }
+
+    /**
+     * Adds the specified pair of parent nodes and returns the index of
+     * the pair.
+     * @param a the first parent node.
+     * @param b the second parent node.
+     * @param s the signed score of the pair.
+     * @return the index of the pair.
+     * @throws IndexOutOfBoundsException if {@code a} or {@code b}
+     * is not a parent node of {@code this}.
+     */
+    int add(int a, int b, float s) {
+        int pair = nPairs;
+        if (pair == nodeA.length) {
+            int newLength = 2*pair;
+            nodeA = Arrays.copyOf(nodeA, newLength);
+            nodeB = Arrays.copyOf(nodeB, newLength);
+            score = Arrays.copyOf(score, newLength);
+            isRemoved = Arrays.copyOf(isRemoved, newLength);
+            heapIndex = Arrays.copyOf(heapIndex, newLength);
+        }
+        nodePairs[nodeToIndex[a]].add(pair);
+        nodePairs[nodeToIndex[b]].add(pair);
+        nodeA[pair] = a;
+        nodeB[pair] = b;
+        score[pair] = s;
+        heapIndex[pair] = -1;
+        ++nPairs;
+        if (s > 0) {
+            heapInsert(pair);
+        }
+        return pair;
+    }
+
+    /**
+     * Returns the first parent node of the specified pair.
+     * @param pair a pair index.
+     * @return the first parent node of the specified pair.
+     */
+    int nodeA(int pair) {
+        return nodeA[pair];
+    }
+
+    /**
+     * Returns the second parent node of the specified pair.
+     * @param pair a pair index.
+     * @return the second parent node of the specified pair.
+     */
+    int nodeB(int pair) {
+        return nodeB[pair];
+    }
+
+    /**
+     * Returns the index of the mergeable pair with minimum score, or
+     * -1 if there are no mergeable pairs.  If two mergeable pairs have
+     * the same score, the pair with smaller index is returned.
+     * @return the index of the mergeable pair with minimum score, or -1
+     * if there are no mergeable pairs.
+     */
+    int min() {
+        return heapSize==0 ? -1 : heap[0];
+    }
+
+    /**
+     * Sets the signed score of the specified pair.
+     * @param pair a pair index.
+     * @param s the signed score of the pair.
+     */
+    void setScore(int pair, float s) {
+        assert isRemoved[pair]==false;
+        score[pair] = s;
+        int pos = heapIndex[pair];
+        if (s > 0) {
+            if (pos == -1) {
+                heapInsert(pair);
+            }
+            else {
+                siftDown(siftUp(pos));
+            }
+        }
+        else if (pos != -1) {
+            heapRemove(pos);
+        }
+    }
+
+    /**
+     * Removes the specified pair.
+     * @param pair a pair index.
+     */
+    void remove(int pair) {
+        if (isRemoved[pair]==false) {
+            isRemoved[pair] = true;
+            if (heapIndex[pair] != -1) {
+                heapRemove(heapIndex[pair]);
+            }
+        }
+    }
+
+    /**
+     * Removes all pairs containing the specified parent node.
+     * @param node a parent node.
+     */
+    void removeNode(int node) {
+        IntList list = nodePairs[nodeToIndex[node]];
+        for (int j=0, n=list.size(); j<n; ++j) {
+            remove(list.get(j));
+        }
+        list.clear();
+    }
+
+    /**
+     * Returns the indices of the pairs that contain the specified parent
+     * node in increasing order.
+     * @param node a parent node.
+     * @return the indices of the pairs that contain the specified parent
+     * node.
+     */
+    int[] pairs(int node) {
+        IntList list = nodePairs[nodeToIndex[node]];
+        IntList compacted = new IntList(list.size());
+        for (int j=0, n=list.size(); j<n; ++j) {
+            int pair = list.get(j);
+            if (isRemoved[pair]==false) {
+                compacted.add(pair);
+            }
+        }
+        nodePairs[nodeToIndex[node]] = compacted;
+        return compacted.toArray();
+    }
+
+    private boolean less(int pairA, int pairB) {
+        float sA = score[pairA];
+        float sB = score[pairB];
+        return sA < sB || (sA == sB && pairA < pairB);
+    }
+
+    private void heapInsert(int pair) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, 2*heapSize);
+        }
+        heap[heapSize] = pair;
+        heapIndex[pair] = heapSize;
+        siftUp(heapSize++);
+    }
+
+    private void heapRemove(int pos) {
+        int pair = heap[pos];
+        heapIndex[pair] = -1;
+        --heapSize;
+        if (pos < heapSize) {
+            heap[pos] = heap[heapSize];
+            heapIndex[heap[pos]] = pos;
+            siftDown(siftUp(pos));
+        }
+    }
+
+    private int siftUp(int pos) {
+        int pair = heap[pos];
+        while (pos > 0) {
+            int parent = (pos - 1) >> 1;
+            if (less(pair, heap[parent])==false) {
+                break;
+            }
+            heap[pos] = heap[parent];
+            heapIndex[heap[pos]] = pos;
+            pos = parent;
+        }
+        heap[pos] = pair;
+        heapIndex[pair] = pos;
+        return pos;
+    }
+
+    private void siftDown(int pos) {
+        int pair = heap[pos];
+        int half = heapSize >> 1;
+        while (pos < half) {
+            int child = 2*pos + 1;
+            int right = child + 1;
+            if (right < heapSize && less(heap[right], heap[child])) {
+                child = right;
+            }
+            if (less(heap[child], pair)==false) {
+                break;
+            }
+            heap[pos] = heap[child];
+            heapIndex[heap[pos]] = pos;
+            pos = child;
+        }
+        heap[pos] = pair;
+        heapIndex[pair] = pos;
+    }
+}
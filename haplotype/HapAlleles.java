@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2014 Brian L. Browning
+ *
+ * This file is part of Beagle
+ *
+ * Beagle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Beagle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package haplotype;
+
+import vcf.Marker;
+
+/**
+ * <p>Interface {@code HapAlleles} represents the alleles of a list of
+ * haplotypes at a marker.  The haplotypes are not required to be
+ * grouped into haplotype pairs.
+ * </p>
+ * All instances of {@code HapAlleles} are required to be
+ * immutable.
+ *
+ * @author Brian L. Browning {@code <browning@uw.edu>}
+ */
+public interface HapAlleles {
+
+    /**
+     * Returns the allele for the specified haplotype.
+     * @param haplotype a haplotype index.
+     * @return the allele for the specified haplotype.
+     *
+     * @throws IndexOutOfBoundsException if
+     * {@code haplotype<0 || haplotype>=this.nHaps()}.
+     */
+    byte allele(int haplotype);
+
+    /**
+     * Returns the marker.
+     * @return the marker.
+     */
+    Marker marker();
+
+    /**
+     * Returns the number of haplotypes.
+     * @return the number of haplotypes.
+     */
+    int nHaps();
+}
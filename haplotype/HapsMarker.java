@@ -29,7 +29,7 @@ import vcf.Marker;
  *
  * @author Brian L. Browning {@code <browning@uw.edu>}
  */
-public interface HapsMarker {
+public interface HapsMarker extends HapAlleles {
 
      /**
      * Returns the allele for the specified haplotype.
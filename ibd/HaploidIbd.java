@@ -19,7 +19,7 @@
 package ibd;
 
 import blbutil.IntPair;
-import blbutil.Utilities;
+import blbutil.WorkerPool;
 import dag.Dag;
 import haplotype.HapPairs;
 import haplotype.SampleHapPairs;
@@ -27,13 +27,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 import vcf.GL;
 
 /**
@@ -84,48 +79,38 @@ public class HaploidIbd {
      * @param gl the HMM emission probabilities.
      * @param dag the HMM transition probabilities.
      * @param haps the sample haplotype pairs.
-     * @param nThreads the number of threads of execution that may be used.
+     * @param pool the worker threads that will evaluate candidate IBD segments.
      * @return a map whose keys are pairs of haplotype indices and whose
      * values are thread-safe lists of IBD segments for the haplotype pairs.
      *
-     * @throws IllegalArgumentException if {@code nThreads<1}
      * @throws IllegalArgumentException if
      * {@code gl.samples().equals(haps.samples())==false}
      * @throws IllegalArgumentException if
      * {@code gl.markers().equals(dag.markers())==false
                 || gl.markers().equals(haps.markers())==false}
      * @throws NullPointerException if
-     * {@code gl==null || dag==null || haps==null}
+     * {@code gl==null || dag==null || haps==null || pool==null}
      */
-    @SuppressWarnings({"BroadCatchBlock", "TooBroadCatch"})
     public Map<IntPair, List<IbdSegment>> run(GL gl, Dag dag,
-            SampleHapPairs haps, final int nThreads) {
+            SampleHapPairs haps, WorkerPool pool) {
         checkParameters(gl, dag, haps);
         double[] pos = dag.posArray();
         IbsHapSegments ibsSegments = new IbsHapSegments(haps, pos, minIbsLength);
         ConcurrentMap<IntPair, List<IbdSegment>> ibdMap
                 = new ConcurrentHashMap<>();
 
-        final BlockingQueue<Integer> qIn = new ArrayBlockingQueue<>(5*nThreads);
-        ExecutorService es = Executors.newFixedThreadPool(nThreads);
-        for (int j=0; j<nThreads; ++j) {
+        final ProduceIbd[] producers = new ProduceIbd[pool.nThreads()];
+        for (int j=0; j<producers.length; ++j) {
             IbdBaum baum = new IbdBaum(dag, gl);
-            es.submit(new ProduceIbd(haps, baum, ibsSegments, qIn, ibdMap,
-                    ibdTrim, minIbdLod));
+            producers[j] = new ProduceIbd(haps, baum, ibsSegments, ibdMap,
+                    ibdTrim, minIbdLod);
         }
-        try {
-            for (int hap=0, n=haps.nHaps(); hap<n; ++hap) {
-                qIn.put(hap);
+        pool.run(new WorkerPool.Task() {
+            @Override
+            public void run(int worker, int hap) {
+                producers[worker].detect(hap);
             }
-            for (int j=0; j<nThreads; ++j) {
-               qIn.put(ProduceIbd.POISON);
-            }
-            es.shutdown();
-            es.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
-        }
-        catch (Throwable e) {
-            Utilities.exit("\"HapSampler: ERROR\"", e);
-        }
+        }, haps.nHaps());
         return ibdMap;
     }
 
@@ -165,14 +150,11 @@ public class HaploidIbd {
         }
     }
 
-    private class ProduceIbd implements Runnable {
-
-        public static final int POISON = -37;
+    private class ProduceIbd {
 
         private final SampleHapPairs haps;
         private final IbdBaum baum;
         private final IbsHapSegments ibsHapSegments;
-        private final BlockingQueue<Integer> qIn;
         private final ConcurrentMap<IntPair, List<IbdSegment>> ibdMap;
         private final int ibdTrim;
         private final float minIbdLod;
@@ -182,7 +164,6 @@ public class HaploidIbd {
          *
          * @param haps the haplotypes.
          * @param baum a thread-confined instance of class {@code ibd.IbdBaum}.
-         * @param qIn a thread-safe input work queue.
          * @param ibdMap a thread-safe map whose keys are pairs of haplotype
          * indices, and whose values are thread-safe lists of IBD segments
          * for the haplotype pairs.
@@ -196,7 +177,7 @@ public class HaploidIbd {
          * @throws NullPointerException if any parameter is {@code null}
          */
         public ProduceIbd(SampleHapPairs haps, IbdBaum baum,
-                IbsHapSegments ibsHapSegments, BlockingQueue<Integer> qIn,
+                IbsHapSegments ibsHapSegments,
                 ConcurrentMap<IntPair, List<IbdSegment>> ibdMap, int ibdTrim,
                 float minIbdLod) {
             if (ibdTrim < 0) {
@@ -208,71 +189,56 @@ public class HaploidIbd {
             this.haps = haps;
             this.baum = baum;
             this.ibsHapSegments = ibsHapSegments;
-            this.qIn = qIn;
             this.ibdMap = ibdMap;
             this.ibdTrim = ibdTrim;
             this.minIbdLod = minIbdLod;
         }
 
         /**
-         * Takes haplotype indices from a thread-safe work-queue and stores
-         * detected IBD segments that between the haplotype and
-         * haplotypes with large index in {@code this.ibdMap}.  The method
-         * exits when {@code ProduceSingleSamples.POISON} is taken from the
-         * work queue.
+         * Stores the detected IBD segments between the specified haplotype
+         * and haplotypes with larger index in {@code this.ibdMap}.
          *
-         * @throws IndexOutOfBounds exception if a negative integer
-         * other than {@code ProduceSingleSamples.POISON} is taken from the
-         * work queue
+         * @param hap a haplotype index.
+         * @throws IndexOutOfBoundsException if {@code hap<0} or if
+         * {@code hap} is greater than or equal to the number of haplotypes
          */
-        @Override
-        @SuppressWarnings({"BroadCatchBlock", "TooBroadCatch"})
-        public void run() {
-            try {
-                int hap = qIn.take();
-                while (hap!=POISON) {
-                    List<HapSegment> ibsSegs = ibsHapSegments.find(hap);
-                    for (int j=0, n=ibsSegs.size(); j<n; ++j) {
-                        HapSegment hs = ibsSegs.get(j);
-                        if (hap < hs.hap()) {
-                            int start = hs.start();
-                            int end = hs.end();
-                            double freqLod = HaploidIbd.freqLod(hap, start,
-                                    (end+1), ibdTrim, baum.dag(), haps);
-                            if (freqLod >= minFreqLod) {
-                                float ibdLod;
-                                if ( (hap/2) == (hs.hap()/2) ) {
-                                    int sample = hap/2;
-                                    ibdLod = (float) baum.hbdLod(sample, start, (end+1));
-                                }
-                                else {
-                                    ibdLod = (float) HaploidIbd.ibdLod(baum, hap,
-                                            hs.hap(), start, (end+1), ibdTrim);
-                                }
-                                if (ibdLod >= minIbdLod) {
-                                    IntPair hapPair = new IntPair(hap, hs.hap());
-                                    List<IbdSegment> list = ibdMap.get(hapPair);
-                                    if (list==null) {
-                                        list = Collections.synchronizedList(
-                                                new ArrayList<IbdSegment>(2));
-                                        ibdMap.putIfAbsent(hapPair, list);
-                                        list = ibdMap.get(hapPair);
-                                    }
-                                    IbdSegment segment = new IbdSegment(hapPair,
-                                            baum.gl().marker(start),
-                                            baum.gl().marker(end),
-                                            ibdLod, start, end );
-                                    list.add(segment);
-                                }
+        public void detect(int hap) {
+            List<HapSegment> ibsSegs = ibsHapSegments.find(hap);
+            for (int j=0, n=ibsSegs.size(); j<n; ++j) {
+                HapSegment hs = ibsSegs.get(j);
+                if (hap < hs.hap()) {
+                    int start = hs.start();
+                    int end = hs.end();
+                    double freqLod = HaploidIbd.freqLod(hap, start,
+                            (end+1), ibdTrim, baum.dag(), haps);
+                    if (freqLod >= minFreqLod) {
+                        float ibdLod;
+                        if ( (hap/2) == (hs.hap()/2) ) {
+                            int sample = hap/2;
+                            ibdLod = (float) baum.hbdLod(sample, start, (end+1));
+                        }
+                        else {
+                            ibdLod = (float) HaploidIbd.ibdLod(baum, hap,
+                                    hs.hap(), start, (end+1), ibdTrim);
+                        }
+                        if (ibdLod >= minIbdLod) {
+                            IntPair hapPair = new IntPair(hap, hs.hap());
+                            List<IbdSegment> list = ibdMap.get(hapPair);
+                            if (list==null) {
+                                list = Collections.synchronizedList(
+                                        new ArrayList<IbdSegment>(2));
+                                ibdMap.putIfAbsent(hapPair, list);
+                                list = ibdMap.get(hapPair);
                             }
+                            IbdSegment segment = new IbdSegment(hapPair,
+                                    baum.gl().marker(start),
+                                    baum.gl().marker(end),
+                                    ibdLod, start, end );
+                            list.add(segment);
                         }
                     }
-                    hap = qIn.take();
                 }
             }
-            catch (Throwable e) {
-                Utilities.exit("ProduceSingleSamples: ERROR", e);
-            }
         }
     }
 }
@@ -270,7 +270,7 @@ public class IbdBaum {
             for (int m=start; m<end && p>0.0; ++m) {
                 byte allele = haps.allele(m, hap);
                 int e = dag.outEdgeBySymbol(m, lastNode, allele);
-                if (e == Character.MAX_VALUE) {
+                if (e == -1) {
                     p = 0.0;
                     break;
                 }
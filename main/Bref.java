@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2014 Brian L. Browning
+ *
+ * This file is part of Beagle
+ *
+ * Beagle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Beagle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package main;
+
+import blbutil.Const;
+import blbutil.SampleFileIterator;
+import blbutil.Utilities;
+import java.io.File;
+import java.util.Locale;
+import vcf.BitSetRefGT;
+import vcf.BrefIterator;
+import vcf.BrefWriter;
+import vcf.PGPRefGT;
+import vcf.VcfEmission;
+import vcf.VcfIterator;
+import vcf.VcfRec;
+
+/**
+ * <p>Class {@code Bref} converts a reference VCF file to binary reference
+ * (bref) format.  A bref file can be used in place of a reference VCF
+ * file with the {@code ref} argument.
+ * </p>
+ * <p>Usage: {@code java -cp PhasedBEAGLE.jar main.Bref [ref.vcf.gz] [out.bref]}
+ * </p>
+ *
+ * @author Brian L. Browning {@code <browning@uw.edu>}
+ */
+public class Bref {
+
+    private Bref() {
+        // private constructor to prevent instantiation
+    }
+
+    /**
+     * Entry point to the bref conversion program.
+     * @param args the input VCF file and the output bref file.
+     */
+    public static void main(String[] args) {
+        Locale.setDefault(Locale.US);
+        if (args.length!=2) {
+            System.out.println(usage());
+            System.exit(0);
+        }
+        File vcfFile = new File(args[0]);
+        File brefFile = new File(args[1]);
+        if (BrefIterator.isBrefFile(brefFile)==false) {
+            System.out.println("Output filename must end in \""
+                    + BrefIterator.EXTENSION + "\"");
+            System.exit(1);
+        }
+        long t0 = System.nanoTime();
+        int nMarkers = 0;
+        SampleFileIterator<VcfRec> it = new VcfIterator(vcfFile);
+        try (BrefWriter writer = new BrefWriter(brefFile, it.samples())) {
+            while (it.hasNext()) {
+                VcfRec rec = it.next();
+                boolean hasPGP = BrefWriter.hasPGP(rec);
+                VcfEmission em = hasPGP ? new PGPRefGT(rec)
+                        : new BitSetRefGT(rec);
+                writer.write(em, hasPGP);
+                ++nMarkers;
+            }
+        }
+        it.close();
+        System.out.println("Wrote " + nMarkers + " markers and "
+                + it.samples().nSamples() + " samples to " + brefFile
+                + " in " + Utilities.elapsedNanos(System.nanoTime() - t0));
+    }
+
+    private static String usage() {
+        return "usage: java -cp PhasedBEAGLE.jar main.Bref [ref.vcf.gz] [out"
+                + BrefIterator.EXTENSION + "]" + Const.nl
+                + Const.nl
+                + "Converts a reference VCF file with phased, non-missing"
+                + " genotypes" + Const.nl
+                + "to binary reference format.";
+    }
+}
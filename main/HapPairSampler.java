@@ -18,7 +18,8 @@
  */
 package main;
 
-import blbutil.Utilities;
+import blbutil.WorkerPool;
+import dag.ChainDag;
 import dag.Dag;
 import dag.LinkageEquilibriumDag;
 import dag.MergeableDag;
@@ -31,11 +32,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ForkJoinPool;
+import sample.ChainExpander;
 import sample.DuoBaum;
 import sample.HapBaum;
 import sample.ProduceHapSamples;
@@ -56,24 +54,41 @@ import vcf.RevGL;
  */
 public final class HapPairSampler {
 
+    private static final float MIN_ALLELE_FREQ = 0.0001f;
+
     private final Parameters par;
     private final RunStats runStats;
+    private final WorkerPool pool;
+    private final ForkJoinPool forkJoinPool;
 
     /**
      * Constructs a new {@code HapPairSampler} instance.
      * @param par the analysis parameters.
      * @param runStats the object to which run-time statistics will be written.
-     * @throws NullPointerException if {@code par==null || runStats==null}
+     * @param pool the worker threads that will sample haplotype pairs.
+     * @param forkJoinPool the fork-join pool that will compute node
+     * similarity scores when building DAG models.
+     * @throws NullPointerException if {@code par==null || runStats==null
+     * || pool==null || forkJoinPool==null}
      */
-    public HapPairSampler(Parameters par, RunStats runStats) {
+    public HapPairSampler(Parameters par, RunStats runStats, WorkerPool pool,
+            ForkJoinPool forkJoinPool) {
         if (par==null) {
             throw new IllegalArgumentException("par==null");
         }
         if (runStats==null) {
             throw new IllegalArgumentException("runStats==null");
         }
+        if (pool==null) {
+            throw new IllegalArgumentException("pool==null");
+        }
+        if (forkJoinPool==null) {
+            throw new IllegalArgumentException("forkJoinPool==null");
+        }
         this.par = par;
         this.runStats = runStats;
+        this.pool = pool;
+        this.forkJoinPool = forkJoinPool;
     }
 
     /**
@@ -100,15 +115,17 @@ public final class HapPairSampler {
             throw new IllegalArgumentException("inconsistent samples");
         }
         boolean useRevDag = false;
-        float minAlleleFreq = 0.0001f;
-        Dag dag = new LinkageEquilibriumDag(freqGL, minAlleleFreq);
+        Dag dag = new LinkageEquilibriumDag(freqGL, MIN_ALLELE_FREQ, pool);
+        Dag[] baumDags = baumDags(new Dag[] {dag, dag, dag});
+        GL[] baumGLs = baumGLs(baumDags, emitGL);
         List<HapPair> sampledHaps = new ArrayList<>();
-        sampledHaps = Collections.synchronizedList(sampledHaps);
-        singleSample(fam, dag, emitGL, useRevDag, par.nsamples(),
-                sampledHaps, par.nthreads());
-        duoSample(fam, dag, emitGL, useRevDag, par.nsamples(), sampledHaps);
-        trioSample(fam, dag, emitGL, useRevDag, par.nsamples(), sampledHaps);
-        return new ArrayList<>(sampledHaps);
+        singleSample(fam, baumDags[0], baumGLs[0], useRevDag, par.nsamples(),
+                sampledHaps);
+        duoSample(fam, baumDags[1], baumGLs[1], useRevDag, par.nsamples(),
+                sampledHaps, null);
+        trioSample(fam, baumDags[2], baumGLs[2], useRevDag, par.nsamples(),
+                sampledHaps, null);
+        return sampledHaps;
     }
 
     /**
@@ -142,19 +159,20 @@ public final class HapPairSampler {
         List<HapPair> sampledHaps = new ArrayList<>(haps.size());
         HapPairs dagHaps = new BasicHapPairs(haps, useRevDag);
         float[] wts = weights.get(dagHaps);
-        Dag singleDag = singleDag(fam, dagHaps, wts);
-        Dag duoDag = duoDag(fam, singleDag, dagHaps, wts);
-        Dag trioDag = trioDag(fam, singleDag, duoDag, dagHaps, wts);
-        setDagStats(singleDag, duoDag, trioDag);
+        Dag[] dags = makeDags(fam, dagHaps, wts);
+        setDagStats(dags[0], dags[1], dags[2]);
         if (useRevDag) {
             gl = new RevGL(gl);
         }
-        sampledHaps = Collections.synchronizedList(sampledHaps);
-        singleSample(fam, singleDag, gl, useRevDag, par.nsamples(), sampledHaps,
-                par.nthreads());
-        duoSample(fam, duoDag, gl, useRevDag, par.nsamples(), sampledHaps);
-        trioSample(fam, trioDag, gl, useRevDag, par.nsamples(), sampledHaps);
-        return new ArrayList<>(sampledHaps);
+        Dag[] baumDags = baumDags(dags);
+        GL[] baumGLs = baumGLs(baumDags, gl);
+        singleSample(fam, baumDags[0], baumGLs[0], useRevDag, par.nsamples(),
+                sampledHaps);
+        duoSample(fam, baumDags[1], baumGLs[1], useRevDag, par.nsamples(),
+                sampledHaps, null);
+        trioSample(fam, baumDags[2], baumGLs[2], useRevDag, par.nsamples(),
+                sampledHaps, null);
+        return sampledHaps;
     }
 
     /**
@@ -194,22 +212,23 @@ public final class HapPairSampler {
         }
         HapPairs dagHaps = new BasicHapPairs(haps, useRevDag);
         float[] wts = weights.get(dagHaps);
-        Dag singleDag = singleDag(fam, dagHaps, wts);
-        Dag duoDag = duoDag(fam, singleDag, dagHaps, wts);
-        Dag trioDag = trioDag(fam, singleDag, duoDag, dagHaps, wts);
-        setDagStats(singleDag, duoDag, trioDag);
+        Dag[] dags = makeDags(fam, dagHaps, wts);
+        setDagStats(dags[0], dags[1], dags[2]);
         if (useRevDag) {
             gl = new RevGL(gl);
             gv = new RevGenotypeValues(gv);
         }
+        Dag[] baumDags = baumDags(dags);
+        GL[] baumGLs = baumGLs(baumDags, gl);
 
         List<HapPair> sampledHaps = new ArrayList<>(haps.size());
-        sampledHaps = Collections.synchronizedList(sampledHaps);
-        singleSample(fam, singleDag, gl, useRevDag,par.nsamples(), sampledHaps,
-                gv, par.nthreads());
-        duoSample(fam, duoDag, gl, useRevDag, par.nsamples(), sampledHaps, gv);
-        trioSample(fam, trioDag, gl, useRevDag, par.nsamples(), sampledHaps, gv);
-        return new ArrayList<>(sampledHaps);
+        singleSample(fam, baumDags[0], baumGLs[0], useRevDag, par.nsamples(),
+                sampledHaps, gv);
+        duoSample(fam, baumDags[1], baumGLs[1], useRevDag, par.nsamples(),
+                sampledHaps, gv);
+        trioSample(fam, baumDags[2], baumGLs[2], useRevDag, par.nsamples(),
+                sampledHaps, gv);
+        return sampledHaps;
     }
 
     /**
@@ -241,8 +260,10 @@ public final class HapPairSampler {
         }
         HapPairs dagHaps = new BasicHapPairs(haps, useRevDag);
         float[] wts = weights.get(dagHaps);
-        Dag singleDag =  makeDag(dagHaps, wts, par.buildwindow(),
-                par.singlescale());
+        DagBuilder builder = new DagBuilder(dagHaps, wts, par.singlescale());
+        Dag singleDag = builder.build();
+        runStats.buildMillis(builder.millis());
+        runStats.setBuildMillis(builder.millis(), -1L, -1L);
         setDagStats(singleDag, null, null);
         if (useRevDag) {
             al = new RevAL(al);
@@ -250,10 +271,8 @@ public final class HapPairSampler {
         }
 
         List<HapPair> sampledHaps = new ArrayList<>(haps.size());
-        sampledHaps = Collections.synchronizedList(sampledHaps);
-        hapSample(singleDag, al, useRevDag, par.nsamples(), sampledHaps, gv,
-                par.nthreads());
-        return new ArrayList<>(sampledHaps);
+        hapSample(singleDag, al, useRevDag, par.nsamples(), sampledHaps, gv);
+        return sampledHaps;
     }
 
     private Markers hapsMarkers(List<HapPair> haps) {
@@ -265,47 +284,67 @@ public final class HapPairSampler {
         }
     }
 
-    private Dag singleDag(NuclearFamilies fam, HapPairs haps,
+    /*
+     * Returns an array of length 3 whose elements are the DAG models for
+     * single individuals, parent-offspring duos, and parent-offspring
+     * trios.  An element is null if there are no individuals of that type.
+     * Distinct models are built concurrently by the worker pool.
+     */
+    private Dag[] makeDags(NuclearFamilies fam, HapPairs haps,
             float[] weights) {
-        if (fam.nSingles()>0) {
-            return makeDag(haps, weights, par.buildwindow(), par.singlescale());
-        }
-        else {
-            return null;
-        }
-    }
+        boolean hasSingles = fam.nSingles()>0;
+        boolean hasDuos = fam.nDuos()>0;
+        boolean hasTrios = fam.nTrios()>0;
+        boolean buildDuoDag = hasDuos
+                && (hasSingles==false || par.singlescale()!=par.duoscale());
+        boolean buildTrioDag = hasTrios
+                && (hasSingles==false || par.singlescale()!=par.trioscale())
+                && (hasDuos==false || par.duoscale()!=par.trioscale());
 
-    private Dag duoDag(NuclearFamilies fam,
-            Dag singleDag, HapPairs haps, float[] weights) {
-        if (fam.nDuos() > 0) {
-            if (fam.nSingles()>0 && par.singlescale()==par.duoscale()) {
-                return singleDag;
-            }
-            else {
-                return makeDag(haps, weights, par.buildwindow(), par.duoscale());
+        final List<DagBuilder> builders = new ArrayList<>(3);
+        DagBuilder single = hasSingles ? new DagBuilder(haps, weights,
+                par.singlescale()) : null;
+        DagBuilder duo = buildDuoDag ? new DagBuilder(haps, weights,
+                par.duoscale()) : null;
+        DagBuilder trio = buildTrioDag ? new DagBuilder(haps, weights,
+                par.trioscale()) : null;
+        for (DagBuilder b : new DagBuilder[] {single, duo, trio}) {
+            if (b!=null) {
+                builders.add(b);
             }
         }
-        else {
-            return null;
-        }
-    }
+        long t0 = System.currentTimeMillis();
+        pool.run(new WorkerPool.Task() {
+            @Override
+            public void run(int worker, int index) {
+                builders.get(index).build();
+            }
+        }, builders.size());
+        runStats.buildMillis(System.currentTimeMillis() - t0);
+        runStats.setBuildMillis(millis(single), millis(duo), millis(trio));
 
-    private Dag trioDag(NuclearFamilies fam, Dag singleDag,
-            Dag duoDag, HapPairs haps, float[] weights) {
-        if (fam.nTrios() > 0) {
-            if (fam.nSingles()>0 && par.singlescale()==par.trioscale()) {
-                return singleDag;
+        Dag singleDag = hasSingles ? single.dag() : null;
+        Dag duoDag = null;
+        if (hasDuos) {
+            duoDag = buildDuoDag ? duo.dag() : singleDag;
+        }
+        Dag trioDag = null;
+        if (hasTrios) {
+            if (buildTrioDag) {
+                trioDag = trio.dag();
             }
-            else if (fam.nDuos()>0 && par.duoscale()==par.trioscale()) {
-                return duoDag;
+            else if (hasSingles && par.singlescale()==par.trioscale()) {
+                trioDag = singleDag;
             }
             else {
-                return makeDag(haps, weights, par.buildwindow(), par.trioscale());
+                trioDag = duoDag;
             }
         }
-        else {
-            return null;
-        }
+        return new Dag[] {singleDag, duoDag, trioDag};
+    }
+
+    private static long millis(DagBuilder builder) {
+        return builder==null ? -1L : builder.millis();
     }
 
     private void setDagStats(Dag singleDag, Dag duoDag,
@@ -315,173 +354,236 @@ public final class HapPairSampler {
         runStats.setTrioDagStats(trioDag);
     }
 
-    @SuppressWarnings({"BroadCatchBlock", "TooBroadCatch"})
-    private void singleSample(NuclearFamilies fam, Dag dag, GL gl,
-            boolean markersAreReversed, int nSamples, List<HapPair> sampledHaps,
-            int nThreads) {
+    private void singleSample(final NuclearFamilies fam, Dag dag, GL gl,
+            boolean markersAreReversed, int nSamples, List<HapPair> sampledHaps) {
         if (fam.nSingles() > 0) {
             long t0 = System.currentTimeMillis();
             Random rand = new Random(par.seed());
-            final BlockingQueue<Integer> qIn = new ArrayBlockingQueue<>(3*nThreads);
-            ExecutorService es = Executors.newFixedThreadPool(nThreads);
-            for (int j=0; j<nThreads; ++j) {
-                SingleBaum sb = new SingleBaum(dag, gl, rand.nextLong(), nSamples);
-                es.submit(new ProduceSingleSamples(markersAreReversed, sb, qIn,
-                        sampledHaps));
+            final ProduceSingleSamples[] samplers
+                    = new ProduceSingleSamples[pool.nThreads()];
+            for (int j=0; j<samplers.length; ++j) {
+                SingleBaum sb = new SingleBaum(dag, gl, rand.nextLong(),
+                        nSamples);
+                samplers[j] = new ProduceSingleSamples(markersAreReversed, sb);
             }
-            try {
-                for (int j=0, n=fam.nSingles(); j<n; ++j) {
-                    qIn.put(fam.single(j));
+            final List<List<HapPair>> results = resultLists(fam.nSingles());
+            pool.run(new WorkerPool.Task() {
+                @Override
+                public void run(int worker, int index) {
+                    int single = fam.single(index);
+                    results.set(index, samplers[worker].sample(single));
                 }
-                for (int j=0; j<nThreads; ++j) {
-                    qIn.put(ProduceSingleSamples.POISON);
-                }
-                es.shutdown();
-                es.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
-            }
-            catch (Throwable e) {
-                Utilities.exit("\"HapSampler: ERROR\"", e);
-            }
+            }, fam.nSingles());
+            addAll(results, sampledHaps);
             runStats.singleSampleMillis(System.currentTimeMillis() - t0);
         }
     }
 
-    private void duoSample(NuclearFamilies fam, Dag dag,
-            GL gl, boolean markersAreReversed,
-            int nSamples, List<HapPair> sampledHaps) {
-        if (fam.nDuos() > 0) {
-            long t0 = System.currentTimeMillis();
-            DuoBaum duoBaum = new DuoBaum(dag, gl, par.seed(), nSamples);
-            for (int j=0, n=fam.nDuos(); j<n; ++j) {
-                List<HapPair> newHaps = duoBaum.sample(
-                        fam.duoParent(j), fam.duoOffspring(j));
-                storeHaps(sampledHaps, markersAreReversed, newHaps);
-            }
-            runStats.duoSampleMillis(System.currentTimeMillis() - t0);
-        }
-    }
-
-    private void trioSample(NuclearFamilies fam, Dag dag,
-            GL gl, boolean markersAreReversed,
-            int nSamples, List<HapPair> sampledHaps) {
-        if (fam.nTrios() > 0) {
-            long t0 = System.currentTimeMillis();
-            TrioBaum trioBaum = new TrioBaum(dag, gl, par.seed(), nSamples);
-            for (int j=0, n=fam.nTrios(); j<n; ++j) {
-                List<HapPair> newHaps = trioBaum.sample(
-                        fam.trioFather(j), fam.trioMother(j), fam.trioOffspring(j));
-                storeHaps(sampledHaps, markersAreReversed, newHaps);
-            }
-            runStats.trioSampleMillis(System.currentTimeMillis() - t0);
-        }
-    }
-
-    @SuppressWarnings({"BroadCatchBlock", "TooBroadCatch"})
     private void hapSample(Dag dag, AL al, boolean markersAreReversed,
-            int nCopies, List<HapPair> sampledHaps, GenotypeValues gv,
-            int nThreads) {
+            int nCopies, List<HapPair> sampledHaps, GenotypeValues gv) {
         long t0 = System.currentTimeMillis();
+        Dag baumDag = baumDag(dag);
+        AL baumAL = (baumDag instanceof ChainDag)
+                ? ((ChainDag) baumDag).al(al, pool) : al;
         Random rand = new Random(par.seed());
-        final BlockingQueue<Integer> qIn = new ArrayBlockingQueue<>(3*nThreads);
-        ExecutorService es = Executors.newFixedThreadPool(nThreads);
-        for (int j=0; j<nThreads; ++j) {
-            HapBaum hb = new HapBaum(dag, al, rand.nextLong(),
+        final ProduceHapSamples[] samplers
+                = new ProduceHapSamples[pool.nThreads()];
+        for (int j=0; j<samplers.length; ++j) {
+            HapBaum hb = new HapBaum(baumDag, baumAL, rand.nextLong(),
                     nCopies);
-            es.submit(new ProduceHapSamples(markersAreReversed, hb, qIn,
-                    sampledHaps, gv));
+            samplers[j] = new ProduceHapSamples(markersAreReversed, hb, gv);
         }
-        try {
-            for (int j=0, n=gv.nSamples(); j<n; ++j) {
-                qIn.put(j);
+        final List<List<HapPair>> results = resultLists(gv.nSamples());
+        pool.run(new WorkerPool.Task() {
+            @Override
+            public void run(int worker, int index) {
+                results.set(index, samplers[worker].sample(index));
             }
-            for (int j=0; j<nThreads; ++j) {
-                qIn.put(ProduceSingleSamples.POISON);
-            }
-            es.shutdown();
-            es.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
-        }
-        catch (Throwable e) {
-            Utilities.exit("\"HapSampler: ERROR\"", e);
-        }
+        }, gv.nSamples());
+        addAll(results, sampledHaps);
         runStats.singleSampleMillis(System.currentTimeMillis() - t0);
     }
 
-    @SuppressWarnings({"BroadCatchBlock", "TooBroadCatch"})
-    private void singleSample(NuclearFamilies fam, Dag dag,
+    private void singleSample(final NuclearFamilies fam, Dag dag,
             GL gl, boolean markersAreReversed, int nCopies,
-            List<HapPair> sampledHaps, GenotypeValues gv,
-            int nThreads) {
+            List<HapPair> sampledHaps, GenotypeValues gv) {
         if (fam.nSingles() > 0) {
             long t0 = System.currentTimeMillis();
             Random rand = new Random(par.seed());
-            final BlockingQueue<Integer> qIn = new ArrayBlockingQueue<>(3*nThreads);
-            ExecutorService es = Executors.newFixedThreadPool(nThreads);
-            for (int j=0; j<nThreads; ++j) {
-                SingleBaum sb = new SingleBaum(dag, gl, rand.nextLong(), nCopies);
-                es.submit(new ProduceSingleSamples(markersAreReversed, sb, qIn,
-                        sampledHaps, gv));
+            final ProduceSingleSamples[] samplers
+                    = new ProduceSingleSamples[pool.nThreads()];
+            for (int j=0; j<samplers.length; ++j) {
+                SingleBaum sb = new SingleBaum(dag, gl, rand.nextLong(),
+                        nCopies);
+                samplers[j] = new ProduceSingleSamples(markersAreReversed, sb,
+                        gv);
             }
-            try {
-                for (int j=0, n=fam.nSingles(); j<n; ++j) {
-                    qIn.put(fam.single(j));
-                }
-                for (int j=0; j<nThreads; ++j) {
-                    qIn.put(ProduceSingleSamples.POISON);
+            final List<List<HapPair>> results = resultLists(fam.nSingles());
+            pool.run(new WorkerPool.Task() {
+                @Override
+                public void run(int worker, int index) {
+                    int single = fam.single(index);
+                    results.set(index, samplers[worker].sample(single));
                 }
-                es.shutdown();
-                es.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
-            }
-            catch (Throwable e) {
-                Utilities.exit("\"HapSampler: ERROR\"", e);
-            }
+            }, fam.nSingles());
+            addAll(results, sampledHaps);
             runStats.singleSampleMillis(System.currentTimeMillis() - t0);
         }
     }
 
-    private void duoSample(NuclearFamilies fam, Dag dag,
-            GL curEm, boolean markersAreReversed, int nCopies,
-            List<HapPair> sampledHaps, GenotypeValues gv) {
+    /*
+     * Samples haplotype pairs for each parent-offspring duo.  If gv!=null,
+     * the posterior genotype probabilities are added to gv.
+     */
+    private void duoSample(NuclearFamilies fam, Dag dag, GL gl,
+            boolean markersAreReversed, int nCopies, List<HapPair> sampledHaps,
+            GenotypeValues gv) {
         if (fam.nDuos() > 0) {
             long t0 = System.currentTimeMillis();
-            int gprobsLength = curEm.markers().sumPhasedGenotypes();
-            double[] gprobsA = new double[gprobsLength];
-            double[] gprobsB = new double[gprobsLength];
-            DuoBaum duoBaum = new DuoBaum(dag, curEm, par.seed(), nCopies);
-            for (int j=0, n=fam.nDuos(); j<n; ++j) {
-                List<HapPair> newHaps = duoBaum.sample(
-                        fam.duoParent(j), fam.duoOffspring(j), gprobsA, gprobsB);
-                storeHaps(sampledHaps, markersAreReversed, newHaps);
-                gv.add(fam.duoParent(j), gprobsA);
-                gv.add(fam.duoOffspring(j), gprobsB);
+            long[] seeds = familySeeds(fam.nDuos());
+            final DuoSampler[] samplers = new DuoSampler[pool.nThreads()];
+            for (int j=0; j<samplers.length; ++j) {
+                DuoBaum baum = new DuoBaum(dag, gl, par.seed(), nCopies);
+                samplers[j] = new DuoSampler(fam, baum, markersAreReversed,
+                        seeds, gv);
             }
+            final List<List<HapPair>> results = resultLists(fam.nDuos());
+            pool.run(new WorkerPool.Task() {
+                @Override
+                public void run(int worker, int index) {
+                    results.set(index, samplers[worker].sample(index));
+                }
+            }, fam.nDuos());
+            addAll(results, sampledHaps);
             runStats.duoSampleMillis(System.currentTimeMillis() - t0);
         }
     }
 
-    private void trioSample(NuclearFamilies fam, Dag dag,
-            GL curEm, boolean markersAreReversed, int nCopies,
-            List<HapPair> sampledHaps, GenotypeValues gv) {
+    /*
+     * Samples haplotype pairs for each parent-offspring trio.  If gv!=null,
+     * the posterior genotype probabilities are added to gv.
+     */
+    private void trioSample(NuclearFamilies fam, Dag dag, GL gl,
+            boolean markersAreReversed, int nCopies, List<HapPair> sampledHaps,
+            GenotypeValues gv) {
         if (fam.nTrios() > 0) {
             long t0 = System.currentTimeMillis();
-            int gprobsLength = curEm.markers().sumPhasedGenotypes();
-            double[] gprobsA = new double[gprobsLength];
-            double[] gprobsB = new double[gprobsLength];
-            double[] gprobsC = new double[gprobsLength];
-            TrioBaum trioBaum = new TrioBaum(dag, curEm, par.seed(), nCopies);
-            for (int j=0, n=fam.nTrios(); j<n; ++j) {
-                List<HapPair> newHaps = trioBaum.sample(
-                        fam.trioFather(j), fam.trioMother(j), fam.trioOffspring(j),
-                        gprobsA, gprobsB, gprobsC);
-                storeHaps(sampledHaps, markersAreReversed, newHaps);
-                gv.add(fam.trioFather(j), gprobsA);
-                gv.add(fam.trioMother(j), gprobsB);
-                gv.add(fam.trioOffspring(j), gprobsC);
+            long[] seeds = familySeeds(fam.nTrios());
+            final TrioSampler[] samplers = new TrioSampler[pool.nThreads()];
+            for (int j=0; j<samplers.length; ++j) {
+                TrioBaum baum = new TrioBaum(dag, gl, par.seed(), nCopies);
+                samplers[j] = new TrioSampler(fam, baum, markersAreReversed,
+                        seeds, gv);
             }
+            final List<List<HapPair>> results = resultLists(fam.nTrios());
+            pool.run(new WorkerPool.Task() {
+                @Override
+                public void run(int worker, int index) {
+                    results.set(index, samplers[worker].sample(index));
+                }
+            }, fam.nTrios());
+            addAll(results, sampledHaps);
             runStats.trioSampleMillis(System.currentTimeMillis() - t0);
         }
     }
 
-    private void storeHaps(List<HapPair> sampledHaps,
+    /*
+     * Returns an array of random seeds with one seed for each family.
+     * The sampled haplotype pairs for a family depend only on the family's
+     * seed, so that results do not depend on the number of threads.
+     */
+    private long[] familySeeds(int nFamilies) {
+        Random rand = new Random(par.seed());
+        long[] seeds = new long[nFamilies];
+        for (int j=0; j<seeds.length; ++j) {
+            seeds[j] = rand.nextLong();
+        }
+        return seeds;
+    }
+
+    /*
+     * Returns a list of the specified size whose elements will store the
+     * haplotype pairs sampled for each index.  Each element is set by the
+     * one worker that processes the index, so no lock is required.
+     */
+    private static List<List<HapPair>> resultLists(int size) {
+        List<HapPair> empty = Collections.emptyList();
+        return new ArrayList<>(Collections.nCopies(size, empty));
+    }
+
+    /*
+     * Appends the sampled haplotype pairs to sampledHaps in index order
+     * so that the order does not depend on thread timing.
+     */
+    private static void addAll(List<List<HapPair>> results,
+            List<HapPair> sampledHaps) {
+        for (List<HapPair> haps : results) {
+            sampledHaps.addAll(haps);
+        }
+    }
+
+    /*
+     * Returns a compressed view of the specified DAG in which runs of
+     * single-successor levels are merged, or returns the specified DAG
+     * if the compressed DAG does not have fewer levels.
+     */
+    private static Dag baumDag(Dag dag) {
+        ChainDag chain = new ChainDag(dag);
+        return chain.nMarkers() < dag.nMarkers() ? chain : dag;
+    }
+
+    /*
+     * Returns the DAGs that will be used for sampling.  A compressed view
+     * is constructed once for each distinct non-null element of dags.
+     */
+    private static Dag[] baumDags(Dag[] dags) {
+        Dag[] baumDags = new Dag[dags.length];
+        for (int j=0; j<dags.length; ++j) {
+            int k = firstIndex(dags, j);
+            if (k < j) {
+                baumDags[j] = baumDags[k];
+            }
+            else if (dags[j] != null) {
+                baumDags[j] = baumDag(dags[j]);
+            }
+        }
+        return baumDags;
+    }
+
+    /*
+     * Returns the emission probabilities for the DAGs that will be used
+     * for sampling.  The emission probabilities for a compressed view are
+     * constructed once for each distinct non-null element of baumDags.
+     */
+    private GL[] baumGLs(Dag[] baumDags, GL gl) {
+        GL[] baumGLs = new GL[baumDags.length];
+        for (int j=0; j<baumDags.length; ++j) {
+            int k = firstIndex(baumDags, j);
+            if (k < j) {
+                baumGLs[j] = baumGLs[k];
+            }
+            else if (baumDags[j] instanceof ChainDag) {
+                baumGLs[j] = ((ChainDag) baumDags[j]).gl(gl, pool);
+            }
+            else {
+                baumGLs[j] = gl;
+            }
+        }
+        return baumGLs;
+    }
+
+    /*
+     * Returns the smallest index k such that oa[k]==oa[j].
+     */
+    private static int firstIndex(Object[] oa, int j) {
+        int k = 0;
+        while (oa[k] != oa[j]) {
+            ++k;
+        }
+        return k;
+    }
+
+    private static void storeHaps(List<HapPair> sampledHaps,
             boolean reverseDag, List<HapPair> newHaps) {
         if (reverseDag) {
             for (HapPair hp : newHaps) {
@@ -493,10 +595,134 @@ public final class HapPairSampler {
         }
     }
 
-    private Dag makeDag(HapPairs haps, float[] weights, int window, float scale) {
-        long t0 = System.currentTimeMillis();
-        Dag dag = MergeableDag.dag(haps, weights, window, scale);
-        runStats.buildMillis(System.currentTimeMillis()-t0);
-        return dag;
+    /*
+     * Builds a DAG model and records the time required to build the model.
+     */
+    private final class DagBuilder {
+
+        private final HapPairs haps;
+        private final float[] weights;
+        private final float scale;
+        private Dag dag = null;
+        private long millis = 0L;
+
+        DagBuilder(HapPairs haps, float[] weights, float scale) {
+            this.haps = haps;
+            this.weights = weights;
+            this.scale = scale;
+        }
+
+        Dag build() {
+            long t0 = System.currentTimeMillis();
+            dag = MergeableDag.dag(haps, weights, par.buildwindow(), scale,
+                    forkJoinPool);
+            millis = System.currentTimeMillis() - t0;
+            return dag;
+        }
+
+        Dag dag() {
+            return dag;
+        }
+
+        long millis() {
+            return millis;
+        }
+    }
+
+    /*
+     * Samples haplotype pairs for the parent-offspring duos whose indices
+     * are specified by a worker pool.  Instances are not thread-safe.
+     */
+    private static final class DuoSampler {
+
+        private final NuclearFamilies fam;
+        private final DuoBaum baum;
+        private final ChainExpander expander;
+        private final boolean markersAreReversed;
+        private final long[] seeds;
+        private final GenotypeValues gv;
+        private final double[] gprobsA;
+        private final double[] gprobsB;
+
+        DuoSampler(NuclearFamilies fam, DuoBaum baum,
+                boolean markersAreReversed, long[] seeds,
+                GenotypeValues gv) {
+            int gprobsLength = baum.gl().markers().sumPhasedGenotypes();
+            this.fam = fam;
+            this.baum = baum;
+            this.expander = new ChainExpander(baum.dag());
+            this.markersAreReversed = markersAreReversed;
+            this.seeds = seeds;
+            this.gv = gv;
+            this.gprobsA = gv==null ? null : new double[gprobsLength];
+            this.gprobsB = gv==null ? null : new double[gprobsLength];
+        }
+
+        List<HapPair> sample(int j) {
+            int parent = fam.duoParent(j);
+            int offspring = fam.duoOffspring(j);
+            baum.setSeed(seeds[j]);
+            List<HapPair> newHaps = gv==null
+                    ? baum.sample(parent, offspring)
+                    : baum.sample(parent, offspring, gprobsA, gprobsB);
+            List<HapPair> haps = new ArrayList<>(newHaps.size());
+            storeHaps(haps, markersAreReversed, expander.expand(newHaps));
+            if (gv != null) {
+                gv.add(parent, expander.expandGtProbs(gprobsA));
+                gv.add(offspring, expander.expandGtProbs(gprobsB));
+            }
+            return haps;
+        }
+    }
+
+    /*
+     * Samples haplotype pairs for the parent-offspring trios whose indices
+     * are specified by a worker pool.  Instances are not thread-safe.
+     */
+    private static final class TrioSampler {
+
+        private final NuclearFamilies fam;
+        private final TrioBaum baum;
+        private final ChainExpander expander;
+        private final boolean markersAreReversed;
+        private final long[] seeds;
+        private final GenotypeValues gv;
+        private final double[] gprobsA;
+        private final double[] gprobsB;
+        private final double[] gprobsC;
+
+        TrioSampler(NuclearFamilies fam, TrioBaum baum,
+                boolean markersAreReversed, long[] seeds,
+                GenotypeValues gv) {
+            int gprobsLength = baum.gl().markers().sumPhasedGenotypes();
+            this.fam = fam;
+            this.baum = baum;
+            this.expander = new ChainExpander(baum.dag());
+            this.markersAreReversed = markersAreReversed;
+            this.seeds = seeds;
+            this.gv = gv;
+            this.gprobsA = gv==null ? null : new double[gprobsLength];
+            this.gprobsB = gv==null ? null : new double[gprobsLength];
+            this.gprobsC = gv==null ? null : new double[gprobsLength];
+        }
+
+        List<HapPair> sample(int j) {
+            int father = fam.trioFather(j);
+            int mother = fam.trioMother(j);
+            int offspring = fam.trioOffspring(j);
+            baum.setSeed(seeds[j]);
+            List<HapPair> newHaps = gv==null
+                    ? baum.sample(father, mother, offspring)
+                    : baum.sample(father, mother, offspring,
+                            gprobsA, gprobsB, gprobsC);
+            List<HapPair> haps = new ArrayList<>(newHaps.size());
+            storeHaps(haps, markersAreReversed, expander.expand(newHaps));
+            if (gv != null) {
+                gv.add(father, expander.expandGtProbs(gprobsA));
+                gv.add(mother, expander.expandGtProbs(gprobsB));
+                gv.add(offspring, expander.expandGtProbs(gprobsC));
+            }
+            return haps;
+        }
     }
 }
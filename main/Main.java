@@ -25,6 +25,7 @@ import blbutil.Filter;
 import blbutil.FilterUtils;
 import blbutil.IntPair;
 import blbutil.Utilities;
+import blbutil.WorkerPool;
 import haplotype.HapPair;
 import haplotype.SampleHapPairs;
 import haplotype.SampleHapPairsSplicer;
@@ -36,6 +37,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import vcf.AllData;
 import vcf.Data;
 import vcf.GL;
@@ -67,6 +69,8 @@ public class Main {
     private final Data data;
     private final RunStats runStats;
     private final WindowWriter windowOut;
+    private final WorkerPool pool;
+    private final ForkJoinPool forkJoinPool;
 
     /**
      * Entry point to Beagle program.  See .pdf documentation for
@@ -90,27 +94,39 @@ public class Main {
         Data data = (par.ref()==null) ? nonRefData(par) : allData(par);
         GeneticMap genMap = geneticMap(par);
         WindowWriter windowOut = new WindowWriter(data.nonRefSamples(), par.out());
+        WorkerPool pool = new WorkerPool(par.nthreads());
+        // nested parallel work inside WorkerPool tasks uses this pool
+        ForkJoinPool forkJoinPool = new ForkJoinPool(par.nthreads());
 
-        Main main = new Main(par, data, genMap, windowOut, runStats);
+        Main main = new Main(par, data, genMap, windowOut, runStats, pool,
+                forkJoinPool);
         main.phaseData();
 
+        pool.shutdown();
+        forkJoinPool.shutdown();
         data.close();
         windowOut.close();
         closeLogger(par.out(), runStats);
+        runStats.workerPoolStats(pool);
         runStats.printSummaryAndClose(data.cumMarkerCnt());
     }
 
     private Main(Parameters par, Data data, GeneticMap genMap,
-            WindowWriter windowWriter, RunStats runStats) {
+            WindowWriter windowWriter, RunStats runStats, WorkerPool pool,
+            ForkJoinPool forkJoinPool) {
         assert par!=null;
         assert data!=null;
         assert windowWriter!=null;
         assert runStats!=null;
+        assert pool!=null;
+        assert forkJoinPool!=null;
         this.par = par;
         this.genMap = genMap;
         this.data = data;
         this.runStats = runStats;
         this.windowOut = windowWriter;
+        this.pool = pool;
+        this.forkJoinPool = forkJoinPool;
     }
 
     /*
@@ -124,7 +140,7 @@ public class Main {
         SampleHapPairs prevNonRefHaps = null;
         Random random = new Random(par.seed());
         MainHelper mh = new MainHelper(par, genMap, fam, weights, runStats,
-                random);
+                random, pool, forkJoinPool);
         while (data.canAdvanceWindow()) {
             advanceWindow();
             int lastSplice = data.overlap()/2;
@@ -263,17 +279,18 @@ public class Main {
         if (par.gt()!=null) {
             assert par.gl()==null && par.gtgl()==null;
             return NonRefData.gt(par.gt(), sampleFilter, markerFilter,
-                    chromInterval, par.ped(), par.usephase());
+                    chromInterval, par.ped(), par.usephase(), lookAhead(par));
         }
         else if (par.gl()!=null) {
             assert par.gt()==null && par.gtgl()==null;
             return NonRefData.gl(par.gl(), sampleFilter, markerFilter,
-                    chromInterval, par.ped(), par.maxlr());
+                    chromInterval, par.ped(), par.maxlr(), lookAhead(par));
         }
         else {
             assert par.gt()==null && par.gl()==null;
             return NonRefData.gtgl(par.gtgl(), par.ped(), par.usephase(),
-                    par.maxlr(), sampleFilter, markerFilter, chromInterval);
+                    par.maxlr(), sampleFilter, markerFilter, chromInterval,
+                    lookAhead(par));
         }
     }
 
@@ -284,22 +301,32 @@ public class Main {
         if (par.gt()!=null) {
             assert par.gl()==null && par.gtgl()==null;
             return AllData.gt(par.ref(), par.gt(), sampleFilter, markerFilter,
-                    chromInterval, par.ped(), par.usephase(), par.impute());
+                    chromInterval, par.ped(), par.usephase(), par.impute(),
+                    lookAhead(par));
         }
         else if (par.gl()!=null) {
             assert par.gt()==null && par.gtgl()==null;
             return AllData.gl(par.ref(), par.gl(), sampleFilter,
                     markerFilter, chromInterval, par.ped(), par.maxlr(),
-                    par.impute());
+                    par.impute(), lookAhead(par));
         }
         else {
             assert par.gt()==null && par.gl()==null && par.gtgl()!=null;
             return AllData.gtgl(par.ref(), par.gtgl(), sampleFilter,
                     markerFilter, chromInterval, par.ped(), par.usephase(),
-                    par.maxlr(), par.impute());
+                    par.maxlr(), par.impute(), lookAhead(par));
         }
     }
 
+    /*
+     * Returns the number of VCF records that are read ahead of the
+     * marker window: the prefetch parameter times the window parameter.
+     */
+    private static int lookAhead(Parameters par) {
+        long lookAhead = (long) par.prefetch()*par.window();
+        return (int) Math.min(lookAhead, Integer.MAX_VALUE);
+    }
+
     private static GeneticMap geneticMap(Parameters par) {
         if (par.map()==null) {
             return null;
@@ -22,6 +22,7 @@ import beagleutil.Samples;
 import blbutil.Const;
 import blbutil.IntPair;
 import blbutil.Utilities;
+import blbutil.WorkerPool;
 import dag.Dag;
 import dag.MergeableDag;
 import haplotype.BasicHapPairs;
@@ -40,6 +41,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 import vcf.AL;
 import vcf.Data;
 import vcf.GL;
@@ -61,17 +63,23 @@ class MainHelper {
     private final NuclearFamilies fam;
     private final Weights weights;
     private final RunStats runStats;
+    private final WorkerPool pool;
+    private final ForkJoinPool forkJoinPool;
 
     MainHelper(Parameters par,  GeneticMap genMap, NuclearFamilies fam,
-            Weights weights, RunStats runStats, Random random) {
+            Weights weights, RunStats runStats, Random random,
+            WorkerPool pool, ForkJoinPool forkJoinPool) {
         if (runStats==null) {
             throw new NullPointerException("runStats==null");
         }
         this.par = par;
-        this.hapSampler = new HapPairSampler(par, runStats);
+        this.hapSampler = new HapPairSampler(par, runStats, pool,
+                forkJoinPool);
         this.fam = fam;
         this.weights = weights;
         this.runStats = runStats;
+        this.pool = pool;
+        this.forkJoinPool = forkJoinPool;
     }
 
     SampleHapPairs sample(Data data, GenotypeValues restrictedGV) {
@@ -146,7 +154,7 @@ class MainHelper {
             GL ibdGL = new NoPhaseGL(gl);
             Map<IntPair, List<IbdSegment>> ibdMap;
 
-            ibdMap = hapIbd.run(ibdGL, dag, nextHaps, par.nthreads());
+            ibdMap = hapIbd.run(ibdGL, dag, nextHaps, pool);
             long millis = (System.nanoTime() - time)/Const.mega;
             runStats.ibdMillis(millis);
             runStats.printRefinedIbdUpdate(scale, dag, millis);
@@ -177,7 +185,8 @@ class MainHelper {
             System.arraycopy(weights, 0, combWeights, nRefHaps, weights.length);
         }
         long t0 = System.currentTimeMillis();
-        Dag ibdDag = MergeableDag.dag(dagHaps, combWeights, buildWindow, ibdScale);
+        Dag ibdDag = MergeableDag.dag(dagHaps, combWeights, buildWindow, ibdScale,
+                forkJoinPool);
         runStats.buildMillis(System.currentTimeMillis()-t0);
         runStats.setSingleDagStats(ibdDag);
         return ibdDag;
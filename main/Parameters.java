@@ -72,6 +72,7 @@ public final class Parameters {
     // expert parameters
     private final int nsamples;
     private final int buildwindow;
+    private final int prefetch;
 
     /**
      * Constructs a new {@code Parameters} instance.
@@ -135,6 +136,7 @@ public final class Parameters {
         // expert parameters
         nsamples = Validate.intArg("nsamples", argsMap, false, 4, 1, IMAX);
         buildwindow = Validate.intArg("buildwindow", argsMap, false, 1200, 1, IMAX);
+        prefetch = Validate.intArg("prefetch", argsMap, false, 1, 0, IMAX);
 
         Validate.confirmEmptyMap(argsMap);
     }
@@ -159,7 +161,7 @@ public final class Parameters {
                 + "  gt=<VCF file: use GT field>                        (optional)" + nl
                 + "  gl=<VCF file: use GL/PL field>                     (optional)" + nl
                 + "  gtgl=<VCF file: use GT and GL/PL fields>           (optional)" + nl
-                + "  ref=<VCF file with phased genotypes>               (optional)" + nl
+                + "  ref=<VCF or .bref file with phased genotypes>      (optional)" + nl
                 + "  out=<output file prefix>                           (required)" + nl
                 + "  excludesamples=<file with 1 sample ID per line>    (optional)" + nl
                 + "  excludemarkers=<file with 1 marker ID per line>    (optional)" + nl
@@ -487,4 +489,12 @@ public final class Parameters {
     public int buildwindow() {
         return buildwindow;
     }
+
+    /**
+     * Returns the prefetch parameter.
+     * @return the prefetch parameter.
+     */
+    public int prefetch() {
+        return prefetch;
+    }
 }
@@ -24,6 +24,7 @@ import vcf.Data;
 import blbutil.Const;
 import blbutil.FileUtil;
 import blbutil.Utilities;
+import blbutil.WorkerPool;
 import dag.Dag;
 import dag.DagUtils;
 import java.io.File;
@@ -50,6 +51,9 @@ public class RunStats {
 
     private long buildMillis = 0;
     private long lastBuildMillis = 0;
+    private long singleBuildMillis = -1;
+    private long duoBuildMillis = -1;
+    private long trioBuildMillis = -1;
 
     private long singleSampleMillis = 0;
     private long duoSampleMillis = 0;
@@ -58,6 +62,11 @@ public class RunStats {
 
     private long totalIbdMillis = 0;
 
+    private int poolThreads = 0;
+    private int poolRuns = 0;
+    private long poolRunNanos = 0;
+    private long poolBusyNanos = 0;
+
     private String singleDagStats = null;
     private String duoDagStats = null;
     private String trioDagStats = null;
@@ -110,6 +119,16 @@ public class RunStats {
                 Utilities.printElapsedTime(    "Total time for IBD detection:  ",
                         totalIbdMillis));
         }
+        if (poolRuns > 0) {
+            double utilization = (100.0*poolBusyNanos)
+                    / ((double) poolThreads*poolRunNanos);
+            Utilities.duoPrint(log,
+                Utilities.printElapsedTime(    "Total time for worker tasks:   ",
+                        poolRunNanos/Const.mega));
+            Utilities.duoPrint(log,            "Worker tasks:                  "
+                    + poolRuns + " (" + df2.format(utilization)
+                    + "% thread utilization)" + Const.nl);
+        }
         Utilities.duoPrint(log,
                 Utilities.printElapsedTime(    "Total run time:                ",
                         totalTime));
@@ -129,6 +148,26 @@ public class RunStats {
         buildMillis += milliseconds;
     }
 
+    /**
+     * Stores the times for building the DAG models used to sample
+     * single individuals, parent-offspring duos, and parent-offspring
+     * trios.  A negative time indicates that the corresponding model
+     * was not built (either because there are no individuals of the
+     * corresponding type, or because the model is shared with another
+     * type of individual).
+     * @param singleMillis the milliseconds required to build the DAG model
+     * for single individuals.
+     * @param duoMillis the milliseconds required to build the DAG model
+     * for parent-offspring duos.
+     * @param trioMillis the milliseconds required to build the DAG model
+     * for parent-offspring trios.
+     */
+    void setBuildMillis(long singleMillis, long duoMillis, long trioMillis) {
+        singleBuildMillis = singleMillis;
+        duoBuildMillis = duoMillis;
+        trioBuildMillis = trioMillis;
+    }
+
     /**
      * Stores the time for sampling new haplotypes for single individuals
      * and increases the cumulative sampling time by this amount.
@@ -162,6 +201,20 @@ public class RunStats {
         totalSampleMillis += milliseconds;
     }
 
+    /**
+     * Stores the number of tasks run by the specified worker pool, the
+     * elapsed time of the tasks, and the time that the pool's workers
+     * were busy.
+     * @param pool the worker threads used to sample haplotypes and
+     * detect identity-by-descent.
+     */
+    void workerPoolStats(WorkerPool pool) {
+        poolThreads = pool.nThreads();
+        poolRuns = pool.nRuns();
+        poolRunNanos = pool.runNanos();
+        poolBusyNanos = pool.busyNanos();
+    }
+
    /**
      * Increases the cumulative time for detecting identity-by-descent
      * by the specified amount.
@@ -289,6 +342,23 @@ public class RunStats {
                 + " Iteration=" + iter + Const.nl);
         Utilities.duoPrint(log,
                     Utilities.printElapsedTime("Time for building model:         ", buildTime ));
+        int nBuilt = (singleBuildMillis>=0 ? 1 : 0) + (duoBuildMillis>=0 ? 1 : 0)
+                + (trioBuildMillis>=0 ? 1 : 0);
+        if (nBuilt > 1) {
+            if (singleBuildMillis >= 0) {
+                Utilities.duoPrint(log,
+                        Utilities.printElapsedTime("Time for building (singles):     ", singleBuildMillis));
+            }
+            if (duoBuildMillis >= 0) {
+                Utilities.duoPrint(log,
+                        Utilities.printElapsedTime("Time for building (duos):        ", duoBuildMillis));
+            }
+            if (trioBuildMillis >= 0) {
+                Utilities.duoPrint(log,
+                        Utilities.printElapsedTime("Time for building (trios):       ", trioBuildMillis));
+            }
+        }
+        setBuildMillis(-1L, -1L, -1L);
         if (singleDagStats != null) {
             Utilities.duoPrint(log,
                     Utilities.printElapsedTime("Time for sampling (singles):     ", singleSampleMillis));
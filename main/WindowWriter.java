@@ -27,30 +27,58 @@ import ibd.IbdSegment;
 import java.io.File;
 import java.io.PrintWriter;
 import java.text.DecimalFormat;
+import java.util.ArrayDeque;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import vcf.VcfWriter;
 
 /**
- * Class for writing Beagle VCF and IBD output data in overlapping
+ * <p>Class for writing Beagle VCF and IBD output data in overlapping
  * marker windows.
+ * </p>
+ * <p>Windows of data are written in the order in which they are submitted
+ * by a dedicated VCF output thread and a dedicated IBD output thread,
+ * so that the caller can begin analyzing the next marker window while
+ * the current marker window is written.  At most
+ * {@code MAX_PENDING_WINDOWS} windows may be waiting to be written.
+ * The output files remain open until {@code this.close()} is invoked.
+ * </p>
+ * <p>Instances of class {@code WindowWriter} are not thread-safe.
+ * </p>
  *
  * @author Brian L. Browning {@code <browning@uw.edu>}
  */
 public class WindowWriter {
 
+    /**
+     * The maximum number of submitted windows that may be waiting to be
+     * written.
+     */
+    public static final int MAX_PENDING_WINDOWS = 2;
+
     private static final DecimalFormat df2 = new DecimalFormat("#.##");
 
     private boolean isClosed = false;
-    private boolean appendIbd = false;
 
     private final Samples samples;
     private final File vcfOutFile;
     private final File ibdOutFile;
     private final File hbdOutFile;
     private final PrintWriter vcfOut;
+    private final ExecutorService vcfExecutor;
+    private final ExecutorService ibdExecutor;
+    private final ArrayDeque<Future<?>> pending = new ArrayDeque<>();
+
+    // accessed only by the IBD output thread until close() is invoked
+    private PrintWriter ibdOut = null;
+    private PrintWriter hbdOut = null;
     private final Map<IntPair, IbdSegment> ibdBuffer = new HashMap<>();
 
     /**
@@ -82,6 +110,10 @@ public class WindowWriter {
         boolean printGL = false;
         VcfWriter.writeMetaLines(samples.ids(), Main.version,
                 printGT, printGP, printGL, vcfOut);
+        this.vcfExecutor = Executors.newSingleThreadExecutor(
+                new DaemonThreadFactory());
+        this.ibdExecutor = Executors.newSingleThreadExecutor(
+                new DaemonThreadFactory());
     }
 
     /**
@@ -105,13 +137,33 @@ public class WindowWriter {
     }
 
     /**
-     * Closes this {@code WindowWriter} for writing.  Any call to the
+     * Waits for all submitted windows to be written and closes this
+     * {@code WindowWriter} for writing.  Any call to the
      * {@code print()} after invoking {@code close()} will
      * throw an {@code IllegalStateException}.
+     *
+     * @throws RuntimeException if an unchecked exception was thrown
+     * while writing a submitted window.
      */
     public void close() {
-        vcfOut.close();
+        if (isClosed) {
+            return;
+        }
         isClosed = true;
+        try {
+            while (pending.isEmpty()==false) {
+                await(pending.poll());
+            }
+        }
+        finally {
+            vcfExecutor.shutdown();
+            ibdExecutor.shutdown();
+        }
+        vcfOut.close();
+        if (ibdOut!=null) {
+            ibdOut.close();
+            hbdOut.close();
+        }
     }
 
     /**
@@ -126,6 +178,13 @@ public class WindowWriter {
      * will be stored and will be merged with any corresponding
      * HBD and IBD segments in the next marker window.
      *
+     * <p>The data are written by background threads.  This method blocks
+     * only if {@code MAX_PENDING_WINDOWS} windows are waiting to be written.
+     * An unchecked exception thrown while writing a window is rethrown
+     * by a subsequent invocation of {@code print()} or {@code close()}.
+     * The specified data must not be modified after this method is invoked.
+     * </p>
+     *
      * <p>It is the the caller's responsibility to ensure that the ordered
      * haplotype pairs in the overlap between adjacent marker windows
      * are identical for each sample.
@@ -156,28 +215,75 @@ public class WindowWriter {
      * {@code lastSplice<0 || lastSplice>nextOverlap || nextOverlap>nextSplice
      *           || nextSplice>haps.nMarkers()}
      */
-    public void print(SampleHapPairs hapPairs,
-            GenotypeValues gv, Map<IntPair, List<IbdSegment>> ibdMap,
-		      int lastSplice, int nextOverlap, int nextSplice, boolean writeSNPs) {
+    public void print(final SampleHapPairs hapPairs,
+            final GenotypeValues gv, final Map<IntPair, List<IbdSegment>> ibdMap,
+            final int lastSplice, final int nextOverlap,
+            final int nextSplice, final boolean writeSNPs) {
         if (isClosed) {
             throw new IllegalStateException("isClosed()==true");
         }
         checkData(hapPairs, gv, lastSplice, nextOverlap, nextSplice);
 
+        pending.add(vcfExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                printVcf(hapPairs, gv, lastSplice, nextSplice, writeSNPs);
+            }
+        }));
+        if (ibdMap!=null) {
+            pending.add(ibdExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    printIbd(ibdMap, lastSplice, nextOverlap, nextSplice,
+                            hapPairs.nMarkers());
+                }
+            }));
+        }
+        while (pending.size() > 2*MAX_PENDING_WINDOWS) {
+            await(pending.poll());
+        }
+    }
+
+    private static void await(Future<?> future) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    future.get();
+                    return;
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            else {
+                throw new IllegalStateException(cause);
+            }
+        }
+        finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void printVcf(SampleHapPairs hapPairs, GenotypeValues gv,
+            int lastSplice, int nextSplice, boolean writeSNPs) {
         if (gv==null) {
             VcfWriter.appendRecords(hapPairs, lastSplice, nextSplice, writeSNPs, vcfOut);
         }
         else {
             VcfWriter.appendRecords(hapPairs, gv, lastSplice, nextSplice, writeSNPs, vcfOut);
         }
-        vcfOut.flush();
-
-        if (ibdMap!=null) {
-            printIbd(ibdMap, lastSplice, nextOverlap, nextSplice, hapPairs.nMarkers());
-            if (appendIbd==false) {
-                appendIbd = true;
-            }
-        }
     }
 
     private void checkData(SampleHapPairs haps, GenotypeValues gv,
@@ -199,29 +305,30 @@ public class WindowWriter {
             int nextOverlap, int nextSplice, int nMarkers) {
         Map<IntPair, IbdSegment> lastBuffer = new HashMap<>(ibdBuffer);
         ibdBuffer.clear();
-        try (PrintWriter ibdOut=FileUtil.printWriter(ibdOutFile, appendIbd);
-               PrintWriter hbdOut = FileUtil.printWriter(hbdOutFile, appendIbd)) {
-            Iterator<IntPair> keyIt = ibd.keySet().iterator();
-            while (keyIt.hasNext()) {
-                IntPair key = keyIt.next();
-                List<IbdSegment> list = ibd.get(key);
-                for (IbdSegment seg : list) {
-                    if (seg.startIndex()==0) {
-                        IbdSegment saved = lastBuffer.get(key);
-                        if (saved!=null) {
-                            seg = merge(saved, seg);
-                        }
-                    }
-                    int ep1 = seg.endIndex()+1;
-                    if (ep1>=lastSplice && (nextSplice==nMarkers || ep1<nextSplice)) {
-                        printSegment(samples, seg, ibdOut, hbdOut);
-                    }
-                    else if (seg.startIndex()<nextOverlap) {
-                        ibdBuffer.put(key, seg);
+        if (ibdOut==null) {
+            ibdOut = FileUtil.printWriter(ibdOutFile);
+            hbdOut = FileUtil.printWriter(hbdOutFile);
+        }
+        Iterator<IntPair> keyIt = ibd.keySet().iterator();
+        while (keyIt.hasNext()) {
+            IntPair key = keyIt.next();
+            List<IbdSegment> list = ibd.get(key);
+            for (IbdSegment seg : list) {
+                if (seg.startIndex()==0) {
+                    IbdSegment saved = lastBuffer.get(key);
+                    if (saved!=null) {
+                        seg = merge(saved, seg);
                     }
                 }
-                keyIt.remove();
+                int ep1 = seg.endIndex()+1;
+                if (ep1>=lastSplice && (nextSplice==nMarkers || ep1<nextSplice)) {
+                    printSegment(samples, seg, ibdOut, hbdOut);
+                }
+                else if (seg.startIndex()<nextOverlap) {
+                    ibdBuffer.put(key, seg);
+                }
             }
+            keyIt.remove();
         }
     }
 
@@ -257,4 +364,16 @@ public class WindowWriter {
         out.print(Const.tab);
         out.println(df2.format(tract.score()));
     }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        private final ThreadFactory factory = Executors.defaultThreadFactory();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = factory.newThread(r);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
@@ -22,12 +22,26 @@ public class Defaults {
     /** Buffer size, in bytes, used whenever reading/writing files or streams.  Default = 128k. */
     public static final int BUFFER_SIZE;
 
+    /**
+     * Number of worker threads used to inflate blocks ahead of the reader when reading block-compressed
+     * input.  If 0, blocks are inflated on the reading thread.  Default = 1.
+     */
+    public static final int DECOMPRESSION_THREADS;
+
+    /**
+     * Number of worker threads used to deflate blocks when writing block-compressed output.  If 0, blocks
+     * are deflated on the writing thread.  Default = 1.
+     */
+    public static final int COMPRESSION_THREADS;
+
     static {
         CREATE_INDEX      = getBooleanProperty("create_index", false);
         CREATE_MD5        = getBooleanProperty("create_md5", false);
         USE_ASYNC_IO      = getBooleanProperty("use_async_io", false);
         COMPRESSION_LEVEL = getIntProperty("compression_level", 5);
         BUFFER_SIZE       = getIntProperty("buffer_size", 1024 * 128);
+        DECOMPRESSION_THREADS = getIntProperty("decompression_threads", 1);
+        COMPRESSION_THREADS = getIntProperty("compression_threads", 1);
     }
 
     /** Gets a string system property, prefixed with "samjdk." using the default if the property does not exist.*/
@@ -0,0 +1,288 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2009 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.sf.samtools.util;
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import net.sf.samtools.FileTruncatedException;
+
+/*
+ * Utility class for reading BGZF block compressed streams in which blocks are inflated ahead of the reader
+ * by a pool of worker threads.  Compressed blocks are read from the underlying stream by the calling thread,
+ * inflated concurrently, and returned to the caller in file order.  The number of blocks that are read
+ * ahead of the caller is bounded, so memory use does not depend on the size of the file.
+ *
+ * Seeking is not supported.  Use BlockCompressedInputStream if random access is required.
+ *
+ * c.f. http://samtools.sourceforge.net/SAM1.pdf for details of BGZF format
+ */
+public class ParallelBlockCompressedInputStream extends InputStream {
+
+    /** Number of blocks that may be read ahead of the caller for each worker thread. */
+    private static final int BLOCKS_PER_THREAD = 4;
+
+    private InputStream mStream;
+    private final ExecutorService mExecutor;
+    private final ArrayDeque<Future<byte[]>> mPending;
+    private final int mMaxPending;
+    private boolean mEndOfInput = false;
+    private byte[] mCurrentBlock = null;
+    private int mCurrentOffset = 0;
+
+    /**
+     * @param stream BGZF-compressed input stream.
+     * @param nThreads number of worker threads used to inflate blocks.
+     * @throws IllegalArgumentException if nThreads < 1
+     */
+    public ParallelBlockCompressedInputStream(final InputStream stream, final int nThreads) {
+        if (nThreads < 1) {
+            throw new IllegalArgumentException("nThreads: " + nThreads);
+        }
+        mStream = IOUtil.toBufferedStream(stream);
+        mExecutor = Executors.newFixedThreadPool(nThreads, new DaemonThreadFactory());
+        mMaxPending = BLOCKS_PER_THREAD * nThreads;
+        mPending = new ArrayDeque<Future<byte[]>>(mMaxPending);
+    }
+
+    /**
+     * @return the number of bytes that can be read from the current inflated block.  Blocks until the next
+     * non-empty block has been inflated if the current block has been exhausted.
+     */
+    @Override
+    public int available()
+        throws IOException {
+        while (mCurrentBlock == null || mCurrentOffset == mCurrentBlock.length) {
+            if (nextBlock() == false) {
+                return 0;
+            }
+        }
+        return mCurrentBlock.length - mCurrentOffset;
+    }
+
+    /**
+     * Closes the underlying InputStream and stops the worker threads.
+     */
+    @Override
+    public void close()
+        throws IOException {
+        mExecutor.shutdownNow();
+        mPending.clear();
+        mCurrentBlock = null;
+        if (mStream != null) {
+            mStream.close();
+            mStream = null;
+        }
+    }
+
+    @Override
+    public int read()
+        throws IOException {
+        return (available() > 0) ? (mCurrentBlock[mCurrentOffset++] & 0xFF) : -1;
+    }
+
+    @Override
+    public int read(final byte[] buffer)
+        throws IOException {
+        return read(buffer, 0, buffer.length);
+    }
+
+    /**
+     * Reads up to length bytes of data from the input stream into an array of bytes.  This method blocks until
+     * at least one byte of input is available, end of file is detected, or an exception is thrown.
+     *
+     * @return the total number of bytes read into the buffer, or -1 if there is no more data because the end of
+     * the stream has been reached.
+     */
+    @Override
+    public int read(final byte[] buffer, int offset, int length)
+        throws IOException {
+        final int originalLength = length;
+        while (length > 0) {
+            final int available = available();
+            if (available == 0) {
+                // Signal EOF to caller
+                if (originalLength == length) {
+                    return -1;
+                }
+                break;
+            }
+            final int copyLength = Math.min(length, available);
+            System.arraycopy(mCurrentBlock, mCurrentOffset, buffer, offset, copyLength);
+            mCurrentOffset += copyLength;
+            offset += copyLength;
+            length -= copyLength;
+        }
+        return originalLength - length;
+    }
+
+    /*
+     * Tops up the queue of blocks being inflated, then waits for the oldest block.  Returns false if
+     * there are no more blocks.
+     */
+    private boolean nextBlock()
+        throws IOException {
+        if (mStream == null) {
+            throw new IOException("Stream is closed");
+        }
+        while (!mEndOfInput && mPending.size() < mMaxPending) {
+            final byte[] compressedBlock = readCompressedBlock();
+            if (compressedBlock == null) {
+                mEndOfInput = true;
+            } else {
+                mPending.add(mExecutor.submit(new Inflate(compressedBlock)));
+            }
+        }
+        final Future<byte[]> future = mPending.poll();
+        if (future == null) {
+            mCurrentBlock = null;
+            return false;
+        }
+        mCurrentBlock = get(future);
+        mCurrentOffset = 0;
+        return true;
+    }
+
+    private static byte[] get(final Future<byte[]> future)
+        throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while inflating BGZF block", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /*
+     * Returns the next compressed block, or null if the end of the stream has been reached.
+     */
+    private byte[] readCompressedBlock()
+        throws IOException {
+        final byte[] header = new byte[BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH];
+        int count = readBytes(mStream, header, 0, header.length);
+        if (count == 0) {
+            return null;
+        }
+        if (count != header.length) {
+            throw new IOException("Premature end of file");
+        }
+        final int blockLength = unpackInt16(header, BlockCompressedStreamConstants.BLOCK_LENGTH_OFFSET) + 1;
+        if (blockLength < BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH
+                || blockLength > BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE) {
+            throw new IOException("Unexpected compressed block length: " + blockLength);
+        }
+        final byte[] block = new byte[blockLength];
+        System.arraycopy(header, 0, block, 0, header.length);
+        final int remaining = blockLength - header.length;
+        count = readBytes(mStream, block, header.length, remaining);
+        if (count != remaining) {
+            throw new FileTruncatedException("Premature end of file");
+        }
+        return block;
+    }
+
+    private static int readBytes(final InputStream stream, final byte[] buffer, final int offset, final int length)
+        throws IOException {
+        int bytesRead = 0;
+        while (bytesRead < length) {
+            final int count = stream.read(buffer, offset + bytesRead, length - bytesRead);
+            if (count <= 0) {
+                break;
+            }
+            bytesRead += count;
+        }
+        return bytesRead;
+    }
+
+    private static int unpackInt16(final byte[] buffer, final int offset) {
+        return ((buffer[offset] & 0xFF) |
+                ((buffer[offset+1] & 0xFF) << 8));
+    }
+
+    private static int unpackInt32(final byte[] buffer, final int offset) {
+        return ((buffer[offset] & 0xFF) |
+                ((buffer[offset+1] & 0xFF) << 8) |
+                ((buffer[offset+2] & 0xFF) << 16) |
+                ((buffer[offset+3] & 0xFF) << 24));
+    }
+
+    /*
+     * BlockGunzipper is not thread-safe, so each worker thread has its own.
+     */
+    private static final ThreadLocal<BlockGunzipper> GUNZIPPER = new ThreadLocal<BlockGunzipper>() {
+        @Override
+        protected BlockGunzipper initialValue() {
+            return new BlockGunzipper();
+        }
+    };
+
+    private static class Inflate implements Callable<byte[]> {
+        private final byte[] compressedBlock;
+
+        Inflate(final byte[] compressedBlock) {
+            this.compressedBlock = compressedBlock;
+        }
+
+        @Override
+        public byte[] call() {
+            final int compressedLength = compressedBlock.length;
+            final int uncompressedLength = unpackInt32(compressedBlock, compressedLength-4);
+            final byte[] buffer;
+            try {
+                buffer = new byte[uncompressedLength];
+            } catch (NegativeArraySizeException e) {
+                throw new RuntimeException("BGZF file has invalid uncompressedLength: " + uncompressedLength, e);
+            }
+            GUNZIPPER.get().unzipBlock(buffer, compressedBlock, compressedLength);
+            return buffer;
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final ThreadFactory factory = Executors.defaultThreadFactory();
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread thread = factory.newThread(r);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2009 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.sf.samtools.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writer for a file that is a series of gzip blocks (BGZF format) in which blocks are deflated by a pool of
+ * worker threads.  Uncompressed data are divided into blocks by the calling thread exactly as in
+ * BlockCompressedOutputStream, each block is deflated concurrently, and the compressed blocks are written to
+ * the underlying stream in order.  The output is byte-for-byte identical to the output of
+ * BlockCompressedOutputStream with the same compression level.  The number of blocks waiting to be
+ * written is bounded, so memory use does not depend on the size of the file.
+ *
+ * As with BlockCompressedOutputStream, flush() forces a gzip block to be written even if the number of
+ * buffered bytes has not reached threshold, and close() must be called when done writing in order to write
+ * the last gzip block and the BGZF terminator block.
+ *
+ * c.f. http://samtools.sourceforge.net/SAM1.pdf for details of BGZF file format.
+ */
+public class ParallelBlockCompressedOutputStream extends OutputStream {
+
+    /** Number of blocks that may be waiting to be written for each worker thread. */
+    private static final int BLOCKS_PER_THREAD = 4;
+
+    private final OutputStream mStream;
+    private final File mFile;
+    private final int mCompressionLevel;
+    private final ExecutorService mExecutor;
+    private final ArrayDeque<Future<byte[]>> mPending;
+    private final int mMaxPending;
+    private byte[] mUncompressedBuffer = newUncompressedBuffer();
+    private int mNumUncompressedBytes = 0;
+    private boolean mClosed = false;
+
+    // Really a local variable, but allocate once to reduce GC burden.
+    private final byte[] singleByteArray = new byte[1];
+
+    /**
+     * @param os the underlying output stream.
+     * @param file the file written by os, or null.  If file is a regular file, close() checks that the
+     * file ends with the BGZF terminator block.
+     * @param compressionLevel {@code 0 <= compressionLevel <= 9}
+     * @param nThreads number of worker threads used to deflate blocks.
+     * @throws IllegalArgumentException if the compression level is invalid or if nThreads < 1
+     */
+    public ParallelBlockCompressedOutputStream(final OutputStream os, final File file,
+            final int compressionLevel, final int nThreads) {
+        if (compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + compressionLevel);
+        }
+        if (nThreads < 1) {
+            throw new IllegalArgumentException("nThreads: " + nThreads);
+        }
+        mStream = os;
+        mFile = file;
+        mCompressionLevel = compressionLevel;
+        mExecutor = Executors.newFixedThreadPool(nThreads, new DaemonThreadFactory());
+        mMaxPending = BLOCKS_PER_THREAD * nThreads;
+        mPending = new ArrayDeque<Future<byte[]>>(mMaxPending);
+    }
+
+    private static byte[] newUncompressedBuffer() {
+        return new byte[BlockCompressedStreamConstants.DEFAULT_UNCOMPRESSED_BLOCK_SIZE];
+    }
+
+    @Override
+    public void write(final byte[] bytes) throws IOException {
+        write(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void write(final byte[] bytes, int startIndex, int numBytes) throws IOException {
+        checkOpen();
+        while (numBytes > 0) {
+            final int bytesToWrite = Math.min(mUncompressedBuffer.length - mNumUncompressedBytes, numBytes);
+            System.arraycopy(bytes, startIndex, mUncompressedBuffer, mNumUncompressedBytes, bytesToWrite);
+            mNumUncompressedBytes += bytesToWrite;
+            startIndex += bytesToWrite;
+            numBytes -= bytesToWrite;
+            if (mNumUncompressedBytes == mUncompressedBuffer.length) {
+                submitBlock();
+            }
+        }
+    }
+
+    @Override
+    public void write(final int bite) throws IOException {
+        singleByteArray[0] = (byte)bite;
+        write(singleByteArray);
+    }
+
+    /**
+     * WARNING: flush() affects the output format, because it causes the buffered data to be compressed and
+     * written, even if the current block isn't full.  Unless you know what you're doing, don't call flush().
+     * Instead, call close(), which will flush any unwritten data before closing the underlying stream.
+     */
+    @Override
+    public void flush() throws IOException {
+        checkOpen();
+        submitBlock();
+        while (!mPending.isEmpty()) {
+            mStream.write(get(mPending.poll()));
+        }
+        mStream.flush();
+    }
+
+    /**
+     * close() must be called in order to flush any remaining buffered bytes and to write the BGZF
+     * terminator block.  An unclosed file will likely be defective.
+     */
+    @Override
+    public void close() throws IOException {
+        if (mClosed) {
+            return;
+        }
+        try {
+            flush();
+            mStream.write(BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK);
+            mStream.close();
+        } finally {
+            mClosed = true;
+            mExecutor.shutdownNow();
+        }
+        // Can't re-open something that is not a regular file, e.g. a named pipe or an output stream
+        if (mFile == null || !mFile.isFile()) return;
+        if (BlockCompressedInputStream.checkTermination(mFile) !=
+                BlockCompressedInputStream.FileTermination.HAS_TERMINATOR_BLOCK) {
+            throw new IOException("Terminator block not found after closing BGZF file " + mFile);
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (mClosed) {
+            throw new IOException("Stream is closed");
+        }
+    }
+
+    /*
+     * Submits the buffered data to be deflated, and writes compressed blocks until at most mMaxPending
+     * blocks are waiting to be written.
+     */
+    private void submitBlock() throws IOException {
+        if (mNumUncompressedBytes == 0) {
+            return;
+        }
+        mPending.add(mExecutor.submit(new Deflate(mUncompressedBuffer, mNumUncompressedBytes,
+                mCompressionLevel)));
+        mUncompressedBuffer = newUncompressedBuffer();
+        mNumUncompressedBytes = 0;
+        while (mPending.size() > mMaxPending) {
+            mStream.write(get(mPending.poll()));
+        }
+    }
+
+    private static byte[] get(final Future<byte[]> future)
+        throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while deflating BGZF block", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /*
+     * Deflater is not thread-safe, so each worker thread has its own deflaters.  As in
+     * BlockCompressedOutputStream, a second deflater with NO_COMPRESSION level is used in the very unlikely
+     * case that deflation makes the block too big.
+     */
+    private static class Deflaters {
+        private final int compressionLevel;
+        private final Deflater deflater;
+        private final Deflater noCompressionDeflater = new Deflater(Deflater.NO_COMPRESSION, true);
+        private final CRC32 crc32 = new CRC32();
+        private final byte[] compressedBuffer =
+                new byte[BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE -
+                        BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH];
+
+        Deflaters(final int compressionLevel) {
+            this.compressionLevel = compressionLevel;
+            this.deflater = new Deflater(compressionLevel, true);
+        }
+    }
+
+    private static final ThreadLocal<Deflaters> DEFLATERS = new ThreadLocal<Deflaters>();
+
+    private static Deflaters deflaters(final int compressionLevel) {
+        Deflaters d = DEFLATERS.get();
+        if (d == null || d.compressionLevel != compressionLevel) {
+            d = new Deflaters(compressionLevel);
+            DEFLATERS.set(d);
+        }
+        return d;
+    }
+
+    private static class Deflate implements Callable<byte[]> {
+        private final byte[] uncompressedBuffer;
+        private final int numUncompressedBytes;
+        private final int compressionLevel;
+
+        Deflate(final byte[] uncompressedBuffer, final int numUncompressedBytes, final int compressionLevel) {
+            this.uncompressedBuffer = uncompressedBuffer;
+            this.numUncompressedBytes = numUncompressedBytes;
+            this.compressionLevel = compressionLevel;
+        }
+
+        @Override
+        public byte[] call() {
+            final Deflaters d = deflaters(compressionLevel);
+            d.deflater.reset();
+            d.deflater.setInput(uncompressedBuffer, 0, numUncompressedBytes);
+            d.deflater.finish();
+            int compressedSize = d.deflater.deflate(d.compressedBuffer, 0, d.compressedBuffer.length);
+
+            // If it didn't all fit in compressedBuffer.length, use NO_COMPRESSION.  This should always fit.
+            if (!d.deflater.finished()) {
+                d.noCompressionDeflater.reset();
+                d.noCompressionDeflater.setInput(uncompressedBuffer, 0, numUncompressedBytes);
+                d.noCompressionDeflater.finish();
+                compressedSize = d.noCompressionDeflater.deflate(d.compressedBuffer, 0, d.compressedBuffer.length);
+                if (!d.noCompressionDeflater.finished()) {
+                    throw new IllegalStateException("unpossible");
+                }
+            }
+            d.crc32.reset();
+            d.crc32.update(uncompressedBuffer, 0, numUncompressedBytes);
+            return gzipBlock(d.compressedBuffer, compressedSize, numUncompressedBytes, d.crc32.getValue());
+        }
+    }
+
+    /*
+     * Returns the entire gzip block for the specified compressed data.
+     */
+    private static byte[] gzipBlock(final byte[] compressedBuffer, final int compressedSize,
+            final int uncompressedSize, final long crc) {
+        final int totalBlockSize = compressedSize + BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH +
+                BlockCompressedStreamConstants.BLOCK_FOOTER_LENGTH;
+        final byte[] block = new byte[totalBlockSize];
+        int i = 0;
+        block[i++] = BlockCompressedStreamConstants.GZIP_ID1;
+        block[i++] = (byte) BlockCompressedStreamConstants.GZIP_ID2;
+        block[i++] = BlockCompressedStreamConstants.GZIP_CM_DEFLATE;
+        block[i++] = (byte) BlockCompressedStreamConstants.GZIP_FLG;
+        i = packInt32(block, i, 0); // Modification time
+        block[i++] = (byte) BlockCompressedStreamConstants.GZIP_XFL;
+        block[i++] = (byte) BlockCompressedStreamConstants.GZIP_OS_UNKNOWN;
+        i = packInt16(block, i, BlockCompressedStreamConstants.GZIP_XLEN);
+        block[i++] = BlockCompressedStreamConstants.BGZF_ID1;
+        block[i++] = BlockCompressedStreamConstants.BGZF_ID2;
+        i = packInt16(block, i, BlockCompressedStreamConstants.BGZF_LEN);
+        // I don't know why we store block size - 1, but that is what the spec says
+        i = packInt16(block, i, totalBlockSize - 1);
+        System.arraycopy(compressedBuffer, 0, block, i, compressedSize);
+        i += compressedSize;
+        i = packInt32(block, i, (int) crc);
+        i = packInt32(block, i, uncompressedSize);
+        assert i == totalBlockSize;
+        return block;
+    }
+
+    private static int packInt16(final byte[] buffer, final int offset, final int value) {
+        buffer[offset] = (byte) value;
+        buffer[offset+1] = (byte) (value >> 8);
+        return offset + 2;
+    }
+
+    private static int packInt32(final byte[] buffer, final int offset, final int value) {
+        buffer[offset] = (byte) value;
+        buffer[offset+1] = (byte) (value >> 8);
+        buffer[offset+2] = (byte) (value >> 16);
+        buffer[offset+3] = (byte) (value >> 24);
+        return offset + 4;
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final ThreadFactory factory = Executors.defaultThreadFactory();
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread thread = factory.newThread(r);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2014 Brian L. Browning
+ *
+ * This file is part of Beagle
+ *
+ * Beagle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Beagle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sample;
+
+import dag.ChainDag;
+import dag.Dag;
+import haplotype.HapPair;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Class {@code ChainExpander} maps sampled haplotype pairs and
+ * posterior genotype probabilities for the markers of a DAG to the
+ * markers of the original DAG if the DAG is a {@code dag.ChainDag},
+ * and returns sampled haplotype pairs and posterior genotype
+ * probabilities unchanged otherwise.
+ * </p>
+ * Instances of class {@code ChainExpander} are not thread-safe.
+ *
+ * @author Brian L. Browning {@code <browning@uw.edu>}
+ */
+public final class ChainExpander {
+
+    private final ChainDag chain;
+    private double[] expandedGtProbs = null;
+
+    /**
+     * Constructs a new {@code ChainExpander} instance.
+     * @param dag the DAG used to sample haplotype pairs.
+     * @throws NullPointerException if {@code dag==null}.
+     */
+    public ChainExpander(Dag dag) {
+        if (dag==null) {
+            throw new NullPointerException("dag==null");
+        }
+        this.chain = (dag instanceof ChainDag) ? (ChainDag) dag : null;
+    }
+
+    /**
+     * Returns the specified haplotype pairs expanded to the markers of
+     * the original DAG, or returns the specified haplotype pairs if the
+     * DAG specified at construction is not a {@code dag.ChainDag}.
+     * @param haps a list of haplotype pairs for the markers of the DAG
+     * specified at construction.
+     * @return the haplotype pairs for the markers of the original DAG.
+     * @throws IllegalArgumentException if the markers of a haplotype pair
+     * are not the markers of the DAG specified at construction.
+     * @throws NullPointerException if {@code haps==null}, or if
+     * {@code haps} has a {@code null} element.
+     */
+    public List<HapPair> expand(List<HapPair> haps) {
+        if (chain==null) {
+            return haps;
+        }
+        List<HapPair> expandedHaps = new ArrayList<>(haps.size());
+        for (HapPair hp : haps) {
+            expandedHaps.add(chain.expand(hp));
+        }
+        return expandedHaps;
+    }
+
+    /**
+     * Returns the specified posterior genotype probabilities expanded to
+     * the markers of the original DAG, or returns the specified array if
+     * the DAG specified at construction is not a {@code dag.ChainDag}.
+     * The returned array is overwritten by the next invocation of this
+     * method.
+     * @param gtProbs posterior genotype probabilities for the markers of
+     * the DAG specified at construction.
+     * @return the posterior genotype probabilities for the markers of
+     * the original DAG.
+     * @throws IllegalArgumentException if {@code gtProbs.length} is not
+     * the number of phased genotypes for the markers of the DAG specified
+     * at construction.
+     * @throws NullPointerException if {@code gtProbs==null}.
+     */
+    public double[] expandGtProbs(double[] gtProbs) {
+        if (chain==null) {
+            return gtProbs;
+        }
+        if (expandedGtProbs==null) {
+            int n = chain.dag().markers().sumPhasedGenotypes();
+            expandedGtProbs = new double[n];
+        }
+        chain.expandGtProbs(gtProbs, expandedGtProbs);
+        return expandedGtProbs;
+    }
+}
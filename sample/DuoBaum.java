@@ -42,9 +42,7 @@ public class DuoBaum {
     private final long seed;
     private final Random random;
 
-    private final int[] nodeAB1;
-    private final int[] nodeA2;
-    private final int[] nodeB2;
+    private final int[] nodeIndex;
     private final double[] nodeValue;
 
     private final byte[][] allelesAB1;
@@ -86,9 +84,7 @@ public class DuoBaum {
         this.seed = seed;
         this.random = new Random(seed);
 
-        this.nodeAB1 = new int[nCopies];
-        this.nodeA2 = new int[nCopies];
-        this.nodeB2 = new int[nCopies];
+        this.nodeIndex = new int[nCopies];
         this.nodeValue = new double[nCopies];
         this.allelesAB1 = new byte[nCopies][gl.nMarkers()];
         this.allelesA2 = new byte[nCopies][gl.nMarkers()];
@@ -139,6 +135,17 @@ public class DuoBaum {
         return seed;
     }
 
+    /**
+     * Sets the seed of the random number generator that is used to
+     * sample haplotype pairs.  Setting the seed before each call to
+     * {@code this.sample()} makes the sampled haplotype pairs for a
+     * family independent of the families that were previously sampled.
+     * @param seed the random seed.
+     */
+    public void setSeed(long seed) {
+        random.setSeed(seed);
+    }
+
     /**
      * <p>Returns a list of {@code this.nCopies()} sampled haplotype pairs for
      * the specified parent ({@code sampleA}) and offspring ({@code sampleB}).
@@ -258,9 +265,7 @@ public class DuoBaum {
         int m = level.marker();
         for (int copy=0; copy<nCopies; ++copy) {
             int state = initialRandomState(level);
-            nodeAB1[copy] = level.parentNodeAB1(state);
-            nodeA2[copy] = level.parentNodeA2(state);
-            nodeB2[copy] = level.parentNodeB2(state);
+            nodeIndex[copy] = level.parentIndex(state);
             nodeValue[copy] =  parentSum(level, sampleA, sampleB, state);
             allelesAB1[copy][m] = level.symbolAB1(state);
             allelesA2[copy][m] = level.symbolA2(state);
@@ -302,11 +307,9 @@ public class DuoBaum {
     private void sampleAlleles(DuoBaumLevel level, int sampleA, int sampleB) {
         int m = level.marker();
         for (int copy=0; copy<nCopies; ++copy) {
-            int state = randomPreviousState(level, nodeAB1[copy], nodeA2[copy],
-                    nodeB2[copy], nodeValue[copy]);
-            nodeAB1[copy] = level.parentNodeAB1(state);
-            nodeA2[copy] = level.parentNodeA2(state);
-            nodeB2[copy] = level.parentNodeB2(state);
+            int state = randomPreviousState(level, nodeIndex[copy],
+                    nodeValue[copy]);
+            nodeIndex[copy] = level.parentIndex(state);
             nodeValue[copy] =  parentSum(level, sampleA, sampleB, state);
             allelesAB1[copy][m] = level.symbolAB1(state);
             allelesA2[copy][m] = level.symbolA2(state);
@@ -314,21 +317,20 @@ public class DuoBaum {
         }
     }
 
-    private int randomPreviousState(DuoBaumLevel level, int nodeAB1,
-            int nodeA2, int nodeB2, double nodeValue) {
+    private int randomPreviousState(DuoBaumLevel level, int nodeIndex,
+            double nodeValue) {
         double d = random.nextDouble() * nodeValue;
         double sum = 0.0;
-        for (int j=0, n=level.size(); j<n; ++j) {
-            if ( nodeAB1==level.childNodeAB1(j)
-                    && nodeA2==level.childNodeA2(j)
-                    && nodeB2==level.childNodeB2(j) ) {
-                sum += level.forwardValue(j);
-                if (d <= sum) {
-                    return j;
-                }
+        int n = level.nChildStates(nodeIndex);
+        for (int k=0; k<n; ++k) {
+            int j = level.childState(nodeIndex, k);
+            sum += level.forwardValue(j);
+            if (d <= sum) {
+                return j;
             }
         }
-        return level.size()-1; // error in finite bit arithmetic encountered
+        // error in finite bit arithmetic encountered
+        return level.childState(nodeIndex, n-1);
     }
 
     private DuoBaumLevel nextLevel() {
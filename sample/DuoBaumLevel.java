@@ -45,6 +45,11 @@ public class DuoBaumLevel {
     private int[] edgesAB1 = new int[INITIAL_CAPACITY];
     private int[] edgesA2 = new int[INITIAL_CAPACITY];
     private int[] edgesB2 = new int[INITIAL_CAPACITY];
+    private int[] parentIndices = new int[INITIAL_CAPACITY];
+    private int[] childIndices = new int[INITIAL_CAPACITY];
+    private int[] childStates = new int[INITIAL_CAPACITY];
+    private int[] childStart = new int[INITIAL_CAPACITY+1];
+    private int nChildIndices = 0;
     private double[] fwdValues = new double[INITIAL_CAPACITY];
     private double[] bwdValues = new double[INITIAL_CAPACITY];
     private double fwdValueSum = 0.0;
@@ -167,6 +172,7 @@ public class DuoBaumLevel {
                                 edgesAB1[size] = edgeAB1;
                                 edgesA2[size] = edgeA2;
                                 edgesB2[size] = edgeB2;
+                                parentIndices[size] = j;
                                 fwdValues[size++] = fwdValue;
                                 valueSum += fwdValue;
                             }
@@ -196,7 +202,34 @@ public class DuoBaumLevel {
             int nodeAB1 = dag.childNode(marker, edgesAB1[k]);
             int nodeA2 = dag.childNode(marker, edgesA2[k]);
             int nodeB2 = dag.childNode(marker, edgesB2[k]);
-            nodes.sumUpdate(nodeAB1, nodeA2, nodeB2, fwdValues[k]);
+            childIndices[k] = nodes.sumUpdate(nodeAB1, nodeA2, nodeB2, fwdValues[k]);
+        }
+        setChildStates(nodes.size());
+    }
+
+    /*
+     * Groups the states at this level of the HMM by child node trio index
+     * so that the states with a specified child node trio can be enumerated
+     * in increasing order.
+     */
+    private void setChildStates(int nChildIndices) {
+        this.nChildIndices = nChildIndices;
+        if (childStart.length <= nChildIndices) {
+            childStart = new int[nChildIndices + 1];
+        }
+        Arrays.fill(childStart, 0, nChildIndices + 1, 0);
+        for (int k=0; k<size; ++k) {
+            if (childIndices[k] >= 0) {
+                ++childStart[childIndices[k]];
+            }
+        }
+        for (int j=1; j<=nChildIndices; ++j) {
+            childStart[j] += childStart[j-1];
+        }
+        for (int k=size-1; k>=0; --k) {
+            if (childIndices[k] >= 0) {
+                childStates[--childStart[childIndices[k]]] = k;
+            }
         }
     }
 
@@ -360,6 +393,66 @@ public class DuoBaumLevel {
         }
     }
 
+    /**
+     * Returns the index of the parent node trio of the specified HMM state
+     * in the list of node trios with non-zero value that was used to set
+     * the Baum forward algorithm values for this level of the HMM.
+     *
+     * @param state an index of a HMM state at this level with nonzero
+     * forward probability.
+     * @return the index of the parent node trio of the specified HMM state.
+     *
+     * @throws IndexOutOfBoundsException if
+     * {@code state<0 || state>=this.size()}
+     */
+    public int parentIndex(int state) {
+        checkIndex(state);
+        return parentIndices[state];
+    }
+
+    /**
+     * Returns the number of HMM states at this level whose child
+     * node trio has the specified index in the list of child node trios
+     * stored by the most recent call to
+     * {@code this.setChildNodes(DuoNodes)}.
+     *
+     * @param childIndex an index of a child node trio.
+     * @return the number of HMM states whose child node trio has the
+     * specified index.
+     *
+     * @throws IndexOutOfBoundsException if {@code childIndex<0}
+     * or if {@code childIndex} is greater than or equal to the number
+     * of child node trios
+     */
+    public int nChildStates(int childIndex) {
+        if (childIndex >= nChildIndices) {
+            throw new IndexOutOfBoundsException(String.valueOf(childIndex));
+        }
+        return childStart[childIndex+1] - childStart[childIndex];
+    }
+
+    /**
+     * Returns the specified HMM state whose child node trio has the
+     * specified index in the list of child node trios stored by the most
+     * recent call to {@code this.setChildNodes(DuoNodes)}.  States with
+     * the same child node trio are listed in increasing order.
+     *
+     * @param childIndex an index of a child node trio.
+     * @param k an index in the list of HMM states whose child node trio
+     * has the specified index.
+     * @return the specified HMM state whose child node trio has the
+     * specified index.
+     *
+     * @throws IndexOutOfBoundsException if
+     * {@code k<0 || k>=this.nChildStates(childIndex)}
+     */
+    public int childState(int childIndex, int k) {
+        if (k<0 || k >= nChildStates(childIndex)) {
+            throw new IndexOutOfBoundsException(String.valueOf(k));
+        }
+        return childStates[childStart[childIndex] + k];
+    }
+
     /**
      * Returns the DAG level edge index for the first edge of the
      * specified HMM state with nonzero forward probability.
@@ -674,6 +767,9 @@ public class DuoBaumLevel {
             edgesB2 = Arrays.copyOf(edgesB2, capacity);
             fwdValues = Arrays.copyOf(fwdValues, capacity);
             bwdValues = Arrays.copyOf(bwdValues, capacity);
+            parentIndices = Arrays.copyOf(parentIndices, capacity);
+            childIndices = Arrays.copyOf(childIndices, capacity);
+            childStates = Arrays.copyOf(childStates, capacity);
         }
     }
 }
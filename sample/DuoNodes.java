@@ -18,6 +18,8 @@
  */
 package sample;
 
+import java.util.Arrays;
+
 /**
  * Class {@code DuoNodes} stores ordered node trios and associated values.
  *
@@ -26,16 +28,20 @@ package sample;
 public class DuoNodes {
 
     private static final double loadFactor = 0.75;
+    private static final long HASH_MULTIPLIER = 0x9e3779b97f4a7c15L;
 
     private int size;
     private int maxSize; // required to be a power of 2.
+    private int shift;   // 64 - log2(maxSize)
     private int rehashThreshold;
 
     private int[] index;
-    private int[] nodeAB1;
-    private int[] nodeA2;
+    private long[] keyAB1A2;    // (nodeAB1 << 32) | nodeA2
     private int[] nodeB2;
     private double[] value;
+    private int[] enumIndices;
+    private int[] generations;
+    private int generation; // a slot is in use iff generations[i]==generation
 
     /**
      * Creates a new instance of {@code DuoNodes} that has an
@@ -43,29 +49,24 @@ public class DuoNodes {
      */
     public DuoNodes() {
         this.size = 0;
-        this.maxSize = (1<<10);
+        this.generation = 1;
+        allocate(1<<10);
+    }
+
+    private void allocate(int maxSize) {
+        this.maxSize = maxSize;
+        this.shift = Long.numberOfLeadingZeros(maxSize) + 1;
         this.rehashThreshold = (int) (loadFactor * maxSize);
         this.index = new int[maxSize];
-        this.nodeAB1 = new int[maxSize];
-        this.nodeA2 = new int[maxSize];
+        this.keyAB1A2 = new long[maxSize];
         this.nodeB2 = new int[maxSize];
         this.value = new double[maxSize];
+        this.enumIndices = new int[maxSize];
+        this.generations = new int[maxSize];
     }
 
-    private static int hash1(int nodeAB1, int nodeA2, int nodeB2) {
-        int hash = 5;
-        hash = 71 * hash + nodeAB1;
-        hash = 71 * hash + nodeA2;
-        hash = 71 * hash + nodeB2;
-        return hash;
-    }
-
-    private static int hash2(int nodeAB1, int nodeA2, int nodeB2) {
-        int hash = 7;
-        hash = 97 * hash + nodeAB1;
-        hash = 97 * hash + nodeA2;
-        hash = 97 * hash + nodeB2;
-        return hash;
+    private static long key(int nodeAB1, int nodeA2) {
+        return ((long) nodeAB1 << 32) | (nodeA2 & 0xffffffffL);
     }
 
     /*
@@ -73,25 +74,15 @@ public class DuoNodes {
      * currently stored in the hash table, the index at which the value
      * should be stored is returned.
      */
-    private int index(int ab1, int a2, int b2) {
-        int h1 = hash1(ab1, a2, b2);
-        int h2 = hash2(ab1, a2, b2);
-        if ((h2 & 1)==0) {
-            // h2 must be relatively prime to maxSize, which is a power of 2
-            ++h2;
+    private int index(long keyAB1A2, int b2) {
+        int mask = maxSize - 1;
+        long h = (keyAB1A2*HASH_MULTIPLIER + b2)*HASH_MULTIPLIER;
+        int i = (int) (h >>> shift);
+        while (generations[i]==generation
+                && (this.keyAB1A2[i]!=keyAB1A2 || nodeB2[i]!=b2)) {
+            i = (i + 1) & mask;
         }
-        for (int k=0; k<maxSize; ++k) {
-            int i = (h1 + k*h2) % maxSize;
-            if (i<0) {
-                i = -i;
-            }
-            if (value[i]==0.0 ||
-                    (nodeAB1[i]==ab1 && nodeA2[i]==a2 && nodeB2[i]==b2)) {
-                return i;
-            }
-        }
-        assert false;
-        return -1;
+        return i;
     }
 
     /*
@@ -103,29 +94,31 @@ public class DuoNodes {
         if (newMaxSize<0) {
             throw new IllegalStateException("hash table overflow");
         }
+        rebuild(newMaxSize);
+    }
+
+    /*
+     * Stores the first {@code this.size} enumerated node trios in a new
+     * hash table with the specified capacity.
+     */
+    private void rebuild(int newMaxSize) {
         int[] oldIndices = index;
-        int[] oldNodeAB1 = nodeAB1;
-        int[] oldNodeA2 = nodeA2;
+        long[] oldKeyAB1A2 = keyAB1A2;
         int[] oldNodeB2 = nodeB2;
         double[] oldValue = value;
 
-        maxSize = newMaxSize;
-        index = new int[newMaxSize];
-        nodeAB1 = new int[newMaxSize];
-        nodeA2 = new int[newMaxSize];
-        nodeB2 = new int[newMaxSize];
-        value = new double[newMaxSize];
-
+        allocate(newMaxSize);
+        generation = 1;
         for (int j=0; j<size; ++j) {
             int oldIndex = oldIndices[j];
-            int newIndex = index(oldNodeAB1[oldIndex], oldNodeA2[oldIndex], oldNodeB2[oldIndex]);
+            int newIndex = index(oldKeyAB1A2[oldIndex], oldNodeB2[oldIndex]);
             index[j] = newIndex;
-            nodeAB1[newIndex] = oldNodeAB1[oldIndex];
-            nodeA2[newIndex] = oldNodeA2[oldIndex];
+            enumIndices[newIndex] = j;
+            generations[newIndex] = generation;
+            keyAB1A2[newIndex] = oldKeyAB1A2[oldIndex];
             nodeB2[newIndex] = oldNodeB2[oldIndex];
             value[newIndex] = oldValue[oldIndex];
         }
-        rehashThreshold = (int) (loadFactor * maxSize);
     }
 
     /**
@@ -143,16 +136,18 @@ public class DuoNodes {
      */
     public void maxUpdate(int nodeAB1, int nodeA2, int nodeB2, double value) {
         if (value>0.0) {
-            int i = index(nodeAB1, nodeA2, nodeB2);
-            if (this.value[i]>0.0) {
+            long k = key(nodeAB1, nodeA2);
+            int i = index(k, nodeB2);
+            if (generations[i]==generation) {
                 if (value>this.value[i]) {
                     this.value[i] = value;
                 }
             }
             else {
+                this.enumIndices[i] = size;
                 this.index[size++] = i;
-                this.nodeAB1[i] = nodeAB1;
-                this.nodeA2[i] = nodeA2;
+                this.generations[i] = generation;
+                this.keyAB1A2[i] = k;
                 this.nodeB2[i] = nodeB2;
                 this.value[i] = value;
                 if (this.size>=this.rehashThreshold) {
@@ -173,30 +168,37 @@ public class DuoNodes {
      * @param nodeA2 the second node.
      * @param nodeB2 the third node.
      * @param value the value.
+     * @return the index of the node trio in the list of node trios with non-zero
+     * value, or -1 if the node trio has value 0.
      *
      * @throws IllegalArgumentException if
      * {@code value<0.0 || Double.isNaN(value)}
      */
-    public void sumUpdate(int nodeAB1, int nodeA2, int nodeB2, double value) {
+    public int sumUpdate(int nodeAB1, int nodeA2, int nodeB2, double value) {
         if (value>0.0) {
-            int i = index(nodeAB1, nodeA2, nodeB2);
-            if (this.value[i]>0.0) {
+            long k = key(nodeAB1, nodeA2);
+            int i = index(k, nodeB2);
+            if (generations[i]==generation) {
                 this.value[i] += value;
+                return enumIndices[i];
             }
             else {
+                this.enumIndices[i] = size;
                 this.index[size++] = i;
-                this.nodeAB1[i] = nodeAB1;
-                this.nodeA2[i] = nodeA2;
+                this.generations[i] = generation;
+                this.keyAB1A2[i] = k;
                 this.nodeB2[i] = nodeB2;
-                this.value[i] += value;
+                this.value[i] = value;
                 if (this.size>=this.rehashThreshold) {
                     rehash();
                 }
+                return size - 1;
             }
         }
         else if (value>=0.0==false) {
             throw new IllegalArgumentException(String.valueOf(value));
         }
+        return enumIndex(nodeAB1, nodeA2, nodeB2);
     }
 
     /**
@@ -219,14 +221,15 @@ public class DuoNodes {
         double threshold = maxValue / maxRatio;
         int newSize = 0;
         for (int j=0; j<size; ++j) {
-            if (value[index[j]]<threshold) {
-                value[index[j]] = 0.0;
-            }
-            else {
+            if (value[index[j]]>=threshold) {
                 index[newSize++] = index[j];
             }
         }
-        size = newSize;
+        if (newSize<size) {
+            // removed node trios would break linear probe sequences
+            size = newSize;
+            rebuild(maxSize);
+        }
     }
 
     /**
@@ -256,7 +259,7 @@ public class DuoNodes {
      */
     public int enumNodeAB1(int index) {
         checkSize(index);
-        return nodeAB1[this.index[index]];
+        return (int) (keyAB1A2[this.index[index]] >>> 32);
     }
 
     /**
@@ -272,7 +275,7 @@ public class DuoNodes {
      */
     public int enumNodeA2(int index) {
         checkSize(index);
-        return nodeA2[this.index[index]];
+        return (int) keyAB1A2[this.index[index]];
     }
 
     /**
@@ -307,6 +310,21 @@ public class DuoNodes {
         return value[this.index[index]];
     }
 
+    /**
+     * Returns the index of the specified node trio in the list of node trios
+     * with non-zero value, or returns -1 if the node trio has value 0.
+     *
+     * @param nodeAB1 the first node.
+     * @param nodeA2 the second node.
+     * @param nodeB2 the third node.
+     * @return the index of the specified node trio in the list of node trios
+     * with non-zero value, or -1 if the node trio has value 0.
+     */
+    public int enumIndex(int nodeAB1, int nodeA2, int nodeB2) {
+        int i = index(key(nodeAB1, nodeA2), nodeB2);
+        return generations[i]==generation ? enumIndices[i] : -1;
+    }
+
     /**
      * Returns the specified node trio value.
      *
@@ -316,16 +334,20 @@ public class DuoNodes {
      * @return the specified node trio value.
      */
     public double value(int nodeAB1, int nodeA2, int nodeB2) {
-        return value[index(nodeAB1, nodeA2, nodeB2)];
+        int i = index(key(nodeAB1, nodeA2), nodeB2);
+        return generations[i]==generation ? value[i] : 0.0;
     }
 
     /**
-     * Sets the value of each node trio to 0.0.
+     * Sets the value of each node trio to 0.0.  The hash table is
+     * cleared in constant time by advancing the generation number.
      */
     public void clear() {
-        for (int j=0; j<this.size; ++j) {
-            value[index[j]] = 0.0;
+        if (generation==Integer.MAX_VALUE) {
+            Arrays.fill(generations, 0);
+            generation = 0;
         }
+        ++generation;
         size = 0;
     }
 
@@ -41,7 +41,7 @@ public class HapBaum {
     private final long seed;
     private final Random random;
 
-    private final int[] node;
+    private final int[] nodeIndex;
     private final double[] nodeValue;
 
     private final byte[][] alleles1;
@@ -85,7 +85,7 @@ public class HapBaum {
         this.seed = seed;
         this.random = new Random(seed);
 
-        this.node = new int[nCopies];
+        this.nodeIndex = new int[nCopies];
         this.nodeValue = new double[nCopies];
         this.alleles1 = new byte[nCopies][al.nMarkers()];
         this.alleles2 = new byte[nCopies][al.nMarkers()];
@@ -263,7 +263,7 @@ public class HapBaum {
         int m = level.marker();
         for (int copy=0; copy<nCopies; ++copy) {
             int state = initialRandomState(level);
-            node[copy] = level.parentNode(state);
+            nodeIndex[copy] = level.parentIndex(state);
             nodeValue[copy] =  parentSum(level, hap, state);
             alleles[copy][m] = level.symbol(state);
         }
@@ -295,26 +295,28 @@ public class HapBaum {
     private void sampleAlleles(HapBaumLevel level, int hap, byte[][] alleles) {
         int m = level.marker();
         for (int copy=0; copy<nCopies; ++copy) {
-            int state = randomPreviousState(level, node[copy], nodeValue[copy]);
-            node[copy] = level.parentNode(state);
+            int state = randomPreviousState(level, nodeIndex[copy],
+                    nodeValue[copy]);
+            nodeIndex[copy] = level.parentIndex(state);
             nodeValue[copy] =  parentSum(level, hap, state);
             alleles[copy][m] = level.symbol(state);
         }
     }
 
-    private int randomPreviousState(HapBaumLevel level, int node,
+    private int randomPreviousState(HapBaumLevel level, int nodeIndex,
             double nodeValue) {
         double d = random.nextDouble() * nodeValue;
         double sum = 0.0;
-        for (int j=0, n=level.size(); j<n; ++j) {
-            if ( (node==level.childNode(j)) ) {
-                sum += level.forwardValue(j);
-                if (d <= sum) {
-                    return j;
-                }
+        int n = level.nChildStates(nodeIndex);
+        for (int k=0; k<n; ++k) {
+            int j = level.childState(nodeIndex, k);
+            sum += level.forwardValue(j);
+            if (d <= sum) {
+                return j;
             }
         }
-        return level.size()-1; // error in finite bit arithmetic encountered
+        // error in finite bit arithmetic encountered
+        return level.childState(nodeIndex, n-1);
     }
 
     private HapBaumLevel nextLevel() {
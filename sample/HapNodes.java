@@ -18,6 +18,8 @@
  */
 package sample;
 
+import java.util.Arrays;
+
 /**
  * Class {@code HapNodes} stores nodes and associated values.
  *
@@ -26,12 +28,17 @@ package sample;
 public class HapNodes {
 
     private static final double loadFactor = 0.75;
+    private static final long HASH_MULTIPLIER = 0x9e3779b97f4a7c15L;
 
     private int[] index;
     private int[] node;
     private double[] value;
+    private int[] enumIndices;
+    private int[] generations;
+    private int generation; // a slot is in use iff generations[i]==generation
     private int size;
     private int maxSize; // required to be a power of 2.
+    private int shift;   // 64 - log2(maxSize)
     private int rehashThreshold;
 
 
@@ -41,11 +48,19 @@ public class HapNodes {
      */
     public HapNodes() {
         this.size = 0;
-        this.maxSize = (1<<10);
+        this.generation = 1;
+        allocate(1<<10);
+    }
+
+    private void allocate(int maxSize) {
+        this.maxSize = maxSize;
+        this.shift = Long.numberOfLeadingZeros(maxSize) + 1;
         this.rehashThreshold = (int) (loadFactor * maxSize);
         this.index = new int[maxSize];
         this.node = new int[maxSize];
         this.value = new double[maxSize];
+        this.enumIndices = new int[maxSize];
+        this.generations = new int[maxSize];
     }
 
     /*
@@ -54,23 +69,12 @@ public class HapNodes {
      * should be stored is returned.
      */
     private int index(int node) {
-        int h1 = node;
-        int h2 = 97 + node;
-        if ((h2 & 1)==0) {
-            // h2 must be relatively prime to maxSize, which is a power of 2
-            ++h2;
-        }
-        for (int k=0; k<maxSize; ++k) {
-            int i = (h1 + k*h2) % maxSize;
-            if (i<0) {
-                i = -i;
-            }
-            if (value[i]==0.0 || (this.node[i]==node)) {
-                return i;
-            }
+        int mask = maxSize - 1;
+        int i = (int) ((node*HASH_MULTIPLIER) >>> shift);
+        while (generations[i]==generation && this.node[i]!=node) {
+            i = (i + 1) & mask;
         }
-        assert false;
-        return -1;
+        return i;
     }
 
     /*
@@ -86,19 +90,17 @@ public class HapNodes {
         int[] oldNode = node;
         double[] oldValue = value;
 
-        maxSize = newMaxSize;
-        index = new int[newMaxSize];
-        node = new int[newMaxSize];
-        value = new double[newMaxSize];
-
+        allocate(newMaxSize);
+        generation = 1;
         for (int j=0; j<size; ++j) {
             int oldIndex = oldIndices[j];
             int newIndex = index(oldNode[oldIndex]);
             index[j] = newIndex;
+            enumIndices[newIndex] = j;
+            generations[newIndex] = generation;
             node[newIndex] = oldNode[oldIndex];
             value[newIndex] = oldValue[oldIndex];
         }
-        rehashThreshold = (int) (loadFactor * maxSize);
     }
 
     /**
@@ -115,13 +117,15 @@ public class HapNodes {
     public void maxUpdate(int node, double value) {
         if (value>0.0) {
             int i = index(node);
-            if (this.value[i]>0.0) {
+            if (generations[i]==generation) {
                 if (value>this.value[i]) {
                     this.value[i] = value;
                 }
             }
             else {
+                this.enumIndices[i] = size;
                 this.index[size++] = i;
+                this.generations[i] = generation;
                 this.node[i] = node;
                 this.value[i] = value;
                 if (this.size>=this.rehashThreshold) {
@@ -140,28 +144,35 @@ public class HapNodes {
      *
      * @param node the node.
      * @param value the value.
+     * @return the index of the node in the list of nodes with non-zero
+     * value, or -1 if the node has value 0.
      *
      * @throws IllegalArgumentException if
      * {@code value<0.0 || Double.isNaN(value)}
      */
-    public void sumUpdate(int node, double value) {
+    public int sumUpdate(int node, double value) {
         if (value>0.0) {
             int i = index(node);
-            if (this.value[i]>0.0) {
+            if (generations[i]==generation) {
                 this.value[i] += value;
+                return enumIndices[i];
             }
             else {
+                this.enumIndices[i] = size;
                 this.index[size++] = i;
+                this.generations[i] = generation;
                 this.node[i] = node;
-                this.value[i] += value;
+                this.value[i] = value;
                 if (this.size>=this.rehashThreshold) {
                     rehash();
                 }
+                return size - 1;
             }
         }
         else if (value>=0.0==false) {
             throw new IllegalArgumentException(String.valueOf(value));
         }
+        return enumIndex(node);
     }
 
     /**
@@ -209,6 +220,19 @@ public class HapNodes {
         return value[this.index[index]];
     }
 
+    /**
+     * Returns the index of the specified node in the list of nodes
+     * with non-zero value, or returns -1 if the node has value 0.
+     *
+     * @param node the first node.
+     * @return the index of the specified node in the list of nodes
+     * with non-zero value, or -1 if the node has value 0.
+     */
+    public int enumIndex(int node) {
+        int i = index(node);
+        return generations[i]==generation ? enumIndices[i] : -1;
+    }
+
     /**
      * Returns the specified node value.
      *
@@ -216,16 +240,20 @@ public class HapNodes {
      * @return the specified node value.
      */
     public double value(int node) {
-        return value[index(node)];
+        int i = index(node);
+        return generations[i]==generation ? value[i] : 0.0;
     }
 
     /**
-     * Sets the value of each node to 0.0.
+     * Sets the value of each node to 0.0.  The hash table is
+     * cleared in constant time by advancing the generation number.
      */
     public void clear() {
-        for (int j=0; j<this.size; ++j) {
-            value[index[j]] = 0.0;
+        if (generation==Integer.MAX_VALUE) {
+            Arrays.fill(generations, 0);
+            generation = 0;
         }
+        ++generation;
         size = 0;
     }
 
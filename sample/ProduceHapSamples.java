@@ -18,36 +18,33 @@
  */
 package sample;
 
-import blbutil.Utilities;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
 import haplotype.HapPair;
 import haplotype.RevHapPair;
 import main.GenotypeValues;
 
 /**
  *<p>sClass {@code ProduceHapSamples} samples haplotype pairs for specified
- * individuals. Class {@code ProduceHapSamples} is designed for use in a
- * producer-consumer design pattern.
+ * individuals. Class {@code ProduceHapSamples} is designed for use with
+ * a {@code blbutil.WorkerPool}, with one instance for each worker.
  * </p>
- * Instances of class {@code ProduceHapSamples} are thread-safe if the
- * synchronization requirements for the constructor are satisfied.
+ * <p>If the DAG of the {@code baum} parameter is a {@code dag.ChainDag},
+ * sampled haplotype pairs and posterior genotype probabilities are
+ * expanded to the markers of the DAG of which the {@code ChainDag}
+ * is a compressed view.
+ * </p>
+ * Instances of class {@code ProduceHapSamples} are not thread-safe.
  *
  * @author Brian L. Browning {@code <browning@uw.edu>}
  */
-public class ProduceHapSamples implements Runnable {
-
-    /**
-     * A sentinel {@code Integer}.
-     */
-    public static final Integer POISON = -1;
+public class ProduceHapSamples {
 
     private final boolean markersAreReversed;
     private final HapBaum baum;
-    private final BlockingQueue<Integer> qIn;
-    private final List<HapPair> sampledHaps;
     private final GenotypeValues gv;
     private final double[] gprobs;
+    private final ChainExpander expander;
 
     /**
      * Constructs a new {@code ProduceHapSample} instance.
@@ -57,65 +54,53 @@ public class ProduceHapSamples implements Runnable {
      * their marker order reversed and {@code false} otherwise.
      * @param baum a thread-confined instance of class
      * {@code sample.HapBaum}.
-     * @param qIn a thread-safe input work queue.
-     * @param hapPairList a thread-safe list for storing sampled haplotype
-     * pairs.
      * @param gv a thread-safe object which stores scaled posterior genotype
      * probabilities.
      *
      * @throws NullPointerException if any parameter is {@code null}.
      */
     public ProduceHapSamples(boolean markersAreReversed,
-            HapBaum baum, BlockingQueue<Integer> qIn,
-            List<HapPair> hapPairList, GenotypeValues gv) {
+            HapBaum baum, GenotypeValues gv) {
         if (baum == null) {
             throw new NullPointerException("baum=null");
         }
-        if (qIn == null) {
-            throw new IllegalArgumentException("qIn==null");
-        }
-        if (hapPairList == null) {
-            throw new IllegalArgumentException("hapList==null");
-        }
         if (gv == null) {
             throw new IllegalArgumentException("gv==null");
         }
         this.markersAreReversed = markersAreReversed;
         this.baum = baum;
-        this.qIn = qIn;
         this.gv = gv;
-        this.sampledHaps = hapPairList;
-        this.gprobs = new double[gv.markers().sumPhasedGenotypes()];
+        this.expander = new ChainExpander(baum.dag());
+        this.gprobs = new double[baum.al().markers().sumPhasedGenotypes()];
     }
 
     /**
-     * Takes sample indices from the thread-safe work-queue specified at time of
-     * construction and samples haplotype pairs for each sample. The method
-     * exits when the integer {@code ProduceHapSamples.POISON} is taken from the
-     * work queue.
+     * Returns a list of sampled haplotype pairs for the specified
+     * individual, and adds the posterior genotype probabilities to the
+     * {@code GenotypeValues} object specified at construction.
+     *
+     * @param sample the sample index.
+     * @return a list of sampled haplotype pairs for the specified
+     * individual.
+     *
+     * @throws IndexOutOfBoundsException if {@code sample} is not
+     * a valid sample index
      */
-    @Override
-    public void run() {
-        try {
-            int sample = qIn.take();
-            while (sample != POISON) {
-                List<HapPair> newHaps = baum.randomSample(sample, gprobs);
-                storeHaps(newHaps);
-                gv.add(sample, gprobs);
-                sample = qIn.take();
-            }
-        } catch (Throwable e) {
-            Utilities.exit("ProduceHapSamples: ERROR", e);
-        }
+    public List<HapPair> sample(int sample) {
+        List<HapPair> newHaps = baum.randomSample(sample, gprobs);
+        gv.add(sample, expander.expandGtProbs(gprobs));
+        return outputHaps(newHaps);
     }
 
-    private void storeHaps(List<HapPair> newHaps) {
+    private List<HapPair> outputHaps(List<HapPair> newHaps) {
+        newHaps = expander.expand(newHaps);
         if (markersAreReversed) {
+            List<HapPair> revHaps = new ArrayList<>(newHaps.size());
             for (HapPair hp : newHaps) {
-                sampledHaps.add(new RevHapPair(hp));
+                revHaps.add(new RevHapPair(hp));
             }
-        } else {
-            sampledHaps.addAll(newHaps);
+            newHaps = revHaps;
         }
+        return newHaps;
     }
 }
@@ -18,36 +18,33 @@
  */
 package sample;
 
-import blbutil.Utilities;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
 import haplotype.HapPair;
 import haplotype.RevHapPair;
 import main.GenotypeValues;
 
 /**
  * <p>Class {@code ProduceSingleSamples} samples haplotype pairs for specified
- * individuals. Class {@code ProduceSingleSamples} is designed for use in a
- * producer-consumer design pattern.
+ * individuals. Class {@code ProduceSingleSamples} is designed for use with
+ * a {@code blbutil.WorkerPool}, with one instance for each worker.
  * </p>
- * Instances of class {@code ProduceSingleSamples} are thread-safe if the
- * synchronization requirements for the constructor are satisfied.
+ * <p>If the DAG of the {@code baum} parameter is a {@code dag.ChainDag},
+ * sampled haplotype pairs and posterior genotype probabilities are
+ * expanded to the markers of the DAG of which the {@code ChainDag}
+ * is a compressed view.
+ * </p>
+ * Instances of class {@code ProduceSingleSamples} are not thread-safe.
  *
  * @author Brian L. Browning {@code <browning@uw.edu>}
  */
-public class ProduceSingleSamples implements Runnable {
-
-    /**
-     * A sentinel {@code Integer}.
-     */
-    public static final Integer POISON = -1;
+public class ProduceSingleSamples {
 
     private final boolean markersAreReversed;
     private final SingleBaumInterface baum;
-    private final BlockingQueue<Integer> qIn;
-    private final List<HapPair> sampledHaps;
     private final GenotypeValues gv;
     private final double[] gprobs;
+    private final ChainExpander expander;
 
     /**
      * Constructs a new {@code ProduceSingleSample} instance.
@@ -57,29 +54,19 @@ public class ProduceSingleSamples implements Runnable {
      * their marker order reversed and {@code false} otherwise.
      * @param baum a thread-confined instance of class
      * {@code sample.SingleBaumInterface}.
-     * @param qIn a thread-safe input work queue.
-     * @param hapList a thread-safe list for storing sampled haplotype pairs.
      *
      * @throws NullPointerException if any parameter is {@code null}.
      */
     public ProduceSingleSamples(boolean markersAreReversed,
-            SingleBaumInterface baum, BlockingQueue<Integer> qIn,
-            List<HapPair> hapList) {
+            SingleBaumInterface baum) {
         if (baum == null) {
             throw new NullPointerException("baum=null");
         }
-        if (qIn == null) {
-            throw new IllegalArgumentException("qIn==null");
-        }
-        if (hapList == null) {
-            throw new IllegalArgumentException("hapList==null");
-        }
         this.markersAreReversed = markersAreReversed;
         this.baum = baum;
-        this.qIn = qIn;
-        this.sampledHaps = hapList;
         this.gv = null;
         this.gprobs = null;
+        this.expander = new ChainExpander(baum.dag());
     }
 
     /**
@@ -90,73 +77,58 @@ public class ProduceSingleSamples implements Runnable {
      * their marker order reversed and {@code false} otherwise.
      * @param baum a thread-confined instance of class
      * {@code sample.SingleBaumInterface}.
-     * @param qIn a thread-safe input work queue.
-     * @param hapList a thread-safe list for storing sampled haplotype pairs.
      * @param gv a thread-safe object which stores scaled posterior genotype
      * probabilities.
      *
      * @throws NullPointerException if any parameter is {@code null}.
      */
     public ProduceSingleSamples(boolean markersAreReversed,
-            SingleBaumInterface baum, BlockingQueue<Integer> qIn,
-            List<HapPair> hapList, GenotypeValues gv) {
+            SingleBaumInterface baum, GenotypeValues gv) {
         if (baum == null) {
             throw new NullPointerException("baum=null");
         }
-        if (qIn == null) {
-            throw new IllegalArgumentException("qIn==null");
-        }
-        if (hapList == null) {
-            throw new IllegalArgumentException("hapList==null");
-        }
         if (gv == null) {
             throw new IllegalArgumentException("gv==null");
         }
         this.markersAreReversed = markersAreReversed;
         this.baum = baum;
-        this.qIn = qIn;
         this.gv = gv;
-        this.sampledHaps = hapList;
         int n = baum.gl().markers().sumPhasedGenotypes();
         this.gprobs = new double[n];
+        this.expander = new ChainExpander(baum.dag());
     }
 
     /**
-     * Takes sample indices from the thread-safe work-queue specified at time of
-     * construction and samples haplotype pairs for each sample. The method
-     * exits when the integer {@code ProduceSingleSamples.POISON} is taken from
-     * the work queue.
+     * Returns a list of sampled haplotype pairs for the specified
+     * individual.  If a {@code GenotypeValues} object was specified at
+     * construction, the posterior genotype probabilities are added to it.
+     *
+     * @param single the index of a single individual.
+     * @return a list of sampled haplotype pairs for the specified
+     * individual.
+     *
+     * @throws IndexOutOfBoundsException if {@code single} is not
+     * a valid sample index
      */
-    @Override
-    @SuppressWarnings({"BroadCatchBlock", "TooBroadCatch"})
-    public void run() {
-        try {
-            int single = qIn.take();
-            while (single != POISON) {
-                if (gv == null) {
-                    List<HapPair> newHaps = baum.randomSample(single);
-                    storeHaps(newHaps);
-                } else {
-                    List<HapPair> newHaps = baum.randomSample(single,
-                            gprobs);
-                    storeHaps(newHaps);
-                    gv.add(single, gprobs);
-
-                }
-                single = qIn.take();
-            }
-        } catch (Throwable e) {
-            Utilities.exit("ProduceSingleSamples: ERROR", e);
+    public List<HapPair> sample(int single) {
+        if (gv == null) {
+            return outputHaps(baum.randomSample(single));
+        } else {
+            List<HapPair> newHaps = baum.randomSample(single, gprobs);
+            gv.add(single, expander.expandGtProbs(gprobs));
+            return outputHaps(newHaps);
         }
     }
 
-    private void storeHaps(List<HapPair> newHaps) {
+    private List<HapPair> outputHaps(List<HapPair> newHaps) {
+        newHaps = expander.expand(newHaps);
         if (markersAreReversed) {
+            List<HapPair> revHaps = new ArrayList<>(newHaps.size());
             for (HapPair hp : newHaps) {
-                sampledHaps.add(new RevHapPair(hp));
+                revHaps.add(new RevHapPair(hp));
             }
-        } else {
-            sampledHaps.addAll(newHaps);
+            newHaps = revHaps;
         }
+        return newHaps;
     }
 }
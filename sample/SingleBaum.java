@@ -41,8 +41,7 @@ public class SingleBaum implements SingleBaumInterface {
     private final long seed;
     private final Random random;
 
-    private final int[] node1;
-    private final int[] node2;
+    private final int[] nodeIndex;
     private final double[] nodeValue;
 
     private final byte[][] alleles1;
@@ -83,8 +82,7 @@ public class SingleBaum implements SingleBaumInterface {
         this.seed = seed;
         this.random = new Random(seed);
 
-        this.node1 = new int[nCopies];
-        this.node2 = new int[nCopies];
+        this.nodeIndex = new int[nCopies];
         this.nodeValue = new double[nCopies];
         this.alleles1 = new byte[nCopies][gl.nMarkers()];
         this.alleles2 = new byte[nCopies][gl.nMarkers()];
@@ -176,8 +174,7 @@ public class SingleBaum implements SingleBaumInterface {
         int m = level.marker();
         for (int copy=0; copy<nCopies; ++copy) {
             int state = initialRandomState(level);
-            node1[copy] = level.parentNode1(state);
-            node2[copy] = level.parentNode2(state);
+            nodeIndex[copy] = level.parentIndex(state);
             nodeValue[copy] =  parentSum(level, sample, state);
             alleles1[copy][m] = level.symbol1(state);
             alleles2[copy][m] = level.symbol2(state);
@@ -212,30 +209,29 @@ public class SingleBaum implements SingleBaumInterface {
     private void sampleAlleles(SingleBaumLevel level, int sample) {
         int m = level.marker();
         for (int copy=0; copy<nCopies; ++copy) {
-            int state = randomPreviousState(level, node1[copy], node2[copy],
+            int state = randomPreviousState(level, nodeIndex[copy],
                     nodeValue[copy]);
-            node1[copy] = level.parentNode1(state);
-            node2[copy] = level.parentNode2(state);
+            nodeIndex[copy] = level.parentIndex(state);
             nodeValue[copy] =  parentSum(level, sample, state);
             alleles1[copy][m] = level.symbol1(state);
             alleles2[copy][m] = level.symbol2(state);
         }
     }
 
-    private int randomPreviousState(SingleBaumLevel level, int node1,
-            int node2, double nodeValue) {
+    private int randomPreviousState(SingleBaumLevel level, int nodeIndex,
+            double nodeValue) {
         double d = random.nextDouble() * nodeValue;
         double sum = 0.0;
-        for (int j=0, n=level.size(); j<n; ++j) {
-            if ( node1==level.childNode1(j)
-                    && node2==level.childNode2(j) ) {
-                sum += level.forwardValue(j);
-                if (d <= sum) {
-                    return j;
-                }
+        int n = level.nChildStates(nodeIndex);
+        for (int k=0; k<n; ++k) {
+            int j = level.childState(nodeIndex, k);
+            sum += level.forwardValue(j);
+            if (d <= sum) {
+                return j;
             }
         }
-        return level.size()-1; // error in finite bit arithmetic encountered
+        // error in finite bit arithmetic encountered
+        return level.childState(nodeIndex, n-1);
     }
 
     private SingleBaumLevel nextLevel() {
@@ -18,6 +18,8 @@
  */
 package sample;
 
+import java.util.Arrays;
+
 /**
  * Class {@code SingleNodes} stores ordered node pairs and associated values.
  *
@@ -26,13 +28,17 @@ package sample;
 public class SingleNodes {
 
     private static final double loadFactor = 0.75;
+    private static final long HASH_MULTIPLIER = 0x9e3779b97f4a7c15L;
 
     private int[] index;
-    private int[] node1;
-    private int[] node2;
+    private long[] key;     // (node1 << 32) | node2
     private double[] value;
+    private int[] enumIndices;
+    private int[] generations;
+    private int generation; // a slot is in use iff generations[i]==generation
     private int size;
     private int maxSize; // required to be a power of 2.
+    private int shift;   // 64 - log2(maxSize)
     private int rehashThreshold;
 
 
@@ -42,52 +48,37 @@ public class SingleNodes {
      */
     public SingleNodes() {
         this.size = 0;
-        this.maxSize = (1<<10);
+        this.generation = 1;
+        allocate(1<<10);
+    }
+
+    private void allocate(int maxSize) {
+        this.maxSize = maxSize;
+        this.shift = Long.numberOfLeadingZeros(maxSize) + 1;
         this.rehashThreshold = (int) (loadFactor * maxSize);
         this.index = new int[maxSize];
-        this.node1 = new int[maxSize];
-        this.node2 = new int[maxSize];
+        this.key = new long[maxSize];
         this.value = new double[maxSize];
+        this.enumIndices = new int[maxSize];
+        this.generations = new int[maxSize];
     }
 
-    private static int hash1(int node1, int node2) {
-        int hash = 5;
-        hash = 71 * hash + node1;
-        hash = 71 * hash + node2;
-        return hash;
-    }
-
-    private static int hash2(int node1, int node2) {
-        int hash = 7;
-        hash = 97 * hash + node1;
-        hash = 97 * hash + node2;
-        return hash;
+    private static long key(int node1, int node2) {
+        return ((long) node1 << 32) | (node2 & 0xffffffffL);
     }
 
     /*
-     * Return the storage index for specified node pair.  If the key is not
+     * Return the storage index for specified key.  If the key is not
      * currently stored in the hash table, the index at which the value
      * should be stored is returned.
      */
-    private int index(int node1, int node2) {
-        int h1 = hash1(node1, node2);
-        int h2 = hash2(node1, node2);
-        if ((h2 & 1)==0) {
-            // h2 must be relatively prime to maxSize, which is a power of 2
-            ++h2;
+    private int index(long key) {
+        int mask = maxSize - 1;
+        int i = (int) ((key*HASH_MULTIPLIER) >>> shift);
+        while (generations[i]==generation && this.key[i]!=key) {
+            i = (i + 1) & mask;
         }
-        for (int k=0; k<maxSize; ++k) {
-            int i = (h1 + k*h2) % maxSize;
-            if (i<0) {
-                i = -i;
-            }
-            if (value[i]==0.0
-                    || (this.node1[i]==node1 && this.node2[i]==node2)) {
-                return i;
-            }
-        }
-        assert false;
-        return -1;
+        return i;
     }
 
     /*
@@ -100,25 +91,20 @@ public class SingleNodes {
             throw new IllegalStateException("hash table overflow");
         }
         int[] oldIndices = index;
-        int[] oldNode1 = node1;
-        int[] oldNode2 = node2;
+        long[] oldKey = key;
         double[] oldValue = value;
 
-        maxSize = newMaxSize;
-        index = new int[newMaxSize];
-        node1 = new int[newMaxSize];
-        node2 = new int[newMaxSize];
-        value = new double[newMaxSize];
-
+        allocate(newMaxSize);
+        generation = 1;
         for (int j=0; j<size; ++j) {
             int oldIndex = oldIndices[j];
-            int newIndex = index(oldNode1[oldIndex], oldNode2[oldIndex]);
+            int newIndex = index(oldKey[oldIndex]);
             index[j] = newIndex;
-            node1[newIndex] = oldNode1[oldIndex];
-            node2[newIndex] = oldNode2[oldIndex];
+            enumIndices[newIndex] = j;
+            generations[newIndex] = generation;
+            key[newIndex] = oldKey[oldIndex];
             value[newIndex] = oldValue[oldIndex];
         }
-        rehashThreshold = (int) (loadFactor * maxSize);
     }
 
     /**
@@ -135,16 +121,18 @@ public class SingleNodes {
      */
     public void maxUpdate(int node1, int node2, double value) {
         if (value>0.0) {
-            int i = index(node1, node2);
-            if (this.value[i]>0.0) {
+            long k = key(node1, node2);
+            int i = index(k);
+            if (generations[i]==generation) {
                 if (value>this.value[i]) {
                     this.value[i] = value;
                 }
             }
             else {
+                this.enumIndices[i] = size;
                 this.index[size++] = i;
-                this.node1[i] = node1;
-                this.node2[i] = node2;
+                this.generations[i] = generation;
+                this.key[i] = k;
                 this.value[i] = value;
                 if (this.size>=this.rehashThreshold) {
                     rehash();
@@ -163,29 +151,36 @@ public class SingleNodes {
      * @param node1 the first node.
      * @param node2 the second node.
      * @param value the value.
+     * @return the index of the node pair in the list of node pairs with non-zero
+     * value, or -1 if the node pair has value 0.
      *
      * @throws IllegalArgumentException if
      * {@code value<0.0 || Double.isNaN(value)}
      */
-    public void sumUpdate(int node1, int node2, double value) {
+    public int sumUpdate(int node1, int node2, double value) {
         if (value>0.0) {
-            int i = index(node1, node2);
-            if (this.value[i]>0.0) {
+            long k = key(node1, node2);
+            int i = index(k);
+            if (generations[i]==generation) {
                 this.value[i] += value;
+                return enumIndices[i];
             }
             else {
+                this.enumIndices[i] = size;
                 this.index[size++] = i;
-                this.node1[i] = node1;
-                this.node2[i] = node2;
-                this.value[i] += value;
+                this.generations[i] = generation;
+                this.key[i] = k;
+                this.value[i] = value;
                 if (this.size>=this.rehashThreshold) {
                     rehash();
                 }
+                return size - 1;
             }
         }
         else if (value>=0.0==false) {
             throw new IllegalArgumentException(String.valueOf(value));
         }
+        return enumIndex(node1, node2);
     }
 
     /**
@@ -215,7 +210,7 @@ public class SingleNodes {
      */
     public int enumNode1(int index) {
         checkSize(index);
-        return node1[this.index[index]];
+        return (int) (key[this.index[index]] >>> 32);
     }
 
     /**
@@ -231,7 +226,7 @@ public class SingleNodes {
      */
     public int enumNode2(int index) {
         checkSize(index);
-        return node2[this.index[index]];
+        return (int) key[this.index[index]];
     }
 
     /**
@@ -250,6 +245,20 @@ public class SingleNodes {
         return value[this.index[index]];
     }
 
+    /**
+     * Returns the index of the specified node pair in the list of node pairs
+     * with non-zero value, or returns -1 if the node pair has value 0.
+     *
+     * @param node1 the first node.
+     * @param node2 the second node.
+     * @return the index of the specified node pair in the list of node pairs
+     * with non-zero value, or -1 if the node pair has value 0.
+     */
+    public int enumIndex(int node1, int node2) {
+        int i = index(key(node1, node2));
+        return generations[i]==generation ? enumIndices[i] : -1;
+    }
+
     /**
      * Returns the specified node pair value.
      *
@@ -258,16 +267,20 @@ public class SingleNodes {
      * @return the specified node pair value.
      */
     public double value(int node1, int node2) {
-        return value[index(node1, node2)];
+        int i = index(key(node1, node2));
+        return generations[i]==generation ? value[i] : 0.0;
     }
 
     /**
-     * Sets the value of each node pair to 0.0.
+     * Sets the value of each node pair to 0.0.  The hash table is
+     * cleared in constant time by advancing the generation number.
      */
     public void clear() {
-        for (int j=0; j<this.size; ++j) {
-            value[index[j]] = 0.0;
+        if (generation==Integer.MAX_VALUE) {
+            Arrays.fill(generations, 0);
+            generation = 0;
         }
+        ++generation;
         size = 0;
     }
 
@@ -42,10 +42,7 @@ public class TrioBaum {
     private final long seed;
     private final Random random;
 
-    private final int[] nodeA1;
-    private final int[] nodeA2;
-    private final int[] nodeB1;
-    private final int[] nodeB2;
+    private final int[] nodeIndex;
     private final double[] nodeValue;
 
     private final byte[][] allelesA1;
@@ -88,10 +85,7 @@ public class TrioBaum {
         this.seed = seed;
         this.random = new Random(seed);
 
-        this.nodeA1 = new int[nCopies];
-        this.nodeA2 = new int[nCopies];
-        this.nodeB1 = new int[nCopies];
-        this.nodeB2 = new int[nCopies];
+        this.nodeIndex = new int[nCopies];
         this.nodeValue = new double[nCopies];
         this.allelesA1 = new byte[nCopies][gl.nMarkers()];
         this.allelesA2 = new byte[nCopies][gl.nMarkers()];
@@ -143,6 +137,17 @@ public class TrioBaum {
         return seed;
     }
 
+    /**
+     * Sets the seed of the random number generator that is used to
+     * sample haplotype pairs.  Setting the seed before each call to
+     * {@code this.sample()} makes the sampled haplotype pairs for a
+     * family independent of the families that were previously sampled.
+     * @param seed the random seed.
+     */
+    public void setSeed(long seed) {
+        random.setSeed(seed);
+    }
+
     /**
      * <p>Returns a list of {@code this.nCopies()} sampled haplotype pairs for
      * the specified father ({@code sampleA}), mother ({@code sampleB}), and
@@ -286,10 +291,7 @@ public class TrioBaum {
         int m = level.marker();
         for (int copy=0; copy<nCopies; ++copy) {
             int state = initialRandomState(level);
-            nodeA1[copy] = level.parentNodeA1(state);
-            nodeA2[copy] = level.parentNodeA2(state);
-            nodeB1[copy] = level.parentNodeB1(state);
-            nodeB2[copy] = level.parentNodeB2(state);
+            nodeIndex[copy] = level.parentIndex(state);
             nodeValue[copy] =  parentSum(level, sampleA, sampleB, sampleC, state);
             allelesA1[copy][m] = level.symbolA1(state);
             allelesA2[copy][m] = level.symbolA2(state);
@@ -337,12 +339,9 @@ public class TrioBaum {
             int sampleC) {
         int m = level.marker();
         for (int copy=0; copy<nCopies; ++copy) {
-            int state = randomPreviousState(level, nodeA1[copy], nodeA2[copy],
-                    nodeB1[copy], nodeB2[copy], nodeValue[copy]);
-            nodeA1[copy] = level.parentNodeA1(state);
-            nodeA2[copy] = level.parentNodeA2(state);
-            nodeB1[copy] = level.parentNodeB1(state);
-            nodeB2[copy] = level.parentNodeB2(state);
+            int state = randomPreviousState(level, nodeIndex[copy],
+                    nodeValue[copy]);
+            nodeIndex[copy] = level.parentIndex(state);
             nodeValue[copy] =  parentSum(level, sampleA, sampleB, sampleC, state);
             allelesA1[copy][m] = level.symbolA1(state);
             allelesA2[copy][m] = level.symbolA2(state);
@@ -351,22 +350,20 @@ public class TrioBaum {
         }
     }
 
-    private int randomPreviousState(TrioBaumLevel level, int nodeA1,
-            int nodeA2, int nodeB1, int nodeB2, double nodeValue) {
+    private int randomPreviousState(TrioBaumLevel level, int nodeIndex,
+            double nodeValue) {
         double d = random.nextDouble() * nodeValue;
         double sum = 0.0;
-        for (int j=0, n=level.size(); j<n; ++j) {
-            if ( nodeA1==level.childNodeA1(j)
-                    && nodeA2==level.childNodeA2(j)
-                    && nodeB1==level.childNodeB1(j)
-                    && nodeB2==level.childNodeB2(j) ) {
-                sum += level.forwardValue(j);
-                if (d <= sum) {
-                    return j;
-                }
+        int n = level.nChildStates(nodeIndex);
+        for (int k=0; k<n; ++k) {
+            int j = level.childState(nodeIndex, k);
+            sum += level.forwardValue(j);
+            if (d <= sum) {
+                return j;
             }
         }
-        return level.size()-1; // error in finite bit arithmetic encountered
+        // error in finite bit arithmetic encountered
+        return level.childState(nodeIndex, n-1);
     }
 
     private TrioBaumLevel nextLevel() {
@@ -47,6 +47,11 @@ public class TrioBaumLevel {
     private int[] edgesA2 = new int[INITIAL_CAPACITY];
     private int[] edgesB1 = new int[INITIAL_CAPACITY];
     private int[] edgesB2 = new int[INITIAL_CAPACITY];
+    private int[] parentIndices = new int[INITIAL_CAPACITY];
+    private int[] childIndices = new int[INITIAL_CAPACITY];
+    private int[] childStates = new int[INITIAL_CAPACITY];
+    private int[] childStart = new int[INITIAL_CAPACITY+1];
+    private int nChildIndices = 0;
     private double[] fwdValues = new double[INITIAL_CAPACITY];
     private double[] bwdValues = new double[INITIAL_CAPACITY];
     private double fwdValueSum = 0.0;
@@ -185,6 +190,7 @@ public class TrioBaumLevel {
                                         edgesA2[size] = edgeA2;
                                         edgesB1[size] = edgeB1;
                                         edgesB2[size] = edgeB2;
+                                        parentIndices[size] = j;
                                         fwdValues[size++] = fwdValue;
                                         valueSum += fwdValue;
                                     }
@@ -218,7 +224,34 @@ public class TrioBaumLevel {
             int nodeA2 = dag.childNode(marker, edgesA2[k]);
             int nodeB1 = dag.childNode(marker, edgesB1[k]);
             int nodeB2 = dag.childNode(marker, edgesB2[k]);
-            nodes.sumUpdate(nodeA1, nodeA2, nodeB1, nodeB2, fwdValues[k]);
+            childIndices[k] = nodes.sumUpdate(nodeA1, nodeA2, nodeB1, nodeB2, fwdValues[k]);
+        }
+        setChildStates(nodes.size());
+    }
+
+    /*
+     * Groups the states at this level of the HMM by child node quartet index
+     * so that the states with a specified child node quartet can be enumerated
+     * in increasing order.
+     */
+    private void setChildStates(int nChildIndices) {
+        this.nChildIndices = nChildIndices;
+        if (childStart.length <= nChildIndices) {
+            childStart = new int[nChildIndices + 1];
+        }
+        Arrays.fill(childStart, 0, nChildIndices + 1, 0);
+        for (int k=0; k<size; ++k) {
+            if (childIndices[k] >= 0) {
+                ++childStart[childIndices[k]];
+            }
+        }
+        for (int j=1; j<=nChildIndices; ++j) {
+            childStart[j] += childStart[j-1];
+        }
+        for (int k=size-1; k>=0; --k) {
+            if (childIndices[k] >= 0) {
+                childStates[--childStart[childIndices[k]]] = k;
+            }
         }
     }
 
@@ -405,6 +438,66 @@ public class TrioBaumLevel {
         }
     }
 
+    /**
+     * Returns the index of the parent node quartet of the specified HMM state
+     * in the list of node quartets with non-zero value that was used to set
+     * the Baum forward algorithm values for this level of the HMM.
+     *
+     * @param state an index of a HMM state at this level with nonzero
+     * forward probability.
+     * @return the index of the parent node quartet of the specified HMM state.
+     *
+     * @throws IndexOutOfBoundsException if
+     * {@code state<0 || state>=this.size()}
+     */
+    public int parentIndex(int state) {
+        checkIndex(state);
+        return parentIndices[state];
+    }
+
+    /**
+     * Returns the number of HMM states at this level whose child
+     * node quartet has the specified index in the list of child node quartets
+     * stored by the most recent call to
+     * {@code this.setChildNodes(TrioNodes)}.
+     *
+     * @param childIndex an index of a child node quartet.
+     * @return the number of HMM states whose child node quartet has the
+     * specified index.
+     *
+     * @throws IndexOutOfBoundsException if {@code childIndex<0}
+     * or if {@code childIndex} is greater than or equal to the number
+     * of child node quartets
+     */
+    public int nChildStates(int childIndex) {
+        if (childIndex >= nChildIndices) {
+            throw new IndexOutOfBoundsException(String.valueOf(childIndex));
+        }
+        return childStart[childIndex+1] - childStart[childIndex];
+    }
+
+    /**
+     * Returns the specified HMM state whose child node quartet has the
+     * specified index in the list of child node quartets stored by the most
+     * recent call to {@code this.setChildNodes(TrioNodes)}.  States with
+     * the same child node quartet are listed in increasing order.
+     *
+     * @param childIndex an index of a child node quartet.
+     * @param k an index in the list of HMM states whose child node quartet
+     * has the specified index.
+     * @return the specified HMM state whose child node quartet has the
+     * specified index.
+     *
+     * @throws IndexOutOfBoundsException if
+     * {@code k<0 || k>=this.nChildStates(childIndex)}
+     */
+    public int childState(int childIndex, int k) {
+        if (k<0 || k >= nChildStates(childIndex)) {
+            throw new IndexOutOfBoundsException(String.valueOf(k));
+        }
+        return childStates[childStart[childIndex] + k];
+    }
+
     /**
      * Returns the DAG level edge index for the first edge of the
      * specified HMM state with nonzero forward probability.
@@ -789,6 +882,9 @@ public class TrioBaumLevel {
             edgesB2 = Arrays.copyOf(edgesB2, capacity);
             fwdValues = Arrays.copyOf(fwdValues, capacity);
             bwdValues = Arrays.copyOf(bwdValues, capacity);
+            parentIndices = Arrays.copyOf(parentIndices, capacity);
+            childIndices = Arrays.copyOf(childIndices, capacity);
+            childStates = Arrays.copyOf(childStates, capacity);
         }
     }
 }
@@ -18,6 +18,8 @@
  */
 package sample;
 
+import java.util.Arrays;
+
 /**
  * Class {@code TrioNodes} stores ordered node quartets and associated values.
  *
@@ -25,18 +27,21 @@ package sample;
  */
 public class TrioNodes {
 
-    private final double loadFactor = 0.75;
+    private static final double loadFactor = 0.75;
+    private static final long HASH_MULTIPLIER = 0x9e3779b97f4a7c15L;
 
     private int size;
     private int maxSize; // required to be a power of 2.
+    private int shift;   // 64 - log2(maxSize)
     private int rehashThreshold;
 
     private int[] index;
-    private int[] nodeA1;
-    private int[] nodeA2;
-    private int[] nodeB1;
-    private int[] nodeB2;
+    private long[] keyA;    // (nodeA1 << 32) | nodeA2
+    private long[] keyB;    // (nodeB1 << 32) | nodeB2
     private double[] value;
+    private int[] enumIndices;
+    private int[] generations;
+    private int generation; // a slot is in use iff generations[i]==generation
 
     /**
      * Creates a new instance of {@code TrioNodes} that has an
@@ -44,59 +49,40 @@ public class TrioNodes {
      */
     public TrioNodes() {
         this.size = 0;
-        this.maxSize = (1<<10);
+        this.generation = 1;
+        allocate(1<<10);
+    }
+
+    private void allocate(int maxSize) {
+        this.maxSize = maxSize;
+        this.shift = Long.numberOfLeadingZeros(maxSize) + 1;
         this.rehashThreshold = (int) (loadFactor * maxSize);
         this.index = new int[maxSize];
-        this.nodeA1 = new int[maxSize];
-        this.nodeA2 = new int[maxSize];
-        this.nodeB1 = new int[maxSize];
-        this.nodeB2 = new int[maxSize];
+        this.keyA = new long[maxSize];
+        this.keyB = new long[maxSize];
         this.value = new double[maxSize];
+        this.enumIndices = new int[maxSize];
+        this.generations = new int[maxSize];
     }
 
-    private static int hash1(int nodeA1, int nodeA2, int nodeB1, int nodeB2) {
-        int hash = 5;
-        hash = 71 * hash + nodeA1;
-        hash = 71 * hash + nodeA2;
-        hash = 71 * hash + nodeB1;
-        hash = 71 * hash + nodeB2;
-        return hash;
-    }
-
-    private static int hash2(int nodeA1, int nodeA2, int nodeB1, int nodeB2) {
-        int hash = 7;
-        hash = 97 * hash + nodeA1;
-        hash = 97 * hash + nodeA2;
-        hash = 97 * hash + nodeB1;
-        hash = 97 * hash + nodeB2;
-        return hash;
+    private static long key(int node1, int node2) {
+        return ((long) node1 << 32) | (node2 & 0xffffffffL);
     }
 
     /*
-     * Return the storage index for specified node trio.  If the key is not
-     * currently stored in the hash table, the index at which the value
+     * Return the storage index for specified node quartet.  If the key is
+     * not currently stored in the hash table, the index at which the value
      * should be stored is returned.
      */
-    private int index(int a1, int a2, int b1, int b2) {
-        int h1 = hash1(a1, a2, b1, b2);
-        int h2 = hash2(a1, a2, b1, b2);
-        if ((h2 & 1)==0) {
-            // h2 must be relatively prime to maxSize, which is a power of 2
-            ++h2;
+    private int index(long keyA, long keyB) {
+        int mask = maxSize - 1;
+        long h = (keyA*HASH_MULTIPLIER + keyB)*HASH_MULTIPLIER;
+        int i = (int) (h >>> shift);
+        while (generations[i]==generation
+                && (this.keyA[i]!=keyA || this.keyB[i]!=keyB)) {
+            i = (i + 1) & mask;
         }
-        for (int k=0; k<maxSize; ++k) {
-            int i = (h1 + k*h2) % maxSize;
-            if (i<0) {
-                i = -i;
-            }
-            if (value[i]==0.0 ||
-                    (nodeA1[i]==a1 && nodeA2[i]==a2
-                    && nodeB1[i]==b1 && nodeB2[i]==b2)) {
-                return i;
-            }
-        }
-        assert false;
-        return -1;
+        return i;
     }
 
     /*
@@ -109,32 +95,22 @@ public class TrioNodes {
             throw new IllegalStateException("hash table overflow");
         }
         int[] oldIndices = index;
-        int[] oldNodeA1 = nodeA1;
-        int[] oldNodeA2 = nodeA2;
-        int[] oldNodeB1 = nodeB1;
-        int[] oldNodeB2 = nodeB2;
+        long[] oldKeyA = keyA;
+        long[] oldKeyB = keyB;
         double[] oldValue = value;
 
-        maxSize = newMaxSize;
-        index = new int[newMaxSize];
-        nodeA1 = new int[newMaxSize];
-        nodeA2 = new int[newMaxSize];
-        nodeB1 = new int[newMaxSize];
-        nodeB2 = new int[newMaxSize];
-        value = new double[newMaxSize];
-
+        allocate(newMaxSize);
+        generation = 1;
         for (int j=0; j<size; ++j) {
             int oldIndex = oldIndices[j];
-            int newIndex = index(oldNodeA1[oldIndex], oldNodeA2[oldIndex],
-                    oldNodeB1[oldIndex], oldNodeB2[oldIndex]);
+            int newIndex = index(oldKeyA[oldIndex], oldKeyB[oldIndex]);
             index[j] = newIndex;
-            nodeA1[newIndex] = oldNodeA1[oldIndex];
-            nodeA2[newIndex] = oldNodeA2[oldIndex];
-            nodeB1[newIndex] = oldNodeB1[oldIndex];
-            nodeB2[newIndex] = oldNodeB2[oldIndex];
+            enumIndices[newIndex] = j;
+            generations[newIndex] = generation;
+            keyA[newIndex] = oldKeyA[oldIndex];
+            keyB[newIndex] = oldKeyB[oldIndex];
             value[newIndex] = oldValue[oldIndex];
         }
-        rehashThreshold = (int) (loadFactor * maxSize);
     }
 
     /**
@@ -154,18 +130,20 @@ public class TrioNodes {
     public void maxUpdate(int nodeA1, int nodeA2, int nodeB1, int nodeB2,
             double value) {
         if (value>0.0) {
-            int i = index(nodeA1, nodeA2, nodeB1, nodeB2);
-            if (this.value[i]>0.0) {
+            long kA = key(nodeA1, nodeA2);
+            long kB = key(nodeB1, nodeB2);
+            int i = index(kA, kB);
+            if (generations[i]==generation) {
                 if (value>this.value[i]) {
                     this.value[i] = value;
                 }
             }
             else {
+                this.enumIndices[i] = size;
                 this.index[size++] = i;
-                this.nodeA1[i] = nodeA1;
-                this.nodeA2[i] = nodeA2;
-                this.nodeB1[i] = nodeB1;
-                this.nodeB2[i] = nodeB2;
+                this.generations[i] = generation;
+                this.keyA[i] = kA;
+                this.keyB[i] = kB;
                 this.value[i] = value;
                 if (this.size>=this.rehashThreshold) {
                     rehash();
@@ -186,32 +164,39 @@ public class TrioNodes {
      * @param nodeB1 the third node.
      * @param nodeB2 the fourth node.
      * @param value the value.
+     * @return the index of the node quartet in the list of node quartets with non-zero
+     * value, or -1 if the node quartet has value 0.
      *
      * @throws IllegalArgumentException if
      * {@code value<0.0 || Double.isNaN(value)}
      */
-    public void sumUpdate(int nodeA1, int nodeA2, int nodeB1, int nodeB2,
+    public int sumUpdate(int nodeA1, int nodeA2, int nodeB1, int nodeB2,
             double value) {
         if (value>0.0) {
-            int i = index(nodeA1, nodeA2, nodeB1, nodeB2);
-            if (this.value[i]>0.0) {
+            long kA = key(nodeA1, nodeA2);
+            long kB = key(nodeB1, nodeB2);
+            int i = index(kA, kB);
+            if (generations[i]==generation) {
                 this.value[i] += value;
+                return enumIndices[i];
             }
             else {
+                this.enumIndices[i] = size;
                 this.index[size++] = i;
-                this.nodeA1[i] = nodeA1;
-                this.nodeA2[i] = nodeA2;
-                this.nodeB1[i] = nodeB1;
-                this.nodeB2[i] = nodeB2;
-                this.value[i] += value;
+                this.generations[i] = generation;
+                this.keyA[i] = kA;
+                this.keyB[i] = kB;
+                this.value[i] = value;
                 if (this.size>this.rehashThreshold) {
                     rehash();
                 }
+                return size - 1;
             }
         }
         else if (value>=0.0==false) {
             throw new IllegalArgumentException(String.valueOf(value));
         }
+        return enumIndex(nodeA1, nodeA2, nodeB1, nodeB2);
     }
 
     /**
@@ -241,7 +226,7 @@ public class TrioNodes {
      */
     public int enumNodeA1(int index) {
         checkSize(index);
-        return nodeA1[this.index[index]];
+        return (int) (keyA[this.index[index]] >>> 32);
     }
 
     /**
@@ -257,7 +242,7 @@ public class TrioNodes {
      */
     public int enumNodeA2(int index) {
         checkSize(index);
-        return nodeA2[this.index[index]];
+        return (int) keyA[this.index[index]];
     }
 
     /**
@@ -273,7 +258,7 @@ public class TrioNodes {
      */
     public int enumNodeB1(int index) {
         checkSize(index);
-        return nodeB1[this.index[index]];
+        return (int) (keyB[this.index[index]] >>> 32);
     }
 
     /**
@@ -289,7 +274,7 @@ public class TrioNodes {
      */
     public int enumNodeB2(int index) {
         checkSize(index);
-        return nodeB2[this.index[index]];
+        return (int) keyB[this.index[index]];
     }
 
     /**
@@ -308,6 +293,22 @@ public class TrioNodes {
         return value[this.index[index]];
     }
 
+    /**
+     * Returns the index of the specified node quartet in the list of node quartets
+     * with non-zero value, or returns -1 if the node quartet has value 0.
+     *
+     * @param nodeA1 the first node index.
+     * @param nodeA2 the second node index.
+     * @param nodeB1 the third node index.
+     * @param nodeB2 the fourth node index.
+     * @return the index of the specified node quartet in the list of node quartets
+     * with non-zero value, or -1 if the node quartet has value 0.
+     */
+    public int enumIndex(int nodeA1, int nodeA2, int nodeB1, int nodeB2) {
+        int i = index(key(nodeA1, nodeA2), key(nodeB1, nodeB2));
+        return generations[i]==generation ? enumIndices[i] : -1;
+    }
+
     /**
      * Returns the specified ordered node quartet value.
      *
@@ -318,16 +319,20 @@ public class TrioNodes {
      * @return the specified ordered node quartet value.
      */
     public double value(int nodeA1, int nodeA2, int nodeB1, int nodeB2) {
-        return value[index(nodeA1, nodeA2, nodeB1, nodeB2)];
+        int i = index(key(nodeA1, nodeA2), key(nodeB1, nodeB2));
+        return generations[i]==generation ? value[i] : 0.0;
     }
 
     /**
-     * Sets the value of each node quartet to 0.0.
+     * Sets the value of each node quartet to 0.0.  The hash table is
+     * cleared in constant time by advancing the generation number.
      */
     public void clear() {
-        for (int j=0; j<this.size; ++j) {
-            value[index[j]] = 0.0;
+        if (generation==Integer.MAX_VALUE) {
+            Arrays.fill(generations, 0);
+            generation = 0;
         }
+        ++generation;
         size = 0;
     }
 
@@ -22,7 +22,7 @@ import blbutil.SampleFileIterator;
 import beagleutil.ChromInterval;
 import beagleutil.Samples;
 import blbutil.Filter;
-import blbutil.FilterUtils;
+import blbutil.PrefetchIterator;
 import haplotype.HapPair;
 import haplotype.RefHapPairs;
 import haplotype.SampleHapPairs;
@@ -30,9 +30,7 @@ import haplotype.WrappedHapPair;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 /**
  * Class {@code Data} represents a sliding marker window for
@@ -71,20 +69,27 @@ public class AllData implements Data {
         this.targetRefHaps = new ArrayList<>(0);
     }
 
-    private static Filter<Marker> restrictToVcfMarkers(File vcfFile,
-            Filter<Marker> markerFilter, ChromInterval chromInterval) {
-        Set<Marker> includedMarkers = new HashSet<>(50000);
-        SampleFileIterator<VcfRecord> it = new VcfIterator(vcfFile);
-        if (chromInterval != null) {
-            it = new IntervalVcfIterator(it, chromInterval);
-        }
-        if (markerFilter != null) {
-            it = new FilteredVcfIterator(it, markerFilter);
+    /*
+     * Returns an iterator over the reference data in a VCF file or
+     * in a bref file.  If {@code join!=null}, only reference markers that
+     * are present in the target data are returned.
+     */
+    private static SampleFileIterator<VcfEmission> refIterator(File ref,
+            Filter<String> sampleFilter, Filter<Marker> markerFilter,
+            ChromInterval chromInterval, VcfMarkerJoin join) {
+        if (BrefIterator.isBrefFile(ref)) {
+            SampleFileIterator<VcfEmission> it = new BrefIterator(ref,
+                    sampleFilter, markerFilter, chromInterval);
+            return join==null ? it : join.refEmissionIterator(it);
         }
-        while (it.hasNext()) {
-            includedMarkers.add(it.next().marker());
+        else {
+            SampleFileIterator<VcfRec> it = VcfIterator.filteredIterator(
+                    ref, sampleFilter, markerFilter, chromInterval);
+            if (join!=null) {
+                it = join.refIterator(it);
+            }
+            return new VcfRefIterator(it);
         }
-        return FilterUtils.includeFilter(includedMarkers);
     }
 
     private static void checkSampleOverlap(Samples ref, Samples nonRef) {
@@ -113,7 +118,8 @@ public class AllData implements Data {
      * from phased genotypes for reference samples and from called genotypes
      * for non-reference samples.
      *
-     * @param ref a file in VCF format with phased, non-missing genotypes.
+     * @param ref a file in VCF format with phased, non-missing genotypes,
+     * or a bref file (see {@code BrefWriter}).
      * The VCF records for each chromosome must be contiguous and sorted
      * in order of increasing position.
      * @param nonRef a file in VCF format with GT format field data.
@@ -130,6 +136,9 @@ public class AllData implements Data {
      * @param impute {@code true} if markers in the reference file
      * that are missing from the non-reference file should be imputed, and
      * {@code false} otherwise.
+     * @param lookAhead the maximum number of VCF records that are read
+     * ahead of the marker window by a background thread, or 0 if VCF records
+     * are read when the marker window is advanced.
      * @return a new {@code Data} instance.
      * @throws IllegalArgumentException if any VCF file is incorrectly
      * formatted.
@@ -147,26 +156,29 @@ public class AllData implements Data {
      * {@code pedFile} is not {@code null} and contains
      * a non-blank line having less than 4 white-space delimited fields
      * or contains duplicate individual identifiers in the second column.
+     * @throws IllegalArgumentException if {@code lookAhead<0}.
      * @throws NullPointerException if {@code ref==null || nonRef==null}.
      */
     public static Data gt(File ref, File nonRef, Filter<String> sampleFilter,
             Filter<Marker> markerFilter, ChromInterval chromInterval,
-            File pedFile, boolean usePhase, boolean impute) {
+            File pedFile, boolean usePhase, boolean impute,
+            int lookAhead) {
+        SampleFileIterator<VcfRec> filtNonRefIt =
+                VcfIterator.filteredIterator(nonRef, sampleFilter, markerFilter,
+                chromInterval);
+        VcfMarkerJoin join = null;
         if (impute==false) {
-            markerFilter = restrictToVcfMarkers(nonRef, markerFilter,
-                    chromInterval);
+            join = new VcfMarkerJoin(filtNonRefIt);
+            filtNonRefIt = join.targetIterator();
         }
-        SampleFileIterator<VcfRecord> filtRefIt = VcfIterator.filteredIterator(
-                ref, sampleFilter, markerFilter, chromInterval);
-        SampleFileIterator<VcfEmission> refIt = new VcfRefIterator(filtRefIt);
-        VcfWindow refWindow = new VcfWindow(refIt);
+        VcfWindow refWindow = new VcfWindow(PrefetchIterator.prefetch(
+                refIterator(ref, sampleFilter, markerFilter, chromInterval,
+                join), lookAhead));
 
-        SampleFileIterator<VcfRecord> filtNonRefIt =
-                VcfIterator.filteredIterator(nonRef, sampleFilter, markerFilter,
-                chromInterval);
         SampleFileIterator<VcfEmission> targetIt = VcfEmissionIterator.gt(
                 filtNonRefIt, pedFile, usePhase);
-        VcfWindow targetWindow = new VcfWindow(targetIt);
+        VcfWindow targetWindow = new VcfWindow(
+                PrefetchIterator.prefetch(targetIt, lookAhead));
 
         return new AllData(refWindow, targetWindow);
     }
@@ -176,7 +188,8 @@ public class AllData implements Data {
      * phased genotypes for reference samples and from genotype likelihoods
      * for non-reference samples.
      *
-     * @param ref a file in VCF format with phased, non-missing genotypes.
+     * @param ref a file in VCF format with phased, non-missing genotypes,
+     * or a bref file (see {@code BrefWriter}).
      * The VCF records for each chromosome must be contiguous and sorted
      * in order of increasing position.
      * @param nonRef a file in VCF format with GL or PL format field data.
@@ -203,6 +216,9 @@ public class AllData implements Data {
      * @param impute {@code true} if markers in the reference file
      * that are missing from the non-reference file should be imputed, and
      * {@code false} otherwise.
+     * @param lookAhead the maximum number of VCF records that are read
+     * ahead of the marker window by a background thread, or 0 if VCF records
+     * are read when the marker window is advanced.
      * @return a new {@code Data} instance.
      *
      * @throws IllegalArgumentException if either VCF file contains no samples.
@@ -215,26 +231,28 @@ public class AllData implements Data {
      * or contains duplicate individual identifiers in the second column.
      * @throws IllegalArgumentException if
      * {@code Float.isNaN(maxLR) || maxLR<=1.0f}.
+     * @throws IllegalArgumentException if {@code lookAhead<0}.
      * @throws NullPointerException if {@code ref==null || nonRef==null}.
      */
     public static Data gl(File ref, File nonRef, Filter<String> sampleFilter,
             Filter<Marker> markerFilter, ChromInterval chromInterval,
-            File pedFile, float maxLR, boolean impute) {
+            File pedFile, float maxLR, boolean impute, int lookAhead) {
+        SampleFileIterator<VcfRec> filtNonRefIt =
+                VcfIterator.filteredIterator(nonRef, sampleFilter, markerFilter,
+                chromInterval);
+        VcfMarkerJoin join = null;
         if (impute==false) {
-            markerFilter = restrictToVcfMarkers(nonRef, markerFilter,
-                    chromInterval);
+            join = new VcfMarkerJoin(filtNonRefIt);
+            filtNonRefIt = join.targetIterator();
         }
-        SampleFileIterator<VcfRecord> filtRefIt = VcfIterator.filteredIterator(
-                ref, sampleFilter, markerFilter, chromInterval);
-        SampleFileIterator<VcfEmission> refIt = new VcfRefIterator(filtRefIt);
-        VcfWindow refWindow = new VcfWindow(refIt);
+        VcfWindow refWindow = new VcfWindow(PrefetchIterator.prefetch(
+                refIterator(ref, sampleFilter, markerFilter, chromInterval,
+                join), lookAhead));
 
-        SampleFileIterator<VcfRecord> filtNonRefIt =
-                VcfIterator.filteredIterator(nonRef, sampleFilter, markerFilter,
-                chromInterval);
         SampleFileIterator<VcfEmission> targetIt = VcfEmissionIterator.gl(
                 filtNonRefIt, pedFile, maxLR);
-        VcfWindow targetWindow = new VcfWindow(targetIt);
+        VcfWindow targetWindow = new VcfWindow(
+                PrefetchIterator.prefetch(targetIt, lookAhead));
 
         return new AllData(refWindow, targetWindow);
     }
@@ -243,7 +261,8 @@ public class AllData implements Data {
      * Constructs and returns a new {@code Data} instance from
      * phased genotypes for reference samples and from genotype likelihoods
      * or called genotypes for non-reference samples.
-     * @param ref a file in VCF format with phased, non-missing genotypes.
+     * @param ref a file in VCF format with phased, non-missing genotypes,
+     * or a bref file (see {@code BrefWriter}).
      * The VCF records for each chromosome must be contiguous and sorted
      * in order of increasing position.
      * @param nonRef a file in VCF format with GL, PL, or GT format field data.
@@ -275,6 +294,9 @@ public class AllData implements Data {
      * @param impute {@code true} if markers in the reference file
      * that are missing from the non-reference file should be imputed, and
      * {@code false} otherwise.
+     * @param lookAhead the maximum number of VCF records that are read
+     * ahead of the marker window by a background thread, or 0 if VCF records
+     * are read when the marker window is advanced.
      * @return a new {@code Data} instance from
      * phased genotypes for reference samples and from genotype likelihoods
      * or called genotypes for non-reference samples.
@@ -289,26 +311,30 @@ public class AllData implements Data {
      * or contains duplicate individual identifiers in the second column.
      * @throws IllegalArgumentException if
      * {@code Float.isNaN(maxLR) || maxLR<=1.0f}.
+     * @throws IllegalArgumentException if {@code lookAhead<0}.
      * @throws NullPointerException if {@code ref==null || nonRef==null}.
      */
     public static Data gtgl(File ref, File nonRef, Filter<String> sampleFilter,
             Filter<Marker> markerFilter, ChromInterval chromInterval,
-            File pedFile, boolean usePhase, float maxLR, boolean impute) {
-        if (impute==false) {
-            markerFilter = restrictToVcfMarkers(nonRef, markerFilter, chromInterval);
-        }
+            File pedFile, boolean usePhase, float maxLR, boolean impute,
+            int lookAhead) {
         boolean preferGL = false;
-        SampleFileIterator<VcfRecord> filtRefIt = VcfIterator.filteredIterator(
-                ref, sampleFilter, markerFilter, chromInterval);
-        SampleFileIterator<VcfEmission> refIt = new VcfRefIterator(filtRefIt);
-        VcfWindow refWindow = new VcfWindow(refIt);
-
-        SampleFileIterator<VcfRecord> filtNonRefIt =
+        SampleFileIterator<VcfRec> filtNonRefIt =
                 VcfIterator.filteredIterator(nonRef, sampleFilter, markerFilter,
                 chromInterval);
+        VcfMarkerJoin join = null;
+        if (impute==false) {
+            join = new VcfMarkerJoin(filtNonRefIt);
+            filtNonRefIt = join.targetIterator();
+        }
+        VcfWindow refWindow = new VcfWindow(PrefetchIterator.prefetch(
+                refIterator(ref, sampleFilter, markerFilter, chromInterval,
+                join), lookAhead));
+
         SampleFileIterator<VcfEmission> targetIt = VcfEmissionIterator.gtgl(
                 filtNonRefIt, pedFile, usePhase, maxLR, preferGL);
-        VcfWindow targetWindow = new VcfWindow(targetIt);
+        VcfWindow targetWindow = new VcfWindow(
+                PrefetchIterator.prefetch(targetIt, lookAhead));
 
         return new AllData(refWindow, targetWindow);
     }
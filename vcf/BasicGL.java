@@ -101,6 +101,17 @@ public final class BasicGL implements GL {
         return vma[marker].gl(sample, allele1, allele2);
     }
 
+    /**
+     * Returns the genotype emission probabilities for the specified marker.
+     * @param marker a marker index.
+     * @return the genotype emission probabilities for the specified marker.
+     * @throws IndexOutOfBoundsException if
+     * {@code marker<0 || marker>=this.nMarkers()}.
+     */
+    public VcfEmission vcfEmission(int marker) {
+        return vma[marker];
+    }
+
     @Override
     public byte allele1(int marker, int sample) {
         return vma[marker].allele1(sample);
@@ -70,7 +70,7 @@ public final class BitSetGT implements VcfEmission {
      * "GT" format field.
      * @throws NullPointerException if {@code rec==null}.
      */
-    public BitSetGT(VcfRecord rec, boolean usePhase) {
+    public BitSetGT(VcfRec rec, boolean usePhase) {
         this(rec);
         setBits(rec, usePhase, bitsPerAllele, allele1, allele2, isMissing1,
                 isMissing2, isPhased);
@@ -92,7 +92,7 @@ public final class BitSetGT implements VcfEmission {
      * GT format field.
      * @throws NullPointerException if {@code rec==null || fam==null}.
      */
-    public BitSetGT(VcfRecord rec, NuclearFamilies fam, boolean usePhase) {
+    public BitSetGT(VcfRec rec, NuclearFamilies fam, boolean usePhase) {
         this(rec);
         if (rec.samples().equals(fam.samples())==false) {
             throw new IllegalArgumentException("inconsistent samples");
@@ -103,7 +103,7 @@ public final class BitSetGT implements VcfEmission {
                 isMissing2);
     }
 
-    private BitSetGT(VcfRecord rec) {
+    private BitSetGT(VcfRec rec) {
         int nSamples = rec.nSamples();
         if (nSamples==0) {
             String s = "missing sample data: " + rec;
@@ -125,7 +125,7 @@ public final class BitSetGT implements VcfEmission {
         this.isPhased = new BitSet(nSamples);
     }
 
-    private static boolean isRef(VcfRecord rec) {
+    private static boolean isRef(VcfRec rec) {
         for (int j=0, n=rec.nSamples(); j<n; ++j) {
             if (rec.isPhased(j)==false || rec.gt(j, 0)<0 || rec.gt(j,1)<0) {
                 return false;
@@ -134,7 +134,7 @@ public final class BitSetGT implements VcfEmission {
         return true;
     }
 
-    private static void setBits(VcfRecord rec, boolean usePhase,
+    private static void setBits(VcfRec rec, boolean usePhase,
             int bitsPerAllele, BitSet allele1, BitSet allele2,
             BitSet isMissing1, BitSet isMissing2, BitSet isPhased) {
         int index1 = 0;
@@ -188,7 +188,7 @@ public final class BitSetGT implements VcfEmission {
      * all genotypes in a duo or trio genotypes to missing if a Mendelian
      * inconsistency is found.
      */
-    private static void removeMendelianInconsistencies(VcfRecord rec,
+    private static void removeMendelianInconsistencies(VcfRec rec,
             NuclearFamilies fam, BitSet isPhased, BitSet isMissing1,
             BitSet isMissing2) {
         for (int j=0, n=fam.nDuos(); j<n; ++j) {
@@ -223,7 +223,7 @@ public final class BitSetGT implements VcfEmission {
         }
     }
 
-    private static boolean duoIsConsistent(VcfRecord rec, int parent,
+    private static boolean duoIsConsistent(VcfRec rec, int parent,
             int offspring) {
         byte p1 = rec.gt(parent, 0);
         byte p2 = rec.gt(parent, 1);
@@ -233,7 +233,7 @@ public final class BitSetGT implements VcfEmission {
         return (alleleMissing || p1==o1 || p1==o2 || p2==o1 || p2==o2);
     }
 
-    private static boolean trioIsConsistent(VcfRecord rec, int father,
+    private static boolean trioIsConsistent(VcfRec rec, int father,
             int mother, int offspring) {
         byte f1 = rec.gt(father, 0);
         byte f2 = rec.gt(father, 1);
@@ -253,7 +253,7 @@ public final class BitSetGT implements VcfEmission {
         }
     }
 
-    private static void logDuoInconsistency(VcfRecord rec, int parent,
+    private static void logDuoInconsistency(VcfRec rec, int parent,
             int offspring) {
         StringBuilder sb = new StringBuilder(80);
         sb.append("WARNING: Inconsistent duo genotype set to missing");
@@ -266,7 +266,7 @@ public final class BitSetGT implements VcfEmission {
         main.Logger.getInstance().println(sb.toString());
     }
 
-    private static void logTrioInconsistency(VcfRecord rec, int father,
+    private static void logTrioInconsistency(VcfRec rec, int father,
             int mother, int offspring) {
         StringBuilder sb = new StringBuilder(80);
         sb.append("WARNING: Inconsistent trio genotype set to missing");
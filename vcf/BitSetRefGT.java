@@ -60,7 +60,7 @@ public final class BitSetRefGT implements VcfEmission {
      * or if any genotype is unphased.
      * @throws NullPointerException if {@code rec==null}.
      */
-    public BitSetRefGT(VcfRecord rec) {
+    public BitSetRefGT(VcfRec rec) {
         if (rec.nSamples()==0) {
             throw new IllegalArgumentException("missing sample data: " + rec);
         }
@@ -76,7 +76,38 @@ public final class BitSetRefGT implements VcfEmission {
         storeAlleles(rec, bitsPerAllele, allele1, allele2);
     }
 
-    private static void checkAlleles(VcfRecord rec) {
+    /**
+     * Constructs a new {@code BitSetRefGT} instance from the specified
+     * packed alleles.  The {@code k}-th allele of a sample is stored in
+     * bits {@code k*b} to {@code (k+1)*b - 1} (least significant bit first)
+     * of the corresponding bit set, where {@code b} is the minimum
+     * number of bits required to store the largest allele index.
+     * The bit sets are not copied.
+     *
+     * @param marker the marker.
+     * @param samples the samples.
+     * @param allele1 the packed first allele of each sample.
+     * @param allele2 the packed second allele of each sample.
+     *
+     * @throws IllegalArgumentException if {@code samples.nSamples()==0}.
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    BitSetRefGT(Marker marker, Samples samples, BitSet allele1,
+            BitSet allele2) {
+        if (samples.nSamples()==0) {
+            throw new IllegalArgumentException("missing sample data: " + marker);
+        }
+        if (allele1==null || allele2==null) {
+            throw new NullPointerException("allele1==null || allele2==null");
+        }
+        this.bitsPerAllele = bitsPerAllele(marker);
+        this.marker = marker;
+        this.samples = samples;
+        this.allele1 = allele1;
+        this.allele2 = allele2;
+    }
+
+    private static void checkAlleles(VcfRec rec) {
         int nAlleles = rec.marker().nAlleles();
         for (int sample=0, n=rec.nSamples(); sample<n; ++sample) {
             byte a1 = rec.gt(sample, 0);
@@ -109,7 +140,7 @@ public final class BitSetRefGT implements VcfEmission {
         return nStorageBits;
     }
 
-    private static void storeAlleles(VcfRecord rec, int bitsPerAllele,
+    private static void storeAlleles(VcfRec rec, int bitsPerAllele,
             BitSet allele1, BitSet allele2) {
         int index1 = 0;
         int index2 = 0;
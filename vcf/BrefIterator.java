@@ -0,0 +1,414 @@
+/*
+ * Copyright (C) 2014 Brian L. Browning
+ *
+ * This file is part of Beagle
+ *
+ * Beagle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Beagle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package vcf;
+
+import beagleutil.ChromInterval;
+import beagleutil.Samples;
+import blbutil.Filter;
+import blbutil.FilterUtils;
+import blbutil.SampleFileIterator;
+import blbutil.Utilities;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>Class {@code BrefIterator} is an iterator whose {@code next()}
+ * method returns phased reference data read from a binary reference
+ * (bref) file.  The file is memory-mapped, and genotype data are
+ * read without text parsing.  See {@code BrefWriter} for a description
+ * of the bref file format.
+ * </p>
+ * <p>If a chromosome interval is specified, the marker table is used
+ * to find the first marker in the interval, and iteration stops after
+ * the last marker in the interval.
+ * </p>
+ *
+ * @author Brian L. Browning {@code <browning@uw.edu>}
+ */
+public final class BrefIterator implements SampleFileIterator<VcfEmission> {
+
+    /**
+     * The filename extension of a bref file: ".bref".
+     */
+    public static final String EXTENSION = ".bref";
+
+    private static final int MAX_SEGMENT_SIZE = 1<<28;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final long tableOffset;
+
+    private final int nUnfilteredSamples;
+    private final int[] includedSamples;    // null if no samples excluded
+    private final Samples samples;
+    private final Filter<Marker> markerFilter;
+
+    private final int[] chrom;
+    private final int[] pos;
+    private final long[] offset;
+    private int index;
+    private final int endIndex;
+
+    private MappedByteBuffer segment;
+    private long segmentStart;
+
+    private VcfEmission next;
+
+    /**
+     * Returns {@code true} if the specified file has the bref
+     * filename extension, and returns {@code false} otherwise.
+     * @param file a file.
+     * @return {@code true} if the specified file has the bref
+     * filename extension.
+     * @throws NullPointerException if {@code file==null}.
+     */
+    public static boolean isBrefFile(File file) {
+        return file.getName().endsWith(EXTENSION);
+    }
+
+    /**
+     * Constructs a new {@code BrefIterator} instance.
+     * @param file a bref file.
+     * @param sampleFilter a sample filter, or {@code null} if there
+     * is no sample filter.
+     * @param markerFilter a marker filter, or {@code null} if there
+     * is no marker filter.
+     * @param chromInterval the chromosome interval to read, or
+     * {@code null} if there is no interval restriction.
+     *
+     * @throws IllegalArgumentException if the specified file is not
+     * a bref file.
+     * @throws IllegalArgumentException if there are no samples after
+     * sample exclusions.
+     * @throws NullPointerException if {@code file==null}.
+     */
+    public BrefIterator(File file, Filter<String> sampleFilter,
+            Filter<Marker> markerFilter, ChromInterval chromInterval) {
+        if (sampleFilter==null) {
+            sampleFilter = FilterUtils.acceptAllFilter();
+        }
+        this.file = file;
+        this.markerFilter = markerFilter;
+        RandomAccessFile f = null;
+        try {
+            f = new RandomAccessFile(file, "r");
+        }
+        catch (IOException e) {
+            Utilities.exit("Error opening " + file, e);
+        }
+        this.raf = f;
+        this.channel = raf.getChannel();
+        long length = size();
+        MappedByteBuffer header = map(0, Math.min(length, 12));
+        if (length < 20 || header.getInt(0)!=BrefWriter.MAGIC) {
+            throw new IllegalArgumentException("Not a bref file: " + file);
+        }
+        if (header.getInt(4)!=BrefWriter.VERSION) {
+            String s = "Unsupported bref version (" + header.getInt(4)
+                    + "): " + file;
+            throw new IllegalArgumentException(s);
+        }
+        this.nUnfilteredSamples = header.getInt(8);
+        this.tableOffset = map(length - 8, 8).getLong(0);
+        this.segmentStart = 0;
+        this.segment = map(0, Math.min(tableOffset, MAX_SEGMENT_SIZE));
+        String[] ids = new String[nUnfilteredSamples];
+        long pos0 = 12;
+        for (int j=0; j<ids.length; ++j) {
+            ids[j] = readString(pos0);
+            pos0 += 4 + segment.getInt((int) (pos0 - segmentStart));
+        }
+        this.includedSamples = includedSamples(ids, sampleFilter);
+        this.samples = samples(ids, includedSamples);
+        if (samples.nSamples()==0) {
+            throw new IllegalArgumentException("missing sample data");
+        }
+
+        MappedByteBuffer table = map(tableOffset, length - 8 - tableOffset);
+        int nChroms = table.getInt();
+        String[] chroms = new String[nChroms];
+        for (int j=0; j<nChroms; ++j) {
+            byte[] bytes = new byte[table.getInt()];
+            table.get(bytes);
+            chroms[j] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        int nMarkers = table.getInt();
+        this.chrom = new int[nMarkers];
+        this.pos = new int[nMarkers];
+        this.offset = new long[nMarkers];
+        for (int j=0; j<nMarkers; ++j) {
+            chrom[j] = table.getInt();
+            pos[j] = table.getInt();
+            offset[j] = table.getLong();
+        }
+        if (chromInterval==null) {
+            this.index = 0;
+            this.endIndex = nMarkers;
+        }
+        else {
+            int c = indexOf(chroms, chromInterval.chrom());
+            this.index = firstIndex(c, chromInterval.start());
+            this.endIndex = endIndex(c, chromInterval.end(), index);
+        }
+        this.next = readNext();
+    }
+
+    private long size() {
+        try {
+            return channel.size();
+        }
+        catch (IOException e) {
+            Utilities.exit("Error reading " + file, e);
+        }
+        assert false;
+        return -1;
+    }
+
+    private MappedByteBuffer map(long start, long length) {
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        }
+        catch (IOException e) {
+            Utilities.exit("Error reading " + file, e);
+        }
+        assert false;
+        return null;
+    }
+
+    private static int[] includedSamples(String[] ids,
+            Filter<String> sampleFilter) {
+        List<Integer> included = new ArrayList<>(ids.length);
+        for (int j=0; j<ids.length; ++j) {
+            if (sampleFilter.accept(ids[j])) {
+                included.add(j);
+            }
+        }
+        if (included.size()==ids.length) {
+            return null;
+        }
+        int[] ia = new int[included.size()];
+        for (int j=0; j<ia.length; ++j) {
+            ia[j] = included.get(j);
+        }
+        return ia;
+    }
+
+    private static Samples samples(String[] ids, int[] includedSamples) {
+        if (includedSamples==null) {
+            return Samples.fromIds(ids);
+        }
+        String[] filteredIds = new String[includedSamples.length];
+        for (int j=0; j<filteredIds.length; ++j) {
+            filteredIds[j] = ids[includedSamples[j]];
+        }
+        return Samples.fromIds(filteredIds);
+    }
+
+    private static int indexOf(String[] chroms, String chrom) {
+        for (int j=0; j<chroms.length; ++j) {
+            if (chroms[j].equals(chrom)) {
+                return j;
+            }
+        }
+        return -1;
+    }
+
+    /* Returns index of first marker with specified chrom and pos >= start */
+    private int firstIndex(int c, int start) {
+        int j = 0;
+        while (j<chrom.length && chrom[j]!=c) {
+            ++j;
+        }
+        int end = j;
+        while (end<chrom.length && chrom[end]==c) {
+            ++end;
+        }
+        int low = j;
+        int high = end;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (pos[mid] < start) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /* Returns one more than index of last marker with pos <= end */
+    private int endIndex(int c, int end, int first) {
+        int j = first;
+        while (j<chrom.length && chrom[j]==c && pos[j]<=end) {
+            ++j;
+        }
+        return j;
+    }
+
+    /*
+     * Ensures that the bytes in [start, start+length) are in the
+     * current memory-mapped segment.
+     */
+    private void ensureMapped(long start, long length) {
+        long segmentEnd = segmentStart + segment.capacity();
+        if (start < segmentStart || start + length > segmentEnd) {
+            long mapLength = Math.max(length,
+                    Math.min(MAX_SEGMENT_SIZE, tableOffset - start));
+            segment = map(start, mapLength);
+            segmentStart = start;
+        }
+    }
+
+    private String readString(long start) {
+        ensureMapped(start, 4);
+        int length = segment.getInt((int) (start - segmentStart));
+        ensureMapped(start, 4 + length);
+        byte[] bytes = new byte[length];
+        int p = (int) (start - segmentStart) + 4;
+        for (int j=0; j<length; ++j) {
+            bytes[j] = segment.get(p + j);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private VcfEmission readNext() {
+        while (index < endIndex) {
+            long start = offset[index];
+            long end = (index + 1 < offset.length) ? offset[index + 1]
+                    : tableOffset;
+            ++index;
+            ensureMapped(start, end - start);
+            Marker marker = new Marker(readString(start));
+            if (markerFilter==null || markerFilter.accept(marker)) {
+                int p = (int) (start - segmentStart);
+                p += 4 + segment.getInt(p);
+                return emission(marker, p);
+            }
+        }
+        return null;
+    }
+
+    private VcfEmission emission(Marker marker, int p) {
+        boolean hasPGP = segment.get(p++)!=0;
+        int bitsPerAllele = BrefWriter.bitsPerAllele(marker);
+        int nWords = BrefWriter.nWords(nUnfilteredSamples, bitsPerAllele);
+        BitSet allele1 = readBits(p, nWords, bitsPerAllele);
+        p += 8*nWords;
+        BitSet allele2 = readBits(p, nWords, bitsPerAllele);
+        p += 8*nWords;
+        if (hasPGP) {
+            Float[] probs = new Float[samples.nSamples()];
+            for (int j=0; j<probs.length; ++j) {
+                int s = includedSamples==null ? j : includedSamples[j];
+                probs[j] = segment.getFloat(p + 4*s);
+            }
+            return new PGPRefGT(marker, samples, allele1, allele2, probs);
+        }
+        else {
+            return new BitSetRefGT(marker, samples, allele1, allele2);
+        }
+    }
+
+    private BitSet readBits(int p, int nWords, int bitsPerAllele) {
+        long[] words = new long[nWords];
+        for (int j=0; j<nWords; ++j) {
+            words[j] = segment.getLong(p + 8*j);
+        }
+        BitSet bits = BitSet.valueOf(words);
+        if (includedSamples==null) {
+            return bits;
+        }
+        BitSet filtered = new BitSet(includedSamples.length*bitsPerAllele);
+        for (int j=0; j<includedSamples.length; ++j) {
+            int from = includedSamples[j]*bitsPerAllele;
+            int to = j*bitsPerAllele;
+            for (int k=0; k<bitsPerAllele; ++k) {
+                if (bits.get(from + k)) {
+                    filtered.set(to + k);
+                }
+            }
+        }
+        return filtered;
+    }
+
+    @Override
+    public File file() {
+        return file;
+    }
+
+    @Override
+    public Samples samples() {
+        return samples;
+    }
+
+    /**
+     * Returns {@code true} if the iteration has more elements.
+     * @return {@code true} if the iteration has more elements.
+     */
+    @Override
+    public boolean hasNext() {
+        return next!=null;
+    }
+
+    /**
+     * Returns the next element in the iteration.
+     * @return the next element in the iteration.
+     * @throws NoSuchElementException if the iteration has no more elements.
+     */
+    @Override
+    public VcfEmission next() {
+        if (next==null) {
+            throw new NoSuchElementException();
+        }
+        VcfEmission current = next;
+        next = readNext();
+        return current;
+    }
+
+    /**
+     * The {@code remove} method is not supported by this iterator.
+     * @throws UnsupportedOperationException if this method is invoked.
+     */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("BrefIterator.remove()");
+    }
+
+    @Override
+    public void close() {
+        try {
+            raf.close();
+        }
+        catch (IOException e) {
+            Utilities.exit("Error closing " + file, e);
+        }
+        next = null;
+        index = endIndex;
+    }
+}
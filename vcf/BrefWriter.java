@@ -0,0 +1,318 @@
+/*
+ * Copyright (C) 2014 Brian L. Browning
+ *
+ * This file is part of Beagle
+ *
+ * Beagle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Beagle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package vcf;
+
+import beagleutil.Samples;
+import blbutil.Const;
+import blbutil.Utilities;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Class {@code BrefWriter} writes phased reference data to a file in
+ * binary reference (bref) format.  A bref file can be read with
+ * {@code BrefIterator} without parsing any genotype text.
+ * </p>
+ * <p>A bref file contains, in order: a header with the sample
+ * identifiers, one record for each marker, a marker table, and an 8-byte
+ * footer that stores the file offset of the marker table.  All
+ * integers are big-endian.
+ * </p>
+ * <pre>
+ *   header:  int magic, int version, int nSamples,
+ *            nSamples x (int length, UTF-8 sample identifier)
+ *   record:  int length, UTF-8 marker fields (CHROM to INFO),
+ *            byte hasPGP, long[] allele1 bits, long[] allele2 bits,
+ *            [nSamples x float phased genotype probability, if hasPGP]
+ *   table:   int nChroms, nChroms x (int length, UTF-8 chromosome),
+ *            int nMarkers, nMarkers x (int chrom, int pos, long offset)
+ *   footer:  long table offset
+ * </pre>
+ * <p>The alleles of the {@code k}-th sample are stored in bits
+ * {@code k*b} to {@code (k+1)*b - 1} (least significant bit first),
+ * where {@code b} is the minimum number of bits required to store the
+ * largest allele index.  Each allele bit set is stored as
+ * {@code ceil(nSamples*b/64)} longs.
+ * </p>
+ * <p>Instances of class {@code BrefWriter} are not thread-safe.
+ * </p>
+ *
+ * @author Brian L. Browning {@code <browning@uw.edu>}
+ */
+public final class BrefWriter implements Closeable {
+
+    /**
+     * The first four bytes of a bref file: "BREF".
+     */
+    public static final int MAGIC = 0x42524546;
+
+    /**
+     * The bref file format version.
+     */
+    public static final int VERSION = 1;
+
+    private static final String PGP_FORMAT = "PGP";
+
+    private final File file;
+    private final Samples samples;
+    private final DataOutputStream out;
+    private long offset = 0;
+
+    private final Map<String, Integer> chromMap = new HashMap<>();
+    private final List<String> chroms = new ArrayList<>();
+    private final List<long[]> table = new ArrayList<>();
+
+    /**
+     * Constructs a new {@code BrefWriter} instance that writes
+     * reference data for the specified samples to the specified file.
+     * @param file the output file.
+     * @param samples the list of samples.
+     * @throws NullPointerException if {@code file==null || samples==null}.
+     */
+    public BrefWriter(File file, Samples samples) {
+        if (samples==null) {
+            throw new NullPointerException("samples==null");
+        }
+        this.file = file;
+        this.samples = samples;
+        DataOutputStream dos = null;
+        try {
+            dos = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(file), 1<<16));
+        }
+        catch (FileNotFoundException e) {
+            Utilities.exit("Error opening " + file, e);
+        }
+        this.out = dos;
+        writeHeader();
+    }
+
+    private void writeHeader() {
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(samples.nSamples());
+            offset += 12;
+            for (int j=0, n=samples.nSamples(); j<n; ++j) {
+                writeString(samples.id(j));
+            }
+        }
+        catch (IOException e) {
+            Utilities.exit("Error writing " + file, e);
+        }
+    }
+
+    private void writeString(String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        offset += 4 + bytes.length;
+    }
+
+    /**
+     * Writes the specified phased reference data.  Records must be
+     * written in the order in which they are to be read.
+     *
+     * @param em phased reference data.
+     * @param hasPGP {@code true} if the phased genotype probability
+     * {@code em.gl(s, em.allele1(s), em.allele2(s))} of each sample
+     * {@code s} is to be stored.
+     *
+     * @throws IllegalArgumentException if
+     * {@code em.samples().equals(this.samples())==false}.
+     * @throws IllegalArgumentException if any genotype is unphased or
+     * has a missing allele.
+     * @throws NullPointerException if {@code em==null}.
+     */
+    public void write(VcfEmission em, boolean hasPGP) {
+        if (em.samples().equals(samples)==false) {
+            throw new IllegalArgumentException("inconsistent samples");
+        }
+        Marker marker = em.marker();
+        int bitsPerAllele = bitsPerAllele(marker);
+        int nSamples = samples.nSamples();
+        BitSet allele1 = new BitSet(nSamples*bitsPerAllele);
+        BitSet allele2 = new BitSet(nSamples*bitsPerAllele);
+        for (int s=0; s<nSamples; ++s) {
+            byte a1 = em.allele1(s);
+            byte a2 = em.allele2(s);
+            if (em.isPhased(s)==false || a1<0 || a2<0) {
+                String id = samples.id(s);
+                String msg = "Reference genotype is not phased or has a"
+                        + " missing allele for sample: " + id + " marker: "
+                        + marker;
+                throw new IllegalArgumentException(msg);
+            }
+            setBits(allele1, s*bitsPerAllele, bitsPerAllele, a1);
+            setBits(allele2, s*bitsPerAllele, bitsPerAllele, a2);
+        }
+        int nWords = nWords(nSamples, bitsPerAllele);
+        table.add(new long[] {chromIndex(marker.chrom()), marker.pos(), offset});
+        try {
+            writeString(markerFields(marker));
+            out.writeByte(hasPGP ? 1 : 0);
+            offset += 1;
+            writeWords(allele1.toLongArray(), nWords);
+            writeWords(allele2.toLongArray(), nWords);
+            if (hasPGP) {
+                for (int s=0; s<nSamples; ++s) {
+                    out.writeFloat(em.gl(s, em.allele1(s), em.allele2(s)));
+                }
+                offset += 4L*nSamples;
+            }
+        }
+        catch (IOException e) {
+            Utilities.exit("Error writing " + file, e);
+        }
+    }
+
+    /**
+     * Returns {@code true} if the specified VCF record has PGP format
+     * data, and returns {@code false} otherwise.
+     * @param rec a VCF record.
+     * @return {@code true} if the specified VCF record has PGP format data.
+     * @throws NullPointerException if {@code rec==null}.
+     */
+    public static boolean hasPGP(VcfRec rec) {
+        return rec.hasFormat(PGP_FORMAT);
+    }
+
+    private void writeWords(long[] words, int nWords) throws IOException {
+        for (int j=0; j<nWords; ++j) {
+            out.writeLong(j<words.length ? words[j] : 0L);
+        }
+        offset += 8L*nWords;
+    }
+
+    private int chromIndex(String chrom) {
+        Integer index = chromMap.get(chrom);
+        if (index==null) {
+            index = chroms.size();
+            chromMap.put(chrom, index);
+            chroms.add(chrom);
+        }
+        return index;
+    }
+
+    private static void setBits(BitSet bits, int start, int nBits, byte allele) {
+        int mask = 1;
+        for (int k=0; k<nBits; ++k) {
+            if ((allele & mask)==mask) {
+                bits.set(start + k);
+            }
+            mask <<= 1;
+        }
+    }
+
+    /*
+     * Returns the first eight tab-delimited fields of a VCF record
+     * for the marker.  The INFO field stores only the START and END keys.
+     */
+    private static String markerFields(Marker marker) {
+        StringBuilder sb = new StringBuilder(marker.toString());
+        sb.append(Const.tab);
+        sb.append(Const.MISSING_DATA_CHAR);
+        sb.append(Const.tab);
+        sb.append(Const.MISSING_DATA_CHAR);
+        sb.append(Const.tab);
+        int length = sb.length();
+        if (marker.start() != -1) {
+            sb.append("START=");
+            sb.append(marker.start());
+        }
+        if (marker.end() != -1) {
+            if (sb.length() > length) {
+                sb.append(Const.semicolon);
+            }
+            sb.append("END=");
+            sb.append(marker.end());
+        }
+        if (sb.length()==length) {
+            sb.append(Const.MISSING_DATA_CHAR);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the number of bits used to store each allele of the
+     * specified marker.
+     * @param marker a marker.
+     * @return the number of bits used to store each allele.
+     * @throws NullPointerException if {@code marker==null}.
+     */
+    static int bitsPerAllele(Marker marker) {
+        int nAllelesM1 = marker.nAlleles() - 1;
+        return Integer.SIZE - Integer.numberOfLeadingZeros(nAllelesM1);
+    }
+
+    /**
+     * Returns the number of longs used to store one allele of each sample.
+     * @param nSamples the number of samples.
+     * @param bitsPerAllele the number of bits per allele.
+     * @return the number of longs used to store one allele of each sample.
+     */
+    static int nWords(int nSamples, int bitsPerAllele) {
+        return (int) ((((long) nSamples)*bitsPerAllele + Long.SIZE - 1)
+                / Long.SIZE);
+    }
+
+    /**
+     * Returns the list of samples.
+     * @return the list of samples.
+     */
+    public Samples samples() {
+        return samples;
+    }
+
+    /**
+     * Writes the marker table and footer and closes the output file.
+     */
+    @Override
+    public void close() {
+        try {
+            long tableOffset = offset;
+            out.writeInt(chroms.size());
+            for (String chrom : chroms) {
+                writeString(chrom);
+            }
+            out.writeInt(table.size());
+            for (long[] entry : table) {
+                out.writeInt((int) entry[0]);
+                out.writeInt((int) entry[1]);
+                out.writeLong(entry[2]);
+            }
+            out.writeLong(tableOffset);
+            out.close();
+        }
+        catch (IOException e) {
+            Utilities.exit("Error writing " + file, e);
+        }
+    }
+}
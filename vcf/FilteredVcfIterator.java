@@ -30,11 +30,11 @@ import java.util.NoSuchElementException;
  * filter.
  * @author Brian L. Browning {@code <browning@uw.edu>}
  */
-public final class FilteredVcfIterator implements SampleFileIterator<VcfRecord> {
+public final class FilteredVcfIterator implements SampleFileIterator<VcfRec> {
 
-    private final SampleFileIterator<VcfRecord> it;
+    private final SampleFileIterator<VcfRec> it;
     private final Filter<Marker> filter;
-    private VcfRecord next;
+    private VcfRec next;
 
     /**
      * Constructs a new {@code FilteredVcfIterator} instance.
@@ -43,7 +43,7 @@ public final class FilteredVcfIterator implements SampleFileIterator<VcfRecord>
      * @param filter a marker filter.
      * @throws NullPointerException if {@code it==null || filter==null}.
      */
-    public FilteredVcfIterator(SampleFileIterator<VcfRecord> it,
+    public FilteredVcfIterator(SampleFileIterator<VcfRec> it,
             Filter<Marker> filter) {
         if (it==null) {
             throw new IllegalArgumentException("it==null");
@@ -81,20 +81,20 @@ public final class FilteredVcfIterator implements SampleFileIterator<VcfRecord>
      * @throws NoSuchElementException if the iteration has no more elements.
      */
     @Override
-    public VcfRecord next() {
+    public VcfRec next() {
         if (!hasNext()) {
             throw new NoSuchElementException();
         }
-        VcfRecord current = next;
+        VcfRec current = next;
         this.next = readNextRecord(it, filter);
         return current;
     }
 
-    private static VcfRecord readNextRecord(SampleFileIterator<VcfRecord> it,
+    private static VcfRec readNextRecord(SampleFileIterator<VcfRec> it,
             Filter<Marker> filter) {
-        VcfRecord nextRecord = null;
+        VcfRec nextRecord = null;
         while (nextRecord==null && it.hasNext()) {
-            VcfRecord candidate = it.next();
+            VcfRec candidate = it.next();
             if (filter.accept(candidate.marker())) {
                 nextRecord = candidate;
             }
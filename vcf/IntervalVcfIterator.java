@@ -27,15 +27,16 @@ import java.util.NoSuchElementException;
 /**
  * Class {@code IntervalVcfIterator} is an iterator whose
  * {@code next()} method returns VCF records contained within a
- * chromosome interval.
+ * chromosome interval.  Records are no longer read from the underlying
+ * iterator once a record beyond the end of the interval is read.
  *
  * @author Brian L. Browning {@code <browning@uw.edu>}
  */
-public final class IntervalVcfIterator implements SampleFileIterator<VcfRecord> {
+public final class IntervalVcfIterator implements SampleFileIterator<VcfRec> {
 
-    private final SampleFileIterator<VcfRecord> it;
+    private final SampleFileIterator<VcfRec> it;
     private final ChromInterval interval;
-    private VcfRecord next;
+    private VcfRec next;
 
     /**
      * Constructs a new {@code FilteredVcfIterator} instance.
@@ -44,7 +45,7 @@ public final class IntervalVcfIterator implements SampleFileIterator<VcfRecord>
      * @param interval a chromosome interval
      * @throws NullPointerException if {@code it==null || interval==null}.
      */
-    public IntervalVcfIterator(SampleFileIterator<VcfRecord> it,
+    public IntervalVcfIterator(SampleFileIterator<VcfRec> it,
             ChromInterval interval) {
         if (it==null) {
             throw new IllegalArgumentException("it==null");
@@ -82,32 +83,43 @@ public final class IntervalVcfIterator implements SampleFileIterator<VcfRecord>
      * @throws NoSuchElementException if the iteration has no more elements.
      */
     @Override
-    public VcfRecord next() {
+    public VcfRec next() {
         if (!hasNext()) {
             throw new NoSuchElementException();
         }
-        VcfRecord current = next;
+        VcfRec current = next;
         this.next = readNextRecord(it, interval);
         return current;
     }
 
-    private static VcfRecord readFirstRecord(SampleFileIterator<VcfRecord> it,
+    private static VcfRec readFirstRecord(SampleFileIterator<VcfRec> it,
             ChromInterval interval) {
-        VcfRecord nextRecord = null;
+        VcfRec nextRecord = null;
+        boolean inChrom = false;
         while (nextRecord==null && it.hasNext()) {
-            VcfRecord candidate = it.next();
-            if (inInterval(interval, candidate.marker())) {
+            VcfRec candidate = it.next();
+            Marker m = candidate.marker();
+            if (m.chromIndex()==interval.chromIndex()) {
+                if (m.pos() > interval.end()) {
+                    break;
+                }
+                inChrom = true;
+            }
+            else if (inChrom) {
+                break;
+            }
+            if (inInterval(interval, m)) {
                 nextRecord = candidate;
             }
         }
         return nextRecord;
     }
 
-    private static VcfRecord readNextRecord(SampleFileIterator<VcfRecord> it,
+    private static VcfRec readNextRecord(SampleFileIterator<VcfRec> it,
             ChromInterval interval) {
-        VcfRecord nextRecord = null;
+        VcfRec nextRecord = null;
         if (it.hasNext()) {
-            VcfRecord candidate = it.next();
+            VcfRec candidate = it.next();
             if (inInterval(interval, candidate.marker())) {
                 nextRecord = candidate;
             }
@@ -23,8 +23,8 @@ import blbutil.Const;
 import blbutil.IntPair;
 import blbutil.StringUtil;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <p>Class {@code Marker} represents a marker.
@@ -40,7 +40,7 @@ public class Marker implements Comparable<Marker> {
 
     private static final String[] EMPTY_ID_ARRAY = new String[0];
     private static final Map<String, String[]> allelesMap
-            = new HashMap<>(24);
+            = new ConcurrentHashMap<>(24);
 
     private final int chromIndex;
     private final int pos;
@@ -80,7 +80,7 @@ public final class MedMemGL implements VcfEmission {
      * {@code Float.isNaN(maxLR) || maxLR<=1.0f}.
      * @throws NullPointerException if {@code vcf==null || fam==null}
      */
-    public MedMemGL(VcfRecord rec, NuclearFamilies fam, float maxLR) {
+    public MedMemGL(VcfRec rec, NuclearFamilies fam, float maxLR) {
         if (rec.nSamples()==0) {
             String s = "missing sample data: " + rec;
             throw new IllegalArgumentException(s);
@@ -102,7 +102,7 @@ public final class MedMemGL implements VcfEmission {
         this.like = likelihoods(rec, fam, minLR);
     }
 
-    private static float[] likelihoods(VcfRecord rec, NuclearFamilies fam,
+    private static float[] likelihoods(VcfRec rec, NuclearFamilies fam,
             float minLR) {
         Marker marker = rec.marker();
         int nGt = marker.nUnphasedGenotypes();
@@ -140,7 +140,7 @@ public final class MedMemGL implements VcfEmission {
         return adjLike;
     }
 
-    private static float[] likelihoodsFromGL(VcfRecord rec) {
+    private static float[] likelihoodsFromGL(VcfRec rec) {
         int nGt = rec.marker().nUnphasedGenotypes();
         String[] dataGL = rec.hasFormat(GL_FORMAT) ? rec.formatData(GL_FORMAT) : null;
         String[] dataPL = rec.hasFormat(PL_FORMAT) ? rec.formatData(PL_FORMAT) : null;
@@ -255,7 +255,7 @@ public final class MedMemGL implements VcfEmission {
     }
 
     private static String[] getGL(String format, String[] sampleData,
-            int sample, int nGt, VcfRecord record) {
+            int sample, int nGt, VcfRec record) {
         if (sampleData[sample].equals(Const.MISSING_DATA_STRING)) {
             String[] fields = new String[nGt];
             Arrays.fill(fields, "0");
@@ -341,6 +341,22 @@ public final class MedMemGL implements VcfEmission {
         return like[(sample*marker.nUnphasedGenotypes()) + gt];
     }
 
+    /**
+     * Returns the likelihood of the specified unphased genotype for the
+     * specified sample.  This method does not check that the genotype
+     * index is less than {@code this.marker().nUnphasedGenotypes()}.
+     * @param sample a sample index.
+     * @param gt an unphased genotype index, as returned by
+     * {@code VcfRecord.gtIndex()}.
+     * @return the likelihood of the specified unphased genotype for the
+     * specified sample.
+     * @throws IndexOutOfBoundsException if
+     * {@code sample<0 || sample>=this.nSamples() || gt<0}
+     */
+    public float likelihood(int sample, int gt) {
+        return like[(sample*marker.nUnphasedGenotypes()) + gt];
+    }
+
     /**
      * Returns the data represented by {@code this} as a VCF file
      * record with a one format field (GL).
@@ -72,7 +72,7 @@ public final class MedMemGTGL implements VcfEmission {
      * {@code Float.isNaN(maxLR) || maxLR<=1.0f}
      * @throws NullPointerException if {@code vcf==null || fam==null}
      */
-    public MedMemGTGL(VcfRecord rec, NuclearFamilies fam, boolean usePhase,
+    public MedMemGTGL(VcfRec rec, NuclearFamilies fam, boolean usePhase,
             float maxLR, boolean preferGL) {
         boolean hasGT = rec.hasFormat(BitSetGT.GT_FORMAT);
         boolean hasGL = rec.hasFormat(MedMemGL.GL_FORMAT);
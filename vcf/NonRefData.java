@@ -21,6 +21,7 @@ package vcf;
 import beagleutil.ChromInterval;
 import beagleutil.Samples;
 import blbutil.Filter;
+import blbutil.PrefetchIterator;
 import blbutil.SampleFileIterator;
 import haplotype.HapPair;
 import java.io.File;
@@ -69,6 +70,9 @@ public class NonRefData implements Data {
      * columns are the individual ID, father's ID, and mother's ID respectively.
      * @param usePhase {@code true} if phase information in the specified
      * VCF file should be used, and {@code false} otherwise.
+     * @param lookAhead the maximum number of VCF records that are read
+     * ahead of the marker window by a background thread, or 0 if VCF records
+     * are read when the marker window is advanced.
      * @return a new {@code Data} instance.
      *
      * @throws IllegalArgumentException if the VCF file contains no samples.
@@ -79,17 +83,19 @@ public class NonRefData implements Data {
      * {@code pedFile} is not {@code null} and contains
      * a non-blank line having less than 4 white-space delimited fields
      * or contains duplicate individual identifiers in the second column.
+     * @throws IllegalArgumentException if {@code lookAhead<0}.
      * @throws NullPointerException if {@code vcfFile==null}.
      */
     public static Data gt(File vcfFile, Filter<String> sampleFilter,
             Filter<Marker> markerFilter, ChromInterval chromInterval,
-            File pedFile, boolean usePhase) {
+            File pedFile, boolean usePhase, int lookAhead) {
 
-        SampleFileIterator<VcfRecord> filtIt = VcfIterator.filteredIterator(
+        SampleFileIterator<VcfRec> filtIt = VcfIterator.filteredIterator(
                 vcfFile, sampleFilter, markerFilter, chromInterval);
         SampleFileIterator<VcfEmission> targetIt = VcfEmissionIterator.gt(filtIt,
                 pedFile, usePhase);
-        return new NonRefData(new VcfWindow(targetIt));
+        return new NonRefData(new VcfWindow(
+                PrefetchIterator.prefetch(targetIt, lookAhead)));
     }
 
     /**
@@ -117,6 +123,9 @@ public class NonRefData implements Data {
      * Mendelian inconsistency in a parent-offspring trio or duo.  In such
      * a case the unmodified likelihoods are used for all members of the
      * inconsistent duo or trio.
+     * @param lookAhead the maximum number of VCF records that are read
+     * ahead of the marker window by a background thread, or 0 if VCF records
+     * are read when the marker window is advanced.
      * @return a new {@code Data} instance.
      *
      * @throws IllegalArgumentException if the VCF file contains no samples.
@@ -129,16 +138,18 @@ public class NonRefData implements Data {
      * or contains duplicate individual identifiers in the second column.
      * @throws IllegalArgumentException if
      * {@code Float.isNaN(maxLR) || maxLR<1.0f}.
+     * @throws IllegalArgumentException if {@code lookAhead<0}.
      * @throws NullPointerException if {@code vcfFile==null}.
      */
     public static Data gl(File vcfFile, Filter<String> sampleFilter,
             Filter<Marker> markerFilter, ChromInterval chromInterval,
-            File pedFile, float maxLR) {
-        SampleFileIterator<VcfRecord> filtIt = VcfIterator.filteredIterator(
+            File pedFile, float maxLR, int lookAhead) {
+        SampleFileIterator<VcfRec> filtIt = VcfIterator.filteredIterator(
                 vcfFile, sampleFilter, markerFilter, chromInterval);
         SampleFileIterator<VcfEmission> targetIt = VcfEmissionIterator.gl(filtIt,
                 pedFile, maxLR);
-        return new NonRefData(new VcfWindow(targetIt));
+        return new NonRefData(new VcfWindow(
+                PrefetchIterator.prefetch(targetIt, lookAhead)));
     }
 
     /**
@@ -172,6 +183,9 @@ public class NonRefData implements Data {
      * Mendelian inconsistency in a parent-offspring trio or duo.  In such
      * a case the unmodified likelihoods are used for all members of the
      * inconsistent duo or trio.
+     * @param lookAhead the maximum number of VCF records that are read
+     * ahead of the marker window by a background thread, or 0 if VCF records
+     * are read when the marker window is advanced.
      * @return a new {@code Data} instance.
      *
      * @throws IllegalArgumentException if the VCF file contains no samples.
@@ -184,17 +198,19 @@ public class NonRefData implements Data {
      * or contains duplicate individual identifiers in the second column.
      * @throws IllegalArgumentException if
      * {@code Float.isNaN(maxLR) || maxLR<1.0f}.
+     * @throws IllegalArgumentException if {@code lookAhead<0}.
      * @throws NullPointerException if {@code vcfFile==null}.
      */
     public static Data gtgl(File vcfFile, File pedFile, boolean usePhase,
             float maxLR, Filter<String> sampleFilter, Filter<Marker> markerFilter,
-            ChromInterval chromInterval) {
+            ChromInterval chromInterval, int lookAhead) {
         boolean preferGL = false;
-        SampleFileIterator<VcfRecord> filtIt = VcfIterator.filteredIterator(
+        SampleFileIterator<VcfRec> filtIt = VcfIterator.filteredIterator(
                 vcfFile, sampleFilter, markerFilter, chromInterval);
         SampleFileIterator<VcfEmission> targetIt = VcfEmissionIterator.gtgl(
                 filtIt, pedFile, usePhase, maxLR, preferGL);
-        return new NonRefData(new VcfWindow(targetIt));
+        return new NonRefData(new VcfWindow(
+                PrefetchIterator.prefetch(targetIt, lookAhead)));
     }
 
     @Override
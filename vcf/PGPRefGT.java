@@ -63,7 +63,7 @@ public final class PGPRefGT implements VcfEmission {
      * or if any genotype is unphased.
      * @throws NullPointerException if {@code rec==null}.
      */
-    public PGPRefGT(VcfRecord rec) {
+    public PGPRefGT(VcfRec rec) {
         if (rec.nSamples()==0) {
             throw new IllegalArgumentException("missing sample data: " + rec);
         }
@@ -84,7 +84,44 @@ public final class PGPRefGT implements VcfEmission {
 	storePhasingProbs(rec, phase1Probs);
     }
 
-    private static void checkAlleles(VcfRecord rec) {
+    /**
+     * Constructs a new {@code PGPRefGT} instance from the specified
+     * packed alleles and phased genotype probabilities.  Alleles are
+     * packed as described in {@code BitSetRefGT}.  The arrays and
+     * bit sets are not copied.
+     *
+     * @param marker the marker.
+     * @param samples the samples.
+     * @param allele1 the packed first allele of each sample.
+     * @param allele2 the packed second allele of each sample.
+     * @param phase1Probs the probability of the stored phased genotype
+     * for each sample.
+     *
+     * @throws IllegalArgumentException if {@code samples.nSamples()==0}.
+     * @throws IllegalArgumentException if
+     * {@code phase1Probs.length!=samples.nSamples()}.
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    PGPRefGT(Marker marker, Samples samples, BitSet allele1, BitSet allele2,
+            Float[] phase1Probs) {
+        if (samples.nSamples()==0) {
+            throw new IllegalArgumentException("missing sample data: " + marker);
+        }
+        if (phase1Probs.length != samples.nSamples()) {
+            throw new IllegalArgumentException("inconsistent phase1Probs");
+        }
+        if (allele1==null || allele2==null) {
+            throw new NullPointerException("allele1==null || allele2==null");
+        }
+        this.bitsPerAllele = bitsPerAllele(marker);
+        this.marker = marker;
+        this.samples = samples;
+        this.allele1 = allele1;
+        this.allele2 = allele2;
+        this.phase1Probs = phase1Probs;
+    }
+
+    private static void checkAlleles(VcfRec rec) {
         int nAlleles = rec.marker().nAlleles();
         for (int sample=0, n=rec.nSamples(); sample<n; ++sample) {
             byte a1 = rec.gt(sample, 0);
@@ -117,7 +154,7 @@ public final class PGPRefGT implements VcfEmission {
         return nStorageBits;
     }
 
-    private static void storePhasingProbs(VcfRecord rec, Float[] phase1Probs){
+    private static void storePhasingProbs(VcfRec rec, Float[] phase1Probs){
 	Marker loc       = rec.marker();
 	int nAlleles     = loc.nAlleles();
 	int pgpLength    = nAlleles*nAlleles;
@@ -133,7 +170,7 @@ public final class PGPRefGT implements VcfEmission {
 	}
     }
 
-    private static void storeAlleles(VcfRecord rec, int bitsPerAllele,
+    private static void storeAlleles(VcfRec rec, int bitsPerAllele,
             BitSet allele1, BitSet allele2) {
         int index1 = 0;
         int index2 = 0;
@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2014 Brian L. Browning
+ *
+ * This file is part of Beagle
+ *
+ * Beagle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Beagle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package vcf;
+
+import beagleutil.ChromInterval;
+import blbutil.Utilities;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.sf.samtools.SAMException;
+import net.sf.samtools.util.BinaryCodec;
+import net.sf.samtools.util.BlockCompressedFilePointerUtil;
+import net.sf.samtools.util.BlockCompressedInputStream;
+
+/**
+ * <p>Class {@code TabixIndex} represents a tabix ({@code .tbi}) or
+ * coordinate-sorted ({@code .csi}) index of a BGZIP-compressed VCF file.
+ * The index is used to find the virtual file offset at which reading
+ * must begin in order to obtain all VCF records in a chromosome
+ * interval.
+ * </p>
+ * <p>Instances of class {@code TabixIndex} are immutable.
+ * </p>
+ *
+ * @author Brian L. Browning {@code <browning@uw.edu>}
+ */
+public final class TabixIndex {
+
+    private static final byte[] TBI_MAGIC = {'T', 'B', 'I', 1};
+    private static final byte[] CSI_MAGIC = {'C', 'S', 'I', 1};
+    private static final int TBI_MIN_SHIFT = 14;
+    private static final int TBI_DEPTH = 5;
+
+    private final File file;
+    private final int minShift;
+    private final int depth;
+    private final Map<String, Integer> chromToIndex;
+    private final List<Map<Integer, long[]>> binChunks;
+    private final List<Map<Integer, Long>> binOffsets;
+    private final long[][] linearIndex;
+
+    /**
+     * Returns the index file for the specified BGZIP-compressed VCF file,
+     * or {@code null} if the VCF file is not BGZIP-compressed or if
+     * there is no index file.  A {@code .csi} index is preferred to
+     * a {@code .tbi} index if both exist.
+     *
+     * @param vcfFile a VCF file.
+     * @return the index file for the specified VCF file, or {@code null}
+     * if there is no index file.
+     * @throws NullPointerException if {@code vcfFile==null}.
+     */
+    public static File indexFile(File vcfFile) {
+        if (vcfFile.getName().endsWith(".gz")==false) {
+            return null;
+        }
+        File csi = new File(vcfFile.getPath() + ".csi");
+        if (csi.isFile()) {
+            return csi;
+        }
+        File tbi = new File(vcfFile.getPath() + ".tbi");
+        if (tbi.isFile()) {
+            return tbi;
+        }
+        return null;
+    }
+
+    /**
+     * Constructs a new {@code TabixIndex} instance from the specified
+     * {@code .tbi} or {@code .csi} index file.
+     *
+     * @param file a BGZIP-compressed tabix or CSI index file.
+     *
+     * @throws IllegalArgumentException if the specified file is not
+     * a tabix or CSI index file.
+     * @throws NullPointerException if {@code file==null}.
+     */
+    public TabixIndex(File file) {
+        this.file = file;
+        BinaryCodec codec = null;
+        try {
+            codec = new BinaryCodec(new BlockCompressedInputStream(file));
+            byte[] magic = new byte[4];
+            codec.readBytes(magic);
+            String[] names;
+            if (Arrays.equals(magic, TBI_MAGIC)) {
+                this.minShift = TBI_MIN_SHIFT;
+                this.depth = TBI_DEPTH;
+                int nRef = codec.readInt();
+                names = readTabixHeader(codec, nRef);
+            }
+            else if (Arrays.equals(magic, CSI_MAGIC)) {
+                this.minShift = codec.readInt();
+                this.depth = codec.readInt();
+                int lAux = codec.readInt();
+                byte[] aux = new byte[lAux];
+                codec.readBytes(aux);
+                int nRef = codec.readInt();
+                names = readCsiNames(aux, nRef);
+            }
+            else {
+                String s = "Unrecognized index file format: " + file;
+                throw new IllegalArgumentException(s);
+            }
+            boolean isCsi = Arrays.equals(magic, CSI_MAGIC);
+            this.chromToIndex = new HashMap<>(names.length);
+            this.binChunks = new ArrayList<>(names.length);
+            this.binOffsets = new ArrayList<>(names.length);
+            this.linearIndex = new long[names.length][];
+            for (int j=0; j<names.length; ++j) {
+                chromToIndex.put(names[j], j);
+                readRef(codec, j, isCsi);
+            }
+        }
+        catch (IOException e) {
+            Utilities.exit("Error reading " + file, e);
+            throw new AssertionError();
+        }
+        catch (SAMException e) {
+            Utilities.exit("Error reading " + file, e);
+            throw new AssertionError();
+        }
+        finally {
+            if (codec!=null) {
+                codec.close();
+            }
+        }
+    }
+
+    private static String[] readTabixHeader(BinaryCodec codec, int nRef) {
+        codec.readInt();    // format
+        codec.readInt();    // col_seq
+        codec.readInt();    // col_beg
+        codec.readInt();    // col_end
+        codec.readInt();    // meta
+        codec.readInt();    // skip
+        int lNm = codec.readInt();
+        byte[] nm = new byte[lNm];
+        codec.readBytes(nm);
+        return names(nm, 0, nRef);
+    }
+
+    private String[] readCsiNames(byte[] aux, int nRef) {
+        int tabixHeaderInts = 7;
+        if (aux.length < 4*tabixHeaderInts) {
+            String s = "CSI index does not contain sequence names: " + file;
+            throw new IllegalArgumentException(s);
+        }
+        return names(aux, 4*tabixHeaderInts, nRef);
+    }
+
+    private static String[] names(byte[] nm, int start, int nRef) {
+        String[] names = new String[nRef];
+        for (int j=0; j<nRef; ++j) {
+            int end = start;
+            while (end<nm.length && nm[end]!=0) {
+                ++end;
+            }
+            names[j] = new String(nm, start, end - start);
+            start = end + 1;
+        }
+        return names;
+    }
+
+    private void readRef(BinaryCodec codec, int ref, boolean isCsi) {
+        int nBin = codec.readInt();
+        Map<Integer, long[]> chunks = new HashMap<>(nBin);
+        Map<Integer, Long> offsets = new HashMap<>(isCsi ? nBin : 0);
+        for (int j=0; j<nBin; ++j) {
+            int bin = codec.readInt();
+            if (isCsi) {
+                offsets.put(bin, codec.readLong());
+            }
+            int nChunk = codec.readInt();
+            long[] chunk = new long[2*nChunk];
+            for (int k=0; k<chunk.length; ++k) {
+                chunk[k] = codec.readLong();
+            }
+            chunks.put(bin, chunk);
+        }
+        binChunks.add(chunks);
+        binOffsets.add(offsets);
+        if (isCsi) {
+            linearIndex[ref] = new long[0];
+        }
+        else {
+            int nIntv = codec.readInt();
+            long[] ioff = new long[nIntv];
+            for (int k=0; k<nIntv; ++k) {
+                ioff[k] = codec.readLong();
+            }
+            linearIndex[ref] = ioff;
+        }
+    }
+
+    /**
+     * Returns the index file.
+     * @return the index file.
+     */
+    public File file() {
+        return file;
+    }
+
+    /**
+     * Returns the smallest virtual file offset of a VCF record that
+     * may have a position in the specified chromosome interval, or
+     * returns -1 if the index contains no VCF records that overlap the
+     * specified interval.
+     *
+     * @param interval a chromosome interval.
+     * @return the virtual file offset at which reading must begin to
+     * obtain all VCF records in the specified interval, or -1 if there
+     * are no such records.
+     * @throws NullPointerException if {@code interval==null}.
+     */
+    public long startOffset(ChromInterval interval) {
+        Integer ref = chromToIndex.get(interval.chrom());
+        if (ref==null) {
+            return -1;
+        }
+        long maxPos = (1L << (minShift + 3*depth));
+        long beg = Math.max(interval.start() - 1L, 0L);
+        long end = Math.min((long) interval.end(), maxPos);
+        if (beg >= end) {
+            return -1;
+        }
+        long minOffset = minOffset(ref, beg);
+        long startOffset = -1;
+        Map<Integer, long[]> chunks = binChunks.get(ref);
+        int t = 0;
+        for (int level=0, shift=minShift + 3*depth; level<=depth;
+                ++level, shift-=3) {
+            int firstBin = t + (int) (beg >> shift);
+            int lastBin = t + (int) ((end - 1) >> shift);
+            for (int bin=firstBin; bin<=lastBin; ++bin) {
+                long[] chunk = chunks.get(bin);
+                if (chunk!=null) {
+                    for (int k=0; k<chunk.length; k+=2) {
+                        if (BlockCompressedFilePointerUtil.compare(chunk[k+1], minOffset) > 0
+                                && (startOffset==-1
+                                || BlockCompressedFilePointerUtil.compare(chunk[k], startOffset) < 0)) {
+                            startOffset = chunk[k];
+                        }
+                    }
+                }
+            }
+            t += 1 << (3*level);
+        }
+        if (startOffset!=-1
+                && BlockCompressedFilePointerUtil.compare(startOffset, minOffset) < 0) {
+            startOffset = minOffset;
+        }
+        return startOffset;
+    }
+
+    /*
+     * Returns a lower bound on the virtual file offset of records that
+     * overlap the specified 0-based position.  A tabix index stores a
+     * linear index of 16 kb windows.  A CSI index stores the offset of
+     * the first record overlapping each bin.
+     */
+    private long minOffset(int ref, long beg) {
+        long[] ioff = linearIndex[ref];
+        if (ioff.length > 0) {
+            int window = (int) (beg >> TBI_MIN_SHIFT);
+            return window < ioff.length ? ioff[window] : ioff[ioff.length - 1];
+        }
+        Map<Integer, Long> offsets = binOffsets.get(ref);
+        int bin = ((1 << (3*depth)) - 1)/7 + (int) (beg >> minShift);
+        while (bin > 0 && offsets.containsKey(bin)==false) {
+            bin = (bin - 1) >> 3;
+        }
+        Long offset = offsets.get(bin);
+        return offset!=null ? offset : 0L;
+    }
+}
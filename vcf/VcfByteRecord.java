@@ -0,0 +1,386 @@
+/*
+ * Copyright (C) 2014 Brian L. Browning
+ *
+ * This file is part of Beagle
+ *
+ * Beagle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Beagle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package vcf;
+
+import beagleutil.Samples;
+import blbutil.Const;
+import blbutil.StringUtil;
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>Class {@code VcfByteRecord} represents a VCF record that is
+ * tokenized directly from the bytes of the VCF record.  The GT
+ * FORMAT subfield is decoded into primitive arrays when the record
+ * is constructed.  No string objects are created for per-sample fields.
+ * Other FORMAT subfields are decoded when requested.
+ * </p>
+ * <p>Instances of class {@code VcfByteRecord} are immutable.
+ * </p>
+ *
+ * @author Brian L. Browning {@code <browning@uw.edu>}
+ */
+public final class VcfByteRecord implements VcfRec {
+
+    private static final byte TAB = (byte) Const.tab;
+    private static final byte COLON = (byte) Const.colon;
+    private static final byte MISSING = (byte) Const.MISSING_DATA_CHAR;
+    private static final byte PHASED = (byte) Const.phasedSep;
+    private static final byte UNPHASED = (byte) Const.unphasedSep;
+    private static final int N_FIXED_FIELDS = 8;
+
+    private final byte[] rec;
+    private final VcfHeader vcfHeader;
+    private final Marker marker;
+    private final String[] formatFields;
+    private final Map<String, Integer> formatMap;
+    private final boolean hasGTFormat;
+
+    private final int[] sampleStart;
+    private final int[] sampleEnd;
+    private final byte[][] alleles;
+    private final boolean[] isPhased;
+
+    /**
+     * Creates a new {@code VcfByteRecord} instance.  The specified
+     * byte array is not copied, and must not be modified after this
+     * constructor is invoked.
+     *
+     * @param rec the bytes of a VCF version 4.1 record, excluding the
+     * line terminator.
+     * @param vcfHeader meta-information lines and header line for the
+     * specified VCF record.
+     *
+     * @throws IllegalArgumentException if format error is
+     * detected in any fixed field or in any non-excluded sample field.
+     * @throws IllegalArgumentException if there are not
+     * {@code vcfHeader.nHeaderFields()} tab-delimited fields in the
+     * specified VCF record.
+     * @throws NullPointerException if
+     * {@code rec==null || vcfHeader==null}.
+     */
+    public VcfByteRecord(byte[] rec, VcfHeader vcfHeader) {
+        if (vcfHeader==null) {
+            throw new NullPointerException("vcfHeader==null");
+        }
+        assert rec.length==0 || (rec[rec.length-1]!='\r'
+                && rec[rec.length-1]!='\n') : "line terminator in record";
+        this.rec = rec;
+        this.vcfHeader = vcfHeader;
+        int[] fieldEnds = fixedFieldEnds(rec, vcfHeader);
+        int infoEnd = fieldEnds[N_FIXED_FIELDS - 1];
+        this.marker = new Marker(new String(rec, 0, infoEnd));
+        if (infoEnd < rec.length) {
+            int formatStart = infoEnd + 1;
+            int formatEnd = fieldEnds[N_FIXED_FIELDS];
+            String format = new String(rec, formatStart, formatEnd - formatStart);
+            this.formatFields = formats(format);
+        }
+        else {
+            this.formatFields = new String[0];
+        }
+        this.formatMap = formatToIndexMap(vcfHeader, formatFields);
+        this.hasGTFormat = formatMap.containsKey(BitSetGT.GT_FORMAT);
+
+        int n = vcfHeader.samples().nSamples();
+        this.sampleStart = new int[n];
+        this.sampleEnd = new int[n];
+        this.alleles = new byte[2][n];
+        this.isPhased = new boolean[n];
+        if (n>0) {
+            storePerSampleData(fieldEnds[N_FIXED_FIELDS] + 1);
+        }
+    }
+
+    /*
+     * Returns the end indices of the first nine fields (or of the
+     * first eight fields if there is no FORMAT field).  The number of
+     * tab-delimited fields is checked against the header line.
+     */
+    private static int[] fixedFieldEnds(byte[] rec, VcfHeader vcfHeader) {
+        int[] fieldEnds = new int[N_FIXED_FIELDS + 1];
+        int nFields = 1;
+        for (int j=0; j<rec.length; ++j) {
+            if (rec[j]==TAB) {
+                if (nFields <= fieldEnds.length) {
+                    fieldEnds[nFields - 1] = j;
+                }
+                ++nFields;
+            }
+        }
+        if (nFields <= fieldEnds.length) {
+            fieldEnds[nFields - 1] = rec.length;
+        }
+        if (vcfHeader.nHeaderFields() != nFields) {
+            File f = vcfHeader.file();
+            String src = "File source: " + (f!=null ? f : "stdin or unknown");
+            String s = "Header line has " + vcfHeader.nHeaderFields()
+                    + " fields, but data line has " + nFields + " fields"
+                    + Const.nl + src + Const.nl + new String(rec);
+            throw new IllegalArgumentException(s);
+        }
+        return fieldEnds;
+    }
+
+    private String[] formats(String formats) {
+        if (formats.equals(Const.MISSING_DATA_STRING)) {
+            return new String[0];
+        }
+        String[] fields =  StringUtil.getFields(formats, Const.colon);
+        for (String f : fields) {
+            if (f.isEmpty()) {
+                String s = "missing format in format list: " + this;
+                throw new IllegalArgumentException(s);
+            }
+        }
+        return fields;
+    }
+
+    private Map<String, Integer> formatToIndexMap(VcfHeader vcfHeader,
+            String[] formatFields) {
+        if (vcfHeader.samples().nSamples()==0) {
+            return Collections.emptyMap();
+        }
+        Map<String, Integer> map = new HashMap<>(formatFields.length);
+        for (int j=0; j<formatFields.length; ++j) {
+            map.put(formatFields[j], j);
+        }
+        if (map.containsKey(BitSetGT.GT_FORMAT)
+                && map.get(BitSetGT.GT_FORMAT)!=0) {
+            String s = "GT format is not first format: " + this;
+            throw new IllegalArgumentException(s);
+        }
+        return map;
+    }
+
+    private void storePerSampleData(int firstSampleStart) {
+        int filteredIndex = 0;
+        int start = firstSampleStart;
+        for (int j=0, n=vcfHeader.nUnfilteredSamples(); j<n; ++j) {
+            int end = start;
+            while (end<rec.length && rec[end]!=TAB) {
+                ++end;
+            }
+            if (vcfHeader.filter(j)==false) {
+                checkSampleField(filteredIndex, start, end);
+                sampleStart[filteredIndex] = start;
+                sampleEnd[filteredIndex] = end;
+                if (hasGTFormat && isMissingField(start, end)==false) {
+                    storeGT(filteredIndex, start, end);
+                }
+                else {
+                    alleles[0][filteredIndex] = -1;
+                    alleles[1][filteredIndex] = -1;
+                    isPhased[filteredIndex] = false;
+                }
+                ++filteredIndex;
+            }
+            start = end + 1;
+        }
+        assert filteredIndex==sampleStart.length;
+    }
+
+    private boolean isMissingField(int start, int end) {
+        return (end - start)==1 && rec[start]==MISSING;
+    }
+
+    private void checkSampleField(int sample, int start, int end) {
+        if (start==end) {
+            String s = "Missing data for sample "
+                    + vcfHeader.samples().id(sample) + ": " + this;
+            throw new IllegalArgumentException(s);
+        }
+        int nSubfields = 1;
+        boolean emptySubfield = (rec[start]==COLON || rec[end-1]==COLON);
+        for (int k=start+1; k<end; ++k) {
+            if (rec[k]==COLON) {
+                ++nSubfields;
+                emptySubfield |= (rec[k-1]==COLON);
+            }
+        }
+        if (emptySubfield) {
+            String s = "empty sub-field for sample "
+                    + vcfHeader.samples().id(sample)
+                    + ": " + new String(rec, start, end - start);
+            throw new IllegalArgumentException(s);
+        }
+        if (nSubfields > formatFields.length) {
+            String s = "Expected at most " + formatFields.length
+                    + " sub-fields for sample "
+                    + vcfHeader.samples().id(sample) + ": " + this;
+            throw new IllegalArgumentException(s);
+        }
+    }
+
+    private void storeGT(int sample, int start, int end) {
+        int gtEnd = start;
+        while (gtEnd<end && rec[gtEnd]!=COLON) {
+            ++gtEnd;
+        }
+        int sepIndex = separatorIndex(start, gtEnd);
+        alleles[0][sample] = allele(start, sepIndex);
+        alleles[1][sample] = allele(sepIndex+1, gtEnd);
+        isPhased[sample] = (rec[sepIndex]==PHASED);
+    }
+
+    /**
+     * Returns the index of the genotype separator.
+     */
+    private int separatorIndex(int start, int end) {
+        for (int j=start; j<end; ++j) {
+            if (rec[j]==UNPHASED) {
+                return j;
+            }
+        }
+        for (int j=start; j<end; ++j) {
+            if (rec[j]==PHASED) {
+                return j;
+            }
+        }
+        String s = "missing genotype separator ("
+                + new String(rec, start, end - start) + "): " + this;
+        throw new IllegalArgumentException(s);
+    }
+
+    private byte allele(int start, int end) {
+        if (start==end) {
+            String s = "Missing a sample allele: " + this;
+            throw new IllegalArgumentException(s);
+        }
+        if (isMissingField(start, end)) {
+            return -1;
+        }
+        int a = 0;
+        for (int j=start; j<end; ++j) {
+            int digit = rec[j] - '0';
+            if (digit<0 || digit>9) {
+                String s = "invalid allele ("
+                        + new String(rec, start, end - start) + "): " + this;
+                throw new NumberFormatException(s);
+            }
+            a = 10*a + digit;
+            if (a > Byte.MAX_VALUE) {
+                break;
+            }
+        }
+        if (a >= marker.nAlleles()) {
+            String s = "allele " + a + " is not defined: " + this;
+            throw new IllegalArgumentException(s);
+        }
+        if (a > Byte.MAX_VALUE) {
+            String s = "Marker cannot have more than " + Byte.MAX_VALUE
+                    + " alternate alleles: " + this;
+            throw new IllegalArgumentException(s);
+        }
+        return (byte) a;
+    }
+
+    @Override
+    public VcfHeader vcfHeader() {
+        return vcfHeader;
+    }
+
+    @Override
+    public Samples samples() {
+        return vcfHeader.samples();
+    }
+
+    @Override
+    public int nSamples() {
+        return vcfHeader.samples().nSamples();
+    }
+
+    @Override
+    public Marker marker() {
+        return marker;
+    }
+
+    @Override
+    public boolean hasFormat(String formatCode) {
+        return formatMap.get(formatCode)!=null;
+    }
+
+    @Override
+    public byte gt(int sample, int allele) {
+        return alleles[allele][sample];
+    }
+
+    @Override
+    public boolean isPhased(int sample) {
+        return isPhased[sample];
+    }
+
+    @Override
+    public String sampleFormatData(String formatCode, int sample) {
+        return subfield(formatIndex(formatCode), sample);
+    }
+
+    @Override
+    public String[] formatData(String formatCode) {
+        int formatIndex = formatIndex(formatCode);
+        String[] sa = new String[sampleStart.length];
+        for (int j=0; j<sa.length; ++j) {
+            sa[j] = subfield(formatIndex, j);
+        }
+        return sa;
+    }
+
+    private int formatIndex(String formatCode) {
+        Integer formatIndex = formatMap.get(formatCode);
+        if (formatIndex==null) {
+            String s = "missing format data: " + formatCode;
+            throw new IllegalArgumentException(s);
+        }
+        return formatIndex;
+    }
+
+    private String subfield(int subfield, int sample) {
+        int start = sampleStart[sample];
+        int end = sampleEnd[sample];
+        if (isMissingField(start, end)) {
+            return (subfield==0 && hasGTFormat) ? "./."
+                    : Const.MISSING_DATA_STRING;
+        }
+        for (int k=0; k<subfield && start<end; ++k) {
+            while (start<end && rec[start]!=COLON) {
+                ++start;
+            }
+            ++start;
+        }
+        if (start>=end) {
+            return Const.MISSING_DATA_STRING;
+        }
+        int subfieldEnd = start;
+        while (subfieldEnd<end && rec[subfieldEnd]!=COLON) {
+            ++subfieldEnd;
+        }
+        return new String(rec, start, subfieldEnd - start);
+    }
+
+    /**
+     * Returns the VCF record.
+     * @return the VCF record.
+     */
+    @Override
+    public String toString() {
+        return new String(rec);
+    }
+}
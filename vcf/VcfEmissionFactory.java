@@ -20,7 +20,7 @@ package vcf;
 
 /**
  * Interface {@code VcfEmissionFactory} is used to create a
- * {@code VcfEmission} instance from a {@code VcfRecord} instances.
+ * {@code VcfEmission} instance from a {@code VcfRec} instances.
  *
  * @author Brian L. Browning {@code <browning@uw.edu>}
  */
@@ -34,6 +34,6 @@ public interface VcfEmissionFactory {
      * specified VCF record.
      * @throws NullPointerException if {@code rec==null}.
      */
-    VcfEmission create(VcfRecord rec);
+    VcfEmission create(VcfRec rec);
 
 }
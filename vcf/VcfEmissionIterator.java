@@ -32,10 +32,10 @@ import main.NuclearFamilies;
  */
 public class VcfEmissionIterator implements SampleFileIterator<VcfEmission> {
 
-    private final SampleFileIterator<VcfRecord> it;
+    private final SampleFileIterator<VcfRec> it;
     private final VcfEmissionFactory emissionFactory;
 
-    private VcfEmissionIterator(SampleFileIterator<VcfRecord> it,
+    private VcfEmissionIterator(SampleFileIterator<VcfRec> it,
             VcfEmissionFactory emissionFactory) {
         if (it.samples().nSamples()==0) {
             String s = "missing sample data";
@@ -53,7 +53,7 @@ public class VcfEmissionIterator implements SampleFileIterator<VcfEmission> {
      * {@code next()} method returns {@code VcfEmission} objects whose
      * emission probabilities are determined by called genotypes.
      * @param it an iterator whose {@code next()} method returns
-     * a {@code VcfRecord} objects.
+     * a {@code VcfRec} objects.
      * @param pedFile a linkage-format pedigree file, or {@code null}
      * if no pedigree relationships are known.  A pedigree file must have
      * at least 4 white-space delimited columns.  The first column of the
@@ -71,7 +71,7 @@ public class VcfEmissionIterator implements SampleFileIterator<VcfEmission> {
      * @throws NullPointerException if {@code it==null}.
      */
     public static SampleFileIterator<VcfEmission> gt(
-            SampleFileIterator<VcfRecord> it, File pedFile, boolean usePhase) {
+            SampleFileIterator<VcfRec> it, File pedFile, boolean usePhase) {
         NuclearFamilies fam = new NuclearFamilies(it.samples(), pedFile);
         VcfEmissionFactory vef = gt(fam, usePhase);
         return new VcfEmissionIterator(it, vef);
@@ -82,7 +82,7 @@ public class VcfEmissionIterator implements SampleFileIterator<VcfEmission> {
      * {@code next()} method returns {@code VcfEmission} objects whose
      * emission probabilities are determined by genotype likelihoods.
      * @param it an iterator whose {@code next()} method returns
-     * a {@code VcfRecord} objects. If a VCF record has GL and PL format
+     * a {@code VcfRec} objects. If a VCF record has GL and PL format
      * codes, the PL format field data will be ignored.
      * @param pedFile a linkage-format pedigree file, or {@code null}
      * if no pedigree relationships are known.  A pedigree file must have
@@ -107,7 +107,7 @@ public class VcfEmissionIterator implements SampleFileIterator<VcfEmission> {
      * @throws NullPointerException if {@code it==null}.
 */
     public static SampleFileIterator<VcfEmission> gl(
-            SampleFileIterator<VcfRecord> it, File pedFile, float maxLR) {
+            SampleFileIterator<VcfRec> it, File pedFile, float maxLR) {
         NuclearFamilies fam = new NuclearFamilies(it.samples(), pedFile);
         VcfEmissionFactory vef = gl(fam, maxLR);
         return new VcfEmissionIterator(it, vef);
@@ -119,7 +119,7 @@ public class VcfEmissionIterator implements SampleFileIterator<VcfEmission> {
      * emission probabilities are determined by called genotypes
      * or genotype likelihoods.
      * @param it an iterator whose {@code next()} method returns
-     * a {@code VcfRecord} object.  If a VCF record has GL and PL
+     * a {@code VcfRec} object.  If a VCF record has GL and PL
      * format codes, the PL format field data will be ignored.
      * @param pedFile a linkage-format pedigree file, or {@code null}
      * if no pedigree relationships are known.  A pedigree file must have
@@ -153,7 +153,7 @@ public class VcfEmissionIterator implements SampleFileIterator<VcfEmission> {
      * @throws NullPointerException if {@code it==null}
      */
     public static SampleFileIterator<VcfEmission> gtgl(
-            SampleFileIterator<VcfRecord> it, File pedFile, boolean usePhase,
+            SampleFileIterator<VcfRec> it, File pedFile, boolean usePhase,
             float maxLR, boolean preferGL) {
         NuclearFamilies fam = new NuclearFamilies(it.samples(), pedFile);
         VcfEmissionFactory vef = gtgl(fam, usePhase, maxLR, preferGL);
@@ -210,7 +210,7 @@ public class VcfEmissionIterator implements SampleFileIterator<VcfEmission> {
             final boolean usePhase) {
         return new VcfEmissionFactory() {
             @Override
-            public VcfEmission create(VcfRecord rec) {
+            public VcfEmission create(VcfRec rec) {
                 return new BitSetGT(rec, fam, usePhase);
             }
         };
@@ -223,7 +223,7 @@ public class VcfEmissionIterator implements SampleFileIterator<VcfEmission> {
         }
         return new VcfEmissionFactory() {
             @Override
-            public VcfEmission create(VcfRecord rec) {
+            public VcfEmission create(VcfRec rec) {
                 return new MedMemGL(rec, fam, maxLR);
             }
         };
@@ -235,7 +235,7 @@ public class VcfEmissionIterator implements SampleFileIterator<VcfEmission> {
         }
         return new VcfEmissionFactory() {
             @Override
-            public VcfEmission create(VcfRecord rec) {
+            public VcfEmission create(VcfRec rec) {
                 return new MedMemGTGL(rec, fam, usePhase, maxLR, preferGL);
             }
         };
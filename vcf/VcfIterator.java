@@ -21,37 +21,49 @@ package vcf;
 import beagleutil.ChromInterval;
 import blbutil.SampleFileIterator;
 import beagleutil.Samples;
+import blbutil.ByteInputIterator;
 import blbutil.Const;
 import blbutil.FileIterator;
 import blbutil.Filter;
 import blbutil.FilterUtils;
-import blbutil.InputIterator;
+import blbutil.Utilities;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import net.sf.samtools.util.BlockCompressedInputStream;
 
 /**
- * Class {@code VcfIterator} is an iterator whose {@code next()}
+ * <p>Class {@code VcfIterator} is an iterator whose {@code next()}
  * method returns VCF records.
+ * </p>
+ * <p>VCF records are read as lines of bytes and are tokenized
+ * directly from the bytes by {@code VcfByteRecord}.
+ * </p>
  *
  * @author Brian L. Browning {@code <browning@uw.edu>}
  */
-public class VcfIterator implements SampleFileIterator<VcfRecord> {
+public class VcfIterator implements SampleFileIterator<VcfRec> {
 
     private static final Filter<String> ACCEPT_ALL_FILTER =
             FilterUtils.acceptAllFilter();
 
     private final VcfHeader vcfHeader;
-    private final FileIterator<String> it;
+    private final FileIterator<byte[]> it;
     private final Set<String> chromSet = new HashSet<>();
 
-    private VcfRecord current;
-    private VcfRecord next;
+    private VcfRec current;
+    private VcfRec next;
 
     /**
      * Construct and returns a new {@code VcfIterator} instance that
-     * reads from standard input.
+     * reads from the specified file.  If {@code chromInterval!=null}
+     * and the file is BGZIP-compressed and has a tabix ({@code .tbi}) or
+     * CSI ({@code .csi}) index, reading begins at the first BGZIP block
+     * that can contain a record in the interval.
      * @param vcfFile a file in VCF format.  The VCF records for
      * each chromosome must be contiguous and sorted in order of
      * increasing position.
@@ -61,18 +73,26 @@ public class VcfIterator implements SampleFileIterator<VcfRecord> {
      * is no marker filter.
      * @param chromInterval the the chromosome interval to read, or
      * {@code null} if there is no interval restriction.
-     * @return a new {@code SampleFileIterator<VcfRecord>} instance.
+     * @return a new {@code SampleFileIterator<VcfRec>} instance.
      *
      * @throws IllegalArgumentException if any VCF header line
      * does not conform to the VCF specification, or if the first
      * VCF record does not conform to the VCF specification.
      * @throws NullPointerException if {@code vcfFile==null}.
      */
-    public static SampleFileIterator<VcfRecord> filteredIterator(File vcfFile,
+    public static SampleFileIterator<VcfRec> filteredIterator(File vcfFile,
             Filter<String> sampleFilter, Filter<Marker> markerFilter,
             ChromInterval chromInterval) {
-        SampleFileIterator<VcfRecord> it =
-                new VcfIterator(vcfFile, sampleFilter);
+        File indexFile = (chromInterval != null)
+                ? TabixIndex.indexFile(vcfFile) : null;
+        SampleFileIterator<VcfRec> it;
+        if (indexFile != null) {
+            TabixIndex index = new TabixIndex(indexFile);
+            it = indexedIterator(vcfFile, sampleFilter, index, chromInterval);
+        }
+        else {
+            it = new VcfIterator(vcfFile, sampleFilter);
+        }
         if (chromInterval != null) {
             it = new IntervalVcfIterator(it, chromInterval);
         }
@@ -113,7 +133,7 @@ public class VcfIterator implements SampleFileIterator<VcfRecord> {
      * @throws NullPointerException if {@code vcfFile==null}.
      */
     public VcfIterator(File vcfFile, Filter<String> sampleFilter) {
-        this(InputIterator.fromGzipFile(vcfFile), sampleFilter);
+        this(ByteInputIterator.fromGzipFile(vcfFile), sampleFilter);
     }
 
     /**
@@ -130,13 +150,13 @@ public class VcfIterator implements SampleFileIterator<VcfRecord> {
      * @throws NullPointerException if {@code it==null}.
      */
     public VcfIterator(FileIterator<String> it) {
-        this(it, ACCEPT_ALL_FILTER);
+        this(new StringToBytes(it), ACCEPT_ALL_FILTER);
     }
 
     /**
      * Constructs a new {@code VcfIterator} instance.
      *
-     * @param it a {@code FileIterator<String>} whose
+     * @param it a {@code FileIterator<byte[]>} whose
      * {@code next()} method returns lines of a file in
      * VCF format.  The VCF records for each chromosome must be
      * contiguous and sorted in order of increasing position.
@@ -148,12 +168,56 @@ public class VcfIterator implements SampleFileIterator<VcfRecord> {
      * VCF record does not conform to the VCF specification.
      * @throws NullPointerException if {@code it==null}.
      */
-    private VcfIterator(FileIterator<String> it, Filter<String> sampleFilter) {
+    private VcfIterator(FileIterator<byte[]> it, Filter<String> sampleFilter) {
         if (sampleFilter==null) {
             sampleFilter = ACCEPT_ALL_FILTER;
         }
         this.it = it;
-        this.vcfHeader = new VcfHeader(it, sampleFilter);
+        this.vcfHeader = new VcfHeader(new BytesToString(it), sampleFilter);
+        this.current = null;
+        this.next = readData();
+    }
+
+    /*
+     * Reads the meta-information lines and header line from the start
+     * of the file, and then seeks to the first BGZIP block that can
+     * contain a record in the specified interval.
+     */
+    private static VcfIterator indexedIterator(File vcfFile,
+            Filter<String> sampleFilter, TabixIndex index,
+            ChromInterval interval) {
+        if (sampleFilter==null) {
+            sampleFilter = ACCEPT_ALL_FILTER;
+        }
+        try {
+            BlockCompressedInputStream bcis
+                    = new BlockCompressedInputStream(vcfFile);
+            FileIterator<byte[]> headerIt = new ByteInputIterator(bcis, vcfFile);
+            VcfHeader vcfHeader = new VcfHeader(new BytesToString(headerIt),
+                    sampleFilter);
+            long offset = index.startOffset(interval);
+            FileIterator<byte[]> dataIt;
+            if (offset == -1) {
+                bcis.close();
+                dataIt = new ByteInputIterator(
+                        new ByteArrayInputStream(new byte[0]), vcfFile);
+            }
+            else {
+                bcis.seek(offset);
+                dataIt = new ByteInputIterator(bcis, vcfFile);
+            }
+            return new VcfIterator(vcfHeader, dataIt);
+        }
+        catch (IOException e) {
+            Utilities.exit("Error reading " + vcfFile, e);
+        }
+        assert false;
+        return null;
+    }
+
+    private VcfIterator(VcfHeader vcfHeader, FileIterator<byte[]> it) {
+        this.it = it;
+        this.vcfHeader = vcfHeader;
         this.current = null;
         this.next = readData();
     }
@@ -169,7 +233,7 @@ public class VcfIterator implements SampleFileIterator<VcfRecord> {
      * VCF record does not conform to the VCF specification.
      */
     public static VcfIterator fromStdin() {
-        FileIterator<String> it = new InputIterator(System.in);
+        FileIterator<byte[]> it = new ByteInputIterator(System.in, null);
         return new VcfIterator(it, ACCEPT_ALL_FILTER);
     }
 
@@ -186,7 +250,7 @@ public class VcfIterator implements SampleFileIterator<VcfRecord> {
      * VCF record does not conform to the VCF specification.
      */
     public static VcfIterator fromStdin(Filter<String> sampleFilter) {
-        FileIterator<String> it = new InputIterator(System.in);
+        FileIterator<byte[]> it = new ByteInputIterator(System.in, null);
         return new VcfIterator(it, sampleFilter);
     }
 
@@ -213,7 +277,7 @@ public class VcfIterator implements SampleFileIterator<VcfRecord> {
      * @throws NoSuchElementException if the iteration has no more elements.
      */
     @Override
-    public VcfRecord next() {
+    public VcfRec next() {
         if (!hasNext()) {
             throw new NoSuchElementException();
         }
@@ -243,18 +307,36 @@ public class VcfIterator implements SampleFileIterator<VcfRecord> {
         return vcfHeader.samples();
     }
 
-    private VcfRecord readData() {
-        VcfRecord vcfRecord = null;
+    private VcfRec readData() {
+        VcfRec vcfRecord = null;
         while (it.hasNext() && vcfRecord==null) {
-            String line = it.next().trim();
-            if (line.isEmpty()==false) {
-                vcfRecord = new VcfRecord(line, vcfHeader);
+            byte[] line = trim(it.next());
+            if (line.length>0) {
+                vcfRecord = new VcfByteRecord(line, vcfHeader);
             }
         }
         return vcfRecord;
     }
 
-    private void checkMarkerPosOrder(VcfRecord current, VcfRecord next) {
+    /* Removes leading and trailing white-space as in String.trim() */
+    private static byte[] trim(byte[] line) {
+        int start = 0;
+        int end = line.length;
+        while (start<end && line[start] <= ' ') {
+            ++start;
+        }
+        while (start<end && line[end-1] <= ' ') {
+            --end;
+        }
+        if (start>0 || end<line.length) {
+            return Arrays.copyOfRange(line, start, end);
+        }
+        else {
+            return line;
+        }
+    }
+
+    private void checkMarkerPosOrder(VcfRec current, VcfRec next) {
         if (next!=null) {
             Marker m1 = current.marker();
             Marker m2 = next.marker();
@@ -289,4 +371,79 @@ public class VcfIterator implements SampleFileIterator<VcfRecord> {
         sb.append(next);
         return sb.toString();
     }
+
+    /*
+     * Returns the lines of a byte iterator as strings.  Used to read
+     * the meta-information lines and header line.
+     */
+    private static class BytesToString implements FileIterator<String> {
+
+        private final FileIterator<byte[]> it;
+
+        BytesToString(FileIterator<byte[]> it) {
+            this.it = it;
+        }
+
+        @Override
+        public File file() {
+            return it.file();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return it.hasNext();
+        }
+
+        @Override
+        public String next() {
+            return new String(it.next());
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove()");
+        }
+
+        @Override
+        public void close() {
+            it.close();
+        }
+    }
+
+    /*
+     * Returns the lines of a string iterator as byte arrays.
+     */
+    private static class StringToBytes implements FileIterator<byte[]> {
+
+        private final FileIterator<String> it;
+
+        StringToBytes(FileIterator<String> it) {
+            this.it = it;
+        }
+
+        @Override
+        public File file() {
+            return it.file();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return it.hasNext();
+        }
+
+        @Override
+        public byte[] next() {
+            return it.next().getBytes();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove()");
+        }
+
+        @Override
+        public void close() {
+            it.close();
+        }
+    }
 }
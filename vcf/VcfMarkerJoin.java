@@ -0,0 +1,396 @@
+/*
+ * Copyright (C) 2014 Brian L. Browning
+ *
+ * This file is part of Beagle
+ *
+ * Beagle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Beagle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package vcf;
+
+import beagleutil.Samples;
+import blbutil.SampleFileIterator;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * <p>Class {@code VcfMarkerJoin} performs a streaming merge-join of
+ * reference and target VCF records.  The reference iterators returned by
+ * {@code this.refIterator()} and {@code this.refEmissionIterator()}
+ * return only reference records whose marker is equal to the marker of
+ * a target record.  The target iterator returned by
+ * {@code this.targetIterator()} returns all target records.
+ * </p>
+ * <p>Each target record is read and parsed once.  Target records
+ * that have been read by the join, but not yet returned by the target
+ * iterator, are buffered.  Chromosomes that are present in both
+ * the reference and target VCF files must be in the same order in
+ * both files.
+ * </p>
+ * <p>If the reference moves to a chromosome that is not at the join
+ * position in the target, the target records are searched for the
+ * reference chromosome.  If the target VCF header has a
+ * {@code ##contig} line for the reference chromosome, the search stops
+ * at the first target record whose chromosome has a later
+ * {@code ##contig} line, so that the buffer never holds target records
+ * beyond the requested chromosome.  Otherwise the search may buffer
+ * target records to the end of the target file.
+ * </p>
+ * <p>Instances of class {@code VcfMarkerJoin} are thread-safe.
+ * </p>
+ *
+ * @author Brian L. Browning {@code <browning@uw.edu>}
+ */
+public final class VcfMarkerJoin {
+
+    private static final int MIN_TRIM_SIZE = 1<<10;
+    private static final String CONTIG_KEY = "contig";
+    private static final String CONTIG_ID = "ID=";
+
+    private final SampleFileIterator<VcfRec> targetIt;
+
+    private final List<VcfRec> buffer = new ArrayList<>();
+    private long base = 0;      // index of first buffered target record
+    private long cursor = 0;    // index of join position in target records
+    private long consumed = 0;  // index of next record of target iterator
+
+    private int refChrom = -1;
+    private final Set<Integer> prevRefChroms = new HashSet<>();
+    private final Set<Integer> doneTargetChroms = new HashSet<>();
+    private Map<String, Integer> contigOrder = null;
+
+    /**
+     * Constructs a new {@code VcfMarkerJoin} instance.
+     * @param targetIt an iterator that returns target VCF records.
+     * @throws NullPointerException if {@code targetIt==null}.
+     */
+    public VcfMarkerJoin(SampleFileIterator<VcfRec> targetIt) {
+        if (targetIt==null) {
+            throw new NullPointerException("targetIt==null");
+        }
+        this.targetIt = targetIt;
+    }
+
+    /**
+     * Returns an iterator whose {@code next()} method returns the
+     * reference records whose marker is equal to the marker of a target
+     * record.  At most one reference iterator may be obtained from
+     * {@code this}, and the returned iterator must be used by only one
+     * thread at a time.
+     * @param refIt an iterator that returns reference VCF records.
+     * @return an iterator over the joined reference records.
+     * @throws NullPointerException if {@code refIt==null}.
+     */
+    public SampleFileIterator<VcfRec> refIterator(
+            SampleFileIterator<VcfRec> refIt) {
+        return new RefIterator<VcfRec>(refIt) {
+            @Override
+            Marker marker(VcfRec rec) {
+                return rec.marker();
+            }
+        };
+    }
+
+    /**
+     * Returns an iterator whose {@code next()} method returns the
+     * reference records whose marker is equal to the marker of a target
+     * record.  At most one reference iterator may be obtained from
+     * {@code this}, and the returned iterator must be used by only one
+     * thread at a time.
+     * @param refIt an iterator that returns reference data.
+     * @return an iterator over the joined reference data.
+     * @throws NullPointerException if {@code refIt==null}.
+     */
+    public SampleFileIterator<VcfEmission> refEmissionIterator(
+            SampleFileIterator<VcfEmission> refIt) {
+        return new RefIterator<VcfEmission>(refIt) {
+            @Override
+            Marker marker(VcfEmission em) {
+                return em.marker();
+            }
+        };
+    }
+
+    /**
+     * Returns an iterator whose {@code next()} method returns the
+     * target records.  The returned iterator must be used by only one
+     * thread at a time.
+     * @return an iterator over the target records.
+     */
+    public SampleFileIterator<VcfRec> targetIterator() {
+        return new TargetIterator();
+    }
+
+    /*
+     * Returns the target record with the specified index, or null if
+     * there is no such record.
+     */
+    private VcfRec target(long index) {
+        while (index - base >= buffer.size()) {
+            if (targetIt.hasNext()==false) {
+                return null;
+            }
+            buffer.add(targetIt.next());
+        }
+        return buffer.get((int) (index - base));
+    }
+
+    private void trim() {
+        int n = (int) (Math.min(cursor, consumed) - base);
+        if (n >= MIN_TRIM_SIZE && 2*n >= buffer.size()) {
+            buffer.subList(0, n).clear();
+            base += n;
+        }
+    }
+
+    private synchronized boolean accept(Marker marker) {
+        int chrom = marker.chromIndex();
+        if (chrom != refChrom) {
+            if (refChrom != -1) {
+                prevRefChroms.add(refChrom);
+            }
+            refChrom = chrom;
+        }
+        VcfRec rec = target(cursor);
+        while (rec!=null && rec.marker().chromIndex()!=chrom) {
+            int targetChrom = rec.marker().chromIndex();
+            if (doneTargetChroms.contains(chrom)) {
+                return false;
+            }
+            else if (prevRefChroms.contains(targetChrom)) {
+                rec = advanceCursor();
+            }
+            else if (moveCursorToChrom(marker)) {
+                rec = target(cursor);
+            }
+            else {
+                doneTargetChroms.add(chrom);
+                return false;
+            }
+        }
+        while (rec!=null && rec.marker().chromIndex()==chrom
+                && rec.marker().pos() < marker.pos()) {
+            rec = advanceCursor();
+        }
+        for (long j=cursor; rec!=null && rec.marker().chromIndex()==chrom
+                && rec.marker().pos()==marker.pos(); rec=target(++j)) {
+            if (rec.marker().equals(marker)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Advances the join position by one target record, and returns the
+     * target record at the new join position.
+     */
+    private VcfRec advanceCursor() {
+        int chrom = target(cursor).marker().chromIndex();
+        VcfRec next = target(++cursor);
+        if (next==null || next.marker().chromIndex()!=chrom) {
+            doneTargetChroms.add(chrom);
+        }
+        trim();
+        return next;
+    }
+
+    /*
+     * Advances the join position to the first target record on the
+     * specified chromosome and returns true if there is such a record.
+     * Returns false and does not change the join position otherwise.
+     * If the specified chromosome has a ##contig line in the target
+     * header, no target record following a chromosome with a later
+     * ##contig line is read.
+     */
+    private boolean moveCursorToChrom(Marker marker) {
+        int chrom = marker.chromIndex();
+        long index = cursor;
+        VcfRec rec = target(index);
+        Map<String, Integer> order = contigOrder(rec);
+        Integer rank = order.get(marker.chrom());
+        while (rec!=null && rec.marker().chromIndex()!=chrom) {
+            Integer recRank = order.get(rec.marker().chrom());
+            if (rank!=null && recRank!=null && recRank > rank) {
+                return false;
+            }
+            rec = target(++index);
+        }
+        if (rec==null) {
+            return false;
+        }
+        while (cursor < index) {
+            advanceCursor();
+        }
+        return true;
+    }
+
+    /*
+     * Returns a map from each chromosome with a ##contig line in the
+     * target VCF header to the index of its first ##contig line among
+     * the ##contig lines.  The map is constructed from the header of the
+     * specified target record when this method is first invoked with a
+     * non-null record.
+     */
+    private Map<String, Integer> contigOrder(VcfRec rec) {
+        if (contigOrder==null) {
+            if (rec==null) {
+                return Collections.emptyMap();
+            }
+            contigOrder = new HashMap<>();
+            VcfHeader header = rec.vcfHeader();
+            for (int j=0, n=header.nMetaInfoLines(); j<n; ++j) {
+                VcfMetaInfo info = header.metaInfoLine(j);
+                String id = info.key().equals(CONTIG_KEY)
+                        ? contigId(info.value()) : null;
+                if (id!=null && contigOrder.containsKey(id)==false) {
+                    contigOrder.put(id, contigOrder.size());
+                }
+            }
+        }
+        return contigOrder;
+    }
+
+    /*
+     * Returns the ID field of the specified ##contig line value, or
+     * returns null if there is no ID field.
+     */
+    private static String contigId(String value) {
+        if (value.startsWith("<") && value.endsWith(">")) {
+            String[] fields = value.substring(1, value.length()-1).split(",");
+            for (String field : fields) {
+                if (field.startsWith(CONTIG_ID)) {
+                    return field.substring(CONTIG_ID.length());
+                }
+            }
+        }
+        return null;
+    }
+
+    private synchronized boolean hasNextTarget() {
+        return target(consumed)!=null;
+    }
+
+    private synchronized VcfRec nextTarget() {
+        VcfRec rec = target(consumed);
+        if (rec==null) {
+            throw new NoSuchElementException();
+        }
+        ++consumed;
+        trim();
+        return rec;
+    }
+
+    private abstract class RefIterator<E> implements SampleFileIterator<E> {
+
+        private final SampleFileIterator<E> refIt;
+        private E next;
+
+        RefIterator(SampleFileIterator<E> refIt) {
+            if (refIt==null) {
+                throw new NullPointerException("refIt==null");
+            }
+            this.refIt = refIt;
+            this.next = readNextRecord();
+        }
+
+        abstract Marker marker(E e);
+
+        private E readNextRecord() {
+            while (refIt.hasNext()) {
+                E candidate = refIt.next();
+                if (accept(marker(candidate))) {
+                    return candidate;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public File file() {
+            return refIt.file();
+        }
+
+        @Override
+        public Samples samples() {
+            return refIt.samples();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next!=null;
+        }
+
+        @Override
+        public E next() {
+            if (next==null) {
+                throw new NoSuchElementException();
+            }
+            E current = next;
+            next = readNextRecord();
+            return current;
+        }
+
+        @Override
+        public void remove() {
+            String s = "remove() is not supported by VcfMarkerJoin";
+            throw new UnsupportedOperationException(s);
+        }
+
+        @Override
+        public void close() {
+            refIt.close();
+        }
+    }
+
+    private class TargetIterator implements SampleFileIterator<VcfRec> {
+
+        @Override
+        public File file() {
+            return targetIt.file();
+        }
+
+        @Override
+        public Samples samples() {
+            return targetIt.samples();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasNextTarget();
+        }
+
+        @Override
+        public VcfRec next() {
+            return nextTarget();
+        }
+
+        @Override
+        public void remove() {
+            String s = "remove() is not supported by VcfMarkerJoin";
+            throw new UnsupportedOperationException(s);
+        }
+
+        @Override
+        public void close() {
+            targetIt.close();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2014 Brian L. Browning
+ *
+ * This file is part of Beagle
+ *
+ * Beagle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Beagle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package vcf;
+
+import beagleutil.Samples;
+
+/**
+ * <p>Interface {@code VcfRec} represents the marker and per-sample
+ * FORMAT data of a VCF record.  Genotype alleles and phase are accessed
+ * through primitive accessor methods.  Other FORMAT subfields are
+ * decoded when requested.
+ * </p>
+ * <p>All instances of {@code VcfRec} are required to be immutable.
+ * </p>
+ *
+ * @author Brian L. Browning {@code <browning@uw.edu>}
+ */
+public interface VcfRec {
+
+    /**
+     * Returns the VCF header line and meta-information lines.
+     * @return the VCF header line and meta-information lines.
+     */
+    VcfHeader vcfHeader();
+
+    /**
+     * Returns the samples. The returned samples are the filtered samples
+     * after all sample exclusions.
+     *
+     * @return the samples.
+     */
+    Samples samples();
+
+    /**
+     * Returns the number of samples.  The number of samples is the
+     * number of filtered samples after all sample exclusions.
+     *
+     * @return the number of samples.
+     */
+    int nSamples();
+
+    /**
+     * Returns the marker.
+     * @return the marker.
+     */
+    Marker marker();
+
+    /**
+     * Returns {@code true} if the specified FORMAT subfield is
+     * present, and returns {@code false} otherwise.
+     * @param formatCode a FORMAT sub-field code.
+     * @return {@code true} if the specified FORMAT subfield is
+     * present, and returns {@code false} otherwise.
+     */
+    boolean hasFormat(String formatCode);
+
+    /**
+     * Returns the specified sample allele.  Returns -1 if the allele
+     * is missing or if there is no GT FORMAT subfield.
+     * @param sample a sample index.
+     * @param allele an allele index.
+     * @return the specified sample allele.
+     *
+     * @throws IndexOutOfBoundsException if
+     * {@code sample<0 || sample>=this.nSamples()}.
+     * @throws IndexOutOfBoundsException if
+     * {@code allele<0 || allele>=2}.
+     */
+    byte gt(int sample, int allele);
+
+    /**
+     * Returns {@code true} if the genotype for the specified sample is
+     * phased and returns {@code false} otherwise.
+     * @param sample a sample index.
+     * @return  {@code true} if the genotype for the specified sample is
+     * phased and returns {@code false} if the genotype is unphased.
+     *
+     * @throws IndexOutOfBoundsException if
+     * {@code sample<0 || sample>=this.nSamples()}.
+     */
+    boolean isPhased(int sample);
+
+    /**
+     * Returns the specified FORMAT subfield data for the specified sample.
+     * @param formatCode a FORMAT subfield code.
+     * @param sample a sample index
+     * @return the specified FORMAT subfield data for the specified sample.
+     *
+     * @throws IllegalArgumentException if
+     * {@code this.hasFormat(formatCode)==false}.
+     * @throws IndexOutOfBoundsException if
+     * {@code sample<0 || sample>=this.nSamples()}.
+     */
+    String sampleFormatData(String formatCode, int sample);
+
+    /**
+     * Returns an array of length {@code this.nSamples()}
+     * containing the specified FORMAT subfield data for each sample.  The
+     * {@code k}-th element of the array is the specified FORMAT subfield data
+     * for the {@code k}-th sample.
+     * @param formatCode a format-field code.
+     * @return an array of length {@code this.nSamples()}
+     * containing the specified FORMAT subfield data for each sample.
+     *
+     * @throws IllegalArgumentException if
+     * {@code this.hasFormat(formatCode)==false}.
+     */
+    String[] formatData(String formatCode);
+
+    /**
+     * Returns the VCF record.
+     * @return the VCF record.
+     */
+    @Override
+    String toString();
+}
@@ -35,7 +35,7 @@ import java.util.Map;
  *
  * @author Brian L. Browning {@code <browning@uw.edu>}
  */
-public class VcfRecord {
+public class VcfRecord implements VcfRec {
 
     private final String vcfRecord;
     private final VcfHeader vcfHeader;
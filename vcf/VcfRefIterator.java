@@ -31,7 +31,7 @@ import java.util.NoSuchElementException;
  */
 public class VcfRefIterator implements SampleFileIterator<VcfEmission> {
 
-    private final SampleFileIterator<VcfRecord> it;
+    private final SampleFileIterator<VcfRec> it;
 
     /**
      * Constructs a new {@code VcfRefIterator} instance.
@@ -41,7 +41,7 @@ public class VcfRefIterator implements SampleFileIterator<VcfEmission> {
      * data.
      * @throws NullPointerException if {@code it==null}.
      */
-    public VcfRefIterator(SampleFileIterator<VcfRecord> it) {
+    public VcfRefIterator(SampleFileIterator<VcfRec> it) {
         if (it.samples().nSamples()==0) {
             String s = "missing sample data";
             throw new IllegalArgumentException(s);
@@ -89,7 +89,7 @@ public class VcfRefIterator implements SampleFileIterator<VcfEmission> {
         if (!hasNext()) {
             throw new NoSuchElementException();
         }
-	VcfRecord nextRecord = it.next();
+	VcfRec nextRecord = it.next();
 	if (nextRecord.hasFormat("PGP")){
 	    return new PGPRefGT(nextRecord);
 	}
@@ -19,6 +19,7 @@
 package vcf;
 
 import beagleutil.SampleIds;
+import blbutil.CharBuffer;
 import blbutil.Const;
 import blbutil.FileUtil;
 import haplotype.HapPair;
@@ -26,7 +27,6 @@ import haplotype.BasicSampleHapPairs;
 import haplotype.SampleHapPairs;
 import java.io.File;
 import java.io.PrintWriter;
-import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.List;
@@ -42,7 +42,6 @@ import main.GprobsStatistics;
 public final class VcfWriter {
 
     private static final String PASS = "PASS";
-    private static final DecimalFormat df3 = new DecimalFormat("#.###");
 
     private static final String fileformat = "##fileformat=VCFv4.1";
     private static final String afInfo = "##INFO=<ID=AF,Number=A,Type=Float,"
@@ -248,17 +247,19 @@ public final class VcfWriter {
             throw new IllegalArgumentException("inconsistent markers");
         }
         float[] sumAndAltDose = new float[2];
+        CharBuffer buf = new CharBuffer();
         for (int marker=start; marker<end; ++marker) {
 	    if (!writeSNPs && gv.marker(marker).is_snp())
 		continue;
 
-            printFixedFields(gv, marker, out);
+            buf.clear();
+            printFixedFields(gv, marker, buf);
 	    int nAlleles = gv.marker(marker).nAlleles();
             for (int hp=0, n=haps.nSamples(); hp<n; ++hp) {
-                out.print(Const.tab);
-                out.print(haps.allele1(marker, hp));
-                out.print(Const.phasedSep);
-                out.print(haps.allele2(marker, hp));
+                buf.append(Const.tab);
+                buf.append(haps.allele1(marker, hp));
+                buf.append(Const.phasedSep);
+                buf.append(haps.allele2(marker, hp));
                 int sampleIdIndex = haps.idIndex(hp);
                 int sampleIndex = gv.samples().index(sampleIdIndex);
                 if (sampleIndex < 0) {
@@ -270,20 +271,20 @@ public final class VcfWriter {
                 float sum = sumAndAltDose[0];
                 float altDoseSum = sumAndAltDose[1];
                 if (sum==0.0f) {
-                    out.print(Const.colon);
-                    out.print(Const.MISSING_DATA_CHAR);
-                    out.print(Const.colon);
-                    out.print(Const.MISSING_DATA_CHAR);
-		    out.print(Const.colon);
-		    out.print(Const.MISSING_DATA_CHAR);
+                    buf.append(Const.colon);
+                    buf.append(Const.MISSING_DATA_CHAR);
+                    buf.append(Const.colon);
+                    buf.append(Const.MISSING_DATA_CHAR);
+		    buf.append(Const.colon);
+		    buf.append(Const.MISSING_DATA_CHAR);
                 }
                 else {
-                    out.print(Const.colon);
-                    out.print(df3.format(altDoseSum/sum));
+                    buf.append(Const.colon);
+                    buf.appendDecimal3(altDoseSum/sum);
                     for (int gt=0; gt<nUnphasedGenotypes; ++gt) {
-                        out.print(gt==0 ? Const.colon : Const.comma);
+                        buf.append(gt==0 ? Const.colon : Const.comma);
                         double v = gv.unphased_value(marker, sampleIndex, gt)/sum;
-                        out.print(df3.format(v));
+                        buf.appendDecimal3(v);
                     }
 
 		    // The BEAGLE algorithm sometimes switches the two strands relative to the original input VCF
@@ -297,16 +298,17 @@ public final class VcfWriter {
 		    if (gv.marker(marker).start() != -1){
 			for (byte a1=0; a1<nAlleles; ++a1){
 			    for (byte a2=0; a2<nAlleles; ++a2){
-				out.print((a1 == 0 && a2 == 0) ? Const.colon: Const.comma);
+				buf.append((a1 == 0 && a2 == 0) ? Const.colon: Const.comma);
 				int gt = (switched ? loc.phased_genotype(a2, a1) : loc.phased_genotype(a1, a2));
 				double v = gv.phased_value(marker, sampleIndex, gt)/sum;
-				out.print(df3.format(v));
+				buf.appendDecimal3(v);
 			    }
 			}
 
 		    }
                 }
             }
+            buf.writeTo(out);
             out.println();
         }
     }
@@ -331,17 +333,20 @@ public final class VcfWriter {
         if (start > end) {
             throw new IllegalArgumentException("start=" + start + " end=" + end);
         }
+        CharBuffer buf = new CharBuffer();
         for (int marker=start; marker<end; ++marker) {
 	    if (!writeSNPs && haps.marker(marker).is_snp())
 		continue;
 
             printFixedFieldsGT(haps.marker(marker), out);
+            buf.clear();
             for (int hp=0, n=haps.nSamples(); hp<n; ++hp) {
-                out.print(Const.tab);
-                out.print(haps.allele1(marker, hp));
-                out.print(Const.phasedSep);
-                out.print(haps.allele2(marker, hp));
+                buf.append(Const.tab);
+                buf.append(haps.allele1(marker, hp));
+                buf.append(Const.phasedSep);
+                buf.append(haps.allele2(marker, hp));
             }
+            buf.writeTo(out);
             out.println();
         }
     }
@@ -392,34 +397,45 @@ public final class VcfWriter {
     }
 
     private static void printFixedFields(GenotypeValues gv, int marker,
-            PrintWriter out) {
+            CharBuffer out) {
         GprobsStatistics gpm = new GprobsStatistics(gv, marker);
         float[] alleleFreq = gpm.alleleFreq();
-        out.print(gv.marker(marker));
-        out.print(Const.tab);
-        out.print(Const.MISSING_DATA_CHAR); // QUAL
-        out.print(Const.tab);
-        out.print(PASS);                    // FILTER
-        out.print(Const.tab);
-        out.print("AR2=");                  // INFO
-        out.print(df3.format(gpm.allelicR2()));
-        out.print(";DR2=");
-        out.print(df3.format(gpm.doseR2()));
+        out.append(gv.marker(marker).toString());
+        out.append(Const.tab);
+        out.append(Const.MISSING_DATA_CHAR); // QUAL
+        out.append(Const.tab);
+        out.append(PASS);                    // FILTER
+        out.append(Const.tab);
+        out.append("AR2=");                  // INFO
+        out.appendDecimal3(gpm.allelicR2());
+        out.append(";DR2=");
+        out.appendDecimal3(gpm.doseR2());
         for (int j=1; j<alleleFreq.length; ++j) {
-            out.print( (j==1) ? ";AF=" : Const.comma);
-            out.print(df3.format(alleleFreq[j]));
+            if (j==1) {
+                out.append(";AF=");
+            }
+            else {
+                out.append(Const.comma);
+            }
+            out.appendDecimal3(alleleFreq[j]);
         }
 
 	// Print INFO fields if they were in the reference VCF
 	if (gv.marker(marker).start() != -1)
-	    out.print(";START=" + gv.marker(marker).start());
+	{
+	    out.append(";START=");
+	    out.append(gv.marker(marker).start());
+	}
 	if (gv.marker(marker).end() != -1)
-	    out.print(";END=" + gv.marker(marker).end());
+	{
+	    out.append(";END=");
+	    out.append(gv.marker(marker).end());
+	}
 
-        out.print(Const.tab);
+        out.append(Const.tab);
 	if (gv.marker(marker).start() != -1)
-	    out.print("GT:DS:GP:PGP");
+	    out.append("GT:DS:GP:PGP");
 	else
-	    out.print("GT:DS:GP");
+	    out.append("GT:DS:GP");
     }
 }